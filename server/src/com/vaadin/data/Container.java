@@ -582,6 +582,70 @@ public interface Container extends Serializable {
         public Item addItemAt(int index, Object newItemId)
                 throws UnsupportedOperationException;
 
+        /**
+         * An <code>Event</code> object specifying information about items
+         * added to the visible items of an indexed container, either by adding
+         * the items or by filtering. The added items are consecutive in the
+         * container.
+         * 
+         * @since 7.2
+         */
+        public interface ItemAddEvent extends ItemSetChangeEvent {
+
+            /**
+             * Gets the item id of the first added item.
+             * 
+             * @return the item id of the first added item
+             */
+            public Object getFirstItemId();
+
+            /**
+             * Gets the index of the first added item in the container.
+             * 
+             * @return the index of the first added item
+             */
+            public int getFirstIndex();
+
+            /**
+             * Gets the number of added items.
+             * 
+             * @return the number of added items
+             */
+            public int getAddedItemsCount();
+        }
+
+        /**
+         * An <code>Event</code> object specifying information about items
+         * removed from the visible items of an indexed container, either by
+         * removing the items or by filtering. The removed items were
+         * consecutive in the container.
+         * 
+         * @since 7.2
+         */
+        public interface ItemRemoveEvent extends ItemSetChangeEvent {
+
+            /**
+             * Gets the item id of the first removed item.
+             * 
+             * @return the item id of the first removed item
+             */
+            public Object getFirstItemId();
+
+            /**
+             * Gets the index the first removed item had in the container
+             * before the removal.
+             * 
+             * @return the index of the first removed item
+             */
+            public int getFirstIndex();
+
+            /**
+             * Gets the number of removed items.
+             * 
+             * @return the number of removed items
+             */
+            public int getRemovedItemsCount();
+        }
     }
 
     /**
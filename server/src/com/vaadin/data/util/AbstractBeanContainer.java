@@ -16,6 +16,7 @@
 package com.vaadin.data.util;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,6 +35,7 @@ import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.Property.ValueChangeNotifier;
 import com.vaadin.data.util.MethodProperty.MethodException;
+import com.vaadin.data.util.filter.NarrowingFilter;
 import com.vaadin.data.util.filter.SimpleStringFilter;
 import com.vaadin.data.util.filter.UnsupportedFilterException;
 
@@ -143,6 +145,29 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
      */
     private final Map<IDTYPE, BeanItem<BEANTYPE>> itemIdToItem = new HashMap<IDTYPE, BeanItem<BEANTYPE>>();
 
+    /**
+     * The default maximum number of items kept in the item cache when items
+     * are created on demand.
+     * 
+     * @see #setItemCacheSize(int)
+     * @since 7.2
+     */
+    public static final int DEFAULT_ITEM_CACHE_SIZE = 1000;
+
+    /**
+     * Maps all item ids in the container (including filtered) to their
+     * corresponding bean when items are created on demand, or
+     * <code>null</code> if {@link #itemIdToItem} is used.
+     */
+    private Map<IDTYPE, BEANTYPE> itemIdToBean;
+
+    /**
+     * The most recently used items when items are created on demand.
+     */
+    private ItemCache<IDTYPE, BEANTYPE> itemCache;
+
+    private int itemCacheSize = DEFAULT_ITEM_CACHE_SIZE;
+
     /**
      * The type of the beans in the container.
      */
@@ -154,6 +179,13 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
      */
     private LinkedHashMap<String, VaadinPropertyDescriptor<BEANTYPE>> model;
 
+    /**
+     * Snapshot of {@link #model} shared by the items of the container to
+     * create their properties lazily, or <code>null</code> if the model has
+     * changed since the snapshot was taken.
+     */
+    private BeanItem.PropertyModel<BEANTYPE> itemModel;
+
     /**
      * Constructs a {@code AbstractBeanContainer} for beans of the given type.
      * 
@@ -183,13 +215,20 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
 
     /**
      * Create a BeanItem for a bean using pre-parsed bean metadata (based on
-     * {@link #getBeanType()}).
+     * {@link #getBeanType()}). The properties of the item are created when
+     * they are first accessed.
      * 
      * @param bean
      * @return created {@link BeanItem} or null if bean is null
      */
     protected BeanItem<BEANTYPE> createBeanItem(BEANTYPE bean) {
-        return bean == null ? null : new BeanItem<BEANTYPE>(bean, model);
+        if (bean == null) {
+            return null;
+        }
+        if (itemModel == null) {
+            itemModel = new BeanItem.PropertyModel<BEANTYPE>(model);
+        }
+        return new BeanItem<BEANTYPE>(bean, itemModel);
     }
 
     /**
@@ -226,10 +265,14 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         internalRemoveAllItems();
 
         // detach listeners from all Items
-        for (Item item : itemIdToItem.values()) {
+        for (Item item : getCreatedItems()) {
             removeAllValueChangeListeners(item);
         }
         itemIdToItem.clear();
+        if (itemIdToBean != null) {
+            itemIdToBean.clear();
+            itemCache.clear();
+        }
 
         // fire event only if the visible view changed, regardless of whether
         // filtered out items were removed or not
@@ -252,8 +295,163 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     protected BeanItem<BEANTYPE> getUnfilteredItem(Object itemId) {
-        return itemIdToItem.get(itemId);
+        if (itemIdToBean == null) {
+            return itemIdToItem.get(itemId);
+        }
+
+        BeanItem<BEANTYPE> item;
+        synchronized (itemCache) {
+            item = itemCache.get(itemId);
+        }
+        if (item == null) {
+            BEANTYPE bean = itemIdToBean.get(itemId);
+            if (bean == null) {
+                return null;
+            }
+            item = createBeanItem(bean);
+            addFilterListeners(item);
+            synchronized (itemCache) {
+                itemCache.put((IDTYPE) itemId, item);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Returns the items that have been created for the beans in the
+     * container. If items are created on demand, only the cached items are
+     * returned.
+     */
+    private Collection<BeanItem<BEANTYPE>> getCreatedItems() {
+        if (itemIdToBean == null) {
+            return itemIdToItem.values();
+        }
+        synchronized (itemCache) {
+            return new ArrayList<BeanItem<BEANTYPE>>(itemCache.values());
+        }
+    }
+
+    /**
+     * Sets whether the container creates the {@link BeanItem}s for its beans
+     * only when they are requested using {@link #getItem(Object)} or other
+     * methods, instead of creating and keeping an item for each bean when the
+     * bean is added. This considerably reduces the memory used by containers
+     * with a large number of beans.
+     * <p>
+     * When items are created on demand, the most recently used items are kept
+     * in a cache whose size can be set using {@link #setItemCacheSize(int)}.
+     * An item that is no longer in the cache is recreated when it is
+     * requested again, so the returned item and its properties are not always
+     * the same instances. Filtering is updated when the value of a property
+     * used in a filter is changed through an item returned by the container.
+     * Properties added to or removed from the container after an item has
+     * been evicted from the cache are not updated in that item.
+     * <p>
+     * The mode can only be changed when the container is empty.
+     * 
+     * @param onDemand
+     *            <code>true</code> to create items on demand,
+     *            <code>false</code> to create an item for each bean when it
+     *            is added (the default)
+     * @throws IllegalStateException
+     *             if the container is not empty
+     * @since 7.2
+     */
+    public void setItemsCreatedOnDemand(boolean onDemand)
+            throws IllegalStateException {
+        if (onDemand == isItemsCreatedOnDemand()) {
+            return;
+        }
+        if (!getAllItemIds().isEmpty()) {
+            throw new IllegalStateException(
+                    "The item creation mode can only be changed when the container is empty");
+        }
+        if (onDemand) {
+            itemIdToBean = new HashMap<IDTYPE, BEANTYPE>();
+            itemCache = new ItemCache<IDTYPE, BEANTYPE>(itemCacheSize);
+        } else {
+            itemIdToBean = null;
+            itemCache = null;
+        }
+    }
+
+    /**
+     * Returns whether the container creates items only when they are
+     * requested.
+     * 
+     * @see #setItemsCreatedOnDemand(boolean)
+     * @return <code>true</code> if items are created on demand,
+     *         <code>false</code> otherwise
+     * @since 7.2
+     */
+    public boolean isItemsCreatedOnDemand() {
+        return itemIdToBean != null;
+    }
+
+    /**
+     * Sets the maximum number of items kept in memory when items are created
+     * on demand. The default is {@value #DEFAULT_ITEM_CACHE_SIZE}. Has no
+     * effect if items are not created on demand.
+     * 
+     * @see #setItemsCreatedOnDemand(boolean)
+     * @param itemCacheSize
+     *            the maximum number of cached items, 0 to disable caching
+     * @since 7.2
+     */
+    public void setItemCacheSize(int itemCacheSize) {
+        if (itemCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "The item cache size must not be negative");
+        }
+        this.itemCacheSize = itemCacheSize;
+        if (itemCache != null) {
+            synchronized (itemCache) {
+                itemCache.setMaxSize(itemCacheSize);
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of items kept in memory when items are created
+     * on demand.
+     * 
+     * @see #setItemCacheSize(int)
+     * @return the maximum number of cached items
+     * @since 7.2
+     */
+    public int getItemCacheSize() {
+        return itemCacheSize;
+    }
+
+    /**
+     * A least recently used cache of the items created on demand.
+     */
+    @SuppressWarnings("serial")
+    private static class ItemCache<IDTYPE, BEANTYPE> extends
+            LinkedHashMap<IDTYPE, BeanItem<BEANTYPE>> {
+        private int maxSize;
+
+        public ItemCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            Iterator<IDTYPE> i = keySet().iterator();
+            while (size() > maxSize) {
+                i.next();
+                i.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<IDTYPE, BeanItem<BEANTYPE>> eldest) {
+            return size() > maxSize;
+        }
     }
 
     /*
@@ -291,15 +489,32 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     public boolean removeItem(Object itemId) {
         // TODO should also remove items that are filtered out
         int origSize = size();
-        Item item = getItem(itemId);
+        Item item;
+        if (itemIdToBean == null) {
+            item = getItem(itemId);
+        } else {
+            // Only cached items may have listeners
+            synchronized (itemCache) {
+                item = itemCache.get(itemId);
+            }
+        }
         int position = indexOfId(itemId);
 
         if (internalRemoveItem(itemId)) {
             // detach listeners from Item
-            removeAllValueChangeListeners(item);
+            if (item != null) {
+                removeAllValueChangeListeners(item);
+            }
 
             // remove item
-            itemIdToItem.remove(itemId);
+            if (itemIdToBean == null) {
+                itemIdToItem.remove(itemId);
+            } else {
+                itemIdToBean.remove(itemId);
+                synchronized (itemCache) {
+                    itemCache.remove(itemId);
+                }
+            }
 
             // fire event only if the visible view changed, regardless of
             // whether filtered out items were removed or not
@@ -315,11 +530,52 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
 
     /**
      * Re-filter the container when one of the monitored properties changes.
+     * Only the item the property belongs to is re-filtered if it can be
+     * determined.
      */
     @Override
     public void valueChange(ValueChangeEvent event) {
         // if a property that is used in a filter is changed, refresh filtering
-        filterAll();
+        IDTYPE itemId = findItemId(event.getProperty());
+        if (itemId != null) {
+            filterItem(itemId);
+        } else {
+            filterAll();
+        }
+    }
+
+    /**
+     * Finds the id of the item a bean property belongs to using the bean id
+     * resolver.
+     * 
+     * @return the item id or null if it cannot be determined
+     */
+    @SuppressWarnings("unchecked")
+    private IDTYPE findItemId(Property<?> property) {
+        Object bean;
+        if (property instanceof MethodProperty) {
+            bean = ((MethodProperty<?>) property).getInstance();
+        } else if (property instanceof NestedMethodProperty) {
+            bean = ((NestedMethodProperty<?>) property).getInstance();
+        } else {
+            return null;
+        }
+        if (beanIdResolver == null || !type.isInstance(bean)) {
+            return null;
+        }
+        // the id might also have changed if resolved from the changed property
+        IDTYPE itemId = resolveBeanId((BEANTYPE) bean);
+        if (itemId == null) {
+            return null;
+        }
+        Object storedBean;
+        if (itemIdToBean == null) {
+            BeanItem<BEANTYPE> item = itemIdToItem.get(itemId);
+            storedBean = item != null ? item.getBean() : null;
+        } else {
+            storedBean = itemIdToBean.get(itemId);
+        }
+        return storedBean == bean ? itemId : null;
     }
 
     /*
@@ -349,7 +605,7 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     @Override
     public void removeAllContainerFilters() {
         if (!getFilters().isEmpty()) {
-            for (Item item : itemIdToItem.values()) {
+            for (Item item : getCreatedItems()) {
                 removeAllValueChangeListeners(item);
             }
             removeAllFilters();
@@ -368,7 +624,7 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         Collection<Filter> removedFilters = super.removeFilters(propertyId);
         if (!removedFilters.isEmpty()) {
             // stop listening to change events for the property
-            for (Item item : itemIdToItem.values()) {
+            for (Item item : getCreatedItems()) {
                 removeValueChangeListener(item, propertyId);
             }
         }
@@ -385,6 +641,40 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         removeFilter(filter);
     }
 
+    /**
+     * Replaces a container filter with another one, e.g. when the filter
+     * string of a filter field changes. If the new filter is a
+     * {@link NarrowingFilter} that is narrower than the old filter, only the
+     * currently visible items are tested against the new filter.
+     * 
+     * @param oldFilter
+     *            the filter to remove
+     * @param newFilter
+     *            the filter to add
+     * @throws UnsupportedFilterException
+     *             if the new filter is not supported by the container
+     * @since 7.2
+     */
+    public void replaceContainerFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        replaceFilter(oldFilter, newFilter);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns true as the items of a bean container are only filtered with
+     * the container filters. Subclasses that override
+     * {@link #passesFilters(Object)} or {@link #doFilterContainer(boolean)}
+     * with other conditions should override this method to return false.
+     * 
+     * @since 7.2
+     */
+    @Override
+    protected boolean isIncrementalFilteringSupported() {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -487,10 +777,25 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     @Override
     protected void registerNewItem(int position, IDTYPE itemId,
             BeanItem<BEANTYPE> item) {
-        itemIdToItem.put(itemId, item);
+        if (itemIdToBean == null) {
+            itemIdToItem.put(itemId, item);
+        } else {
+            itemIdToBean.put(itemId, item.getBean());
+            synchronized (itemCache) {
+                itemCache.put(itemId, item);
+            }
+        }
+        addFilterListeners(item);
+    }
 
-        // add listeners to be able to update filtering on property
-        // changes
+    /**
+     * Adds listeners to the properties of an item that are used in filters to
+     * be able to update filtering on property changes.
+     * 
+     * @param item
+     *            the item to listen to
+     */
+    private void addFilterListeners(BeanItem<BEANTYPE> item) {
         for (Filter filter : getFilters()) {
             for (String propertyId : getContainerPropertyIds()) {
                 if (filter.appliesToProperty(propertyId)) {
@@ -821,7 +1126,8 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         }
 
         model.put(propertyId, propertyDescriptor);
-        for (BeanItem<BEANTYPE> item : itemIdToItem.values()) {
+        itemModel = null;
+        for (BeanItem<BEANTYPE> item : getCreatedItems()) {
             item.addItemProperty(propertyId,
                     propertyDescriptor.createProperty(item.getBean()));
         }
@@ -926,7 +1232,8 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
                     nullBeansAllowed);
             model.put(qualifiedPropertyId, pd);
             model.remove(propertyId);
-            for (BeanItem<BEANTYPE> item : itemIdToItem.values()) {
+            itemModel = null;
+            for (BeanItem<BEANTYPE> item : getCreatedItems()) {
                 item.addItemProperty(propertyId,
                         pd.createProperty(item.getBean()));
                 item.removeItemProperty(propertyId);
@@ -947,10 +1254,11 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
 
         // Removes the Property to Property list and types
         model.remove(propertyId);
+        itemModel = null;
 
         // If remove the Property from all Items
-        for (final Iterator<IDTYPE> i = getAllItemIds().iterator(); i.hasNext();) {
-            getUnfilteredItem(i.next()).removeItemProperty(propertyId);
+        for (BeanItem<BEANTYPE> item : getCreatedItems()) {
+            item.removeItemProperty(propertyId);
         }
 
         // Sends a change event
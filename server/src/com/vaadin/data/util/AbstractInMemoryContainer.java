@@ -17,15 +17,22 @@ package com.vaadin.data.util;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.ItemSetChangeNotifier;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.ParallelExecution.ChunkTask;
+import com.vaadin.data.util.SortKeyItemSorter.SortKey;
+import com.vaadin.data.util.filter.CaseFoldedValueCache;
+import com.vaadin.data.util.filter.NarrowingFilter;
 import com.vaadin.data.util.filter.SimpleStringFilter;
 import com.vaadin.data.util.filter.UnsupportedFilterException;
 
@@ -79,6 +86,11 @@ import com.vaadin.data.util.filter.UnsupportedFilterException;
  * {@link #addFilter(com.vaadin.data.Container.Filter)} and
  * {@link #removeFilters(Object)} respectively.
  * 
+ * Filtering is incremental where possible: adding a filter or replacing a
+ * filter with a {@link NarrowingFilter narrower} one only tests the currently
+ * visible items, and subclasses can call {@link #filterItem(Object)} to only
+ * re-evaluate a single item when one of its filtered property values changes.
+ * 
  * @param <ITEMIDTYPE>
  *            the class of item identifiers in the container, use Object if can
  *            be any class
@@ -125,6 +137,41 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      */
     private ItemSorter itemSorter = new DefaultItemSorter();
 
+    /**
+     * Whether case-insensitive filters may cache case-folded property values.
+     */
+    private boolean caseFoldedValueCacheEnabled = false;
+
+    /**
+     * Cache of case-folded property values, created when first needed if the
+     * cache is enabled.
+     */
+    private transient CaseFoldedValueCache caseFoldedValueCache;
+
+    /**
+     * The default minimum number of items for filtering and sorting in
+     * parallel when a parallel executor has been set.
+     * 
+     * @since 7.2
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+
+    /**
+     * The number of items each parallel filtering task tests at a time.
+     */
+    private static final int PARALLEL_FILTER_CHUNK_SIZE = 4096;
+
+    /**
+     * The executor used for filtering and sorting in parallel, or null to
+     * filter and sort in the calling thread.
+     */
+    private transient Executor parallelExecutor;
+
+    /**
+     * The minimum number of items for filtering and sorting in parallel.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
     // Constructors
 
     /**
@@ -287,6 +334,8 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
 
     @Override
     public int indexOfId(Object itemId) {
+        // constant time for the default ListSet implementation, which keeps an
+        // index of the positions of the item ids
         return getVisibleItemIds().indexOf(itemId);
     }
 
@@ -437,14 +486,22 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         // Filter
         boolean equal = true;
         Iterator<ITEMIDTYPE> origIt = originalFilteredItemIds.iterator();
-        for (final Iterator<ITEMIDTYPE> i = getAllItemIds().iterator(); i
-                .hasNext();) {
-            final ITEMIDTYPE id = i.next();
-            if (passesFilters(id)) {
-                // filtered list comes from the full list, can use ==
-                equal = equal && origIt.hasNext() && origIt.next() == id;
-                getFilteredItemIds().add(id);
+        CaseFoldedValueCache previousCache = CaseFoldedValueCache.getCurrent();
+        CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+        try {
+            boolean[] passes = testItemsInParallel(getAllItemIds(), null);
+            int index = 0;
+            for (final Iterator<ITEMIDTYPE> i = getAllItemIds().iterator(); i
+                    .hasNext();) {
+                final ITEMIDTYPE id = i.next();
+                if (passes != null ? passes[index++] : passesFilters(id)) {
+                    // filtered list comes from the full list, can use ==
+                    equal = equal && origIt.hasNext() && origIt.next() == id;
+                    getFilteredItemIds().add(id);
+                }
             }
+        } finally {
+            CaseFoldedValueCache.setCurrent(previousCache);
         }
 
         return (wasUnfiltered && !getAllItemIds().isEmpty()) || !equal
@@ -476,6 +533,196 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         return true;
     }
 
+    /**
+     * Filters the currently visible items with the given filter and sends a
+     * notification if the set of visible items changed. This is used instead
+     * of {@link #filterAll()} when the filter has been added to the container
+     * or has replaced a wider filter, in which case no items that are
+     * currently filtered out can become visible.
+     * <p>
+     * The visible items are only tested against the new filter. If
+     * {@link #isIncrementalFilteringSupported()} returns false,
+     * {@link #filterAll()} is used instead.
+     * 
+     * @param filter
+     *            the new filter the visible items should be tested against
+     * @since 7.2
+     */
+    protected void filterVisibleItems(Filter filter) {
+        if (!isIncrementalFilteringSupported()) {
+            filterAll();
+            return;
+        }
+        List<ITEMIDTYPE> visibleItemIds = getVisibleItemIds();
+        ListSet<ITEMIDTYPE> filteredItemIds = new ListSet<ITEMIDTYPE>(
+                visibleItemIds.size());
+        int removedCount = 0;
+        int firstRemovedIndex = -1;
+        ITEMIDTYPE firstRemovedId = null;
+
+        CaseFoldedValueCache previousCache = CaseFoldedValueCache.getCurrent();
+        CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+        try {
+            boolean[] passes = testItemsInParallel(visibleItemIds, filter);
+            for (int i = 0; i < visibleItemIds.size(); i++) {
+                ITEMIDTYPE id = visibleItemIds.get(i);
+                if (passes != null ? passes[i] : filter.passesFilter(id,
+                        getUnfilteredItem(id))) {
+                    filteredItemIds.add(id);
+                } else if (removedCount++ == 0) {
+                    firstRemovedIndex = i;
+                    firstRemovedId = id;
+                }
+            }
+        } finally {
+            CaseFoldedValueCache.setCurrent(previousCache);
+        }
+
+        setFilteredItemIds(filteredItemIds);
+        if (removedCount == 1) {
+            fireItemRemoved(firstRemovedIndex, firstRemovedId);
+        } else if (removedCount > 1) {
+            fireItemSetChange();
+        }
+    }
+
+    /**
+     * Tests the given items in parallel if a parallel executor has been set
+     * and there are enough items.
+     * 
+     * @param itemIds
+     *            the ids of the items to test
+     * @param filter
+     *            the filter to test the items against, or null to use
+     *            {@link #passesFilters(Object)}
+     * @return an array telling which of the items passed, or null if the items
+     *         should be tested in the calling thread
+     */
+    private boolean[] testItemsInParallel(List<ITEMIDTYPE> itemIds,
+            final Filter filter) {
+        int parallelism = getParallelism();
+        if (parallelExecutor == null || parallelism < 2
+                || itemIds.size() < parallelThreshold) {
+            return null;
+        }
+
+        final Object[] ids = itemIds.toArray();
+        final boolean[] passes = new boolean[ids.length];
+        int chunks = (ids.length + PARALLEL_FILTER_CHUNK_SIZE - 1)
+                / PARALLEL_FILTER_CHUNK_SIZE;
+        ParallelExecution.run(parallelExecutor, parallelism, chunks,
+                new ChunkTask() {
+                    @Override
+                    public void run(int chunk) {
+                        int start = chunk * PARALLEL_FILTER_CHUNK_SIZE;
+                        int end = Math.min(ids.length, start
+                                + PARALLEL_FILTER_CHUNK_SIZE);
+                        for (int i = start; i < end; i++) {
+                            Object id = ids[i];
+                            passes[i] = filter == null ? passesFilters(id)
+                                    : filter.passesFilter(id,
+                                            getUnfilteredItem(id));
+                        }
+                    }
+                });
+        return passes;
+    }
+
+    /**
+     * Re-evaluates the filters for a single item, e.g. after one of its
+     * property values has changed, and updates the visible items accordingly.
+     * If the item becomes visible or is hidden, a notification describing the
+     * added or removed item is sent using
+     * {@link #fireItemAdded(int, Object, Item)} or
+     * {@link #fireItemRemoved(int, Object)}.
+     * <p>
+     * The item is tested with {@link #passesFilters(Object)}. If
+     * {@link #isIncrementalFilteringSupported()} returns false,
+     * {@link #filterAll()} is used instead.
+     * 
+     * @param itemId
+     *            the id of the item to filter, not null
+     * @since 7.2
+     */
+    protected void filterItem(ITEMIDTYPE itemId) {
+        if (!isFiltered() || !getAllItemIds().contains(itemId)) {
+            // All items are visible when not filtered
+            return;
+        }
+        if (!isIncrementalFilteringSupported()) {
+            filterAll();
+            return;
+        }
+
+        boolean passes;
+        CaseFoldedValueCache previousCache = CaseFoldedValueCache.getCurrent();
+        CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+        try {
+            passes = passesFilters(itemId);
+        } finally {
+            CaseFoldedValueCache.setCurrent(previousCache);
+        }
+
+        List<ITEMIDTYPE> filteredItemIds = getFilteredItemIds();
+        int position = filteredItemIds.indexOf(itemId);
+        if (passes && position < 0) {
+            position = findFilteredPosition(itemId);
+            filteredItemIds.add(position, itemId);
+            fireItemAdded(position, itemId, getUnfilteredItem(itemId));
+        } else if (!passes && position >= 0) {
+            filteredItemIds.remove(position);
+            fireItemRemoved(position, itemId);
+        }
+    }
+
+    /**
+     * Checks whether the container can be filtered incrementally by
+     * {@link #filterVisibleItems(Filter)} and {@link #filterItem(Object)}
+     * instead of re-filtering all items with {@link #filterAll()}.
+     * <p>
+     * Incremental filtering is only correct if the visibility of an item is
+     * determined by the filters of the container alone: adding a filter can
+     * then only hide items that pass the new filter, and a change to an item
+     * can only change the visibility of that item. The default implementation
+     * returns false. Containers that override
+     * {@link #passesFilters(Object)} or {@link #doFilterContainer(boolean)}
+     * with other conditions should return false or also override the
+     * incremental methods.
+     * 
+     * @return true to filter incrementally, false to always use
+     *         {@link #filterAll()}
+     * @since 7.2
+     */
+    protected boolean isIncrementalFilteringSupported() {
+        return false;
+    }
+
+    /**
+     * Finds the position in the filtered item ids where the given item should
+     * be inserted to keep the filtered items in the same order as in the
+     * unfiltered item ids.
+     */
+    int findFilteredPosition(ITEMIDTYPE itemId) {
+        List<ITEMIDTYPE> allItemIds = getAllItemIds();
+        List<ITEMIDTYPE> filteredItemIds = getFilteredItemIds();
+        int index = allItemIds.indexOf(itemId);
+        int low = 0;
+        int high = filteredItemIds.size();
+        if (index == allItemIds.size() - 1) {
+            // Items are typically added at the end
+            return high;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (allItemIds.indexOf(filteredItemIds.get(middle)) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
     /**
      * Adds a container filter and re-filter the view.
      * 
@@ -496,8 +743,57 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      *             if the filter is detected as not supported by the container
      */
     protected void addFilter(Filter filter) throws UnsupportedFilterException {
-        getFilters().add(filter);
-        filterAll();
+        if (getFilters().add(filter)) {
+            // All filters must pass, so only the visible items need to be
+            // tested against the new filter
+            filterVisibleItems(filter);
+        } else {
+            filterAll();
+        }
+    }
+
+    /**
+     * Replaces a container filter with another one and re-filters the view. If
+     * the new filter is a {@link NarrowingFilter} that is narrower than the
+     * old filter, only the currently visible items are tested against the new
+     * filter. Otherwise, the view is re-filtered once from all items instead
+     * of once for removing the old filter and once for adding the new one.
+     * <p>
+     * If the old filter is not in the container, the new filter is simply
+     * added.
+     * 
+     * This can be used to implement e.g. a filter that changes as the user
+     * types.
+     * 
+     * @param oldFilter
+     *            the filter to remove
+     * @param newFilter
+     *            the filter to add
+     * @throws UnsupportedFilterException
+     *             if the new filter is detected as not supported by the
+     *             container
+     * @since 7.2
+     */
+    protected void replaceFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        boolean removed = false;
+        for (Iterator<Filter> iterator = getFilters().iterator(); iterator
+                .hasNext();) {
+            if (iterator.next().equals(oldFilter)) {
+                iterator.remove();
+                removed = true;
+                break;
+            }
+        }
+        if (!removed) {
+            addFilter(newFilter);
+        } else if (getFilters().add(newFilter)
+                && newFilter instanceof NarrowingFilter
+                && ((NarrowingFilter) newFilter).isNarrowerThan(oldFilter)) {
+            filterVisibleItems(newFilter);
+        } else {
+            filterAll();
+        }
     }
 
     /**
@@ -603,6 +899,134 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         return Collections.emptyList();
     }
 
+    /**
+     * Sets whether case-insensitive filters such as {@link SimpleStringFilter}
+     * may cache the lower or upper case versions of the string property values
+     * of this container. The cache makes repeated filtering of large containers
+     * faster, e.g. when the filter is changed as the user types, at the cost
+     * of keeping the converted values in memory. The cache is disabled by
+     * default.
+     * 
+     * @see CaseFoldedValueCache
+     * 
+     * @since 7.2
+     * @param enabled
+     *            <code>true</code> to enable the cache, <code>false</code> to
+     *            disable it and release the cached values
+     */
+    public void setCaseFoldedValueCacheEnabled(boolean enabled) {
+        caseFoldedValueCacheEnabled = enabled;
+        if (!enabled) {
+            caseFoldedValueCache = null;
+        }
+    }
+
+    /**
+     * Checks whether case-insensitive filters may cache case-folded property
+     * values.
+     * 
+     * @see #setCaseFoldedValueCacheEnabled(boolean)
+     * 
+     * @since 7.2
+     * @return <code>true</code> if the cache is enabled, <code>false</code>
+     *         otherwise
+     */
+    public boolean isCaseFoldedValueCacheEnabled() {
+        return caseFoldedValueCacheEnabled;
+    }
+
+    /**
+     * Gets the cache of case-folded property values used while filtering this
+     * container. Subclasses should invalidate the cached value of a property
+     * when they change it.
+     * 
+     * @since 7.2
+     * @return the cache, or <code>null</code> if the cache is disabled
+     */
+    protected CaseFoldedValueCache getCaseFoldedValueCache() {
+        if (caseFoldedValueCacheEnabled && caseFoldedValueCache == null) {
+            caseFoldedValueCache = new CaseFoldedValueCache();
+        }
+        return caseFoldedValueCache;
+    }
+
+    /**
+     * Sets an executor for filtering and sorting this container in parallel.
+     * When set, containers with at least {@link #getParallelThreshold()}
+     * items are filtered by testing chunks of items in multiple threads, and
+     * sorted using a parallel merge sort that produces the same order as a
+     * sequential sort. The calling thread takes part in the work and waits
+     * until it is complete, so filtering and sorting remain synchronous.
+     * <p>
+     * Parallel processing is only used on multiprocessor machines. The
+     * filters, the item sorter and the item properties of the container must
+     * be safe to read from multiple threads at the same time, which is the
+     * case for the built-in filters and bean containers. The executor is not
+     * serialized with the container.
+     * 
+     * @param executor
+     *            the executor to use, or <code>null</code> to filter and sort
+     *            in the calling thread
+     * @since 7.2
+     */
+    public void setParallelExecutor(Executor executor) {
+        parallelExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used for filtering and sorting this container in
+     * parallel.
+     * 
+     * @see #setParallelExecutor(Executor)
+     * 
+     * @return the executor or <code>null</code> if filtering and sorting are
+     *         done in the calling thread
+     * @since 7.2
+     */
+    public Executor getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Sets the minimum number of items for which filtering and sorting are
+     * done in parallel if a parallel executor has been set. The default is
+     * {@value #DEFAULT_PARALLEL_THRESHOLD}.
+     * 
+     * @see #setParallelExecutor(Executor)
+     * 
+     * @param parallelThreshold
+     *            the minimum number of items for parallel processing
+     * @since 7.2
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Returns the minimum number of items for which filtering and sorting are
+     * done in parallel.
+     * 
+     * @see #setParallelThreshold(int)
+     * 
+     * @return the minimum number of items for parallel processing
+     * @since 7.2
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Gets the maximum number of threads, including the calling thread, that
+     * work on parallel filtering and sorting. Parallel processing is not used
+     * if this is less than 2. Overridden in tests to use parallel processing
+     * also on single processor machines.
+     * 
+     * @return the parallelism, at least 1
+     */
+    int getParallelism() {
+        return ParallelExecution.getParallelism();
+    }
+
     // sorting
 
     /**
@@ -667,9 +1091,68 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      * <code>Collections.sort(aCollection, getItemSorter())</code> on all arrays
      * (containing item ids) that need to be sorted.
      * 
+     * If a parallel executor has been set, large containers are sorted using
+     * a parallel merge sort instead.
+     * 
+     * @see #setParallelExecutor(Executor)
+     * @see #sortItemIds(List)
      */
     protected void doSort() {
-        Collections.sort(getAllItemIds(), getItemSorter());
+        sortItemIds(getAllItemIds());
+    }
+
+    /**
+     * Sorts the given list of item ids using the item sorter prepared for the
+     * sort operation. If the item sorter is a {@link SortKeyItemSorter}, the
+     * sort keys of the items are extracted once and the keys are sorted
+     * instead of fetching the property values for each comparison. The
+     * resulting order is the same as with
+     * <code>Collections.sort(itemIds, getItemSorter())</code>.
+     * 
+     * @param itemIds
+     *            the item ids to sort
+     * @since 7.2
+     */
+    @SuppressWarnings("unchecked")
+    protected void sortItemIds(List<ITEMIDTYPE> itemIds) {
+        final ItemSorter itemSorter = getItemSorter();
+        int parallelism = getParallelism();
+        Executor executor = parallelExecutor;
+        if (parallelism < 2 || itemIds.size() < parallelThreshold) {
+            executor = null;
+        }
+
+        Object[] sorted;
+        if (itemIds.size() > 1 && itemSorter instanceof SortKeyItemSorter
+                && ((SortKeyItemSorter) itemSorter)
+                        .isSortKeyExtractionSupported()) {
+            SortKey[] keys = ((SortKeyItemSorter) itemSorter)
+                    .extractSortKeys(itemIds.toArray());
+            ParallelExecution.sort(keys, new Comparator<SortKey>() {
+                @Override
+                public int compare(SortKey key1, SortKey key2) {
+                    return ((SortKeyItemSorter) itemSorter).compareSortKeys(
+                            key1, key2);
+                }
+            }, executor, parallelism);
+            sorted = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                sorted[i] = keys[i].getItemId();
+            }
+        } else if (executor != null) {
+            sorted = itemIds.toArray();
+            ParallelExecution.sort(sorted, itemSorter, executor, parallelism);
+        } else {
+            Collections.sort(itemIds, itemSorter);
+            return;
+        }
+
+        // Write back like Collections.sort does
+        ListIterator<ITEMIDTYPE> i = itemIds.listIterator();
+        for (Object id : sorted) {
+            i.next();
+            i.set((ITEMIDTYPE) id);
+        }
     }
 
     /**
@@ -703,6 +1186,9 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         if (isFiltered()) {
             getFilteredItemIds().clear();
         }
+        if (caseFoldedValueCache != null) {
+            caseFoldedValueCache.clear();
+        }
     }
 
     /**
@@ -726,6 +1212,9 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         if (result && isFiltered()) {
             getFilteredItemIds().remove(itemId);
         }
+        if (result && caseFoldedValueCache != null) {
+            caseFoldedValueCache.invalidate(itemId);
+        }
 
         return result;
     }
@@ -794,10 +1283,9 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         ITEMCLASS newItem = internalAddAt(getAllItemIds().size(), newItemId,
                 item);
         if (newItem != null && filter) {
-            // TODO filter only this item, use fireItemAdded()
-            filterAll();
-            if (!isFiltered()) {
-                // TODO hack: does not detect change in filterAll() in this case
+            if (isFiltered()) {
+                filterItem(newItemId);
+            } else {
                 fireItemAdded(indexOfId(newItemId), newItemId, item);
             }
         }
@@ -835,10 +1323,9 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
                     item);
         }
         if (newItem != null && filter) {
-            // TODO filter only this item, use fireItemAdded()
-            filterAll();
-            if (!isFiltered()) {
-                // TODO hack: does not detect change in filterAll() in this case
+            if (isFiltered()) {
+                filterItem(newItemId);
+            } else {
                 fireItemAdded(indexOfId(newItemId), newItemId, item);
             }
         }
@@ -898,8 +1385,8 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      * Notify item set change listeners that an item has been added to the
      * container.
      * 
-     * Unless subclasses specify otherwise, the default notification indicates a
-     * full refresh.
+     * Unless subclasses specify otherwise, the default notification is a
+     * {@link Container.Indexed.ItemAddEvent} describing the added item.
      * 
      * @param postion
      *            position of the added item in the view (if visible)
@@ -909,15 +1396,15 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      *            the added item
      */
     protected void fireItemAdded(int position, ITEMIDTYPE itemId, ITEMCLASS item) {
-        fireItemSetChange();
+        fireItemSetChange(new BaseItemAddEvent(this, itemId, position, 1));
     }
 
     /**
      * Notify item set change listeners that an item has been removed from the
      * container.
      * 
-     * Unless subclasses specify otherwise, the default notification indicates a
-     * full refresh.
+     * Unless subclasses specify otherwise, the default notification is a
+     * {@link Container.Indexed.ItemRemoveEvent} describing the removed item.
      * 
      * @param postion
      *            position of the removed item in the view prior to removal (if
@@ -927,7 +1414,79 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      *            {@link Container#removeItem(Object)} API
      */
     protected void fireItemRemoved(int position, Object itemId) {
-        fireItemSetChange();
+        fireItemSetChange(new BaseItemRemoveEvent(this, itemId, position, 1));
+    }
+
+    /**
+     * An item set change event describing consecutive items that were added
+     * to or removed from the visible items of an in-memory container.
+     * 
+     * @since 7.2
+     */
+    protected static abstract class BaseItemAddOrRemoveEvent extends
+            BaseItemSetChangeEvent {
+        private final Object firstItemId;
+        private final int firstIndex;
+        private final int count;
+
+        protected BaseItemAddOrRemoveEvent(Container source,
+                Object firstItemId, int firstIndex, int count) {
+            super(source);
+            this.firstItemId = firstItemId;
+            this.firstIndex = firstIndex;
+            this.count = count;
+        }
+
+        public Object getFirstItemId() {
+            return firstItemId;
+        }
+
+        public int getFirstIndex() {
+            return firstIndex;
+        }
+
+        protected int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Default implementation of {@link Container.Indexed.ItemAddEvent}.
+     * 
+     * @since 7.2
+     */
+    protected static class BaseItemAddEvent extends BaseItemAddOrRemoveEvent
+            implements Container.Indexed.ItemAddEvent {
+
+        public BaseItemAddEvent(Container source, Object firstItemId,
+                int firstIndex, int count) {
+            super(source, firstItemId, firstIndex, count);
+        }
+
+        @Override
+        public int getAddedItemsCount() {
+            return getCount();
+        }
+    }
+
+    /**
+     * Default implementation of {@link Container.Indexed.ItemRemoveEvent}.
+     * 
+     * @since 7.2
+     */
+    protected static class BaseItemRemoveEvent extends
+            BaseItemAddOrRemoveEvent implements
+            Container.Indexed.ItemRemoveEvent {
+
+        public BaseItemRemoveEvent(Container source, Object firstItemId,
+                int firstIndex, int count) {
+            super(source, firstItemId, firstIndex, count);
+        }
+
+        @Override
+        public int getRemovedItemsCount() {
+            return getCount();
+        }
     }
 
     // visible and filtered item identifier lists
@@ -963,6 +1522,17 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      */
     @Deprecated
     protected void setFilteredItemIds(List<ITEMIDTYPE> filteredItemIds) {
+        internalSetFilteredItemIds(filteredItemIds);
+    }
+
+    /**
+     * Sets the internal list of filtered item identifiers. Used by subclasses
+     * in this package that update the filtered items incrementally.
+     * 
+     * @param filteredItemIds
+     *            the new list of filtered item ids, or null if not filtered
+     */
+    void internalSetFilteredItemIds(List<ITEMIDTYPE> filteredItemIds) {
         this.filteredItemIds = filteredItemIds;
     }
 
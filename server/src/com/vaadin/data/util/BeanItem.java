@@ -20,15 +20,21 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.vaadin.data.Property;
 
 /**
  * A wrapper class for adding the Item interface to any Java Bean.
@@ -44,6 +50,22 @@ public class BeanItem<BT> extends PropertysetItem {
      */
     private final BT bean;
 
+    /**
+     * The shared property model used for creating the properties of this item
+     * lazily, or <code>null</code> if all properties have been added to the
+     * item.
+     */
+    private PropertyModel<BT> lazyModel;
+
+    /**
+     * The properties created from {@link #lazyModel} so far, indexed like the
+     * property ids of the model. Properties may be read from multiple threads
+     * at the same time when a container is filtered or sorted in parallel, so
+     * each property is created and published atomically to ensure that all
+     * threads get the same instance.
+     */
+    private AtomicReferenceArray<Property<?>> lazyProperties;
+
     /**
      * <p>
      * Creates a new instance of <code>BeanItem</code> and adds all properties
@@ -87,6 +109,23 @@ public class BeanItem<BT> extends PropertysetItem {
         }
     }
 
+    /**
+     * Creates a new instance of <code>BeanItem</code> that creates the
+     * properties defined by a shared property model only when they are first
+     * accessed. This avoids creating property objects for beans and properties
+     * that are never accessed, e.g. in large containers.
+     * 
+     * @param bean
+     *            the Java Bean to copy properties from.
+     * @param model
+     *            the shared property model
+     */
+    BeanItem(BT bean, PropertyModel<BT> model) {
+        this.bean = bean;
+        lazyModel = model;
+        lazyProperties = new AtomicReferenceArray<Property<?>>(model.size());
+    }
+
     /**
      * <p>
      * Creates a new instance of <code>BeanItem</code> and adds all listed
@@ -288,6 +327,112 @@ public class BeanItem<BT> extends PropertysetItem {
                 getBean(), nestedPropertyId, nullBeansAllowed));
     }
 
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Property getItemProperty(Object id) {
+        if (lazyModel == null) {
+            return super.getItemProperty(id);
+        }
+        int index = lazyModel.indexOf(id);
+        if (index < 0) {
+            return null;
+        }
+        Property<?> property = lazyProperties.get(index);
+        if (property == null) {
+            // Another thread may create the same property concurrently
+            lazyProperties.compareAndSet(index, null,
+                    lazyModel.createProperty(index, bean));
+            property = lazyProperties.get(index);
+        }
+        return property;
+    }
+
+    @Override
+    public Collection<?> getItemPropertyIds() {
+        if (lazyModel == null) {
+            return super.getItemPropertyIds();
+        }
+        return lazyModel.getPropertyIds();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public boolean addItemProperty(Object id, Property property) {
+        createLazyProperties();
+        return super.addItemProperty(id, property);
+    }
+
+    @Override
+    public boolean removeItemProperty(Object id) {
+        createLazyProperties();
+        return super.removeItemProperty(id);
+    }
+
+    @Override
+    void createLazyProperties() {
+        if (lazyModel == null) {
+            return;
+        }
+        for (int i = 0; i < lazyProperties.length(); i++) {
+            Property<?> property = lazyProperties.get(i);
+            if (property == null) {
+                property = lazyModel.createProperty(i, bean);
+            }
+            putItemProperty(lazyModel.getPropertyIds().get(i), property);
+        }
+        lazyModel = null;
+        lazyProperties = null;
+    }
+
+    /**
+     * An immutable snapshot of the property descriptors of a bean class,
+     * shared by all items of a container that create their properties lazily.
+     * 
+     * @since 7.2
+     */
+    static class PropertyModel<BT> implements Serializable {
+        private final List<String> propertyIds;
+        private final VaadinPropertyDescriptor<BT>[] descriptors;
+        private final HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+        /**
+         * Creates a property model containing the given property descriptors
+         * in iteration order.
+         * 
+         * @param propertyDescriptors
+         *            the property descriptors by property id
+         */
+        @SuppressWarnings("unchecked")
+        public PropertyModel(
+                Map<String, VaadinPropertyDescriptor<BT>> propertyDescriptors) {
+            propertyIds = Collections.unmodifiableList(new ArrayList<String>(
+                    propertyDescriptors.keySet()));
+            int size = propertyDescriptors.size();
+            descriptors = propertyDescriptors.values().toArray(
+                    (VaadinPropertyDescriptor<BT>[]) new VaadinPropertyDescriptor<?>[size]);
+            for (int i = 0; i < propertyIds.size(); i++) {
+                indexes.put(propertyIds.get(i), Integer.valueOf(i));
+            }
+        }
+
+        public int size() {
+            return descriptors.length;
+        }
+
+        public List<String> getPropertyIds() {
+            return propertyIds;
+        }
+
+        public int indexOf(Object propertyId) {
+            Integer index = indexes.get(propertyId);
+            return index == null ? -1 : index.intValue();
+        }
+
+        public Property<?> createProperty(int index, BT bean) {
+            return descriptors[index].createProperty(bean);
+        }
+    }
+
     /**
      * Gets the underlying JavaBean object.
      * 
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage for {@link IndexedContainer} property values that keeps the values
+ * of each property in a column array instead of a map per item. Properties of
+ * type {@link Integer}, {@link Long}, {@link Double} and {@link Boolean} are
+ * stored in primitive arrays, other properties in object arrays.
+ * <p>
+ * Each item is assigned a row in the column arrays. The rows of removed items
+ * are reused for new items.
+ * 
+ * @see IndexedContainer#setColumnarStorage(boolean)
+ * 
+ * @since 7.2
+ */
+class ColumnarItemStorage implements IndexedContainer.ItemStorage {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Open addressing hash table from item id to row, with linear probing.
+     */
+    private Object[] keys = new Object[INITIAL_CAPACITY * 2];
+    private int[] keyRows = new int[INITIAL_CAPACITY * 2];
+    private int keyCount = 0;
+
+    /**
+     * The number of rows ever allocated, including free rows.
+     */
+    private int rowCount = 0;
+    private int rowCapacity = INITIAL_CAPACITY;
+
+    /**
+     * Rows of removed items, to be reused for new items.
+     */
+    private int[] freeRows = new int[INITIAL_CAPACITY];
+    private int freeRowCount = 0;
+
+    private final Map<Object, Column> columns = new HashMap<Object, Column>();
+
+    @Override
+    public boolean contains(Object itemId) {
+        return getRow(itemId) != -1;
+    }
+
+    @Override
+    public void addItem(Object itemId) {
+        int row = getRow(itemId);
+        if (row != -1) {
+            clearRow(row);
+            return;
+        }
+
+        if (freeRowCount > 0) {
+            row = freeRows[--freeRowCount];
+        } else {
+            if (rowCount == rowCapacity) {
+                rowCapacity += rowCapacity / 2;
+                for (Column column : columns.values()) {
+                    column.ensureCapacity(rowCapacity);
+                }
+            }
+            row = rowCount++;
+        }
+        putRow(itemId, row);
+    }
+
+    @Override
+    public boolean removeItem(Object itemId) {
+        int row = removeRow(itemId);
+        if (row == -1) {
+            return false;
+        }
+        clearRow(row);
+        if (freeRowCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        }
+        freeRows[freeRowCount++] = row;
+        return true;
+    }
+
+    private void clearRow(int row) {
+        for (Column column : columns.values()) {
+            column.set(row, null);
+        }
+    }
+
+    @Override
+    public void removeAllItems() {
+        keys = new Object[INITIAL_CAPACITY * 2];
+        keyRows = new int[INITIAL_CAPACITY * 2];
+        keyCount = 0;
+        rowCount = 0;
+        rowCapacity = INITIAL_CAPACITY;
+        freeRows = new int[INITIAL_CAPACITY];
+        freeRowCount = 0;
+        for (Map.Entry<Object, Column> entry : columns.entrySet()) {
+            entry.setValue(entry.getValue().createEmpty(rowCapacity));
+        }
+    }
+
+    @Override
+    public Object getValue(Object itemId, Object propertyId) {
+        Column column = columns.get(propertyId);
+        int row = getRow(itemId);
+        if (column == null || row == -1) {
+            return null;
+        }
+        return column.get(row);
+    }
+
+    @Override
+    public void setValue(Object itemId, Object propertyId, Object value) {
+        Column column = columns.get(propertyId);
+        int row = getRow(itemId);
+        if (column != null && row != -1) {
+            column.set(row, value);
+        }
+    }
+
+    @Override
+    public void addProperty(Object propertyId, Class<?> type) {
+        Column column;
+        if (type == Integer.class) {
+            column = new IntColumn(rowCapacity);
+        } else if (type == Long.class) {
+            column = new LongColumn(rowCapacity);
+        } else if (type == Double.class) {
+            column = new DoubleColumn(rowCapacity);
+        } else if (type == Boolean.class) {
+            column = new BooleanColumn(rowCapacity);
+        } else {
+            column = new ObjectColumn(rowCapacity);
+        }
+        columns.put(propertyId, column);
+    }
+
+    @Override
+    public void removeProperty(Object propertyId) {
+        columns.remove(propertyId);
+    }
+
+    @Override
+    public IndexedContainer.ItemStorage copy() {
+        ColumnarItemStorage copy = new ColumnarItemStorage();
+        copy.keys = keys.clone();
+        copy.keyRows = keyRows.clone();
+        copy.keyCount = keyCount;
+        copy.rowCount = rowCount;
+        copy.rowCapacity = rowCapacity;
+        copy.freeRows = freeRows.clone();
+        copy.freeRowCount = freeRowCount;
+        for (Map.Entry<Object, Column> entry : columns.entrySet()) {
+            copy.columns.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+
+    /* Item id to row mapping */
+
+    private static int hash(Object itemId) {
+        int h = itemId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int findSlot(Object itemId) {
+        int mask = keys.length - 1;
+        int slot = hash(itemId) & mask;
+        while (keys[slot] != null && !keys[slot].equals(itemId)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int getRow(Object itemId) {
+        if (itemId == null) {
+            return -1;
+        }
+        int slot = findSlot(itemId);
+        return keys[slot] == null ? -1 : keyRows[slot];
+    }
+
+    private void putRow(Object itemId, int row) {
+        if (2 * (keyCount + 1) > keys.length) {
+            Object[] oldKeys = keys;
+            int[] oldRows = keyRows;
+            keys = new Object[oldKeys.length * 2];
+            keyRows = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = findSlot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    keyRows[slot] = oldRows[i];
+                }
+            }
+        }
+        int slot = findSlot(itemId);
+        keys[slot] = itemId;
+        keyRows[slot] = row;
+        keyCount++;
+    }
+
+    private int removeRow(Object itemId) {
+        if (itemId == null) {
+            return -1;
+        }
+        int slot = findSlot(itemId);
+        if (keys[slot] == null) {
+            return -1;
+        }
+        int row = keyRows[slot];
+        keys[slot] = null;
+        keyCount--;
+
+        // Move back the following entries that can no longer be found
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == null) {
+                break;
+            }
+            int home = hash(keys[next]) & mask;
+            boolean reachable = free <= next ? (free < home && home <= next)
+                    : (free < home || home <= next);
+            if (!reachable) {
+                keys[free] = keys[next];
+                keyRows[free] = keyRows[next];
+                keys[next] = null;
+                free = next;
+            }
+        }
+        return row;
+    }
+
+    /* Columns */
+
+    /**
+     * The values of one property for all rows.
+     */
+    private static abstract class Column implements Serializable {
+
+        abstract Object get(int row);
+
+        /**
+         * Sets the value of a row, <code>null</code> clears the value.
+         */
+        abstract void set(int row, Object value);
+
+        abstract void ensureCapacity(int capacity);
+
+        abstract Column createEmpty(int capacity);
+
+        abstract Column copy();
+    }
+
+    private static class ObjectColumn extends Column {
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Column createEmpty(int capacity) {
+            return new ObjectColumn(capacity);
+        }
+
+        @Override
+        Column copy() {
+            ObjectColumn copy = new ObjectColumn(0);
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    /**
+     * Base class for columns of primitive values, which keep track of the rows
+     * that have a value.
+     */
+    private static abstract class PrimitiveColumn extends Column {
+        protected BitSet present = new BitSet();
+
+        @Override
+        Object get(int row) {
+            return present.get(row) ? getPrimitive(row) : null;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value == null) {
+                present.clear(row);
+            } else {
+                setPrimitive(row, value);
+                present.set(row);
+            }
+        }
+
+        protected abstract Object getPrimitive(int row);
+
+        protected abstract void setPrimitive(int row, Object value);
+
+        @Override
+        Column copy() {
+            PrimitiveColumn copy = copyValues();
+            copy.present = (BitSet) present.clone();
+            return copy;
+        }
+
+        protected abstract PrimitiveColumn copyValues();
+    }
+
+    private static class IntColumn extends PrimitiveColumn {
+        private int[] values;
+
+        IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        @Override
+        protected Object getPrimitive(int row) {
+            return Integer.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setPrimitive(int row, Object value) {
+            values[row] = ((Integer) value).intValue();
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Column createEmpty(int capacity) {
+            return new IntColumn(capacity);
+        }
+
+        @Override
+        protected PrimitiveColumn copyValues() {
+            IntColumn copy = new IntColumn(0);
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+        private long[] values;
+
+        LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        protected Object getPrimitive(int row) {
+            return Long.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setPrimitive(int row, Object value) {
+            values[row] = ((Long) value).longValue();
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Column createEmpty(int capacity) {
+            return new LongColumn(capacity);
+        }
+
+        @Override
+        protected PrimitiveColumn copyValues() {
+            LongColumn copy = new LongColumn(0);
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        protected Object getPrimitive(int row) {
+            return Double.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setPrimitive(int row, Object value) {
+            values[row] = ((Double) value).doubleValue();
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Column createEmpty(int capacity) {
+            return new DoubleColumn(capacity);
+        }
+
+        @Override
+        protected PrimitiveColumn copyValues() {
+            DoubleColumn copy = new DoubleColumn(0);
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class BooleanColumn extends PrimitiveColumn {
+        private BitSet values = new BitSet();
+
+        BooleanColumn(int capacity) {
+            // BitSet grows as needed
+        }
+
+        @Override
+        protected Object getPrimitive(int row) {
+            return Boolean.valueOf(values.get(row));
+        }
+
+        @Override
+        protected void setPrimitive(int row, Object value) {
+            values.set(row, ((Boolean) value).booleanValue());
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            // BitSet grows as needed
+        }
+
+        @Override
+        Column createEmpty(int capacity) {
+            return new BooleanColumn(capacity);
+        }
+
+        @Override
+        protected PrimitiveColumn copyValues() {
+            BooleanColumn copy = new BooleanColumn(0);
+            copy.values = (BitSet) values.clone();
+            return copy;
+        }
+    }
+}
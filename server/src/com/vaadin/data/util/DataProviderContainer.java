@@ -0,0 +1,1063 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
+
+/**
+ * A read-only {@link Container.Indexed} that loads its beans lazily, one page
+ * at a time, from a {@link DataProvider}.
+ * <p>
+ * Only a bounded number of pages is kept in memory. When an index outside the
+ * cached pages is requested, the page containing it is fetched together with a
+ * configurable number of pages in the direction the container is being
+ * scrolled, using a single call to {@link DataProvider#fetch(Query)}. The least
+ * recently used pages are discarded when the cache is full. The size of the
+ * container is asked from the provider at most once within the size validity
+ * period. This makes it possible to show e.g. millions of rows in a
+ * {@link com.vaadin.ui.Table} while only keeping the visible ones and their
+ * neighbors in memory.
+ * <p>
+ * The beans themselves are used as item ids, so the bean class must implement
+ * {@link Object#equals(Object)} and {@link Object#hashCode()} consistently
+ * based on the identity of the row. The properties of the container are the
+ * bean properties of the given bean type.
+ * <p>
+ * Finding the index of a bean that is not in the cached pages, e.g. when a
+ * selected bean is scrolled into view or checked with
+ * {@link #containsId(Object)}, requires asking the data provider. Data
+ * providers of large data sets should implement {@link IndexedDataProvider}
+ * for this. With other data providers, the container fetches the beans one
+ * range at a time until the bean is found, which costs a call to the provider
+ * per {@link #getPageSize()} * {@link #getMaxCachedPages()} beans. To keep the
+ * cost bounded, only the first {@link #getMaxLookupRows()} beans are searched;
+ * beans after them are treated as not being in the container.
+ * <p>
+ * Sorting and filtering are delegated to the data provider: the current sort
+ * order and filters are passed to it in each {@link Query}. Changing them, or
+ * calling {@link #refresh()}, discards all cached data and fires an item set
+ * change event. Items cannot be added or removed through the container.
+ * <p>
+ * The cached pages are not serialized; they are reloaded when needed after
+ * deserialization.
+ * 
+ * @param <BEANTYPE>
+ *            the type of the beans in the container
+ * 
+ * @since 7.2
+ */
+@SuppressWarnings("serial")
+public class DataProviderContainer<BEANTYPE> extends AbstractContainer
+        implements Container.Indexed, Container.Sortable,
+        Container.Filterable, Container.ItemSetChangeNotifier {
+
+    /**
+     * Provides the data of a {@link DataProviderContainer} on request.
+     * 
+     * @param <BEANTYPE>
+     *            the type of the provided beans
+     * 
+     * @since 7.2
+     */
+    public interface DataProvider<BEANTYPE> extends Serializable {
+
+        /**
+         * Gets the number of beans that pass the given filters.
+         * 
+         * @param filters
+         *            the filters to apply, not <code>null</code>
+         * @return the number of matching beans
+         */
+        public int size(List<Filter> filters);
+
+        /**
+         * Fetches a range of beans passing the filters of the query in the
+         * sort order of the query. If fewer than {@link Query#getLimit()}
+         * beans are returned, the container assumes that there are no more
+         * beans after the returned ones.
+         * 
+         * @param query
+         *            the range, sort order and filters of the beans to fetch
+         * @return the fetched beans, not <code>null</code>
+         */
+        public List<BEANTYPE> fetch(Query query);
+    }
+
+    /**
+     * A {@link DataProvider} that can also tell the position of a given bean.
+     * Data providers of large data sets should implement this interface, as
+     * the container otherwise has to fetch the beans one range at a time to
+     * find the position of a bean that is not in its cached pages, and only
+     * searches the first {@link DataProviderContainer#getMaxLookupRows()}
+     * beans.
+     * 
+     * @param <BEANTYPE>
+     *            the type of the provided beans
+     * 
+     * @since 7.2
+     */
+    public interface IndexedDataProvider<BEANTYPE> extends
+            DataProvider<BEANTYPE> {
+
+        /**
+         * Gets the index of the given bean among the beans passing the filters
+         * of the query in the sort order of the query. The offset and the
+         * limit of the query are not used.
+         * 
+         * @param bean
+         *            the bean to look up, not <code>null</code>
+         * @param query
+         *            the sort order and filters of the beans
+         * @return the index of the bean, or -1 if the bean does not pass the
+         *         filters or is not in the data set
+         */
+        public int indexOf(BEANTYPE bean, Query query);
+    }
+
+    /**
+     * Describes a range of beans to fetch from a {@link DataProvider}.
+     * 
+     * @since 7.2
+     */
+    public static class Query implements Serializable {
+        private final int offset;
+        private final int limit;
+        private final Object[] sortPropertyIds;
+        private final boolean[] sortAscending;
+        private final List<Filter> filters;
+
+        /**
+         * Creates a query.
+         * 
+         * @param offset
+         *            the index of the first bean to fetch
+         * @param limit
+         *            the maximum number of beans to fetch
+         * @param sortPropertyIds
+         *            the property ids to sort by, in order of priority
+         * @param sortAscending
+         *            the sort directions of the sort properties
+         * @param filters
+         *            the filters the beans must pass
+         */
+        public Query(int offset, int limit, Object[] sortPropertyIds,
+                boolean[] sortAscending, List<Filter> filters) {
+            this.offset = offset;
+            this.limit = limit;
+            this.sortPropertyIds = sortPropertyIds.clone();
+            this.sortAscending = sortAscending.clone();
+            this.filters = Collections.unmodifiableList(new ArrayList<Filter>(
+                    filters));
+        }
+
+        /**
+         * Gets the index of the first bean to fetch.
+         * 
+         * @return the offset of the range
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Gets the maximum number of beans to fetch.
+         * 
+         * @return the length of the range
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Gets the property ids to sort by, in order of priority.
+         * 
+         * @return the sort property ids, empty if the beans are not sorted
+         */
+        public Object[] getSortPropertyIds() {
+            return sortPropertyIds.clone();
+        }
+
+        /**
+         * Gets the sort directions corresponding to
+         * {@link #getSortPropertyIds()}.
+         * 
+         * @return <code>true</code> for each ascending sort property
+         */
+        public boolean[] getSortAscending() {
+            return sortAscending.clone();
+        }
+
+        /**
+         * Gets the filters the fetched beans must pass.
+         * 
+         * @return an unmodifiable list of filters
+         */
+        public List<Filter> getFilters() {
+            return filters;
+        }
+    }
+
+    /**
+     * A cached page of beans and the items created for them.
+     */
+    private static class Page<BEANTYPE> implements Serializable {
+        private final List<BEANTYPE> beans;
+        private final BeanItem<BEANTYPE>[] items;
+
+        @SuppressWarnings("unchecked")
+        public Page(List<BEANTYPE> beans) {
+            this.beans = beans;
+            items = (BeanItem<BEANTYPE>[]) new BeanItem<?>[beans.size()];
+        }
+
+        public BeanItem<BEANTYPE> getItem(int index,
+                BeanItem.PropertyModel<BEANTYPE> model) {
+            BeanItem<BEANTYPE> item = items[index];
+            if (item == null) {
+                item = new BeanItem<BEANTYPE>(beans.get(index), model);
+                items[index] = item;
+            }
+            return item;
+        }
+    }
+
+    /**
+     * The default number of beans fetched in a page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The default maximum number of pages kept in memory.
+     */
+    public static final int DEFAULT_MAX_CACHED_PAGES = 10;
+
+    /**
+     * The default number of pages fetched ahead of the requested one.
+     */
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+
+    /**
+     * The default time in milliseconds a size reported by the data provider is
+     * used before asking it again.
+     */
+    public static final int DEFAULT_SIZE_VALIDITY_MILLIS = 10000;
+
+    /**
+     * The default number of beans searched when looking up a bean that is not
+     * cached from a data provider that is not an {@link IndexedDataProvider}.
+     */
+    public static final int DEFAULT_MAX_LOOKUP_ROWS = 10000;
+
+    private final Class<? super BEANTYPE> type;
+    private final DataProvider<BEANTYPE> dataProvider;
+    private final LinkedHashMap<String, VaadinPropertyDescriptor<BEANTYPE>> model;
+    private final BeanItem.PropertyModel<BEANTYPE> itemModel;
+
+    private Collection<?> sortablePropertyIds;
+    private Object[] sortPropertyIds = new Object[0];
+    private boolean[] sortAscending = new boolean[0];
+    private final List<Filter> filters = new ArrayList<Filter>();
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int maxCachedPages = DEFAULT_MAX_CACHED_PAGES;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private int sizeValidityMillis = DEFAULT_SIZE_VALIDITY_MILLIS;
+    private int maxLookupRows = DEFAULT_MAX_LOOKUP_ROWS;
+
+    /** Cached pages by page index, in least recently used order. */
+    private transient LinkedHashMap<Integer, Page<BEANTYPE>> pages;
+    /** Indexes of the beans in the cached pages. */
+    private transient HashMap<Object, Integer> indexes;
+    private transient int lastPageIndex = -1;
+    private int size = -1;
+    private long sizeUpdated;
+
+    /**
+     * Creates a container fetching beans of the given type from a data
+     * provider.
+     * 
+     * @param type
+     *            the class of the beans, used to determine the properties of
+     *            the container
+     * @param dataProvider
+     *            the provider of the beans, not <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public DataProviderContainer(Class<? super BEANTYPE> type,
+            DataProvider<BEANTYPE> dataProvider) {
+        if (type == null) {
+            throw new IllegalArgumentException(
+                    "The bean type passed to DataProviderContainer must not be null");
+        }
+        if (dataProvider == null) {
+            throw new IllegalArgumentException(
+                    "The data provider passed to DataProviderContainer must not be null");
+        }
+        this.type = type;
+        this.dataProvider = dataProvider;
+        model = BeanItem.getPropertyDescriptors((Class<BEANTYPE>) type);
+        itemModel = new BeanItem.PropertyModel<BEANTYPE>(model);
+    }
+
+    /**
+     * Gets the class of the beans in the container.
+     * 
+     * @return the bean type
+     */
+    public Class<? super BEANTYPE> getBeanType() {
+        return type;
+    }
+
+    /**
+     * Gets the data provider of the container.
+     * 
+     * @return the data provider
+     */
+    public DataProvider<BEANTYPE> getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Sets the number of beans fetched from the data provider in one page.
+     * Changing the page size discards all cached pages.
+     * 
+     * @param pageSize
+     *            the page size, at least 1
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (this.pageSize != pageSize) {
+            this.pageSize = pageSize;
+            clearPages();
+        }
+    }
+
+    /**
+     * Gets the number of beans fetched from the data provider in one page.
+     * 
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the maximum number of pages kept in memory. The least recently used
+     * pages are discarded when more pages are loaded.
+     * 
+     * @param maxCachedPages
+     *            the maximum number of cached pages, at least 1
+     */
+    public void setMaxCachedPages(int maxCachedPages) {
+        if (maxCachedPages < 1) {
+            throw new IllegalArgumentException(
+                    "At least one page must be cached");
+        }
+        this.maxCachedPages = maxCachedPages;
+        if (pages != null) {
+            while (pages.size() > maxCachedPages) {
+                removePage(pages.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of pages kept in memory.
+     * 
+     * @return the maximum number of cached pages
+     */
+    public int getMaxCachedPages() {
+        return maxCachedPages;
+    }
+
+    /**
+     * Sets the number of pages fetched ahead of a requested page that is not
+     * cached. The pages are fetched in the direction the container was last
+     * scrolled, in the same call to the data provider as the requested page.
+     * The number of pages fetched at once is limited by
+     * {@link #getMaxCachedPages()}.
+     * 
+     * @param prefetchPages
+     *            the number of pages to fetch ahead, 0 to only fetch the
+     *            requested page
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException(
+                    "The number of prefetched pages must not be negative");
+        }
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * Gets the number of pages fetched ahead of a requested page.
+     * 
+     * @return the number of prefetched pages
+     */
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * Sets how long a size reported by the data provider is used before asking
+     * the provider again.
+     * 
+     * @param sizeValidityMillis
+     *            the validity time in milliseconds, 0 to ask the size each time
+     *            it is needed
+     */
+    public void setSizeValidityMillis(int sizeValidityMillis) {
+        if (sizeValidityMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Size validity time must not be negative");
+        }
+        this.sizeValidityMillis = sizeValidityMillis;
+    }
+
+    /**
+     * Gets how long a size reported by the data provider is used before asking
+     * the provider again.
+     * 
+     * @return the validity time in milliseconds
+     */
+    public int getSizeValidityMillis() {
+        return sizeValidityMillis;
+    }
+
+    /**
+     * Sets the number of beans searched when looking up a bean that is not in
+     * the cached pages, if the data provider is not an
+     * {@link IndexedDataProvider}. Beans after the given number of beans are
+     * treated as not being in the container by {@link #indexOfId(Object)},
+     * {@link #containsId(Object)} and {@link #getItem(Object)}.
+     * 
+     * @param maxLookupRows
+     *            the maximum number of beans to search, 0 to only look up
+     *            beans in the cached pages
+     */
+    public void setMaxLookupRows(int maxLookupRows) {
+        if (maxLookupRows < 0) {
+            throw new IllegalArgumentException(
+                    "The number of searched rows must not be negative");
+        }
+        this.maxLookupRows = maxLookupRows;
+    }
+
+    /**
+     * Gets the number of beans searched when looking up a bean that is not in
+     * the cached pages from a data provider that is not an
+     * {@link IndexedDataProvider}.
+     * 
+     * @return the maximum number of beans to search
+     */
+    public int getMaxLookupRows() {
+        return maxLookupRows;
+    }
+
+    /**
+     * Discards all cached beans and the cached size, and notifies the
+     * listeners that the contents of the container may have changed. This
+     * should be called when the data behind the data provider has changed.
+     */
+    public void refresh() {
+        clearPages();
+        size = -1;
+        fireItemSetChange();
+    }
+
+    private void clearPages() {
+        pages = null;
+        indexes = null;
+        lastPageIndex = -1;
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        // The cached pages are not serialized
+        lastPageIndex = -1;
+    }
+
+    private LinkedHashMap<Integer, Page<BEANTYPE>> getPages() {
+        if (pages == null) {
+            pages = new LinkedHashMap<Integer, Page<BEANTYPE>>(16, 0.75f, true);
+            indexes = new HashMap<Object, Integer>();
+        }
+        return pages;
+    }
+
+    private void putPage(int pageIndex, Page<BEANTYPE> page) {
+        Map<Integer, Page<BEANTYPE>> cachedPages = getPages();
+        removePage(Integer.valueOf(pageIndex));
+        int start = pageIndex * pageSize;
+        for (int i = 0; i < page.beans.size(); i++) {
+            indexes.put(page.beans.get(i), Integer.valueOf(start + i));
+        }
+        cachedPages.put(Integer.valueOf(pageIndex), page);
+        while (cachedPages.size() > maxCachedPages) {
+            removePage(cachedPages.keySet().iterator().next());
+        }
+    }
+
+    private void removePage(Integer pageIndex) {
+        Page<BEANTYPE> page = pages.remove(pageIndex);
+        if (page != null) {
+            int start = pageIndex.intValue() * pageSize;
+            for (int i = 0; i < page.beans.size(); i++) {
+                Object bean = page.beans.get(i);
+                Integer index = indexes.get(bean);
+                if (index != null && index.intValue() == start + i) {
+                    indexes.remove(bean);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the page with the given index, fetching it and the prefetched pages
+     * from the data provider if it is not cached.
+     */
+    private Page<BEANTYPE> getPage(int pageIndex) {
+        Map<Integer, Page<BEANTYPE>> cachedPages = getPages();
+        boolean forward = pageIndex >= lastPageIndex;
+        lastPageIndex = pageIndex;
+
+        Page<BEANTYPE> page = cachedPages.get(Integer.valueOf(pageIndex));
+        if (page != null) {
+            return page;
+        }
+
+        int prefetch = Math.min(prefetchPages, maxCachedPages - 1);
+        int first = pageIndex;
+        int last = pageIndex;
+        if (forward) {
+            last = Math.min(pageIndex + prefetch,
+                    Math.max(pageIndex, (size() - 1) / pageSize));
+            while (last > pageIndex
+                    && cachedPages.containsKey(Integer.valueOf(last))) {
+                last--;
+            }
+        } else {
+            first = Math.max(0, pageIndex - prefetch);
+            while (first < pageIndex
+                    && cachedPages.containsKey(Integer.valueOf(first))) {
+                first++;
+            }
+        }
+
+        int offset = first * pageSize;
+        int limit = (last - first + 1) * pageSize;
+        List<BEANTYPE> beans = dataProvider.fetch(new Query(offset, limit,
+                sortPropertyIds, sortAscending, filters));
+        if (beans.size() < limit) {
+            // The provider has no more beans after the fetched ones
+            size = offset + beans.size();
+            sizeUpdated = System.currentTimeMillis();
+        }
+
+        for (int p = first; p <= last; p++) {
+            int from = Math.min(beans.size(), (p - first) * pageSize);
+            int to = Math.min(beans.size(), from + pageSize);
+            Page<BEANTYPE> fetched = new Page<BEANTYPE>(
+                    new ArrayList<BEANTYPE>(beans.subList(from, to)));
+            if (p == pageIndex) {
+                page = fetched;
+            } else {
+                putPage(p, fetched);
+            }
+        }
+        // Put the requested page last so that it is the most recently used
+        putPage(pageIndex, page);
+        return page;
+    }
+
+    /*
+     * Container methods
+     */
+
+    @Override
+    public int size() {
+        long now = System.currentTimeMillis();
+        if (size < 0 || now - sizeUpdated > sizeValidityMillis
+                || now < sizeUpdated) {
+            size = dataProvider.size(Collections.unmodifiableList(filters));
+            sizeUpdated = now;
+        }
+        return size;
+    }
+
+    @Override
+    public BEANTYPE getIdByIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index
+                    + " is outside the container of size " + size());
+        }
+        int pageIndex = index / pageSize;
+        int pageOffset = index % pageSize;
+        Page<BEANTYPE> page = getPage(pageIndex);
+        if (pageOffset >= page.beans.size()) {
+            // The cached page may be older than the size, fetch it again
+            removePage(Integer.valueOf(pageIndex));
+            page = getPage(pageIndex);
+        }
+        if (pageOffset >= page.beans.size()) {
+            // The data has shrunk, fetching the page has updated the size
+            throw new IndexOutOfBoundsException("Index " + index
+                    + " is outside the container of size " + size());
+        }
+        return page.beans.get(pageOffset);
+    }
+
+    @Override
+    public List<BEANTYPE> getItemIds(int startIndex, int numberOfItems) {
+        if (startIndex < 0) {
+            throw new IndexOutOfBoundsException(
+                    "Start index cannot be negative! startIndex=" + startIndex);
+        }
+        if (startIndex > size()) {
+            throw new IndexOutOfBoundsException(
+                    "Start index exceeds container size! startIndex="
+                            + startIndex + " containerLastItemIndex="
+                            + (size() - 1));
+        }
+        if (numberOfItems < 1) {
+            if (numberOfItems == 0) {
+                return Collections.emptyList();
+            }
+            throw new IllegalArgumentException(
+                    "Cannot get negative amount of items! numberOfItems="
+                            + numberOfItems);
+        }
+
+        int endIndex = (int) Math.min(size(), (long) startIndex
+                + numberOfItems);
+        List<BEANTYPE> ids = new ArrayList<BEANTYPE>(endIndex - startIndex);
+        int index = startIndex;
+        while (index < endIndex) {
+            Page<BEANTYPE> page = getPage(index / pageSize);
+            int pageStart = index - index % pageSize;
+            int to = Math.min(page.beans.size(), endIndex - pageStart);
+            if (index - pageStart >= to) {
+                // The data has shrunk since the size was last checked
+                break;
+            }
+            ids.addAll(page.beans.subList(index - pageStart, to));
+            index = pageStart + to;
+            if (to < pageSize) {
+                break;
+            }
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned list is a view that fetches the item ids from the data
+     * provider when they are accessed.
+     */
+    @Override
+    public List<BEANTYPE> getItemIds() {
+        return new ItemIdList();
+    }
+
+    private class ItemIdList extends AbstractList<BEANTYPE> implements
+            Serializable {
+        @Override
+        public BEANTYPE get(int index) {
+            return getIdByIndex(index);
+        }
+
+        @Override
+        public int size() {
+            return DataProviderContainer.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsId(o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return indexOfId(o);
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            // The item ids are unique
+            return indexOfId(o);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The indexes of the beans in the cached pages are known without asking
+     * the data provider. Other beans are looked up using
+     * {@link IndexedDataProvider#indexOf(Object, Query)} if the data provider
+     * implements it, and otherwise by fetching the first
+     * {@link #getMaxLookupRows()} beans from the data provider one range at a
+     * time until the bean is found. The fetched ranges are not cached.
+     */
+    @Override
+    public int indexOfId(Object itemId) {
+        if (itemId == null) {
+            return -1;
+        }
+        if (indexes != null) {
+            Integer index = indexes.get(itemId);
+            if (index != null) {
+                return index.intValue();
+            }
+        }
+        if (!type.isInstance(itemId)) {
+            return -1;
+        }
+        return lookUpIndex(itemId);
+    }
+
+    /**
+     * Asks the position of a bean that is not in the cached pages from the
+     * data provider.
+     */
+    @SuppressWarnings("unchecked")
+    private int lookUpIndex(Object bean) {
+        if (dataProvider instanceof IndexedDataProvider) {
+            return ((IndexedDataProvider<BEANTYPE>) dataProvider).indexOf(
+                    (BEANTYPE) bean, new Query(0, 0, sortPropertyIds,
+                            sortAscending, filters));
+        }
+        int rangeSize = pageSize * maxCachedPages;
+        for (int offset = 0; offset < maxLookupRows; offset += rangeSize) {
+            int limit = Math.min(rangeSize, maxLookupRows - offset);
+            List<BEANTYPE> beans = dataProvider.fetch(new Query(offset, limit,
+                    sortPropertyIds, sortAscending, filters));
+            int index = beans.indexOf(bean);
+            if (index >= 0) {
+                return offset + index;
+            }
+            if (beans.size() < limit) {
+                return -1;
+            }
+        }
+        // Not searched further to keep the cost of the lookup bounded
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Beans that are not in the cached pages are looked up from the data
+     * provider as in {@link #indexOfId(Object)}.
+     */
+    @Override
+    public boolean containsId(Object itemId) {
+        return indexOfId(itemId) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Beans that are not in the cached pages are looked up from the data
+     * provider as in {@link #indexOfId(Object)}. If the bean is in the data
+     * set but its page is not cached, a new item is created for the given
+     * bean.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public BeanItem<BEANTYPE> getItem(Object itemId) {
+        int index = indexOfId(itemId);
+        if (index < 0) {
+            return null;
+        }
+        Page<BEANTYPE> page = pages == null ? null : pages.get(Integer
+                .valueOf(index / pageSize));
+        int pageOffset = index % pageSize;
+        if (page != null && pageOffset < page.beans.size()
+                && itemId.equals(page.beans.get(pageOffset))) {
+            return page.getItem(pageOffset, itemModel);
+        }
+        return new BeanItem<BEANTYPE>((BEANTYPE) itemId, itemModel);
+    }
+
+    @Override
+    public Property<?> getContainerProperty(Object itemId, Object propertyId) {
+        Item item = getItem(itemId);
+        if (item == null) {
+            return null;
+        }
+        return item.getItemProperty(propertyId);
+    }
+
+    @Override
+    public Collection<String> getContainerPropertyIds() {
+        return itemModel.getPropertyIds();
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        VaadinPropertyDescriptor<BEANTYPE> descriptor = model.get(propertyId);
+        return descriptor == null ? null : descriptor.getPropertyType();
+    }
+
+    /*
+     * Container.Ordered methods
+     */
+
+    @Override
+    public Object nextItemId(Object itemId) {
+        int index = indexOfId(itemId);
+        if (index < 0 || index + 1 >= size()) {
+            return null;
+        }
+        return getIdByIndex(index + 1);
+    }
+
+    @Override
+    public Object prevItemId(Object itemId) {
+        int index = indexOfId(itemId);
+        if (index <= 0) {
+            return null;
+        }
+        return getIdByIndex(index - 1);
+    }
+
+    @Override
+    public Object firstItemId() {
+        return size() == 0 ? null : getIdByIndex(0);
+    }
+
+    @Override
+    public Object lastItemId() {
+        return size() == 0 ? null : getIdByIndex(size() - 1);
+    }
+
+    @Override
+    public boolean isFirstId(Object itemId) {
+        return itemId != null && indexOfId(itemId) == 0;
+    }
+
+    @Override
+    public boolean isLastId(Object itemId) {
+        int index = indexOfId(itemId);
+        return index >= 0 && index == size() - 1;
+    }
+
+    /*
+     * Container.Sortable methods
+     */
+
+    /**
+     * Sets the property ids by which the container can be sorted. By default,
+     * all properties are sortable.
+     * 
+     * @param propertyIds
+     *            the sortable property ids, or <code>null</code> to make all
+     *            properties sortable
+     */
+    public void setSortableContainerPropertyIds(Collection<?> propertyIds) {
+        sortablePropertyIds = propertyIds == null ? null : Collections
+                .unmodifiableList(new ArrayList<Object>(propertyIds));
+    }
+
+    @Override
+    public Collection<?> getSortableContainerPropertyIds() {
+        if (sortablePropertyIds != null) {
+            return sortablePropertyIds;
+        }
+        return getContainerPropertyIds();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sort order is passed to the data provider, which is responsible for
+     * sorting the beans. Property ids that are not sortable are ignored.
+     */
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        Collection<?> sortable = getSortableContainerPropertyIds();
+        List<Object> ids = new ArrayList<Object>();
+        List<Boolean> orders = new ArrayList<Boolean>();
+        for (int i = 0; i < propertyId.length; i++) {
+            if (sortable.contains(propertyId[i])) {
+                ids.add(propertyId[i]);
+                orders.add(Boolean.valueOf(i < ascending.length ? ascending[i]
+                        : true));
+            }
+        }
+        sortPropertyIds = ids.toArray();
+        sortAscending = new boolean[orders.size()];
+        for (int i = 0; i < sortAscending.length; i++) {
+            sortAscending[i] = orders.get(i).booleanValue();
+        }
+        clearPages();
+        fireItemSetChange();
+    }
+
+    /*
+     * Container.Filterable methods
+     */
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The filters are passed to the data provider, which is responsible for
+     * filtering the beans.
+     */
+    @Override
+    public void addContainerFilter(Filter filter)
+            throws UnsupportedFilterException {
+        if (filter == null) {
+            throw new NullPointerException("Filter must not be null");
+        }
+        filters.add(filter);
+        refresh();
+    }
+
+    @Override
+    public void removeContainerFilter(Filter filter) {
+        if (filters.remove(filter)) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void removeAllContainerFilters() {
+        if (!filters.isEmpty()) {
+            filters.clear();
+            refresh();
+        }
+    }
+
+    @Override
+    public Collection<Filter> getContainerFilters() {
+        return Collections.unmodifiableList(new ArrayList<Filter>(filters));
+    }
+
+    /*
+     * Container.ItemSetChangeNotifier methods
+     */
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #addItemSetChangeListener(com.vaadin.data.Container.ItemSetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void addListener(Container.ItemSetChangeListener listener) {
+        addItemSetChangeListener(listener);
+    }
+
+    @Override
+    public void addItemSetChangeListener(
+            Container.ItemSetChangeListener listener) {
+        super.addItemSetChangeListener(listener);
+    }
+
+    @Override
+    public void removeItemSetChangeListener(
+            Container.ItemSetChangeListener listener) {
+        super.removeItemSetChangeListener(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #removeItemSetChangeListener(com.vaadin.data.Container.ItemSetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void removeListener(Container.ItemSetChangeListener listener) {
+        removeItemSetChangeListener(listener);
+    }
+
+    /*
+     * Unsupported operations
+     */
+
+    @Override
+    public Item addItem(Object itemId) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItem() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItem(Object itemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type,
+            Object defaultValue) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAllItems() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAt(int index) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAt(int index, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+}
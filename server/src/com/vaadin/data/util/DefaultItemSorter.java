@@ -16,6 +16,8 @@
 package com.vaadin.data.util;
 
 import java.io.Serializable;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -36,9 +38,19 @@ import com.vaadin.data.Property;
  * A Comparator is used for comparing the individual <code>Property</code>
  * values. The comparator can be set using the constructor. If no comparator is
  * provided a default comparator is used.
+ * <p>
+ * The <code>DefaultItemSorter</code> supports extracting the property values
+ * used for sorting once per item before the sort, see
+ * {@link SortKeyItemSorter}. Numeric values are then compared as primitives
+ * when the default comparator is used, and strings are compared using
+ * {@link CollationKey}s when the comparator is a {@link Collator}. Sort keys
+ * are not used by subclasses unless they override
+ * {@link #isSortKeyExtractionSupported()}, as a subclass may override
+ * {@link #compare(Object, Object)} or
+ * {@link #compareProperty(Object, boolean, Item, Item)}.
  * 
  */
-public class DefaultItemSorter implements ItemSorter {
+public class DefaultItemSorter implements SortKeyItemSorter {
 
     private java.lang.Object[] sortPropertyIds;
     private boolean[] sortDirections;
@@ -186,6 +198,270 @@ public class DefaultItemSorter implements ItemSorter {
 
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Sort keys are only used by <code>DefaultItemSorter</code> itself, as the
+     * sort keys do not take into account an overridden
+     * {@link #compare(Object, Object)} or
+     * {@link #compareProperty(Object, boolean, Item, Item)}. Subclasses that
+     * compare items the same way as <code>DefaultItemSorter</code> can
+     * override this method to return <code>true</code>.
+     * 
+     * @since 7.2
+     */
+    @Override
+    public boolean isSortKeyExtractionSupported() {
+        return getClass() == DefaultItemSorter.class;
+    }
+
+    @Override
+    public SortKey[] extractSortKeys(Object[] itemIds) {
+        int count = itemIds.length;
+        Item[] items = new Item[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = container.getItem(itemIds[i]);
+        }
+
+        SortColumn[] columns = new SortColumn[sortPropertyIds.length];
+        Object[] values = new Object[count];
+        for (int c = 0; c < columns.length; c++) {
+            for (int i = 0; i < count; i++) {
+                Property<?> property = items[i] == null ? null : items[i]
+                        .getItemProperty(sortPropertyIds[c]);
+                values[i] = property == null ? null : property.getValue();
+            }
+            columns[c] = createSortColumn(values, sortDirections[c]);
+        }
+
+        SortKeyTable table = new SortKeyTable(columns);
+        SortKey[] keys = new SortKey[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new TableSortKey(itemIds[i], table, i, items[i] == null);
+        }
+        return keys;
+    }
+
+    /**
+     * Creates a column of sort values that compares the values in the same way
+     * as {@link #compareProperty(Object, boolean, Item, Item)}.
+     */
+    private SortColumn createSortColumn(Object[] values, boolean ascending) {
+        Class<?> valueType = null;
+        boolean hasNulls = false;
+        for (Object value : values) {
+            if (value == null) {
+                hasNulls = true;
+            } else if (valueType == null) {
+                valueType = value.getClass();
+            } else if (valueType != value.getClass()) {
+                // Mixed types, let the comparator decide
+                return new ObjectColumn(values.clone(),
+                        propertyValueComparator, ascending);
+            }
+        }
+
+        if (propertyValueComparator.getClass() == DefaultPropertyValueComparator.class) {
+            if (valueType == Integer.class || valueType == Long.class
+                    || valueType == Short.class || valueType == Byte.class) {
+                long[] longs = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        longs[i] = ((Number) values[i]).longValue();
+                    }
+                }
+                return new LongColumn(longs, nullMask(values, hasNulls),
+                        ascending);
+            } else if (valueType == Double.class || valueType == Float.class) {
+                double[] doubles = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        doubles[i] = ((Number) values[i]).doubleValue();
+                    }
+                }
+                return new DoubleColumn(doubles, nullMask(values, hasNulls),
+                        ascending);
+            }
+        } else if (propertyValueComparator instanceof Collator
+                && valueType == String.class && !hasNulls) {
+            // Collator.compare does not accept nulls
+            Collator collator = (Collator) propertyValueComparator;
+            CollationKey[] collationKeys = new CollationKey[values.length];
+            for (int i = 0; i < values.length; i++) {
+                collationKeys[i] = collator.getCollationKey((String) values[i]);
+            }
+            return new CollationKeyColumn(collationKeys, ascending);
+        }
+        return new ObjectColumn(values.clone(), propertyValueComparator,
+                ascending);
+    }
+
+    private static boolean[] nullMask(Object[] values, boolean hasNulls) {
+        if (!hasNulls) {
+            return null;
+        }
+        boolean[] nulls = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nulls[i] = values[i] == null;
+        }
+        return nulls;
+    }
+
+    @Override
+    public int compareSortKeys(SortKey key1, SortKey key2) {
+        TableSortKey k1 = (TableSortKey) key1;
+        TableSortKey k2 = (TableSortKey) key2;
+
+        // Missing items are sorted last like in compare(Object, Object)
+        if (k1.missing) {
+            return k2.missing ? 0 : 1;
+        } else if (k2.missing) {
+            return -1;
+        }
+
+        for (SortColumn column : k1.table.columns) {
+            int result = column.compare(k1.index, k2.index);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The sort keys of all items extracted by one call to
+     * {@link DefaultItemSorter#extractSortKeys(Object[])}.
+     */
+    private static class SortKeyTable implements Serializable {
+        private final SortColumn[] columns;
+
+        public SortKeyTable(SortColumn[] columns) {
+            this.columns = columns;
+        }
+    }
+
+    private static class TableSortKey extends SortKey {
+        private final SortKeyTable table;
+        private final int index;
+        private final boolean missing;
+
+        public TableSortKey(Object itemId, SortKeyTable table, int index,
+                boolean missing) {
+            super(itemId);
+            this.table = table;
+            this.index = index;
+            this.missing = missing;
+        }
+    }
+
+    /**
+     * The values of one sort property for all items, compared by item index.
+     */
+    private static abstract class SortColumn implements Serializable {
+        protected final boolean ascending;
+
+        public SortColumn(boolean ascending) {
+            this.ascending = ascending;
+        }
+
+        public int compare(int index1, int index2) {
+            return ascending ? compareValues(index1, index2) : compareValues(
+                    index2, index1);
+        }
+
+        protected abstract int compareValues(int index1, int index2);
+    }
+
+    private static class ObjectColumn extends SortColumn {
+        private final Object[] values;
+        private final Comparator<Object> comparator;
+
+        public ObjectColumn(Object[] values, Comparator<Object> comparator,
+                boolean ascending) {
+            super(ascending);
+            this.values = values;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected int compareValues(int index1, int index2) {
+            return comparator.compare(values[index1], values[index2]);
+        }
+    }
+
+    private static class CollationKeyColumn extends SortColumn {
+        private final CollationKey[] values;
+
+        public CollationKeyColumn(CollationKey[] values, boolean ascending) {
+            super(ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int compareValues(int index1, int index2) {
+            return values[index1].compareTo(values[index2]);
+        }
+    }
+
+    /**
+     * Base class for columns of primitive values where a <code>null</code>
+     * value is less than any other value, like in
+     * {@link DefaultPropertyValueComparator}.
+     */
+    private static abstract class PrimitiveColumn extends SortColumn {
+        private final boolean[] nulls;
+
+        public PrimitiveColumn(boolean[] nulls, boolean ascending) {
+            super(ascending);
+            this.nulls = nulls;
+        }
+
+        @Override
+        protected int compareValues(int index1, int index2) {
+            if (nulls != null) {
+                if (nulls[index1]) {
+                    return nulls[index2] ? 0 : -1;
+                } else if (nulls[index2]) {
+                    return 1;
+                }
+            }
+            return comparePrimitives(index1, index2);
+        }
+
+        protected abstract int comparePrimitives(int index1, int index2);
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+        private final long[] values;
+
+        public LongColumn(long[] values, boolean[] nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int comparePrimitives(int index1, int index2) {
+            long value1 = values[index1];
+            long value2 = values[index2];
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+        private final double[] values;
+
+        public DoubleColumn(double[] values, boolean[] nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int comparePrimitives(int index1, int index2) {
+            // Same semantics as Double.compareTo for NaN and -0.0
+            return Double.compare(values[index1], values[index2]);
+        }
+    }
+
     /**
      * Provides a default comparator used for comparing {@link Property} values.
      * The <code>DefaultPropertyValueComparator</code> assumes all objects it
@@ -16,18 +16,19 @@
 
 package com.vaadin.data.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.CaseFoldedValueCache;
 
 /**
  * A specialized Container whose contents can be accessed like it was a
@@ -59,22 +60,22 @@ public class HierarchicalContainer extends IndexedContainer implements
     /**
      * Mapping from Item ID to a list of child IDs.
      */
-    private final HashMap<Object, LinkedList<Object>> children = new HashMap<Object, LinkedList<Object>>();
+    private final HashMap<Object, ListSet<Object>> children = new HashMap<Object, ListSet<Object>>();
 
     /**
      * Mapping from Item ID to a list of child IDs when filtered
      */
-    private HashMap<Object, LinkedList<Object>> filteredChildren = null;
+    private HashMap<Object, ListSet<Object>> filteredChildren = null;
 
     /**
      * List that contains all root elements of the container.
      */
-    private final LinkedList<Object> roots = new LinkedList<Object>();
+    private final ListSet<Object> roots = new ListSet<Object>();
 
     /**
      * List that contains all filtered root elements of the container.
      */
-    private LinkedList<Object> filteredRoots = null;
+    private ListSet<Object> filteredRoots = null;
 
     /**
      * Determines how filtering of the container is done.
@@ -109,7 +110,7 @@ public class HierarchicalContainer extends IndexedContainer implements
      */
     @Override
     public Collection<?> getChildren(Object itemId) {
-        LinkedList<Object> c;
+        ListSet<Object> c;
 
         if (filteredChildren != null) {
             c = filteredChildren.get(itemId);
@@ -267,7 +268,7 @@ public class HierarchicalContainer extends IndexedContainer implements
             // roots)
 
             // Removes from old parents children list
-            final LinkedList<Object> l = children.get(oldParentId);
+            final ListSet<Object> l = children.get(oldParentId);
             if (l != null) {
                 l.remove(itemId);
                 if (l.isEmpty()) {
@@ -283,10 +284,10 @@ public class HierarchicalContainer extends IndexedContainer implements
             parent.remove(itemId);
 
             if (hasFilters()) {
-                // Refilter the container if setParent is called when filters
-                // are applied. Changing parent can change what is included in
-                // the filtered version (if includeParentsWhenFiltering==true).
-                doFilterContainer(hasFilters());
+                // Move the item in the filtered hierarchy. Changing parent can
+                // change what is included in the filtered version (if
+                // includeParentsWhenFiltering==true).
+                refilterParent(itemId);
             }
 
             fireItemSetChange();
@@ -319,11 +320,11 @@ public class HierarchicalContainer extends IndexedContainer implements
 
         // Updates parent
         parent.put(itemId, newParentId);
-        LinkedList<Object> pcl = children.get(newParentId);
+        ListSet<Object> pcl = children.get(newParentId);
         if (pcl == null) {
             // Create an empty list for holding children if one were not
             // previously created
-            pcl = new LinkedList<Object>();
+            pcl = new ListSet<Object>();
             children.put(newParentId, pcl);
         }
         pcl.add(itemId);
@@ -332,7 +333,7 @@ public class HierarchicalContainer extends IndexedContainer implements
         if (oldParentId == null) {
             roots.remove(itemId);
         } else {
-            final LinkedList<Object> l = children.get(oldParentId);
+            final ListSet<Object> l = children.get(oldParentId);
             if (l != null) {
                 l.remove(itemId);
                 if (l.isEmpty()) {
@@ -342,10 +343,10 @@ public class HierarchicalContainer extends IndexedContainer implements
         }
 
         if (hasFilters()) {
-            // Refilter the container if setParent is called when filters
-            // are applied. Changing parent can change what is included in
-            // the filtered version (if includeParentsWhenFiltering==true).
-            doFilterContainer(hasFilters());
+            // Move the item in the filtered hierarchy. Changing parent can
+            // change what is included in the filtered version (if
+            // includeParentsWhenFiltering==true).
+            refilterParent(itemId);
         }
 
         fireItemSetChange();
@@ -369,7 +370,7 @@ public class HierarchicalContainer extends IndexedContainer implements
      */
     public void moveAfterSibling(Object itemId, Object siblingId) {
         Object parent2 = getParent(itemId);
-        LinkedList<Object> childrenList;
+        ListSet<Object> childrenList;
         if (parent2 == null) {
             childrenList = roots;
         } else {
@@ -377,7 +378,7 @@ public class HierarchicalContainer extends IndexedContainer implements
         }
         if (siblingId == null) {
             childrenList.remove(itemId);
-            childrenList.addFirst(itemId);
+            childrenList.add(0, itemId);
 
         } else {
             int oldIndex = childrenList.indexOf(itemId);
@@ -416,10 +417,9 @@ public class HierarchicalContainer extends IndexedContainer implements
 
             if (!roots.contains(itemId)) {
                 roots.add(itemId);
-                if (filteredRoots != null) {
-                    if (passesFilters(itemId)) {
-                        filteredRoots.add(itemId);
-                    }
+                if (filteredRoots != null && isVisible(itemId)) {
+                    // Filtered by filterItem() before becoming a root
+                    filteredRoots.add(itemId);
                 }
             }
             return itemId;
@@ -479,10 +479,9 @@ public class HierarchicalContainer extends IndexedContainer implements
 
             roots.add(itemId);
 
-            if (filteredRoots != null) {
-                if (passesFilters(itemId)) {
-                    filteredRoots.add(itemId);
-                }
+            if (filteredRoots != null && isVisible(itemId)) {
+                // Filtered by filterItem() before becoming a root
+                filteredRoots.add(itemId);
             }
             return item;
         } finally {
@@ -506,13 +505,14 @@ public class HierarchicalContainer extends IndexedContainer implements
                 parent.clear();
                 children.clear();
                 noChildrenAllowed.clear();
-                if (filteredRoots != null) {
+                if (isFiltered()) {
+                    // Keep filtering items that are added later
+                    filteredRoots = new ListSet<Object>();
+                    filteredChildren = new HashMap<Object, ListSet<Object>>();
+                    filteredParent = new HashMap<Object, Object>();
+                } else {
                     filteredRoots = null;
-                }
-                if (filteredChildren != null) {
                     filteredChildren = null;
-                }
-                if (filteredParent != null) {
                     filteredParent = null;
                 }
             }
@@ -534,25 +534,29 @@ public class HierarchicalContainer extends IndexedContainer implements
             final boolean success = super.removeItem(itemId);
 
             if (success) {
-                // Remove from roots if this was a root
-                if (roots.remove(itemId)) {
-
-                    // If filtering is enabled we might need to remove it from
-                    // the filtered list also
-                    if (filteredRoots != null) {
-                        filteredRoots.remove(itemId);
-                    }
+                // Remove from the filtered hierarchy first, as the parents of
+                // the item may need to be filtered out with it
+                if (filteredRoots != null) {
+                    detachFilteredItem(itemId, new ArrayList<Object>());
                 }
 
+                // Remove from roots if this was a root
+                roots.remove(itemId);
+
                 // Clear the children list. Old children will now become root
                 // nodes
-                LinkedList<Object> childNodeIds = children.remove(itemId);
+                ListSet<Object> childNodeIds = children.remove(itemId);
                 if (childNodeIds != null) {
                     if (filteredChildren != null) {
                         filteredChildren.remove(itemId);
                     }
+                    // Not using setParent() as it ignores filtered out items
                     for (Object childId : childNodeIds) {
-                        setParent(childId, null);
+                        parent.remove(childId);
+                        roots.add(childId);
+                        if (filteredRoots != null) {
+                            refilterParent(childId);
+                        }
                     }
                 }
 
@@ -560,34 +564,16 @@ public class HierarchicalContainer extends IndexedContainer implements
                 // id in its children list
                 final Object parentItemId = parent.get(itemId);
                 if (parentItemId != null) {
-                    final LinkedList<Object> c = children.get(parentItemId);
+                    final ListSet<Object> c = children.get(parentItemId);
                     if (c != null) {
                         c.remove(itemId);
 
                         if (c.isEmpty()) {
                             children.remove(parentItemId);
                         }
-
-                        // Found in the children list so might also be in the
-                        // filteredChildren list
-                        if (filteredChildren != null) {
-                            LinkedList<Object> f = filteredChildren
-                                    .get(parentItemId);
-                            if (f != null) {
-                                f.remove(itemId);
-                                if (f.isEmpty()) {
-                                    filteredChildren.remove(parentItemId);
-                                }
-                            }
-                        }
                     }
                 }
                 parent.remove(itemId);
-                if (filteredParent != null) {
-                    // Item id no longer has a parent as the item id is not in
-                    // the container.
-                    filteredParent.remove(itemId);
-                }
                 noChildrenAllowed.remove(itemId);
             }
 
@@ -656,9 +642,9 @@ public class HierarchicalContainer extends IndexedContainer implements
     protected void doSort() {
         super.doSort();
 
-        Collections.sort(roots, getItemSorter());
-        for (LinkedList<Object> childList : children.values()) {
-            Collections.sort(childList, getItemSorter());
+        sortItemIds(roots);
+        for (ListSet<Object> childList : children.values()) {
+            sortItemIds(childList);
         }
     }
 
@@ -693,6 +679,286 @@ public class HierarchicalContainer extends IndexedContainer implements
         }
     }
 
+    /*
+     * Overridden to only re-filter the currently visible part of the hierarchy,
+     * as no items that are currently filtered out can become visible when a
+     * filter is added.
+     */
+    @Override
+    protected void filterVisibleItems(Filter filter) {
+        if (filteredRoots == null || !isIncrementalFilteringSupported()) {
+            filterAll();
+            return;
+        }
+
+        List<Object> visibleItemIds = getFilteredItemIds();
+        ListSet<Object> filteredItemIds = new ListSet<Object>(
+                visibleItemIds.size());
+        CaseFoldedValueCache previousCache = CaseFoldedValueCache.getCurrent();
+        CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+        try {
+            if (includeParentsWhenFiltering) {
+                Set<Object> includedItems = filterIncludingParents(
+                        filteredRoots, filteredChildren);
+                for (Object itemId : visibleItemIds) {
+                    if (includedItems.contains(itemId)) {
+                        filteredItemIds.add(itemId);
+                    }
+                }
+                internalSetFilteredItemIds(filteredItemIds);
+            } else {
+                for (Object itemId : visibleItemIds) {
+                    if (passesFilters(itemId)) {
+                        filteredItemIds.add(itemId);
+                    }
+                }
+                internalSetFilteredItemIds(filteredItemIds);
+                filterWithoutParents();
+            }
+        } finally {
+            CaseFoldedValueCache.setCurrent(previousCache);
+        }
+
+        if (filteredItemIds.size() != visibleItemIds.size()) {
+            fireItemSetChange();
+        }
+    }
+
+    /*
+     * Overridden to update the filtered hierarchy incrementally, as the
+     * visibility of an item may also change the visibility of its parents and
+     * the structure of the filtered hierarchy around it.
+     */
+    @Override
+    protected void filterItem(Object itemId) {
+        if (!isFiltered() || !getAllItemIds().contains(itemId)) {
+            return;
+        }
+        if (filteredRoots == null || !isIncrementalFilteringSupported()) {
+            filterAll();
+            return;
+        }
+        if (!roots.contains(itemId) && !parent.containsKey(itemId)) {
+            // A new item that is not yet part of the hierarchy, see addItem()
+            super.filterItem(itemId);
+            return;
+        }
+
+        boolean visible = isVisible(itemId);
+        boolean shouldBeVisible;
+        CaseFoldedValueCache previousCache = CaseFoldedValueCache.getCurrent();
+        CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+        try {
+            shouldBeVisible = passesFilters(itemId)
+                    || (includeParentsWhenFiltering && filteredChildren
+                            .containsKey(itemId));
+        } finally {
+            CaseFoldedValueCache.setCurrent(previousCache);
+        }
+        if (visible == shouldBeVisible) {
+            // Nothing changes for the item nor its parents
+            return;
+        }
+
+        List<Object> changedItems = new ArrayList<Object>();
+        int position;
+        if (shouldBeVisible) {
+            showItem(itemId);
+            position = getFilteredItemIds().indexOf(itemId);
+            attachFilteredItem(itemId, changedItems);
+            if (!includeParentsWhenFiltering) {
+                adoptFilteredChildren(itemId, changedItems);
+            }
+        } else {
+            position = getFilteredItemIds().indexOf(itemId);
+            hideItem(itemId);
+            if (!includeParentsWhenFiltering) {
+                orphanFilteredChildren(itemId);
+            }
+            detachFilteredItem(itemId, changedItems);
+        }
+
+        if (!changedItems.isEmpty()
+                || (!includeParentsWhenFiltering && children
+                        .containsKey(itemId))) {
+            // The hierarchy changed also elsewhere
+            fireItemSetChange();
+        } else if (shouldBeVisible) {
+            fireItemAdded(position, itemId, getUnfilteredItem(itemId));
+        } else {
+            fireItemRemoved(position, itemId);
+        }
+    }
+
+    private boolean isVisible(Object itemId) {
+        return getFilteredItemIds().contains(itemId);
+    }
+
+    private void showItem(Object itemId) {
+        getFilteredItemIds().add(findFilteredPosition(itemId), itemId);
+    }
+
+    private void hideItem(Object itemId) {
+        getFilteredItemIds().remove(itemId);
+    }
+
+    /**
+     * Moves a visible item to its current parent in the filtered hierarchy
+     * after the parent has been changed with
+     * {@link #setParent(Object, Object)}.
+     * 
+     * @param itemId
+     *            the id of the item whose parent has changed
+     */
+    private void refilterParent(Object itemId) {
+        if (!isVisible(itemId)) {
+            // The parent of a filtered out item does not affect the filtered
+            // hierarchy, as none of the children of the item are included
+            // either if includeParentsWhenFiltering is true
+            return;
+        }
+        List<Object> changedItems = new ArrayList<Object>();
+        detachFilteredItem(itemId, changedItems);
+        attachFilteredItem(itemId, changedItems);
+    }
+
+    /**
+     * Adds a visible item to the children of its parent in the filtered
+     * hierarchy, or to the filtered roots if the parent is not included. If
+     * includeParentsWhenFiltering is true, the parents of the item are made
+     * visible if they were not.
+     * 
+     * @param itemId
+     *            the id of a visible item that is not in the filtered hierarchy
+     * @param changedItems
+     *            list to which the ids of the parents that became visible are
+     *            added
+     */
+    private void attachFilteredItem(Object itemId, List<Object> changedItems) {
+        Object parentId = parent.get(itemId);
+        while (parentId != null
+                && (includeParentsWhenFiltering || isVisible(parentId))) {
+            ListSet<Object> filteredSiblings = filteredChildren.get(parentId);
+            if (filteredSiblings == null) {
+                filteredSiblings = new ListSet<Object>();
+                filteredChildren.put(parentId, filteredSiblings);
+            }
+            insertInOrder(filteredSiblings, itemId,
+                    includeParentsWhenFiltering ? children.get(parentId)
+                            : getAllItemIds());
+            filteredParent.put(itemId, parentId);
+
+            if (isVisible(parentId)) {
+                return;
+            }
+            showItem(parentId);
+            changedItems.add(parentId);
+            itemId = parentId;
+            parentId = parent.get(itemId);
+        }
+        insertInOrder(filteredRoots, itemId,
+                includeParentsWhenFiltering ? roots : getAllItemIds());
+    }
+
+    /**
+     * Removes an item from the children of its parent in the filtered
+     * hierarchy, or from the filtered roots. If includeParentsWhenFiltering is
+     * true, the parents that were only included because of the item are
+     * filtered out.
+     * 
+     * @param itemId
+     *            the id of the item to remove from the filtered hierarchy
+     * @param changedItems
+     *            list to which the ids of the parents that were filtered out
+     *            are added
+     */
+    private void detachFilteredItem(Object itemId, List<Object> changedItems) {
+        while (true) {
+            Object parentId = filteredParent.remove(itemId);
+            if (parentId == null) {
+                filteredRoots.remove(itemId);
+                return;
+            }
+            ListSet<Object> filteredSiblings = filteredChildren.get(parentId);
+            if (filteredSiblings == null) {
+                return;
+            }
+            filteredSiblings.remove(itemId);
+            if (!filteredSiblings.isEmpty()) {
+                return;
+            }
+            filteredChildren.remove(parentId);
+
+            if (!includeParentsWhenFiltering || !isVisible(parentId)
+                    || passesFilters(parentId)) {
+                return;
+            }
+            hideItem(parentId);
+            changedItems.add(parentId);
+            itemId = parentId;
+        }
+    }
+
+    /**
+     * Moves the visible children of an item that has become visible from the
+     * filtered roots to the children of the item. Only used when
+     * includeParentsWhenFiltering is false.
+     */
+    private void adoptFilteredChildren(Object itemId,
+            List<Object> changedItems) {
+        ListSet<Object> childList = children.get(itemId);
+        if (childList == null) {
+            return;
+        }
+        for (Object childId : childList) {
+            if (isVisible(childId)) {
+                filteredRoots.remove(childId);
+                attachFilteredItem(childId, changedItems);
+            }
+        }
+    }
+
+    /**
+     * Moves the filtered children of an item that has been filtered out to the
+     * filtered roots. Only used when includeParentsWhenFiltering is false.
+     */
+    private void orphanFilteredChildren(Object itemId) {
+        ListSet<Object> filteredChildList = filteredChildren.remove(itemId);
+        if (filteredChildList == null) {
+            return;
+        }
+        for (Object childId : filteredChildList) {
+            filteredParent.remove(childId);
+            insertInOrder(filteredRoots, childId, getAllItemIds());
+        }
+    }
+
+    /**
+     * Inserts an item id into a filtered list so that the ids in it remain in
+     * the same order as in the given unfiltered list. An id that is not in the
+     * unfiltered list is added last.
+     */
+    private static void insertInOrder(List<Object> filteredList,
+            Object itemId, List<Object> order) {
+        int index = order.indexOf(itemId);
+        int low = 0;
+        int high = filteredList.size();
+        if (index < 0 || high == 0
+                || order.indexOf(filteredList.get(high - 1)) < index) {
+            filteredList.add(itemId);
+            return;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.indexOf(filteredList.get(middle)) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        filteredList.add(low, itemId);
+    }
+
     /*
      * Overridden to provide filtering for root & children items.
      * 
@@ -711,20 +977,17 @@ public class HierarchicalContainer extends IndexedContainer implements
             return super.doFilterContainer(hasFilters);
         }
 
-        // Reset data structures
-        filteredRoots = new LinkedList<Object>();
-        filteredChildren = new HashMap<Object, LinkedList<Object>>();
-        filteredParent = new HashMap<Object, Object>();
-
         if (includeParentsWhenFiltering) {
             // Filter so that parents for items that match the filter are also
             // included
-            HashSet<Object> includedItems = new HashSet<Object>();
-            for (Object rootId : roots) {
-                if (filterIncludingParents(rootId, includedItems)) {
-                    filteredRoots.add(rootId);
-                    addFilteredChildrenRecursively(rootId, includedItems);
-                }
+            Set<Object> includedItems;
+            CaseFoldedValueCache previousCache = CaseFoldedValueCache
+                    .getCurrent();
+            CaseFoldedValueCache.setCurrent(getCaseFoldedValueCache());
+            try {
+                includedItems = filterIncludingParents(roots, children);
+            } finally {
+                CaseFoldedValueCache.setCurrent(previousCache);
             }
             // includedItemIds now contains all the item ids that should be
             // included. Filter IndexedContainer based on this
@@ -740,24 +1003,64 @@ public class HierarchicalContainer extends IndexedContainer implements
             // Filter IndexedContainer first so getItemIds return the items that
             // match
             super.doFilterContainer(hasFilters);
+            filterWithoutParents();
+
+            return true;
+        }
+    }
 
-            LinkedHashSet<Object> filteredItemIds = new LinkedHashSet<Object>(
-                    getItemIds());
+    /**
+     * Rebuilds the filtered hierarchy from the items that pass the filters and
+     * their parents.
+     * 
+     * @param sourceRoots
+     *            the roots to start filtering from
+     * @param sourceChildren
+     *            the children of the items to filter, either all children or
+     *            the currently filtered children when narrowing the filtering
+     * @return the ids of all items that should be included in the filtered
+     *         container
+     */
+    private Set<Object> filterIncludingParents(List<Object> sourceRoots,
+            HashMap<Object, ListSet<Object>> sourceChildren) {
+        // Reset data structures
+        filteredRoots = new ListSet<Object>();
+        filteredChildren = new HashMap<Object, ListSet<Object>>();
+        filteredParent = new HashMap<Object, Object>();
 
-            for (Object itemId : filteredItemIds) {
-                Object itemParent = parent.get(itemId);
-                if (itemParent == null || !filteredItemIds.contains(itemParent)) {
-                    // Parent is not included or this was a root, in both cases
-                    // this should be a filtered root
-                    filteredRoots.add(itemId);
-                } else {
-                    // Parent is included. Add this to the children list (create
-                    // it first if necessary)
-                    addFilteredChild(itemParent, itemId);
-                }
+        HashSet<Object> includedItems = new HashSet<Object>();
+        for (Object rootId : sourceRoots) {
+            if (filterIncludingParents(rootId, includedItems, sourceChildren)) {
+                filteredRoots.add(rootId);
+                addFilteredChildrenRecursively(rootId, includedItems,
+                        sourceChildren);
             }
+        }
+        return includedItems;
+    }
 
-            return true;
+    /**
+     * Rebuilds the filtered hierarchy from the visible items, making the items
+     * whose parent is not visible new roots.
+     */
+    private void filterWithoutParents() {
+        // Reset data structures
+        filteredRoots = new ListSet<Object>();
+        filteredChildren = new HashMap<Object, ListSet<Object>>();
+        filteredParent = new HashMap<Object, Object>();
+
+        List<Object> filteredItemIds = getFilteredItemIds();
+        for (Object itemId : filteredItemIds) {
+            Object itemParent = parent.get(itemId);
+            if (itemParent == null || !filteredItemIds.contains(itemParent)) {
+                // Parent is not included or this was a root, in both cases
+                // this should be a filtered root
+                filteredRoots.add(itemId);
+            } else {
+                // Parent is included. Add this to the children list (create
+                // it first if necessary)
+                addFilteredChild(itemParent, itemId);
+            }
         }
     }
 
@@ -769,10 +1072,9 @@ public class HierarchicalContainer extends IndexedContainer implements
      * @param childItemId
      */
     private void addFilteredChild(Object parentItemId, Object childItemId) {
-        LinkedList<Object> parentToChildrenList = filteredChildren
-                .get(parentItemId);
+        ListSet<Object> parentToChildrenList = filteredChildren.get(parentItemId);
         if (parentToChildrenList == null) {
-            parentToChildrenList = new LinkedList<Object>();
+            parentToChildrenList = new ListSet<Object>();
             filteredChildren.put(parentItemId, parentToChildrenList);
         }
         filteredParent.put(childItemId, parentItemId);
@@ -792,10 +1094,13 @@ public class HierarchicalContainer extends IndexedContainer implements
      * @param includedItems
      *            Set containing the item ids for the items that should be
      *            included in the filteredChildren map
+     * @param sourceChildren
+     *            the children of the items
      */
     private void addFilteredChildrenRecursively(Object parentItemId,
-            HashSet<Object> includedItems) {
-        LinkedList<Object> childList = children.get(parentItemId);
+            HashSet<Object> includedItems,
+            HashMap<Object, ListSet<Object>> sourceChildren) {
+        ListSet<Object> childList = sourceChildren.get(parentItemId);
         if (childList == null) {
             return;
         }
@@ -803,7 +1108,8 @@ public class HierarchicalContainer extends IndexedContainer implements
         for (Object childItemId : childList) {
             if (includedItems.contains(childItemId)) {
                 addFilteredChild(parentItemId, childItemId);
-                addFilteredChildrenRecursively(childItemId, includedItems);
+                addFilteredChildrenRecursively(childItemId, includedItems,
+                        sourceChildren);
             }
         }
     }
@@ -816,17 +1122,20 @@ public class HierarchicalContainer extends IndexedContainer implements
      * 
      * @param itemId
      * @param includedItems
+     * @param sourceChildren
+     *            the children of the items
      * @return true if the itemId should be included in the filtered container.
      */
     private boolean filterIncludingParents(Object itemId,
-            HashSet<Object> includedItems) {
+            HashSet<Object> includedItems,
+            HashMap<Object, ListSet<Object>> sourceChildren) {
         boolean toBeIncluded = passesFilters(itemId);
 
-        LinkedList<Object> childList = children.get(itemId);
+        ListSet<Object> childList = sourceChildren.get(itemId);
         if (childList != null) {
-            for (Object childItemId : children.get(itemId)) {
+            for (Object childItemId : childList) {
                 toBeIncluded |= filterIncludingParents(childItemId,
-                        includedItems);
+                        includedItems, sourceChildren);
             }
         }
 
@@ -33,6 +33,7 @@ import java.util.logging.Logger;
 import com.vaadin.data.Container;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.NarrowingFilter;
 import com.vaadin.data.util.filter.SimpleStringFilter;
 import com.vaadin.data.util.filter.UnsupportedFilterException;
 
@@ -78,10 +79,9 @@ public class IndexedContainer extends
     private Hashtable<Object, Class<?>> types = new Hashtable<Object, Class<?>>();
 
     /**
-     * Hash of Items, where each Item is implemented as a mapping from Property
-     * ID to Property value.
+     * Storage for the property values of the items.
      */
-    private Hashtable<Object, Map<Object, Object>> items = new Hashtable<Object, Map<Object, Object>>();
+    private ItemStorage items = new HashtableItemStorage();
 
     /**
      * Set of properties that are read-only.
@@ -124,11 +124,59 @@ public class IndexedContainer extends
         }
     }
 
+    /**
+     * Sets whether the property values of the items are stored in columns
+     * instead of in a separate map for each item. Any existing items and
+     * values are moved to the new storage.
+     * <p>
+     * In columnar storage, the values of each property are kept in an array
+     * indexed by the row of the item. Properties of type {@link Integer},
+     * {@link Long}, {@link Double} and {@link Boolean} are stored as primitive
+     * values, which considerably reduces the memory used by containers with
+     * many items and properties. Columnar storage is disabled by default.
+     * 
+     * @since 7.2
+     * @param columnarStorage
+     *            <code>true</code> to store the values in columns,
+     *            <code>false</code> to store them in a map for each item
+     */
+    public void setColumnarStorage(boolean columnarStorage) {
+        if (columnarStorage == isColumnarStorage()) {
+            return;
+        }
+        ItemStorage newItems = columnarStorage ? new ColumnarItemStorage()
+                : new HashtableItemStorage();
+        for (Object propertyId : propertyIds) {
+            newItems.addProperty(propertyId, types.get(propertyId));
+        }
+        for (Object itemId : getAllItemIds()) {
+            newItems.addItem(itemId);
+            for (Object propertyId : propertyIds) {
+                newItems.setValue(itemId, propertyId,
+                        items.getValue(itemId, propertyId));
+            }
+        }
+        items = newItems;
+    }
+
+    /**
+     * Checks whether the property values of the items are stored in columns.
+     * 
+     * @see #setColumnarStorage(boolean)
+     * 
+     * @since 7.2
+     * @return <code>true</code> if the values are stored in columns,
+     *         <code>false</code> if they are stored in a map for each item
+     */
+    public boolean isColumnarStorage() {
+        return items instanceof ColumnarItemStorage;
+    }
+
     /* Container methods */
 
     @Override
     protected Item getUnfilteredItem(Object itemId) {
-        if (itemId != null && items.containsKey(itemId)) {
+        if (itemId != null && items.contains(itemId)) {
             return new IndexedContainerItem(itemId);
         }
         return null;
@@ -197,6 +245,7 @@ public class IndexedContainer extends
         // Adds the Property to Property list and types
         propertyIds.add(propertyId);
         types.put(propertyId, type);
+        items.addProperty(propertyId, type);
 
         // If default value is given, set it
         if (defaultValue != null) {
@@ -229,7 +278,7 @@ public class IndexedContainer extends
 
         internalRemoveAllItems();
 
-        items.clear();
+        items.removeAllItems();
 
         // fire event only if the visible view changed, regardless of whether
         // filtered out items were removed or not
@@ -281,13 +330,13 @@ public class IndexedContainer extends
     /**
      * Helper method to add default values for items if available
      * 
-     * @param t
-     *            data table of added item
+     * @param itemId
+     *            the id of the added item
      */
-    private void addDefaultValues(Hashtable<Object, Object> t) {
+    private void addDefaultValues(Object itemId) {
         if (defaultPropertyValues != null) {
             for (Object key : defaultPropertyValues.keySet()) {
-                t.put(key, defaultPropertyValues.get(key));
+                items.setValue(itemId, key, defaultPropertyValues.get(key));
             }
         }
     }
@@ -299,7 +348,7 @@ public class IndexedContainer extends
      */
     @Override
     public boolean removeItem(Object itemId) {
-        if (itemId == null || items.remove(itemId) == null) {
+        if (itemId == null || !items.removeItem(itemId)) {
             return false;
         }
         int origSize = size();
@@ -338,9 +387,7 @@ public class IndexedContainer extends
         }
 
         // If remove the Property from all Items
-        for (final Iterator<Object> i = getAllItemIds().iterator(); i.hasNext();) {
-            items.get(i.next()).remove(propertyId);
-        }
+        items.removeProperty(propertyId);
 
         // Sends a change event
         fireContainerPropertySetChange();
@@ -418,16 +465,15 @@ public class IndexedContainer extends
         Serializable id;
         do {
             id = Integer.valueOf(nextGeneratedItemId++);
-        } while (items.containsKey(id));
+        } while (items.contains(id));
 
         return id;
     }
 
     @Override
     protected void registerNewItem(int index, Object newItemId, Item item) {
-        Hashtable<Object, Object> t = new Hashtable<Object, Object>();
-        items.put(newItemId, t);
-        addDefaultValues(t);
+        items.addItem(newItemId);
+        addDefaultValues(newItemId);
     }
 
     /* Event notifiers */
@@ -460,6 +506,37 @@ public class IndexedContainer extends
 
     }
 
+    /**
+     * An item set change event for a single added item, also describing the
+     * item as a {@link Container.Indexed.ItemAddEvent}.
+     */
+    private static class SingleItemAddEvent extends ItemSetChangeEvent
+            implements Container.Indexed.ItemAddEvent {
+
+        private final Object itemId;
+
+        private SingleItemAddEvent(IndexedContainer source, Object itemId,
+                int addedItemIndex) {
+            super(source, addedItemIndex);
+            this.itemId = itemId;
+        }
+
+        @Override
+        public Object getFirstItemId() {
+            return itemId;
+        }
+
+        @Override
+        public int getFirstIndex() {
+            return getAddedItemIndex();
+        }
+
+        @Override
+        public int getAddedItemsCount() {
+            return 1;
+        }
+    }
+
     /**
      * An <code>event</code> object specifying the Property in a list whose
      * value has changed.
@@ -620,8 +697,7 @@ public class IndexedContainer extends
     @Override
     protected void fireItemAdded(int position, Object itemId, Item item) {
         if (position >= 0) {
-            fireItemSetChange(new IndexedContainer.ItemSetChangeEvent(this,
-                    position));
+            fireItemSetChange(new SingleItemAddEvent(this, itemId, position));
         }
     }
 
@@ -697,6 +773,108 @@ public class IndexedContainer extends
         }
     }
 
+    /* Internal storage implementations */
+
+    /**
+     * Storage for the property values of the items in the container.
+     * 
+     * @since 7.2
+     */
+    interface ItemStorage extends Serializable {
+
+        public boolean contains(Object itemId);
+
+        /**
+         * Adds an item without any property values.
+         */
+        public void addItem(Object itemId);
+
+        public boolean removeItem(Object itemId);
+
+        public void removeAllItems();
+
+        public Object getValue(Object itemId, Object propertyId);
+
+        /**
+         * Sets the value of a property, <code>null</code> removes the value.
+         */
+        public void setValue(Object itemId, Object propertyId, Object value);
+
+        public void addProperty(Object propertyId, Class<?> type);
+
+        public void removeProperty(Object propertyId);
+
+        public ItemStorage copy();
+    }
+
+    /**
+     * Storage where each item is implemented as a mapping from Property ID to
+     * Property value.
+     */
+    private static class HashtableItemStorage implements ItemStorage {
+
+        private final Hashtable<Object, Map<Object, Object>> items = new Hashtable<Object, Map<Object, Object>>();
+
+        @Override
+        public boolean contains(Object itemId) {
+            return items.containsKey(itemId);
+        }
+
+        @Override
+        public void addItem(Object itemId) {
+            items.put(itemId, new Hashtable<Object, Object>());
+        }
+
+        @Override
+        public boolean removeItem(Object itemId) {
+            return items.remove(itemId) != null;
+        }
+
+        @Override
+        public void removeAllItems() {
+            items.clear();
+        }
+
+        @Override
+        public Object getValue(Object itemId, Object propertyId) {
+            return items.get(itemId).get(propertyId);
+        }
+
+        @Override
+        public void setValue(Object itemId, Object propertyId, Object value) {
+            final Map<Object, Object> propertySet = items.get(itemId);
+            if (value == null) {
+                propertySet.remove(propertyId);
+            } else {
+                propertySet.put(propertyId, value);
+            }
+        }
+
+        @Override
+        public void addProperty(Object propertyId, Class<?> type) {
+            // Values are added to the item maps when set
+        }
+
+        @Override
+        public void removeProperty(Object propertyId) {
+            for (Map<Object, Object> propertySet : items.values()) {
+                propertySet.remove(propertyId);
+            }
+        }
+
+        @Override
+        public ItemStorage copy() {
+            HashtableItemStorage copy = new HashtableItemStorage();
+            for (final Iterator<?> i = items.keySet().iterator(); i.hasNext();) {
+                final Object id = i.next();
+                final Hashtable<Object, Object> it = (Hashtable<Object, Object>) items
+                        .get(id);
+                copy.items.put(id, (Map<Object, Object>) it.clone());
+            }
+            return copy;
+        }
+    }
+
     /* Internal Item and Property implementations */
 
     /*
@@ -895,7 +1073,7 @@ public class IndexedContainer extends
          */
         @Override
         public T getValue() {
-            return (T) items.get(itemId).get(propertyId);
+            return (T) items.getValue(itemId, propertyId);
         }
 
         /*
@@ -929,14 +1107,13 @@ public class IndexedContainer extends
          */
         @Override
         public void setValue(Object newValue) throws Property.ReadOnlyException {
-            // Gets the Property set
-            final Map<Object, Object> propertySet = items.get(itemId);
-
             // Support null values on all types
-            if (newValue == null) {
-                propertySet.remove(propertyId);
-            } else if (getType().isAssignableFrom(newValue.getClass())) {
-                propertySet.put(propertyId, newValue);
+            if (newValue == null
+                    || getType().isAssignableFrom(newValue.getClass())) {
+                items.setValue(itemId, propertyId, newValue);
+                if (getCaseFoldedValueCache() != null) {
+                    getCaseFoldedValueCache().invalidate(itemId, propertyId);
+                }
             } else {
                 throw new IllegalArgumentException(
                         "Value is of invalid type, got "
@@ -946,7 +1123,7 @@ public class IndexedContainer extends
 
             // update the container filtering if this property is being filtered
             if (isPropertyFiltered(propertyId)) {
-                filterAll();
+                filterItem(itemId);
             }
 
             firePropertyValueChange(this);
@@ -1144,17 +1321,7 @@ public class IndexedContainer extends
                         .clone());
 
         // Clone property-values
-        if (items == null) {
-            nc.items = null;
-        } else {
-            nc.items = new Hashtable<Object, Map<Object, Object>>();
-            for (final Iterator<?> i = items.keySet().iterator(); i.hasNext();) {
-                final Object id = i.next();
-                final Hashtable<Object, Object> it = (Hashtable<Object, Object>) items
-                        .get(id);
-                nc.items.put(id, (Map<Object, Object>) it.clone());
-            }
-        }
+        nc.items = items == null ? null : items.copy();
 
         return nc;
     }
@@ -1192,6 +1359,40 @@ public class IndexedContainer extends
         removeFilter(filter);
     }
 
+    /**
+     * Replaces a container filter with another one, e.g. when the filter
+     * string of a filter field changes. If the new filter is a
+     * {@link NarrowingFilter} that is narrower than the old filter, only the
+     * currently visible items are tested against the new filter.
+     * 
+     * @param oldFilter
+     *            the filter to remove
+     * @param newFilter
+     *            the filter to add
+     * @throws UnsupportedFilterException
+     *             if the new filter is not supported by the container
+     * @since 7.2
+     */
+    public void replaceContainerFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        replaceFilter(oldFilter, newFilter);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns true as the items of an IndexedContainer are only filtered with
+     * the container filters. Subclasses that override
+     * {@link #passesFilters(Object)} or {@link #doFilterContainer(boolean)}
+     * with other conditions should override this method to return false.
+     * 
+     * @since 7.2
+     */
+    @Override
+    protected boolean isIncrementalFilteringSupported() {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -30,6 +30,12 @@ import java.util.Iterator;
  * allows duplicates because of the way {@link Collections#sort(java.util.List)}
  * works.
  * 
+ * The positions of the elements are also indexed so that
+ * {@link #indexOf(Object)} is a constant time operation in the common case. The
+ * index is built lazily when first needed, updated incrementally when elements
+ * are appended and only invalidated from the first modified position onwards
+ * when elements are inserted, removed or replaced.
+ * 
  * This class is subject to change and should not be used outside Vaadin core.
  */
 public class ListSet<E> extends ArrayList<E> {
@@ -41,6 +47,31 @@ public class ListSet<E> extends ArrayList<E> {
      */
     private HashMap<E, Integer> duplicates = new HashMap<E, Integer>();
 
+    /**
+     * Lists with at most this many elements are searched linearly without
+     * building a position index.
+     */
+    private static final int LINEAR_SEARCH_THRESHOLD = 16;
+
+    /**
+     * Maps elements to their positions in the list. All elements at positions
+     * below {@link #validPositions} are mapped to their current position.
+     */
+    private transient HashMap<Object, Integer> positions;
+
+    /**
+     * The number of positions from the start of the list for which the
+     * position index is up to date.
+     */
+    private transient int validPositions;
+
+    /**
+     * The modification count of the list when the position index was last
+     * updated, used for detecting modifications that bypass the overridden
+     * methods, e.g. {@code ArrayList.sort} on newer JREs.
+     */
+    private transient int positionsModCount;
+
     public ListSet() {
         super();
         itemSet = new HashSet<E>();
@@ -76,8 +107,11 @@ public class ListSet<E> extends ArrayList<E> {
             return false;
         }
 
+        checkPositions();
+        int index = size();
         if (super.add(e)) {
             itemSet.add(e);
+            appended(index, e);
             return true;
         } else {
             return false;
@@ -95,8 +129,15 @@ public class ListSet<E> extends ArrayList<E> {
             return;
         }
 
+        checkPositions();
+        int size = size();
         super.add(index, element);
         itemSet.add(element);
+        if (index == size) {
+            appended(index, element);
+        } else {
+            invalidatePositions(index);
+        }
     }
 
     @Override
@@ -141,6 +182,9 @@ public class ListSet<E> extends ArrayList<E> {
     public void clear() {
         super.clear();
         itemSet.clear();
+        positions = null;
+        validPositions = 0;
+        positionsModCount = modCount;
     }
 
     @Override
@@ -148,7 +192,32 @@ public class ListSet<E> extends ArrayList<E> {
         if (!contains(o)) {
             return -1;
         }
+        if (size() <= LINEAR_SEARCH_THRESHOLD || !duplicates.isEmpty()) {
+            return super.indexOf(o);
+        }
 
+        checkPositions();
+        if (positions == null) {
+            positions = new HashMap<Object, Integer>(size() * 4 / 3 + 1);
+        }
+        // Mappings for elements that have been moved may still point to a
+        // position below validPositions, so the element at the position must
+        // be checked
+        Integer position = positions.get(o);
+        if (position != null && position.intValue() < validPositions
+                && o.equals(get(position.intValue()))) {
+            return position.intValue();
+        }
+
+        // Extend the index until the element is found
+        for (int i = validPositions; i < size(); i++) {
+            E e = get(i);
+            positions.put(e, Integer.valueOf(i));
+            validPositions = i + 1;
+            if (o.equals(e)) {
+                return i;
+            }
+        }
         return super.indexOf(o);
     }
 
@@ -163,33 +232,43 @@ public class ListSet<E> extends ArrayList<E> {
 
     @Override
     public E remove(int index) {
+        checkPositions();
         E e = super.remove(index);
 
         if (e != null) {
             itemSet.remove(e);
+            if (positions != null) {
+                positions.remove(e);
+            }
         }
+        invalidatePositions(index);
 
         return e;
     }
 
     @Override
     public boolean remove(Object o) {
-        if (super.remove(o)) {
-            itemSet.remove(o);
-            return true;
-        } else {
+        int index = indexOf(o);
+        if (index < 0) {
             return false;
         }
+        remove(index);
+        return true;
     }
 
     @Override
     protected void removeRange(int fromIndex, int toIndex) {
+        checkPositions();
         HashSet<E> toRemove = new HashSet<E>();
         for (int idx = fromIndex; idx < toIndex; idx++) {
             toRemove.add(get(idx));
         }
         super.removeRange(fromIndex, toIndex);
         itemSet.removeAll(toRemove);
+        if (positions != null) {
+            positions.keySet().removeAll(toRemove);
+        }
+        invalidatePositions(fromIndex);
     }
 
     @Override
@@ -211,13 +290,56 @@ public class ListSet<E> extends ArrayList<E> {
             }
         }
 
+        checkPositions();
         E old = super.set(index, element);
         removeFromSet(old);
         itemSet.add(element);
+        invalidatePositions(index);
 
         return old;
     }
 
+    /**
+     * Records the position of an element appended to the end of the list if
+     * the position index is up to date for all preceding elements.
+     * 
+     * @param index
+     *            the position of the appended element
+     * @param e
+     *            the appended element
+     */
+    private void appended(int index, E e) {
+        if (positions != null && validPositions == index) {
+            positions.put(e, Integer.valueOf(index));
+            validPositions = index + 1;
+        }
+        positionsModCount = modCount;
+    }
+
+    /**
+     * Marks the position index out of date from the given position onwards.
+     * 
+     * @param index
+     *            the first modified position
+     */
+    private void invalidatePositions(int index) {
+        if (index < validPositions) {
+            validPositions = index;
+        }
+        positionsModCount = modCount;
+    }
+
+    /**
+     * Discards the position index if the list has been modified in a way that
+     * did not update it.
+     */
+    private void checkPositions() {
+        if (positionsModCount != modCount) {
+            validPositions = 0;
+            positionsModCount = modCount;
+        }
+    }
+
     /**
      * Removes "e" from the set if it no longer exists in the list.
      * 
@@ -238,6 +360,9 @@ public class ListSet<E> extends ArrayList<E> {
         } else {
             // The "old" value is no longer in the list.
             itemSet.remove(e);
+            if (positions != null) {
+                positions.remove(e);
+            }
         }
 
     }
@@ -270,6 +395,8 @@ public class ListSet<E> extends ArrayList<E> {
     public Object clone() {
         ListSet<E> v = (ListSet<E>) super.clone();
         v.itemSet = new HashSet<E>(itemSet);
+        v.positions = null;
+        v.validPositions = 0;
         return v;
     }
 
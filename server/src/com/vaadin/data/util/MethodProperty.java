@@ -68,6 +68,14 @@ public class MethodProperty<T> extends AbstractProperty<T> {
      */
     private transient Object[] setArgs, getArgs;
 
+    /**
+     * Shared argument arrays for the common case of a getter without
+     * arguments and a setter with only the value as an argument. The argument
+     * arrays are never modified, so they can be shared by all properties.
+     */
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final Object[] VALUE_ARG = new Object[] { null };
+
     /**
      * The getter and setter methods.
      */
@@ -278,8 +286,7 @@ public class MethodProperty<T> extends AbstractProperty<T> {
      */
     public MethodProperty(Class<? extends T> type, Object instance,
             Method getMethod, Method setMethod) {
-        this(type, instance, getMethod, setMethod, new Object[] {},
-                new Object[] { null }, 0);
+        this(type, instance, getMethod, setMethod, NO_ARGS, VALUE_ARG, 0);
     }
 
     /**
@@ -583,6 +590,15 @@ public class MethodProperty<T> extends AbstractProperty<T> {
         return type;
     }
 
+    /**
+     * Returns the object on which the getter and setter methods are invoked.
+     * 
+     * @return the instance used by this property
+     */
+    Object getInstance() {
+        return instance;
+    }
+
     /**
      * Tests if the object is in read-only mode. In read-only mode calls to
      * <code>setValue</code> will throw <code>ReadOnlyException</code> and will
@@ -627,13 +643,21 @@ public class MethodProperty<T> extends AbstractProperty<T> {
      */
     public void setArguments(Object[] getArgs, Object[] setArgs,
             int setArgumentIndex) {
-        this.getArgs = new Object[getArgs.length];
-        for (int i = 0; i < getArgs.length; i++) {
-            this.getArgs[i] = getArgs[i];
+        if (getArgs.length == 0) {
+            this.getArgs = NO_ARGS;
+        } else {
+            this.getArgs = new Object[getArgs.length];
+            for (int i = 0; i < getArgs.length; i++) {
+                this.getArgs[i] = getArgs[i];
+            }
         }
-        this.setArgs = new Object[setArgs.length];
-        for (int i = 0; i < setArgs.length; i++) {
-            this.setArgs[i] = setArgs[i];
+        if (setArgs.length == 1 && setArgs[0] == null) {
+            this.setArgs = VALUE_ARG;
+        } else {
+            this.setArgs = new Object[setArgs.length];
+            for (int i = 0; i < setArgs.length; i++) {
+                this.setArgs[i] = setArgs[i];
+            }
         }
         this.setArgumentIndex = setArgumentIndex;
     }
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -44,12 +45,19 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
     private String propertyName;
 
     // chain of getter methods
-    private transient List<Method> getMethods;
+    private transient Method[] getMethods;
     /**
      * The setter method.
      */
     private transient Method setMethod;
 
+    /**
+     * The class for which the getter and setter methods were resolved.
+     */
+    private transient Class<?> beanClass;
+
+    private static final Object[] NO_ARGS = new Object[0];
+
     /**
      * Bean instance used as a starting point for accessing the property value.
      */
@@ -157,6 +165,29 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
         initialize(instanceClass, propertyName);
     }
 
+    /**
+     * Creates a nested method property for the given instance using the
+     * getter and setter methods already resolved by another property for the
+     * same property name and instance class. This avoids resolving the methods
+     * using reflection again for each instance.
+     * 
+     * @param instance
+     *            top-level bean to which the property applies, must be of the
+     *            class returned by {@link #getBeanClass()} of the template
+     * @param template
+     *            the property to copy the resolved methods from
+     */
+    @SuppressWarnings("unchecked")
+    NestedMethodProperty(Object instance, NestedMethodProperty<?> template) {
+        this.instance = instance;
+        propertyName = template.propertyName;
+        nullBeansAllowed = template.nullBeansAllowed;
+        getMethods = template.getMethods;
+        setMethod = template.setMethod;
+        beanClass = template.beanClass;
+        type = (Class<? extends T>) template.type;
+    }
+
     /**
      * Initializes most of the internal fields based on the top-level bean
      * instance and property name (dot-separated string).
@@ -227,8 +258,9 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
         this.type = (Class<? extends T>) MethodProperty
                 .convertPrimitiveType(type);
         this.propertyName = propertyName;
-        this.getMethods = getMethods;
+        this.getMethods = getMethods.toArray(new Method[getMethods.size()]);
         this.setMethod = setMethod;
+        this.beanClass = beanClass;
     }
 
     @Override
@@ -236,6 +268,25 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
         return type;
     }
 
+    /**
+     * Returns the top-level bean from which the nested property is read.
+     * 
+     * @return the instance used by this property
+     */
+    Object getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the class for which the getter and setter methods of this property
+     * were resolved.
+     * 
+     * @return the bean class
+     */
+    Class<?> getBeanClass() {
+        return beanClass;
+    }
+
     @Override
     public boolean isReadOnly() {
         return super.isReadOnly() || (null == setMethod);
@@ -252,7 +303,7 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
         try {
             Object object = instance;
             for (Method m : getMethods) {
-                object = m.invoke(object);
+                object = m.invoke(object, NO_ARGS);
                 if (object == null && nullBeansAllowed) {
                     return null;
                 }
@@ -293,8 +344,8 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
     protected void invokeSetMethod(T value) {
         try {
             Object object = instance;
-            for (int i = 0; i < getMethods.size() - 1; i++) {
-                object = getMethods.get(i).invoke(object);
+            for (int i = 0; i < getMethods.length - 1; i++) {
+                object = getMethods[i].invoke(object, NO_ARGS);
             }
             setMethod.invoke(object, new Object[] { value });
         } catch (final InvocationTargetException e) {
@@ -314,7 +365,7 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
      *         of the property name
      */
     protected List<Method> getGetMethods() {
-        return Collections.unmodifiableList(getMethods);
+        return Collections.unmodifiableList(Arrays.asList(getMethods));
     }
 
 }
@@ -36,6 +36,12 @@ public class NestedPropertyDescriptor<BT> implements
     private final Class<?> propertyType;
     private final boolean nullBeansAllowed;
 
+    /**
+     * A property whose resolved getter and setter methods are reused for new
+     * properties of beans of the same class.
+     */
+    private transient volatile NestedMethodProperty<?> template;
+
     /**
      * Creates a property descriptor that can create MethodProperty instances to
      * access the underlying bean property.
@@ -72,6 +78,7 @@ public class NestedPropertyDescriptor<BT> implements
                 beanType, name, nullBeansAllowed);
         this.propertyType = property.getType();
         this.nullBeansAllowed = nullBeansAllowed;
+        template = property;
     }
 
     @Override
@@ -86,7 +93,14 @@ public class NestedPropertyDescriptor<BT> implements
 
     @Override
     public Property<?> createProperty(BT bean) {
-        return new NestedMethodProperty<Object>(bean, name, nullBeansAllowed);
+        NestedMethodProperty<?> template = this.template;
+        if (template == null || template.getBeanClass() != bean.getClass()) {
+            // Resolve without the bean to avoid keeping a reference to it
+            template = new NestedMethodProperty<Object>(bean.getClass(), name,
+                    nullBeansAllowed);
+            this.template = template;
+        }
+        return new NestedMethodProperty<Object>(bean, template);
     }
 
 }
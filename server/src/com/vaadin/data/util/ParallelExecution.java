@@ -0,0 +1,235 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Helpers for filtering and sorting the items of in-memory containers in
+ * parallel using an {@link Executor}.
+ * <p>
+ * The work is split into chunks that are claimed both by tasks submitted to the
+ * executor and by the calling thread. The calling thread therefore always makes
+ * progress even if the executor is busy, and only waits for chunks that other
+ * threads have already started.
+ * 
+ * @since 7.2
+ */
+class ParallelExecution implements Serializable {
+
+    /**
+     * A task processing one chunk of a parallel operation.
+     */
+    interface ChunkTask extends Serializable {
+        /**
+         * Processes the chunk with the given index.
+         * 
+         * @param chunk
+         *            the index of the chunk to process
+         */
+        public void run(int chunk);
+    }
+
+    private ParallelExecution() {
+        // Only static helpers
+    }
+
+    /**
+     * Gets the number of threads that should work on a parallel operation.
+     * 
+     * @return the parallelism, at least 1
+     */
+    static int getParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the given task for all chunks from 0 to <code>chunks - 1</code>
+     * using the executor and the calling thread, and waits until all chunks
+     * have been processed. If a chunk throws an exception, the first exception
+     * is rethrown in the calling thread after all started chunks have
+     * completed.
+     * 
+     * @param executor
+     *            the executor to use, or <code>null</code> to run all chunks in
+     *            the calling thread
+     * @param parallelism
+     *            the maximum number of threads to use, including the calling
+     *            thread
+     * @param chunks
+     *            the number of chunks
+     * @param task
+     *            the task to run for each chunk
+     */
+    static void run(Executor executor, int parallelism, final int chunks,
+            final ChunkTask task) {
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(chunks);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int chunk;
+                while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                    try {
+                        if (failure.get() == null) {
+                            task.run(chunk);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+
+        if (executor != null) {
+            int workers = Math.min(chunks, parallelism) - 1;
+            try {
+                for (int i = 0; i < workers; i++) {
+                    executor.execute(worker);
+                }
+            } catch (RejectedExecutionException e) {
+                // The calling thread processes the remaining chunks
+            }
+        }
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Sorts the given array using a parallel merge sort. The sort is stable
+     * and produces the same order as {@link Arrays#sort(Object[], Comparator)}.
+     * The comparator must be safe to use from multiple threads at the same
+     * time.
+     * 
+     * @param array
+     *            the array to sort
+     * @param comparator
+     *            the comparator to use
+     * @param executor
+     *            the executor to use, or <code>null</code> to sort in the
+     *            calling thread
+     * @param parallelism
+     *            the maximum number of threads to use, including the calling
+     *            thread
+     */
+    static <T> void sort(T[] array, final Comparator<? super T> comparator,
+            Executor executor, int parallelism) {
+        final int length = array.length;
+        int runs = Integer.highestOneBit(Math.max(1, parallelism)) * 2;
+        if (executor == null || parallelism < 2 || length < runs * 2) {
+            Arrays.sort(array, comparator);
+            return;
+        }
+
+        final int[] bounds = new int[runs + 1];
+        for (int i = 0; i <= runs; i++) {
+            bounds[i] = (int) ((long) length * i / runs);
+        }
+
+        // Sort the runs in parallel
+        final T[] source = array;
+        run(executor, parallelism, runs, new ChunkTask() {
+            @Override
+            public void run(int chunk) {
+                Arrays.sort(source, bounds[chunk], bounds[chunk + 1],
+                        comparator);
+            }
+        });
+
+        // Merge pairs of runs in parallel until only one run remains
+        T[] from = array;
+        T[] to = Arrays.copyOf(array, length);
+        for (int width = 1; width < runs; width *= 2) {
+            final T[] mergeFrom = from;
+            final T[] mergeTo = to;
+            final int runWidth = width;
+            run(executor, parallelism, runs / (width * 2), new ChunkTask() {
+                @Override
+                public void run(int chunk) {
+                    int start = bounds[chunk * runWidth * 2];
+                    int middle = bounds[chunk * runWidth * 2 + runWidth];
+                    int end = bounds[(chunk + 1) * runWidth * 2];
+                    merge(mergeFrom, mergeTo, start, middle, end, comparator);
+                }
+            });
+            from = mergeTo;
+            to = mergeFrom;
+        }
+        if (from != array) {
+            System.arraycopy(from, 0, array, 0, length);
+        }
+    }
+
+    /**
+     * Merges the sorted ranges [start, middle) and [middle, end) of the source
+     * array into the same range of the target array. Equal elements from the
+     * first range are placed first to keep the sort stable.
+     */
+    private static <T> void merge(T[] source, T[] target, int start,
+            int middle, int end, Comparator<? super T> comparator) {
+        int left = start;
+        int right = middle;
+        int position = start;
+        if (left < middle && right < end
+                && comparator.compare(source[middle - 1], source[middle]) <= 0) {
+            // Already in order
+            System.arraycopy(source, start, target, start, end - start);
+            return;
+        }
+        while (left < middle && right < end) {
+            if (comparator.compare(source[right], source[left]) < 0) {
+                target[position++] = source[right++];
+            } else {
+                target[position++] = source[left++];
+            }
+        }
+        System.arraycopy(source, left, target, position, middle - left);
+        position += middle - left;
+        System.arraycopy(source, right, target, position, end - right);
+    }
+}
@@ -122,6 +122,28 @@ public class PropertysetItem implements Item, Item.PropertySetChangeNotifier,
      */
     @Override
     public boolean addItemProperty(Object id, Property property) {
+        if (!putItemProperty(id, property)) {
+            return false;
+        }
+
+        // Send event
+        fireItemPropertySetChange();
+
+        return true;
+    }
+
+    /**
+     * Adds a property to the item without sending a property set change
+     * event.
+     * 
+     * @param id
+     *            the ID of the new Property.
+     * @param property
+     *            the Property to be added and associated with the id.
+     * @return <code>true</code> if the property was added, <code>false</code>
+     *         if the item already contains a property with the given id
+     */
+    boolean putItemProperty(Object id, Property<?> property) {
 
         // Null ids are not accepted
         if (id == null) {
@@ -137,12 +159,18 @@ public class PropertysetItem implements Item, Item.PropertySetChangeNotifier,
         map.put(id, property);
         list.add(id);
 
-        // Send event
-        fireItemPropertySetChange();
-
         return true;
     }
 
+    /**
+     * Adds any properties that a subclass creates lazily to the property map
+     * and list of this item. Called before the map and list are used directly
+     * for cloning or comparing items.
+     */
+    void createLazyProperties() {
+        // No lazy properties by default
+    }
+
     /**
      * Gets the <code>String</code> representation of the contents of the Item.
      * The format of the string is a space separated catenation of the
@@ -293,6 +321,7 @@ public class PropertysetItem implements Item, Item.PropertySetChangeNotifier,
      */
     @Override
     public Object clone() throws CloneNotSupportedException {
+        createLazyProperties();
 
         final PropertysetItem npsi = new PropertysetItem();
 
@@ -317,6 +346,8 @@ public class PropertysetItem implements Item, Item.PropertySetChangeNotifier,
         }
 
         final PropertysetItem other = (PropertysetItem) obj;
+        createLazyProperties();
+        other.createLazyProperties();
 
         if (other.list != list) {
             if (other.list == null) {
@@ -361,6 +392,7 @@ public class PropertysetItem implements Item, Item.PropertySetChangeNotifier,
      */
     @Override
     public int hashCode() {
+        createLazyProperties();
 
         return (list == null ? 0 : list.hashCode())
                 ^ (map == null ? 0 : map.hashCode())
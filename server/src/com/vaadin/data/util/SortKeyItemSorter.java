@@ -0,0 +1,100 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+
+import com.vaadin.data.Container.Sortable;
+
+/**
+ * An {@link ItemSorter} that can extract the values used for sorting from all
+ * items once before a sort instead of fetching them from the items again for
+ * every comparison.
+ * <p>
+ * Containers supporting sort keys first call
+ * {@link #extractSortKeys(Object[])} for all item ids to sort, then sort the
+ * returned keys using {@link #compareSortKeys(SortKey, SortKey)} with a stable
+ * sort algorithm and finally reorder the item ids according to
+ * {@link SortKey#getItemId()} of the sorted keys. The resulting order must be
+ * the same as when sorting the item ids using
+ * {@link #compare(Object, Object)}.
+ * 
+ * @since 7.2
+ */
+public interface SortKeyItemSorter extends ItemSorter {
+
+    /**
+     * The precomputed sort key of an item.
+     */
+    public static class SortKey implements Serializable {
+        private final Object itemId;
+
+        /**
+         * Creates a sort key for the given item.
+         * 
+         * @param itemId
+         *            the id of the item the key was extracted from
+         */
+        public SortKey(Object itemId) {
+            this.itemId = itemId;
+        }
+
+        /**
+         * Gets the id of the item this key was extracted from.
+         * 
+         * @return the item id
+         */
+        public Object getItemId() {
+            return itemId;
+        }
+    }
+
+    /**
+     * Checks whether sort keys can be used with the current configuration of
+     * this sorter. If this method returns <code>false</code>, the container
+     * sorts using {@link #compare(Object, Object)}.
+     * 
+     * @return <code>true</code> if sort keys can be used, <code>false</code>
+     *         otherwise
+     */
+    public boolean isSortKeyExtractionSupported();
+
+    /**
+     * Extracts the sort keys for the given item ids using the parameters set
+     * using {@link #setSortProperties(Sortable, Object[], boolean[])}.
+     * 
+     * @param itemIds
+     *            the ids of the items to sort
+     * @return an array containing the sort key for each item id, in the same
+     *         order as the item ids
+     */
+    public SortKey[] extractSortKeys(Object[] itemIds);
+
+    /**
+     * Compares two sort keys returned by the same call to
+     * {@link #extractSortKeys(Object[])}. This method may be called from
+     * multiple threads at the same time.
+     * 
+     * @param key1
+     *            the first key to compare
+     * @param key2
+     *            the second key to compare
+     * @return a negative integer, zero, or a positive integer as the item of
+     *         the first key sorts before, equal to, or after the item of the
+     *         second key
+     */
+    public int compareSortKeys(SortKey key1, SortKey key2);
+}
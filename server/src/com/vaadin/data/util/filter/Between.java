@@ -68,7 +68,7 @@ public class Between implements Filter {
     @Override
     public boolean equals(Object obj) {
         // Only objects of the same class can be equal
-        if (!getClass().equals(obj.getClass())) {
+        if (obj == null || !getClass().equals(obj.getClass())) {
             return false;
         }
         final Between o = (Between) obj;
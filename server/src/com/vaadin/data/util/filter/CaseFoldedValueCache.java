@@ -0,0 +1,166 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.data.util.filter;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * Cache of lower and upper case versions of string property values, used by
+ * case-insensitive in-memory filters such as {@link SimpleStringFilter} and
+ * {@link Like} to avoid converting the same values again each time the
+ * container is filtered.
+ * <p>
+ * An in-memory container that has the cache enabled makes it available using
+ * {@link #getCurrent()} while filtering. The container invalidates the values
+ * of removed items and of properties changed through the container. A cached
+ * value is in any case only used if the property still has the same value.
+ * 
+ * @see com.vaadin.data.util.AbstractInMemoryContainer#setCaseFoldedValueCacheEnabled(boolean)
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class CaseFoldedValueCache implements Serializable {
+
+    private static class Entry implements Serializable {
+        private final String value;
+        private String lowerCase;
+        private String upperCase;
+
+        private Entry(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Cached entries by property id and item id.
+     */
+    private final Map<Object, Map<Object, Entry>> entries = new HashMap<Object, Map<Object, Entry>>();
+
+    /**
+     * Gets the value converted to lower case.
+     * 
+     * @param itemId
+     *            the id of the item the value belongs to
+     * @param propertyId
+     *            the id of the property the value belongs to
+     * @param value
+     *            the current value of the property, not <code>null</code>
+     * @return the value converted using {@link String#toLowerCase()}
+     */
+    public String toLowerCase(Object itemId, Object propertyId, String value) {
+        Entry entry = getEntry(itemId, propertyId, value);
+        if (entry.lowerCase == null) {
+            entry.lowerCase = value.toLowerCase();
+        }
+        return entry.lowerCase;
+    }
+
+    /**
+     * Gets the value converted to upper case.
+     * 
+     * @param itemId
+     *            the id of the item the value belongs to
+     * @param propertyId
+     *            the id of the property the value belongs to
+     * @param value
+     *            the current value of the property, not <code>null</code>
+     * @return the value converted using {@link String#toUpperCase()}
+     */
+    public String toUpperCase(Object itemId, Object propertyId, String value) {
+        Entry entry = getEntry(itemId, propertyId, value);
+        if (entry.upperCase == null) {
+            entry.upperCase = value.toUpperCase();
+        }
+        return entry.upperCase;
+    }
+
+    private Entry getEntry(Object itemId, Object propertyId, String value) {
+        Map<Object, Entry> propertyEntries = entries.get(propertyId);
+        if (propertyEntries == null) {
+            propertyEntries = new HashMap<Object, Entry>();
+            entries.put(propertyId, propertyEntries);
+        }
+        Entry entry = propertyEntries.get(itemId);
+        if (entry == null
+                || (entry.value != value && !entry.value.equals(value))) {
+            entry = new Entry(value);
+            propertyEntries.put(itemId, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the cached value of a property of an item.
+     * 
+     * @param itemId
+     *            the id of the item
+     * @param propertyId
+     *            the id of the changed property
+     */
+    public void invalidate(Object itemId, Object propertyId) {
+        Map<Object, Entry> propertyEntries = entries.get(propertyId);
+        if (propertyEntries != null) {
+            propertyEntries.remove(itemId);
+        }
+    }
+
+    /**
+     * Removes the cached values of all properties of an item.
+     * 
+     * @param itemId
+     *            the id of the item
+     */
+    public void invalidate(Object itemId) {
+        for (Map<Object, Entry> propertyEntries : entries.values()) {
+            propertyEntries.remove(itemId);
+        }
+    }
+
+    /**
+     * Removes all cached values.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the cache of the container that is currently being filtered by this
+     * thread.
+     * 
+     * @return the current cache, or <code>null</code> if there is no container
+     *         being filtered or it doesn't have a cache
+     */
+    public static CaseFoldedValueCache getCurrent() {
+        return CurrentInstance.get(CaseFoldedValueCache.class);
+    }
+
+    /**
+     * Sets the cache to use for the filtering done by this thread. The
+     * previous cache should be restored once filtering is done.
+     * 
+     * @param cache
+     *            the cache to use, or <code>null</code> to not use a cache
+     */
+    public static void setCurrent(CaseFoldedValueCache cache) {
+        CurrentInstance.set(CaseFoldedValueCache.class, cache);
+    }
+}
@@ -309,14 +309,15 @@ public abstract class Compare implements Filter {
     public boolean equals(Object obj) {
 
         // Only objects of the same class can be equal
-        if (!getClass().equals(obj.getClass())) {
+        if (obj == null || !getClass().equals(obj.getClass())) {
             return false;
         }
         final Compare o = (Compare) obj;
 
         // Checks the properties one by one
-        if (getPropertyId() != o.getPropertyId() && null != o.getPropertyId()
-                && !o.getPropertyId().equals(getPropertyId())) {
+        if (getPropertyId() != o.getPropertyId()
+                && (null == getPropertyId() || !getPropertyId().equals(
+                        o.getPropertyId()))) {
             return false;
         }
         if (getOperation() != o.getOperation()) {
@@ -63,7 +63,7 @@ public final class IsNull implements Filter {
     @Override
     public boolean equals(Object obj) {
         // Only objects of the same class can be equal
-        if (!getClass().equals(obj.getClass())) {
+        if (obj == null || !getClass().equals(obj.getClass())) {
             return false;
         }
         final IsNull o = (IsNull) obj;
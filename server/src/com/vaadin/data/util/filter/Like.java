@@ -15,14 +15,23 @@
  */
 package com.vaadin.data.util.filter;
 
+import java.io.Serializable;
+import java.util.regex.Pattern;
+
 import com.vaadin.data.Container.Filter;
 import com.vaadin.data.Item;
 
-public class Like implements Filter {
+public class Like implements NarrowingFilter {
     private final Object propertyId;
     private final String value;
     private boolean caseSensitive;
 
+    /**
+     * The compiled pattern for the current case sensitivity, created when
+     * first needed.
+     */
+    private transient LikePattern pattern;
+
     public Like(String propertyId, String value) {
         this(propertyId, value, true);
     }
@@ -43,6 +52,7 @@ public class Like implements Filter {
 
     public void setCaseSensitive(boolean caseSensitive) {
         this.caseSensitive = caseSensitive;
+        pattern = null;
     }
 
     public boolean isCaseSensitive() {
@@ -65,11 +75,168 @@ public class Like implements Filter {
             return false;
         }
 
-        String pattern = getValue().replace("%", ".*");
-        if (isCaseSensitive()) {
-            return colValue.matches(pattern);
+        if (pattern == null) {
+            pattern = new LikePattern(getValue(), isCaseSensitive());
+        }
+        if (!isCaseSensitive()) {
+            CaseFoldedValueCache cache = CaseFoldedValueCache.getCurrent();
+            if (cache != null) {
+                colValue = cache.toUpperCase(itemId, getPropertyId(),
+                        colValue);
+            } else {
+                colValue = colValue.toUpperCase();
+            }
+        }
+        return pattern.matches(colValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A like filter is narrower than another like filter for the same
+     * property with the same case sensitivity if the other filter is of the
+     * form "%text%", "text%" or "%text" and all values matching this filter
+     * are known to contain, start with or end with the text. Only values
+     * without other regular expression special characters are compared.
+     * 
+     * @since 7.2
+     */
+    @Override
+    public boolean isNarrowerThan(Filter filter) {
+        if (!(filter instanceof Like)) {
+            return false;
+        }
+        Like other = (Like) filter;
+        if (getPropertyId() == null
+                || !getPropertyId().equals(other.getPropertyId())
+                || isCaseSensitive() != other.isCaseSensitive()
+                || getValue() == null || other.getValue() == null) {
+            return false;
+        }
+        String thisValue = getValue();
+        String otherValue = other.getValue();
+        if (!isCaseSensitive()) {
+            thisValue = thisValue.toUpperCase();
+            otherValue = otherValue.toUpperCase();
+        }
+        if (!LikePattern.isLiteral(thisValue)
+                || !LikePattern.isLiteral(otherValue)
+                || LikePattern.containsLineTerminator(thisValue)) {
+            return false;
+        }
+
+        // Matching values consist of these literals with any characters
+        // except line terminators in between
+        String[] literals = thisValue.split("%", -1);
+        String[] otherLiterals = otherValue.split("%", -1);
+        if (otherLiterals.length == 2 && otherLiterals[1].isEmpty()) {
+            // "text%"
+            return literals[0].startsWith(otherLiterals[0]);
+        } else if (otherLiterals.length == 2 && otherLiterals[0].isEmpty()) {
+            // "%text"
+            return literals[literals.length - 1].endsWith(otherLiterals[1]);
+        } else if (otherLiterals.length == 3 && otherLiterals[0].isEmpty()
+                && otherLiterals[2].isEmpty()) {
+            // "%text%"
+            for (String literal : literals) {
+                if (literal.contains(otherLiterals[1])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A compiled like pattern. The value of the filter is used as a regular
+     * expression where each % matches any characters. Values without other
+     * special characters are matched without using regular expressions.
+     */
+    private static class LikePattern implements Serializable {
+
+        private static final String REGEX_SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+        /**
+         * The literal parts of the pattern between the % characters, or null
+         * if the pattern must be matched as a regular expression.
+         */
+        private final String[] literals;
+        private final Pattern regex;
+
+        private LikePattern(String value, boolean caseSensitive) {
+            String pattern = value.replace("%", ".*");
+            if (!caseSensitive) {
+                value = value.toUpperCase();
+                pattern = pattern.toUpperCase();
+            }
+            if (isLiteral(value)) {
+                literals = value.split("%", -1);
+                regex = null;
+            } else {
+                literals = null;
+                regex = Pattern.compile(pattern);
+            }
+        }
+
+        private static boolean isLiteral(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (REGEX_SPECIAL_CHARACTERS.indexOf(value.charAt(i)) != -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(String value) {
+            if (literals == null) {
+                return regex.matcher(value).matches();
+            } else if (literals.length == 1) {
+                return value.equals(literals[0]);
+            } else if (containsLineTerminator(value)) {
+                // .* does not match line terminators
+                return Pattern.matches(toRegex(), value);
+            }
+
+            String first = literals[0];
+            String last = literals[literals.length - 1];
+            if (value.length() < first.length() + last.length()
+                    || !value.startsWith(first) || !value.endsWith(last)) {
+                return false;
+            }
+            int position = first.length();
+            int end = value.length() - last.length();
+            for (int i = 1; i < literals.length - 1; i++) {
+                String literal = literals[i];
+                int index = value.indexOf(literal, position);
+                if (index == -1 || index + literal.length() > end) {
+                    return false;
+                }
+                position = index + literal.length();
+            }
+            return true;
+        }
+
+        private String toRegex() {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < literals.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                regex.append(literals[i]);
+            }
+            return regex.toString();
+        }
+
+        private static boolean containsLineTerminator(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028'
+                        || c == '\u2029') {
+                    return true;
+                }
+            }
+            return false;
         }
-        return colValue.toUpperCase().matches(pattern.toUpperCase());
     }
 
     @Override
@@ -79,13 +246,15 @@ public class Like implements Filter {
 
     @Override
     public int hashCode() {
-        return getPropertyId().hashCode() + getValue().hashCode();
+        return (null != getPropertyId() ? getPropertyId().hashCode() : 0)
+                + (null != getValue() ? getValue().hashCode() : 0)
+                + (isCaseSensitive() ? 1 : 0);
     }
 
     @Override
     public boolean equals(Object obj) {
         // Only objects of the same class can be equal
-        if (!getClass().equals(obj.getClass())) {
+        if (obj == null || !getClass().equals(obj.getClass())) {
             return false;
         }
         final Like o = (Like) obj;
@@ -95,6 +264,7 @@ public class Like implements Filter {
                 .equals(o.getPropertyId()) : null == o.getPropertyId();
         boolean valueEqual = (null != getValue()) ? getValue().equals(
                 o.getValue()) : null == o.getValue();
-        return propertyIdEqual && valueEqual;
+        return propertyIdEqual && valueEqual
+                && isCaseSensitive() == o.isCaseSensitive();
     }
 }
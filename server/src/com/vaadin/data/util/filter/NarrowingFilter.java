@@ -0,0 +1,47 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.filter;
+
+import com.vaadin.data.Container.Filter;
+
+/**
+ * A filter that can tell whether it is narrower than another filter, i.e.
+ * whether every item that passes this filter also passes the other filter.
+ * <p>
+ * In-memory containers use this information when a filter is replaced with a
+ * narrower one, e.g. when a filter string is extended from "ab" to "abc" as the
+ * user types. Only the items that passed the previous filter then need to be
+ * tested against the new filter.
+ * 
+ * @see com.vaadin.data.util.IndexedContainer#replaceContainerFilter(Filter,
+ *      Filter)
+ * 
+ * @since 7.2
+ */
+public interface NarrowingFilter extends Filter {
+
+    /**
+     * Checks whether this filter is narrower than the given filter. An
+     * implementation should return <code>false</code> whenever it cannot be
+     * sure that every item passing this filter also passes the given filter.
+     * 
+     * @param filter
+     *            the filter to compare to, not <code>null</code>
+     * @return <code>true</code> if all items passing this filter are known to
+     *         also pass the given filter, otherwise <code>false</code>
+     */
+    public boolean isNarrowerThan(Filter filter);
+}
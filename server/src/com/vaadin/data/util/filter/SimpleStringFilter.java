@@ -35,7 +35,7 @@ import com.vaadin.data.Property;
  * 
  * @since 6.6
  */
-public final class SimpleStringFilter implements Filter {
+public final class SimpleStringFilter implements NarrowingFilter {
 
     final Object propertyId;
     final String filterString;
@@ -61,8 +61,17 @@ public final class SimpleStringFilter implements Filter {
         if (propertyValue == null) {
             return false;
         }
-        final String value = ignoreCase ? propertyValue.toString()
-                .toLowerCase() : propertyValue.toString();
+        final String value;
+        if (!ignoreCase) {
+            value = propertyValue.toString();
+        } else if (propertyValue instanceof String) {
+            CaseFoldedValueCache cache = CaseFoldedValueCache.getCurrent();
+            value = cache != null ? cache.toLowerCase(itemId, propertyId,
+                    (String) propertyValue) : ((String) propertyValue)
+                    .toLowerCase();
+        } else {
+            value = propertyValue.toString().toLowerCase();
+        }
         if (onlyMatchPrefix) {
             if (!value.startsWith(filterString)) {
                 return false;
@@ -80,6 +89,32 @@ public final class SimpleStringFilter implements Filter {
         return this.propertyId.equals(propertyId);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A simple string filter is narrower than another simple string filter
+     * for the same property with the same case sensitivity if its filter
+     * string contains the filter string of the other filter, or starts with it
+     * if both filters only match prefixes.
+     * 
+     * @since 7.2
+     */
+    @Override
+    public boolean isNarrowerThan(Filter filter) {
+        if (!(filter instanceof SimpleStringFilter)) {
+            return false;
+        }
+        SimpleStringFilter o = (SimpleStringFilter) filter;
+        if (!propertyId.equals(o.propertyId) || ignoreCase != o.ignoreCase) {
+            return false;
+        }
+        if (o.onlyMatchPrefix) {
+            return onlyMatchPrefix && filterString.startsWith(o.filterString);
+        } else {
+            return filterString.contains(o.filterString);
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
 
@@ -90,12 +125,13 @@ public final class SimpleStringFilter implements Filter {
         final SimpleStringFilter o = (SimpleStringFilter) obj;
 
         // Checks the properties one by one
-        if (propertyId != o.propertyId && o.propertyId != null
-                && !o.propertyId.equals(propertyId)) {
+        if (propertyId != o.propertyId
+                && (propertyId == null || !propertyId.equals(o.propertyId))) {
             return false;
         }
-        if (filterString != o.filterString && o.filterString != null
-                && !o.filterString.equals(filterString)) {
+        if (filterString != o.filterString
+                && (filterString == null || !filterString
+                        .equals(o.filterString))) {
             return false;
         }
         if (ignoreCase != o.ignoreCase) {
@@ -16,10 +16,13 @@
 package com.vaadin.data.util.sqlcontainer;
 
 import java.io.Serializable;
+import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.vaadin.data.util.sqlcontainer.query.FreeformQuery;
 import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
@@ -31,11 +34,13 @@ import com.vaadin.data.util.sqlcontainer.query.TableQuery;
  */
 class CacheFlushNotifier implements Serializable {
     /*
-     * SQLContainer instance reference list and dead reference queue. Used for
-     * the cache flush notification feature.
+     * SQLContainer instance references by the table name or query string of
+     * their query delegates, and the dead reference queue. Used for the cache
+     * flush notification feature. Containers with other kinds of query
+     * delegates are never notified and are not stored.
      */
-    private static List<WeakReference<SQLContainer>> allInstances = new ArrayList<WeakReference<SQLContainer>>();
-    private static ReferenceQueue<SQLContainer> deadInstances = new ReferenceQueue<SQLContainer>();
+    private static final Map<String, List<InstanceReference>> instancesByKey = new HashMap<String, List<InstanceReference>>();
+    private static final ReferenceQueue<SQLContainer> deadInstances = new ReferenceQueue<SQLContainer>();
 
     /**
      * Adds the given SQLContainer to the cache flush notification receiver list
@@ -44,9 +49,17 @@ class CacheFlushNotifier implements Serializable {
      *            Container to add
      */
     public static void addInstance(SQLContainer c) {
-        removeDeadReferences();
-        if (c != null) {
-            allInstances.add(new WeakReference<SQLContainer>(c, deadInstances));
+        String key = c != null ? getKey(c.getQueryDelegate()) : null;
+        synchronized (instancesByKey) {
+            removeDeadReferences();
+            if (key != null) {
+                List<InstanceReference> instances = instancesByKey.get(key);
+                if (instances == null) {
+                    instances = new ArrayList<InstanceReference>();
+                    instancesByKey.put(key, instances);
+                }
+                instances.add(new InstanceReference(c, key, deadInstances));
+            }
         }
     }
 
@@ -54,51 +67,80 @@ class CacheFlushNotifier implements Serializable {
      * Removes dead references from instance list
      */
     private static void removeDeadReferences() {
-        java.lang.ref.Reference<? extends SQLContainer> dead = deadInstances
-                .poll();
+        Reference<? extends SQLContainer> dead = deadInstances.poll();
         while (dead != null) {
-            allInstances.remove(dead);
+            String key = ((InstanceReference) dead).key;
+            List<InstanceReference> instances = instancesByKey.get(key);
+            if (instances != null) {
+                instances.remove(dead);
+                if (instances.isEmpty()) {
+                    instancesByKey.remove(key);
+                }
+            }
             dead = deadInstances.poll();
         }
     }
 
     /**
-     * Iterates through the instances and notifies containers which are
-     * connected to the same table or are using the same query string.
+     * Returns the key by which containers with the given query delegate are
+     * notified: the table name for a TableQuery or the query string for a
+     * FreeformQuery, or null for other query delegates.
+     */
+    private static String getKey(QueryDelegate qd) {
+        if (qd instanceof TableQuery) {
+            return "table:" + ((TableQuery) qd).getTableName();
+        } else if (qd instanceof FreeformQuery) {
+            return "query:" + ((FreeformQuery) qd).getQueryString();
+        }
+        return null;
+    }
+
+    /**
+     * Notifies the containers which are connected to the same table or are
+     * using the same query string.
      * 
      * @param c
      *            SQLContainer that issued the cache flush notification
      */
     public static void notifyOfCacheFlush(SQLContainer c) {
-        removeDeadReferences();
-        for (WeakReference<SQLContainer> wr : allInstances) {
-            if (wr.get() != null) {
-                SQLContainer wrc = wr.get();
-                if (wrc == null) {
-                    continue;
-                }
-                /*
-                 * If the reference points to the container sending the
-                 * notification, do nothing.
-                 */
-                if (wrc.equals(c)) {
-                    continue;
-                }
-                /* Compare QueryDelegate types and tableName/queryString */
-                QueryDelegate wrQd = wrc.getQueryDelegate();
-                QueryDelegate qd = c.getQueryDelegate();
-                if (wrQd instanceof TableQuery
-                        && qd instanceof TableQuery
-                        && ((TableQuery) wrQd).getTableName().equals(
-                                ((TableQuery) qd).getTableName())) {
-                    wrc.refresh();
-                } else if (wrQd instanceof FreeformQuery
-                        && qd instanceof FreeformQuery
-                        && ((FreeformQuery) wrQd).getQueryString().equals(
-                                ((FreeformQuery) qd).getQueryString())) {
-                    wrc.refresh();
+        String key = getKey(c.getQueryDelegate());
+        if (key == null) {
+            return;
+        }
+        List<SQLContainer> toRefresh = new ArrayList<SQLContainer>();
+        synchronized (instancesByKey) {
+            removeDeadReferences();
+            List<InstanceReference> instances = instancesByKey.get(key);
+            if (instances != null) {
+                for (InstanceReference wr : instances) {
+                    SQLContainer wrc = wr.get();
+                    /*
+                     * If the reference points to the container sending the
+                     * notification, do nothing.
+                     */
+                    if (wrc != null && !wrc.equals(c)) {
+                        toRefresh.add(wrc);
+                    }
                 }
             }
         }
+        /* Refresh outside the lock as refreshing may fetch rows */
+        for (SQLContainer wrc : toRefresh) {
+            wrc.refresh();
+        }
+    }
+
+    /**
+     * Weak reference to a container that remembers the key the container was
+     * stored with.
+     */
+    private static class InstanceReference extends WeakReference<SQLContainer> {
+        private final String key;
+
+        public InstanceReference(SQLContainer container, String key,
+                ReferenceQueue<SQLContainer> queue) {
+            super(container, queue);
+            this.key = key;
+        }
     }
 }
@@ -16,6 +16,7 @@
 package com.vaadin.data.util.sqlcontainer;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -29,6 +30,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +49,7 @@ import com.vaadin.data.util.sqlcontainer.query.QueryDelegate.RowIdChangeListener
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
 import com.vaadin.data.util.sqlcontainer.query.generator.MSSQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.OracleGenerator;
+import com.vaadin.server.VaadinSession;
 
 public class SQLContainer implements Container, Container.Filterable,
         Container.Indexed, Container.Sortable, Container.ItemSetChangeNotifier {
@@ -87,10 +92,32 @@ public class SQLContainer implements Container, Container.Filterable,
      * Size updating logic. Do not update size from data source if it has been
      * updated in the last sizeValidMilliSeconds milliseconds.
      */
-    private final int sizeValidMilliSeconds = 10000;
+    private int sizeValidMilliSeconds = 10000;
     private boolean sizeDirty = true;
     private Date sizeUpdated = new Date();
 
+    /**
+     * Row counts by the filters they were counted with. Entries are valid for
+     * sizeValidMilliSeconds, and only if the filters have not changed and no
+     * refresh has happened since. Older entries are used as provisional sizes
+     * when counting in the background.
+     */
+    private final CacheMap<List<Filter>, CachedCount> countCache = new CacheMap<List<Filter>, CachedCount>();
+    private static final int COUNT_CACHE_SIZE = 32;
+    /** Incremented on refresh and filter changes to expire the cached counts */
+    private int countGeneration;
+
+    /** Executor for counting rows in the background, null to count in place */
+    private transient Executor countExecutor;
+    /** Filters of the background count in progress, null if none */
+    private transient List<Filter> pendingCountFilters;
+    private transient int pendingCountGeneration;
+    /**
+     * Background counts that finished outside of a session, applied by the
+     * thread using the container when it next needs the size.
+     */
+    private transient ConcurrentLinkedQueue<Runnable> completedCounts;
+
     /** Starting row number of the currently fetched page */
     private int currentOffset;
 
@@ -130,6 +157,7 @@ public class SQLContainer implements Container, Container.Filterable,
         this.delegate = delegate;
         getPropertyIds();
         cachedItems.setCacheLimit(CACHE_RATIO * getPageLength());
+        countCache.setCacheLimit(COUNT_CACHE_SIZE);
     }
 
     /**************************************/
@@ -542,7 +570,7 @@ public class SQLContainer implements Container, Container.Filterable,
         // filter.setCaseSensitive(!ignoreCase);
 
         filters.add(filter);
-        refresh();
+        filtersChanged();
     }
 
     /**
@@ -552,7 +580,7 @@ public class SQLContainer implements Container, Container.Filterable,
     @Override
     public void removeContainerFilter(Filter filter) {
         filters.remove(filter);
-        refresh();
+        filtersChanged();
     }
 
     /**
@@ -570,7 +598,7 @@ public class SQLContainer implements Container, Container.Filterable,
         Like like = new Like(propertyId.toString(), likeStr);
         like.setCaseSensitive(!ignoreCase);
         filters.add(like);
-        refresh();
+        filtersChanged();
     }
 
     /**
@@ -584,7 +612,7 @@ public class SQLContainer implements Container, Container.Filterable,
             }
         }
         filters.removeAll(toRemove);
-        refresh();
+        filtersChanged();
     }
 
     /**
@@ -593,7 +621,7 @@ public class SQLContainer implements Container, Container.Filterable,
     @Override
     public void removeAllContainerFilters() {
         filters.clear();
-        refresh();
+        filtersChanged();
     }
 
     /**
@@ -835,7 +863,7 @@ public class SQLContainer implements Container, Container.Filterable,
     public void sort(Object[] propertyId, boolean[] ascending) {
         sorters.clear();
         if (propertyId == null || propertyId.length == 0) {
-            refresh();
+            refresh(true);
             return;
         }
         /* Generate OrderBy -objects */
@@ -852,7 +880,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 sorters.add(new OrderBy((String) propertyId[i], asc));
             }
         }
-        refresh();
+        refresh(true);
     }
 
     /*
@@ -875,6 +903,17 @@ public class SQLContainer implements Container, Container.Filterable,
      * Does NOT remove sorting or filtering rules!
      */
     public void refresh() {
+        countGeneration++;
+        refresh(true);
+    }
+
+    /**
+     * Refreshes the container after the filters have changed. Expires the
+     * cached row counts, which are then only used as provisional sizes when
+     * counting in the background.
+     */
+    private void filtersChanged() {
+        countGeneration++;
         refresh(true);
     }
 
@@ -884,6 +923,9 @@ public class SQLContainer implements Container, Container.Filterable,
      * used in {@link #updateCount()} to refresh the contents when we know the
      * size was just updated.
      * 
+     * Unlike {@link #refresh()}, does not expire the cached row counts. This is
+     * used when only the sorting has changed.
+     * 
      * @param setSizeDirty
      */
     private void refresh(boolean setSizeDirty) {
@@ -980,7 +1022,7 @@ public class SQLContainer implements Container, Container.Filterable,
                     "The column given for sorting does not exist in this container.");
         }
         sorters.add(orderBy);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -1121,37 +1163,258 @@ public class SQLContainer implements Container, Container.Filterable,
      * Fetches new count of rows from the data source, if needed.
      */
     private void updateCount() {
-        if (!sizeDirty
-                && new Date().getTime() < sizeUpdated.getTime()
-                        + sizeValidMilliSeconds) {
+        if (completedCounts != null) {
+            Runnable completion;
+            while ((completion = completedCounts.poll()) != null) {
+                completion.run();
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (!sizeDirty && now < sizeUpdated.getTime() + sizeValidMilliSeconds) {
+            return;
+        }
+        try {
+            delegate.setFilters(filters);
+        } catch (UnsupportedOperationException e) {
+            getLogger().log(Level.FINE,
+                    "The query delegate doesn't support filtering", e);
+        }
+        try {
+            delegate.setOrderBy(sorters);
+        } catch (UnsupportedOperationException e) {
+            getLogger().log(Level.FINE,
+                    "The query delegate doesn't support sorting", e);
+        }
+
+        List<Filter> countFilters = new ArrayList<Filter>(filters);
+        CachedCount cached = countCache.get(countFilters);
+        if (cached != null
+                && cached.isValid(countGeneration, now,
+                        sizeValidMilliSeconds)) {
+            setCount(cached.count);
+            return;
+        }
+        if (countExecutor != null && delegate instanceof TableQuery
+                && updateCountInBackground(countFilters, cached)) {
             return;
         }
         try {
+            int newSize = delegate.getCount();
+            cacheCount(countFilters, newSize, countGeneration);
+            setCount(newSize);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update item set size.", e);
+        }
+    }
+
+    /**
+     * Sets the size of the container to the given up to date row count and
+     * refreshes the contents if the size changed.
+     */
+    private void setCount(int newSize) {
+        sizeUpdated = new Date();
+        sizeDirty = false;
+        if (newSize != size) {
+            size = newSize;
+            // Size is up to date so don't set it back to dirty in refresh()
+            refresh(false);
+        }
+        getLogger().log(Level.FINER, "Updated row count. New count is: {0}",
+                size);
+    }
+
+    private void cacheCount(List<Filter> countFilters, int count,
+            int generation) {
+        // Remove first to keep the most recent counts in the cache
+        countCache.remove(countFilters);
+        countCache.put(countFilters, new CachedCount(count, generation,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Starts counting the rows matching the given filters using the count
+     * executor, and sets a provisional size until the count is ready. The
+     * provisional size is the expired count for the same filters if any, the
+     * row count estimated by the database if there are no filters, or else
+     * the current size.
+     * 
+     * @return true if the count was started or is already in progress, false
+     *         if the executor rejected it
+     */
+    private boolean updateCountInBackground(final List<Filter> countFilters,
+            CachedCount expired) {
+        final TableQuery query = (TableQuery) delegate;
+        if (!countFilters.equals(pendingCountFilters)
+                || pendingCountGeneration != countGeneration) {
+            final VaadinSession session = VaadinSession.getCurrent();
+            final int generation = countGeneration;
+            pendingCountFilters = countFilters;
+            pendingCountGeneration = generation;
+            if (session == null && completedCounts == null) {
+                completedCounts = new ConcurrentLinkedQueue<Runnable>();
+            }
+            final ConcurrentLinkedQueue<Runnable> completions = completedCounts;
             try {
-                delegate.setFilters(filters);
-            } catch (UnsupportedOperationException e) {
-                getLogger().log(Level.FINE,
-                        "The query delegate doesn't support filtering", e);
+                countExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int count = -1;
+                        try {
+                            count = query.getCount(countFilters);
+                        } catch (SQLException e) {
+                            getLogger().log(Level.WARNING,
+                                    "Failed to count rows in the background",
+                                    e);
+                        }
+                        final int result = count;
+                        Runnable completion = new Runnable() {
+                            @Override
+                            public void run() {
+                                backgroundCountCompleted(countFilters, result,
+                                        generation);
+                            }
+                        };
+                        /*
+                         * Never touch the container from the counting thread
+                         * without holding the lock of the session or, if
+                         * there is none, leave it to the thread using it.
+                         */
+                        if (session != null) {
+                            session.access(completion);
+                        } else {
+                            completions.add(completion);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingCountFilters = null;
+                return false;
+            }
+            if (session == null) {
+                // Apply the count right away if the executor already ran it
+                Runnable completion;
+                while ((completion = completedCounts.poll()) != null) {
+                    completion.run();
+                }
             }
+            if (pendingCountFilters == null) {
+                // The executor ran the count right away
+                return true;
+            }
+        }
+
+        int provisional = size;
+        if (expired != null) {
+            provisional = expired.count;
+        } else if (countFilters.isEmpty()) {
             try {
-                delegate.setOrderBy(sorters);
-            } catch (UnsupportedOperationException e) {
+                int estimate = query.getEstimatedCount();
+                if (estimate >= 0) {
+                    provisional = estimate;
+                }
+            } catch (SQLException e) {
                 getLogger().log(Level.FINE,
-                        "The query delegate doesn't support sorting", e);
-            }
-            int newSize = delegate.getCount();
-            sizeUpdated = new Date();
-            sizeDirty = false;
-            if (newSize != size) {
-                size = newSize;
-                // Size is up to date so don't set it back to dirty in refresh()
-                refresh(false);
+                        "Failed to get the estimated row count", e);
             }
-            getLogger().log(Level.FINER,
-                    "Updated row count. New count is: {0}", size);
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update item set size.", e);
         }
+        // Use the provisional size until the count is ready
+        setCount(provisional);
+        return true;
+    }
+
+    /**
+     * Called when a background count has finished. Caches the count and
+     * updates the size if the filters have not changed since starting it.
+     * 
+     * @param countFilters
+     *            the filters the rows were counted with
+     * @param count
+     *            the number of rows, or -1 if counting failed
+     * @param generation
+     *            the count generation when the count was started
+     */
+    private void backgroundCountCompleted(List<Filter> countFilters,
+            int count, int generation) {
+        if (countFilters.equals(pendingCountFilters)
+                && generation == pendingCountGeneration) {
+            pendingCountFilters = null;
+        }
+        if (count < 0) {
+            return;
+        }
+        cacheCount(countFilters, count, generation);
+        if (generation == countGeneration && countFilters.equals(filters)) {
+            setCount(count);
+        }
+    }
+
+    /**
+     * Sets the executor used for counting the rows of the container in the
+     * background. By default, the rows are counted when the size of the
+     * container is needed, which makes e.g. a Table wait for a potentially
+     * slow <code>COUNT(*)</code> query.
+     * <p>
+     * With an executor, the size of the container is updated right away to a
+     * provisional value: the last known count for the current filters, the
+     * row count estimated by the database, or the previous size. When the
+     * count has finished, the size is updated and an item set change event is
+     * fired. If the count was started during a request, the event is fired
+     * using {@link VaadinSession#access(Runnable)}, so the executor must not
+     * run the task while holding the session lock. Otherwise the count is
+     * applied and the event fired by the thread using the container, the next
+     * time it needs the size of the container. Push or polling is needed to
+     * show the updated size in the browser right away.
+     * <p>
+     * Row counts are cached by the filters for
+     * {@link #setSizeValidMilliSeconds(int)}. A cached count expires when the
+     * filters change or the container is refreshed, but the last count for
+     * the current filters is still used as the provisional size, so switching
+     * back to earlier filters shows their size right away. Counting in the
+     * background is only supported with a {@link TableQuery} delegate.
+     * 
+     * @param countExecutor
+     *            the executor to count rows with, or null to count the rows
+     *            when needed
+     * @since 7.2
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        this.countExecutor = countExecutor;
+    }
+
+    /**
+     * Returns the executor used for counting the rows of the container in the
+     * background.
+     * 
+     * @see #setCountExecutor(Executor)
+     * @return the executor, or null if the rows are counted when needed
+     * @since 7.2
+     */
+    public Executor getCountExecutor() {
+        return countExecutor;
+    }
+
+    /**
+     * Sets the time a row count is used before counting the rows again. The
+     * default is 10 seconds. Calling {@link #refresh()} makes the container
+     * count the rows again regardless of this time.
+     * 
+     * @param sizeValidMilliSeconds
+     *            the time in milliseconds
+     * @since 7.2
+     */
+    public void setSizeValidMilliSeconds(int sizeValidMilliSeconds) {
+        this.sizeValidMilliSeconds = sizeValidMilliSeconds;
+    }
+
+    /**
+     * Returns the time a row count is used before counting the rows again.
+     * 
+     * @see #setSizeValidMilliSeconds(int)
+     * @return the time in milliseconds
+     * @since 7.2
+     */
+    public int getSizeValidMilliSeconds() {
+        return sizeValidMilliSeconds;
     }
 
     /**
@@ -1260,6 +1523,31 @@ public class SQLContainer implements Container, Container.Filterable,
         ResultSetMetaData rsmd = null;
         cachedItems.clear();
         itemIndexes.clear();
+        int fetchedRows = pageLength * CACHE_RATIO;
+
+        /* Use the rows in the shared cache if they are available */
+        SharedRowCache rowCache = null;
+        SharedRowCache.PageKey pageKey = null;
+        long cacheVersion = 0;
+        if (delegate instanceof TableQuery) {
+            TableQuery query = (TableQuery) delegate;
+            rowCache = query.getSharedRowCache();
+            if (rowCache != null) {
+                String table = SharedRowCache.getTableKey(query);
+                pageKey = new SharedRowCache.PageKey(table, filters, sorters,
+                        currentOffset, fetchedRows);
+                cacheVersion = rowCache.getVersion(table);
+                SharedRowCache.CachedPage page = rowCache.get(pageKey);
+                if (page != null) {
+                    addCachedPage(page);
+                    getLogger().log(Level.FINER,
+                            "Used {0} cached rows starting from {1}",
+                            new Object[] { page.getRowCount(), currentOffset });
+                    return;
+                }
+            }
+        }
+
         try {
             try {
                 delegate.setOrderBy(sorters);
@@ -1270,20 +1558,40 @@ public class SQLContainer implements Container, Container.Filterable,
                         "The query delegate doesn't support sorting", e);
             }
             delegate.beginTransaction();
-            int fetchedRows = pageLength * CACHE_RATIO;
             rs = delegate.getResults(currentOffset, fetchedRows);
             rsmd = rs.getMetaData();
             List<String> pKeys = delegate.getPrimaryKeyColumns();
             // }
             /* Create new items and column properties */
-            ColumnProperty cp = null;
             int rowCount = currentOffset;
             if (!delegate.implementationRespectsPagingLimits()) {
                 rowCount = currentOffset = 0;
                 setPageLengthInternal(size);
             }
+            /* Let a keyset paginated query remember the page boundaries */
+            TableQuery keysetQuery = null;
+            if (delegate instanceof TableQuery
+                    && ((TableQuery) delegate).isKeysetPagingEnabled()) {
+                keysetQuery = (TableQuery) delegate;
+            }
+            /* Labels of the used columns, null for the other columns */
+            String[] columnLabels = new String[rsmd.getColumnCount()];
+            for (int i = 0; i < columnLabels.length; i++) {
+                String label = rsmd.getColumnLabel(i + 1);
+                if (isColumnIdentifierValid(label)) {
+                    columnLabels[i] = label;
+                }
+            }
+            SharedRowCache.CachedPage page = null;
+            if (rowCache != null) {
+                page = new SharedRowCache.CachedPage(columnLabels);
+            }
+            int resultIndex = currentOffset;
             while (rs.next()) {
-                List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>();
+                if (keysetQuery != null) {
+                    keysetQuery.rowFetched(resultIndex, rs);
+                }
+                resultIndex++;
                 /* Generate row itemId based on primary key(s) */
                 Object[] itemId = new Object[pKeys.size()];
                 for (int i = 0; i < pKeys.size(); i++) {
@@ -1295,63 +1603,30 @@ public class SQLContainer implements Container, Container.Filterable,
                 } else {
                     id = new RowId(itemId);
                 }
-                List<String> propertiesToAdd = new ArrayList<String>(
-                        propertyIds);
-                if (!removedItems.containsKey(id)) {
-                    for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                        if (!isColumnIdentifierValid(rsmd.getColumnLabel(i))) {
-                            continue;
-                        }
-                        String colName = rsmd.getColumnLabel(i);
-                        Object value = rs.getObject(i);
-                        Class<?> type = value != null ? value.getClass()
-                                : Object.class;
-                        if (value == null) {
-                            for (String propName : propertyTypes.keySet()) {
-                                if (propName.equals(rsmd.getColumnLabel(i))) {
-                                    type = propertyTypes.get(propName);
-                                    break;
-                                }
-                            }
-                        }
-                        /*
-                         * In case there are more than one column with the same
-                         * name, add only the first one. This can easily happen
-                         * if you join many tables where each table has an ID
-                         * column.
-                         */
-                        if (propertiesToAdd.contains(colName)) {
-
-                            cp = new ColumnProperty(colName,
-                                    propertyReadOnly.get(colName),
-                                    propertyPersistable.get(colName),
-                                    propertyNullable.get(colName),
-                                    propertyPrimaryKey.get(colName), value,
-                                    type);
-                            itemProperties.add(cp);
-                            propertiesToAdd.remove(colName);
-                        }
-                    }
-                    /* Cache item */
-                    itemIndexes.put(rowCount, id);
-
-                    // if an item with the id is contained in the modified
-                    // cache, then use this record and add it to the cached
-                    // items. Otherwise create a new item
-                    int modifiedIndex = indexInModifiedCache(id);
-                    if (modifiedIndex != -1) {
-                        cachedItems.put(id, modifiedItems.get(modifiedIndex));
-                    } else {
-                        cachedItems.put(id, new RowItem(this, id,
-                                itemProperties));
+                boolean removed = removedItems.containsKey(id);
+                if (removed && page == null) {
+                    continue;
+                }
+                Object[] values = new Object[columnLabels.length];
+                for (int i = 0; i < columnLabels.length; i++) {
+                    if (columnLabels[i] != null) {
+                        values[i] = rs.getObject(i + 1);
                     }
-
+                }
+                if (page != null) {
+                    page.addRow(id, values);
+                }
+                if (!removed) {
+                    addFetchedItem(rowCount, id, columnLabels, values);
                     rowCount++;
                 }
             }
             rs.getStatement().close();
             rs.close();
             delegate.commit();
+            if (page != null) {
+                rowCache.put(pageKey, page, cacheVersion);
+            }
             getLogger().log(Level.FINER, "Fetched {0} rows starting from {1}",
                     new Object[] { fetchedRows, currentOffset });
         } catch (SQLException e) {
@@ -1376,6 +1651,82 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * Adds the items of a page from the shared row cache, skipping the items
+     * removed from this container.
+     */
+    private void addCachedPage(SharedRowCache.CachedPage page) {
+        int rowCount = currentOffset;
+        String[] columnLabels = page.getColumnLabels();
+        for (int row = 0; row < page.getRowCount(); row++) {
+            RowId id = page.getRowId(row);
+            if (!removedItems.containsKey(id)) {
+                addFetchedItem(rowCount, id, columnLabels,
+                        page.getValues(row));
+                rowCount++;
+            }
+        }
+    }
+
+    /**
+     * Creates and caches the item for a row fetched from the data source.
+     * 
+     * @param index
+     *            the index of the item in the container
+     * @param id
+     *            the id of the item
+     * @param columnLabels
+     *            the labels of the fetched columns, null for columns that are
+     *            not used
+     * @param values
+     *            the values of the fetched columns
+     */
+    private void addFetchedItem(int index, RowId id, String[] columnLabels,
+            Object[] values) {
+        List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>();
+        List<String> propertiesToAdd = new ArrayList<String>(propertyIds);
+        for (int i = 0; i < columnLabels.length; i++) {
+            String colName = columnLabels[i];
+            if (colName == null) {
+                continue;
+            }
+            Object value = values[i];
+            Class<?> type = value != null ? value.getClass() : Object.class;
+            if (value == null) {
+                for (String propName : propertyTypes.keySet()) {
+                    if (propName.equals(colName)) {
+                        type = propertyTypes.get(propName);
+                        break;
+                    }
+                }
+            }
+            /*
+             * In case there are more than one column with the same name, add
+             * only the first one. This can easily happen if you join many
+             * tables where each table has an ID column.
+             */
+            if (propertiesToAdd.contains(colName)) {
+                itemProperties.add(new ColumnProperty(colName,
+                        propertyReadOnly.get(colName), propertyPersistable
+                                .get(colName), propertyNullable.get(colName),
+                        propertyPrimaryKey.get(colName), value, type));
+                propertiesToAdd.remove(colName);
+            }
+        }
+        /* Cache item */
+        itemIndexes.put(index, id);
+
+        // if an item with the id is contained in the modified
+        // cache, then use this record and add it to the cached
+        // items. Otherwise create a new item
+        int modifiedIndex = indexInModifiedCache(id);
+        if (modifiedIndex != -1) {
+            cachedItems.put(id, modifiedItems.get(modifiedIndex));
+        } else {
+            cachedItems.put(id, new RowItem(this, id, itemProperties));
+        }
+    }
+
     /**
      * Returns the index of the item with the given itemId for the modified
      * cache.
@@ -1607,6 +1958,27 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * A row count and when it was counted.
+     */
+    private static class CachedCount implements Serializable {
+        private final int count;
+        private final int generation;
+        private final long timestamp;
+
+        public CachedCount(int count, int generation, long timestamp) {
+            this.count = count;
+            this.generation = generation;
+            this.timestamp = timestamp;
+        }
+
+        public boolean isValid(int currentGeneration, long now,
+                int validMilliSeconds) {
+            return generation == currentGeneration
+                    && now < timestamp + validMilliSeconds;
+        }
+    }
+
     /**
      * Simple ItemSetChangeEvent implementation.
      */
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+
+/**
+ * An application wide cache of the rows fetched by {@link SQLContainer}s,
+ * shared between all containers and sessions that use the same instance.
+ * <p>
+ * The rows are cached by page: a page is identified by the table, the filters
+ * and the sorting of the container, and the offset and length of the fetched
+ * rows. When many users browse the same tables, only the first container to
+ * show a page queries the database. The cache keeps the most recently used
+ * pages up to an estimated memory size.
+ * <p>
+ * The cache is used by setting it to the {@link TableQuery} of each container
+ * using {@link TableQuery#setSharedRowCache(SharedRowCache)}. All queries using
+ * the same cache must read the same database. Changes committed through a
+ * {@link TableQuery} using the cache invalidate the cached pages of its table.
+ * Changes made to the database in other ways are not detected, and
+ * {@link #invalidateTable(String)} or {@link #invalidateAll()} should be called
+ * after them.
+ * <p>
+ * The cached pages are shared, read only copies of the fetched values. Each
+ * container still creates its own items from them, so modifications in a
+ * container are not visible to others before they are committed.
+ * 
+ * @since 7.2
+ */
+public class SharedRowCache implements Serializable {
+
+    /** Estimated memory usage of an object header and a reference */
+    private static final int OBJECT_SIZE = 16;
+    private static final int REFERENCE_SIZE = 8;
+
+    private final long maxSize;
+
+    /** The cached pages in least recently used order */
+    private final LinkedHashMap<PageKey, CachedPage> pages = new LinkedHashMap<PageKey, CachedPage>(
+            16, 0.75f, true);
+    /** The keys of the cached pages by table name */
+    private final Map<String, Set<PageKey>> tablePages = new HashMap<String, Set<PageKey>>();
+    /** Invalidation counts by table name, used for discarding stale pages */
+    private final Map<String, Long> tableVersions = new HashMap<String, Long>();
+    /** Incremented when all tables are invalidated */
+    private long globalVersion;
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new cache that keeps at most the given estimated amount of
+     * memory in use.
+     * 
+     * @param maxSize
+     *            the maximum estimated size of the cached pages in bytes
+     */
+    public SharedRowCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum estimated size of the cached pages.
+     * 
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the estimated size of the currently cached pages. The estimate
+     * is based on the number and types of the cached values, and is only
+     * approximate.
+     * 
+     * @return the estimated size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of currently cached pages.
+     * 
+     * @return the number of pages
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Returns the number of times a page was found in the cache.
+     * 
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of times a page was not found in the cache and had to
+     * be fetched from the database.
+     * 
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of pages removed from the cache to keep it within the
+     * maximum size.
+     * 
+     * @return the number of evicted pages
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Removes all cached pages of the table of the given query. Pages of the
+     * table that are being fetched while this method is called are not
+     * cached.
+     * 
+     * @param query
+     *            the query whose table has changed
+     */
+    public void invalidateTable(TableQuery query) {
+        invalidateTable(getTableKey(query));
+    }
+
+    /**
+     * Removes all cached pages of the given table. Pages of the table that
+     * are being fetched while this method is called are not cached.
+     * 
+     * @param tableName
+     *            the table name, prefixed by the catalog and schema names
+     *            separated by dots if the queries use them
+     */
+    public synchronized void invalidateTable(String tableName) {
+        Long version = tableVersions.get(tableName);
+        tableVersions.put(tableName, version == null ? 1 : version + 1);
+        Set<PageKey> keys = tablePages.remove(tableName);
+        if (keys != null) {
+            for (PageKey key : keys) {
+                size -= pages.remove(key).size;
+            }
+        }
+    }
+
+    /**
+     * Removes all cached pages.
+     */
+    public synchronized void invalidateAll() {
+        globalVersion++;
+        pages.clear();
+        tablePages.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the name by which the pages of the table of the given query are
+     * cached.
+     */
+    static String getTableKey(TableQuery query) {
+        StringBuilder sb = new StringBuilder();
+        if (query.getCatalogName() != null) {
+            sb.append(query.getCatalogName()).append(".");
+        }
+        if (query.getSchemaName() != null) {
+            sb.append(query.getSchemaName()).append(".");
+        }
+        return sb.append(query.getTableName()).toString();
+    }
+
+    /**
+     * Returns the current version of the given table. The version changes
+     * whenever the table is invalidated, and must be read before fetching a
+     * page that is then added using {@link #put(PageKey, CachedPage, long)}.
+     */
+    synchronized long getVersion(String tableName) {
+        Long version = tableVersions.get(tableName);
+        return globalVersion + (version == null ? 0 : version);
+    }
+
+    /**
+     * Returns the cached page with the given key, or null if the page is not
+     * cached.
+     */
+    synchronized CachedPage get(PageKey key) {
+        CachedPage page = pages.get(key);
+        if (page == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return page;
+    }
+
+    /**
+     * Adds a page to the cache unless its table has been invalidated since
+     * the given version was read.
+     */
+    synchronized void put(PageKey key, CachedPage page, long version) {
+        if (version != getVersion(key.tableName) || page.size > maxSize) {
+            return;
+        }
+        CachedPage old = pages.put(key, page);
+        if (old != null) {
+            size -= old.size;
+        }
+        size += page.size;
+        Set<PageKey> keys = tablePages.get(key.tableName);
+        if (keys == null) {
+            keys = new HashSet<PageKey>();
+            tablePages.put(key.tableName, keys);
+        }
+        keys.add(key);
+
+        Iterator<Map.Entry<PageKey, CachedPage>> eldest = pages.entrySet()
+                .iterator();
+        while (size > maxSize) {
+            Map.Entry<PageKey, CachedPage> entry = eldest.next();
+            PageKey evicted = entry.getKey();
+            size -= entry.getValue().size;
+            eldest.remove();
+            keys = tablePages.get(evicted.tableName);
+            keys.remove(evicted);
+            if (keys.isEmpty()) {
+                tablePages.remove(evicted.tableName);
+            }
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Returns the estimated memory usage of a value fetched from the
+     * database.
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return OBJECT_SIZE * 3 + 2 * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return OBJECT_SIZE + ((byte[]) value).length;
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return OBJECT_SIZE + 8;
+        } else {
+            return OBJECT_SIZE * 2;
+        }
+    }
+
+    /**
+     * Identifies a page of rows fetched from a table.
+     */
+    static final class PageKey implements Serializable {
+        private final String tableName;
+        private final List<Filter> filters;
+        private final List<OrderBy> orderBys;
+        private final int offset;
+        private final int length;
+        private final int hashCode;
+
+        PageKey(String tableName, List<Filter> filters,
+                List<OrderBy> orderBys, int offset, int length) {
+            this.tableName = tableName;
+            this.filters = copy(filters);
+            this.orderBys = copy(orderBys);
+            this.offset = offset;
+            this.length = length;
+            int hash = tableName.hashCode();
+            hash = 31 * hash + this.filters.hashCode();
+            hash = 31 * hash + this.orderBys.hashCode();
+            hash = 31 * hash + offset;
+            hashCode = 31 * hash + length;
+        }
+
+        private static <T> List<T> copy(List<T> list) {
+            if (list == null || list.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<T>(list));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return hashCode == other.hashCode && offset == other.offset
+                    && length == other.length
+                    && tableName.equals(other.tableName)
+                    && filters.equals(other.filters)
+                    && orderBys.equals(other.orderBys);
+        }
+    }
+
+    /**
+     * The rows of a cached page. The column labels are shared by all rows and
+     * contain null for columns that are not used by the container.
+     */
+    static final class CachedPage implements Serializable {
+        private final String[] columnLabels;
+        private final List<RowId> rowIds = new ArrayList<RowId>();
+        private final List<Object[]> rowValues = new ArrayList<Object[]>();
+        private long size;
+
+        CachedPage(String[] columnLabels) {
+            this.columnLabels = columnLabels;
+            size = OBJECT_SIZE * 4 + REFERENCE_SIZE * columnLabels.length;
+        }
+
+        void addRow(RowId id, Object[] values) {
+            rowIds.add(id);
+            rowValues.add(values);
+            size += OBJECT_SIZE * 3 + REFERENCE_SIZE * (values.length + 2);
+            for (Object value : values) {
+                size += estimateSize(value);
+            }
+            for (Object value : id.getId()) {
+                size += estimateSize(value);
+            }
+        }
+
+        String[] getColumnLabels() {
+            return columnLabels;
+        }
+
+        int getRowCount() {
+            return rowIds.size();
+        }
+
+        RowId getRowId(int row) {
+            return rowIds.get(row);
+        }
+
+        Object[] getValues(int row) {
+            return rowValues.get(row);
+        }
+    }
+}
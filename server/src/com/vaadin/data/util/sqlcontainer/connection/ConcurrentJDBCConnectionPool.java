@@ -0,0 +1,870 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer.connection;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection pool for use by many threads at the same time. Unlike
+ * {@link SimpleJDBCConnectionPool}, reserving and releasing connections does
+ * not lock the whole pool, and a thread waits for a connection to become
+ * available when the maximum number of connections is in use.
+ * <p>
+ * Idle connections are kept in last in, first out order, so that the
+ * connections that are not needed stay idle and are closed after
+ * {@link #setIdleTimeout(long)}. Connections are also closed after
+ * {@link #setMaxLifetime(long)} to let the database free resources. Expired
+ * connections are closed when connections are reserved and released, without
+ * a background thread.
+ * <p>
+ * Connections that have been idle for longer than
+ * {@link #setValidationInterval(long)} are validated using
+ * {@link Connection#isValid(int)} before they are returned. Connections that
+ * have been used recently are returned without a round trip to the database.
+ * <p>
+ * Prepared statements can be cached for each connection using
+ * {@link #setStatementCacheSize(int)}, so that queries run repeatedly are not
+ * parsed again by the database.
+ * <p>
+ * The pool should be configured before reserving the first connection. The
+ * connections are not serialized with the pool; a deserialized pool opens new
+ * connections when needed.
+ * 
+ * @since 7.2
+ */
+@SuppressWarnings("serial")
+public class ConcurrentJDBCConnectionPool implements JDBCConnectionPool {
+
+    private final String driverName;
+    private final String connectionUri;
+    private final String userName;
+    private final String password;
+
+    private int initialConnections = 5;
+    private int maxConnections = 20;
+
+    private long maxWait = 30000;
+    private long idleTimeout = 10 * 60 * 1000;
+    private long maxLifetime = 30 * 60 * 1000;
+    private long validationInterval = 5000;
+    private int validationTimeout = 5;
+    private boolean rollbackOnRelease = true;
+    private int statementCacheSize = 0;
+
+    /** The connections and statistics, created when first needed */
+    private transient volatile PoolState state;
+
+    /**
+     * Creates a new connection pool using the given JDBC driver and database.
+     * The pool opens 5 connections when the first connection is reserved and
+     * at most 20 connections.
+     * 
+     * @param driverName
+     *            the class name of the JDBC driver
+     * @param connectionUri
+     *            the database connection URI
+     * @param userName
+     *            the database user name
+     * @param password
+     *            the database password
+     */
+    public ConcurrentJDBCConnectionPool(String driverName,
+            String connectionUri, String userName, String password) {
+        if (driverName == null) {
+            throw new IllegalArgumentException(
+                    "JDBC driver class name must be given.");
+        }
+        if (connectionUri == null) {
+            throw new IllegalArgumentException(
+                    "Database connection URI must be given.");
+        }
+        if (userName == null) {
+            throw new IllegalArgumentException(
+                    "Database username must be given.");
+        }
+        if (password == null) {
+            throw new IllegalArgumentException(
+                    "Database password must be given.");
+        }
+        this.driverName = driverName;
+        this.connectionUri = connectionUri;
+        this.userName = userName;
+        this.password = password;
+
+        /* Initialize JDBC driver */
+        try {
+            Class.forName(driverName).newInstance();
+        } catch (Exception ex) {
+            throw new RuntimeException("Specified JDBC Driver: " + driverName
+                    + " - initialization failed.", ex);
+        }
+    }
+
+    /**
+     * Creates a new connection pool using the given JDBC driver and database
+     * and the given number of connections.
+     * 
+     * @param driverName
+     *            the class name of the JDBC driver
+     * @param connectionUri
+     *            the database connection URI
+     * @param userName
+     *            the database user name
+     * @param password
+     *            the database password
+     * @param initialConnections
+     *            the number of connections to open when the first connection
+     *            is reserved
+     * @param maxConnections
+     *            the maximum number of open connections
+     */
+    public ConcurrentJDBCConnectionPool(String driverName,
+            String connectionUri, String userName, String password,
+            int initialConnections, int maxConnections) {
+        this(driverName, connectionUri, userName, password);
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of connections must be positive.");
+        }
+        this.initialConnections = Math.max(0,
+                Math.min(initialConnections, maxConnections));
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public Connection reserveConnection() throws SQLException {
+        PoolState state = getState();
+        if (state.destroyed.get()) {
+            throw new SQLException("The connection pool has been destroyed.");
+        }
+
+        /*
+         * A timed acquire respects the fairness of the semaphore, so threads
+         * waiting for a connection are served in order. It only blocks if all
+         * connections are reserved.
+         */
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = state.permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(
+                    "Interrupted while waiting for a connection.", e);
+        }
+        long waited = System.nanoTime() - waitStart;
+        state.totalWaitNanos.addAndGet(waited);
+        updateMax(state.maxWaitNanos, waited);
+        if (!acquired) {
+            state.timeouts.incrementAndGet();
+            throw new SQLException("No connection available within "
+                    + maxWait + " ms, all " + maxConnections
+                    + " connections are in use.");
+        }
+
+        try {
+            if (state.destroyed.get()) {
+                /* Woken up by destroy() */
+                throw new SQLException(
+                        "The connection pool has been destroyed.");
+            }
+            PooledConnection pooled = takeIdleConnection(state);
+            if (pooled == null) {
+                pooled = openConnection(state);
+            }
+            state.reserved.put(pooled.connection, pooled);
+            if (state.destroyed.get()) {
+                /*
+                 * Destroyed while the connection was being opened; close it
+                 * unless destroy() already did
+                 */
+                if (state.reserved.remove(pooled.connection) != null) {
+                    closeConnection(state, pooled);
+                }
+                throw new SQLException(
+                        "The connection pool has been destroyed.");
+            }
+            state.reserveCount.incrementAndGet();
+            if (pooled.statementCache != null) {
+                return pooled.statementCache.getConnection();
+            }
+            return pooled.connection;
+        } catch (SQLException e) {
+            state.permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            state.permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseConnection(Connection conn) {
+        PoolState state = this.state;
+        if (conn == null || state == null) {
+            return;
+        }
+        conn = PreparedStatementCache.unwrap(conn);
+        PooledConnection pooled = state.reserved.remove(conn);
+        if (pooled == null) {
+            /* Not reserved from this pool or already released */
+            return;
+        }
+        try {
+            boolean usable = !state.destroyed.get();
+            if (usable && pooled.statementCache != null) {
+                pooled.statementCache.release();
+            }
+            if (usable && rollbackOnRelease) {
+                /* Try to roll back if necessary */
+                try {
+                    if (!conn.getAutoCommit()) {
+                        conn.rollback();
+                    }
+                } catch (SQLException e) {
+                    /* Roll back failed, close and discard connection */
+                    usable = false;
+                }
+            }
+            long now = System.currentTimeMillis();
+            pooled.lastUsed = now;
+            if (usable && !isExpired(pooled, now)
+                    && state.openConnections.get() <= maxConnections) {
+                pushIdle(state, pooled);
+            } else {
+                closeConnection(state, pooled);
+            }
+        } finally {
+            state.permits.release();
+        }
+        evictIfNeeded(state);
+    }
+
+    @Override
+    public void destroy() {
+        PoolState state = this.state;
+        if (state == null || !state.destroyed.compareAndSet(false, true)) {
+            /* Not used yet or already destroyed */
+            return;
+        }
+        /*
+         * Wake up the threads waiting for a connection. They fail as the pool
+         * is destroyed, and the permits are never used for connections again.
+         */
+        state.permits.release(Integer.MAX_VALUE / 2);
+        closeAllIdle(state);
+        for (Connection conn : state.reserved.keySet()) {
+            PooledConnection pooled = state.reserved.remove(conn);
+            if (pooled != null) {
+                closeConnection(state, pooled);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of connections that are currently reserved.
+     * 
+     * @return the number of reserved connections
+     */
+    public int getActiveConnections() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.reserved.size();
+    }
+
+    /**
+     * Returns the number of open connections that are not currently reserved.
+     * 
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.idleConnections.get();
+    }
+
+    /**
+     * Returns the number of open connections, whether reserved or idle.
+     * 
+     * @return the number of open connections
+     */
+    public int getOpenConnections() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.openConnections.get();
+    }
+
+    /**
+     * Returns the number of threads currently waiting for a connection. The
+     * value is an estimate.
+     * 
+     * @return the number of waiting threads
+     */
+    public int getWaitingThreads() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.permits.getQueueLength();
+    }
+
+    /**
+     * Returns the number of connections reserved from the pool.
+     * 
+     * @return the number of successful reservations
+     */
+    public long getReserveCount() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.reserveCount.get();
+    }
+
+    /**
+     * Returns the number of times reserving a connection failed because no
+     * connection became available within {@link #getMaxWait()}.
+     * 
+     * @return the number of timeouts
+     */
+    public long getTimeoutCount() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.timeouts.get();
+    }
+
+    /**
+     * Returns the total time threads have waited for a connection to become
+     * available.
+     * 
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        PoolState state = this.state;
+        return state == null ? 0 : TimeUnit.NANOSECONDS
+                .toMillis(state.totalWaitNanos.get());
+    }
+
+    /**
+     * Returns the longest time a thread has waited for a connection to become
+     * available.
+     * 
+     * @return the maximum wait time in milliseconds
+     */
+    public long getMaxWaitTime() {
+        PoolState state = this.state;
+        return state == null ? 0 : TimeUnit.NANOSECONDS
+                .toMillis(state.maxWaitNanos.get());
+    }
+
+    /**
+     * Returns the number of connections opened when the first connection is
+     * reserved.
+     * 
+     * @return the number of initial connections
+     */
+    public int getInitialConnections() {
+        return initialConnections;
+    }
+
+    /**
+     * Returns the maximum number of open connections.
+     * 
+     * @return the maximum number of connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum time to wait for a connection when all connections are
+     * in use. The default is 30 seconds.
+     * 
+     * @param maxWait
+     *            the maximum wait time in milliseconds, 0 to fail right away
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the maximum time to wait for a connection when all connections
+     * are in use.
+     * 
+     * @return the maximum wait time in milliseconds
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Sets the time after which an idle connection is closed. The default is
+     * 10 minutes.
+     * 
+     * @param idleTimeout
+     *            the idle timeout in milliseconds, 0 to never close idle
+     *            connections
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the time after which an idle connection is closed.
+     * 
+     * @return the idle timeout in milliseconds, 0 if never closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time after opening a connection after which it is closed when
+     * it is not reserved. The default is 30 minutes.
+     * 
+     * @param maxLifetime
+     *            the maximum lifetime in milliseconds, 0 for no limit
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Returns the time after opening a connection after which it is closed
+     * when it is not reserved.
+     * 
+     * @return the maximum lifetime in milliseconds, 0 if not limited
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Sets how long a connection can be idle before it is validated when
+     * reserved. The default is 5 seconds.
+     * 
+     * @param validationInterval
+     *            the interval in milliseconds, 0 to validate every reserved
+     *            connection or a negative value to never validate
+     */
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Returns how long a connection can be idle before it is validated when
+     * reserved.
+     * 
+     * @return the interval in milliseconds, negative if never validated
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * Sets the time to wait for the database when validating a connection.
+     * The default is 5 seconds.
+     * 
+     * @param validationTimeout
+     *            the timeout in seconds
+     */
+    public void setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    /**
+     * Returns the time to wait for the database when validating a connection.
+     * 
+     * @return the timeout in seconds
+     */
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * Sets whether transactions left open are rolled back when a connection
+     * is released. The default is <code>true</code>. Disabling the roll back
+     * saves a round trip to the database on each release, but should only be
+     * done if transactions are always committed or rolled back before
+     * releasing the connections.
+     * 
+     * @param rollbackOnRelease
+     *            true to roll back when releasing a connection, false to not
+     *            roll back
+     */
+    public void setRollbackOnRelease(boolean rollbackOnRelease) {
+        this.rollbackOnRelease = rollbackOnRelease;
+    }
+
+    /**
+     * Returns whether transactions left open are rolled back when a connection
+     * is released.
+     * 
+     * @return true if rolled back, false if not
+     */
+    public boolean isRollbackOnRelease() {
+        return rollbackOnRelease;
+    }
+
+    /**
+     * Sets the maximum number of prepared statements to cache for each
+     * connection. The default is 0, which disables caching.
+     * <p>
+     * With caching enabled, the pool returns connections that keep the
+     * statements prepared using them open when closed, and return the same
+     * statements when the same SQL is prepared again using the same
+     * connection. This saves parsing and planning the query in the database,
+     * which is worthwhile when the same queries are run often, e.g. when
+     * counting the rows or fetching pages in many containers. Statements left
+     * open are closed when the connection is released.
+     * 
+     * @param statementCacheSize
+     *            the number of statements to cache per connection, 0 to
+     *            disable caching
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Returns the maximum number of prepared statements to cache for each
+     * connection.
+     * 
+     * @return the number of statements to cache per connection, 0 if caching
+     *         is disabled
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Returns the number of times a prepared statement was found in the
+     * statement cache.
+     * 
+     * @see #setStatementCacheSize(int)
+     * @return the number of statement cache hits
+     */
+    public long getStatementCacheHits() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.statementCacheHits.get();
+    }
+
+    /**
+     * Returns the number of times a statement had to be prepared because it
+     * was not found in the statement cache.
+     * 
+     * @see #setStatementCacheSize(int)
+     * @return the number of statement cache misses
+     */
+    public long getStatementCacheMisses() {
+        PoolState state = this.state;
+        return state == null ? 0 : state.statementCacheMisses.get();
+    }
+
+    private PoolState getState() throws SQLException {
+        PoolState state = this.state;
+        if (state == null) {
+            synchronized (this) {
+                state = this.state;
+                if (state == null) {
+                    state = new PoolState(maxConnections);
+                    long interval = getEvictionInterval();
+                    if (interval != Long.MAX_VALUE) {
+                        state.nextEviction.set(System.currentTimeMillis()
+                                + interval);
+                    }
+                    try {
+                        for (int i = 0; i < initialConnections; i++) {
+                            state.pushIdle(openConnection(state));
+                        }
+                    } catch (SQLException e) {
+                        closeAllIdle(state);
+                        throw e;
+                    }
+                    this.state = state;
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still usable,
+     * closing the expired and invalid connections on the way.
+     */
+    private PooledConnection takeIdleConnection(PoolState state) {
+        PooledConnection pooled;
+        while ((pooled = state.popIdle()) != null) {
+            long now = System.currentTimeMillis();
+            if (isExpired(pooled, now) || !isValid(pooled, now)) {
+                closeConnection(state, pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return (maxLifetime > 0 && now - pooled.created >= maxLifetime)
+                || (idleTimeout > 0 && now - pooled.lastUsed >= idleTimeout);
+    }
+
+    private boolean isValid(PooledConnection pooled, long now) {
+        if (validationInterval < 0
+                || now - pooled.lastUsed < validationInterval) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(validationTimeout);
+        } catch (SQLFeatureNotSupportedException e) {
+            return true;
+        } catch (SQLException e) {
+            return false;
+        } catch (AbstractMethodError e) {
+            /* Driver older than JDBC 4 */
+            return true;
+        }
+    }
+
+    /**
+     * Returns the time between checks for expired idle connections, half of
+     * the shortest expiration time.
+     * 
+     * @return the interval in milliseconds, or Long.MAX_VALUE if idle
+     *         connections never expire
+     */
+    private long getEvictionInterval() {
+        long interval = Long.MAX_VALUE;
+        if (idleTimeout > 0) {
+            interval = idleTimeout / 2;
+        }
+        if (maxLifetime > 0) {
+            interval = Math.min(interval, maxLifetime / 2);
+        }
+        return interval;
+    }
+
+    /**
+     * Closes the expired idle connections, at most once per eviction interval.
+     * <p>
+     * The idle connections are popped one at a time, and a free permit is
+     * acquired for each connection before popping it. A thread that holds a
+     * permit and finds no idle connection can therefore open a new one
+     * without exceeding the maximum number of connections. Popping stops when
+     * no permit is free.
+     */
+    private void evictIfNeeded(PoolState state) {
+        long interval = getEvictionInterval();
+        if (interval == Long.MAX_VALUE || state.destroyed.get()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long nextEviction = state.nextEviction.get();
+        if (now < nextEviction
+                || !state.nextEviction.compareAndSet(nextEviction, now
+                        + interval)) {
+            return;
+        }
+        List<PooledConnection> kept = new ArrayList<PooledConnection>();
+        int acquired = 0;
+        try {
+            while (state.permits.tryAcquire()) {
+                acquired++;
+                PooledConnection pooled = state.popIdle();
+                if (pooled == null) {
+                    break;
+                }
+                if (isExpired(pooled, now)) {
+                    closeConnection(state, pooled);
+                } else {
+                    kept.add(pooled);
+                }
+            }
+            /* Push back in the original order, least recently used first */
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                pushIdle(state, kept.get(i));
+            }
+        } finally {
+            state.permits.release(acquired);
+        }
+    }
+
+    /**
+     * Returns a connection to the idle connections, closing it if the pool
+     * was destroyed concurrently.
+     */
+    private void pushIdle(PoolState state, PooledConnection pooled) {
+        state.pushIdle(pooled);
+        if (state.destroyed.get()) {
+            closeAllIdle(state);
+        }
+    }
+
+    private void closeAllIdle(PoolState state) {
+        for (PooledConnection pooled : state.takeAllIdle()) {
+            closeConnection(state, pooled);
+        }
+    }
+
+    private PooledConnection openConnection(PoolState state)
+            throws SQLException {
+        Connection c = DriverManager.getConnection(connectionUri, userName,
+                password);
+        try {
+            c.setAutoCommit(false);
+        } catch (SQLException e) {
+            c.close();
+            throw e;
+        }
+        if (driverName.toLowerCase().contains("mysql")) {
+            try {
+                Statement s = c.createStatement();
+                s.execute("SET SESSION sql_mode = 'ANSI'");
+                s.close();
+            } catch (Exception e) {
+                // Failed to set ansi mode; continue
+            }
+        }
+        state.openConnections.incrementAndGet();
+        PooledConnection pooled = new PooledConnection(c,
+                System.currentTimeMillis());
+        if (statementCacheSize > 0) {
+            pooled.statementCache = new PreparedStatementCache(c,
+                    statementCacheSize, state.statementCacheHits,
+                    state.statementCacheMisses);
+        }
+        return pooled;
+    }
+
+    private void closeConnection(PoolState state, PooledConnection pooled) {
+        state.openConnections.decrementAndGet();
+        if (pooled.statementCache != null) {
+            pooled.statementCache.clear();
+        }
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            getLogger().log(Level.FINE, "Failed to close connection", e);
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static final Logger getLogger() {
+        return Logger.getLogger(ConcurrentJDBCConnectionPool.class.getName());
+    }
+
+    /**
+     * An open connection, its timestamps and its statement cache.
+     */
+    private static class PooledConnection implements Serializable {
+        private final Connection connection;
+        private final long created;
+        private volatile long lastUsed;
+        private PreparedStatementCache statementCache;
+
+        public PooledConnection(Connection connection, long created) {
+            this.connection = connection;
+            this.created = created;
+            lastUsed = created;
+        }
+    }
+
+    /**
+     * A node in the stack of idle connections.
+     */
+    private static class IdleNode implements Serializable {
+        private final PooledConnection pooled;
+        private IdleNode next;
+
+        public IdleNode(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    /**
+     * The connections and statistics of a pool.
+     */
+    private static class PoolState implements Serializable {
+        /** Permits for reserving connections, one per allowed connection */
+        private final Semaphore permits;
+        /** Top of the lock free stack of idle connections */
+        private final AtomicReference<IdleNode> idle = new AtomicReference<IdleNode>();
+        private final AtomicInteger idleConnections = new AtomicInteger();
+        private final AtomicInteger openConnections = new AtomicInteger();
+        private final ConcurrentMap<Connection, PooledConnection> reserved = new ConcurrentHashMap<Connection, PooledConnection>();
+        private final AtomicLong nextEviction = new AtomicLong();
+        private final AtomicBoolean destroyed = new AtomicBoolean();
+
+        private final AtomicLong reserveCount = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong statementCacheHits = new AtomicLong();
+        private final AtomicLong statementCacheMisses = new AtomicLong();
+
+        public PoolState(int maxConnections) {
+            permits = new Semaphore(maxConnections, true);
+        }
+
+        public void pushIdle(PooledConnection pooled) {
+            IdleNode node = new IdleNode(pooled);
+            do {
+                node.next = idle.get();
+            } while (!idle.compareAndSet(node.next, node));
+            idleConnections.incrementAndGet();
+        }
+
+        public PooledConnection popIdle() {
+            IdleNode top;
+            do {
+                top = idle.get();
+                if (top == null) {
+                    return null;
+                }
+            } while (!idle.compareAndSet(top, top.next));
+            idleConnections.decrementAndGet();
+            return top.pooled;
+        }
+
+        /**
+         * Removes all idle connections, most recently used first.
+         */
+        public List<PooledConnection> takeAllIdle() {
+            List<PooledConnection> all = new ArrayList<PooledConnection>();
+            for (IdleNode node = idle.getAndSet(null); node != null; node = node.next) {
+                idleConnections.decrementAndGet();
+                all.add(node.pooled);
+            }
+            return all;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer.connection;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the prepared statements of one pooled connection. The cache
+ * provides a proxy of the connection that returns cached statements from
+ * {@link Connection#prepareStatement(String)} and its variants. Closing a
+ * cached statement returns it to the cache instead of closing it, so that the
+ * database does not need to parse and plan the same queries again.
+ * <p>
+ * Result sets of cached statements are proxied as well, so that closing
+ * <code>resultSet.getStatement()</code> also returns the statement to the
+ * cache. Statements left open are closed when the connection is released.
+ * <p>
+ * Settings such as the maximum number of rows changed while a cached statement
+ * is used are restored when the statement is returned to the cache, so that
+ * they do not affect the next user of the statement.
+ * <p>
+ * A connection is only used by one thread at a time, so the cache is not
+ * thread safe.
+ * 
+ * @since 7.2
+ */
+class PreparedStatementCache implements Serializable {
+
+    /**
+     * The statement settings that are restored when a cached statement is
+     * closed, mapped from the setter to the getter of the setting.
+     */
+    private static final Map<String, String> RESTORED_SETTINGS = new HashMap<String, String>();
+    static {
+        RESTORED_SETTINGS.put("setMaxRows", "getMaxRows");
+        RESTORED_SETTINGS.put("setFetchSize", "getFetchSize");
+        RESTORED_SETTINGS.put("setQueryTimeout", "getQueryTimeout");
+        RESTORED_SETTINGS.put("setFetchDirection", "getFetchDirection");
+        RESTORED_SETTINGS.put("setMaxFieldSize", "getMaxFieldSize");
+    }
+
+    private final Connection connection;
+    private final Connection connectionProxy;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /** The idle and reserved cached statements in least recently used order */
+    private final LinkedHashMap<StatementKey, StatementHandler> statements = new LinkedHashMap<StatementKey, StatementHandler>(
+            16, 0.75f, true);
+    /** The statements that are currently open */
+    private final List<StatementHandler> open = new ArrayList<StatementHandler>();
+
+    /**
+     * Creates a statement cache for the given connection.
+     * 
+     * @param connection
+     *            the connection to cache statements of
+     * @param maxSize
+     *            the maximum number of cached statements
+     * @param hits
+     *            counter for statements found in the cache
+     * @param misses
+     *            counter for statements that had to be prepared
+     */
+    public PreparedStatementCache(Connection connection, int maxSize,
+            AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        connectionProxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler());
+    }
+
+    /**
+     * Returns the proxy of the connection that caches prepared statements.
+     * 
+     * @return the connection proxy
+     */
+    public Connection getConnection() {
+        return connectionProxy;
+    }
+
+    /**
+     * Returns the underlying connection of a connection returned by
+     * {@link #getConnection()}.
+     * 
+     * @param connection
+     *            a connection, possibly a proxy created by a statement cache
+     * @return the underlying connection, or the given connection if it is not
+     *         a statement caching proxy
+     */
+    public static Connection unwrap(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy
+                    .getInvocationHandler(connection);
+            if (handler instanceof ConnectionHandler) {
+                return ((ConnectionHandler) handler).getCache().connection;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Closes all statements left open by the user of the connection. Cached
+     * statements are kept for the next user.
+     */
+    public void release() {
+        for (StatementHandler handler : new ArrayList<StatementHandler>(open)) {
+            try {
+                handler.close();
+            } catch (SQLException e) {
+                // Discarded when closing fails
+                statements.remove(handler.key);
+            }
+        }
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    public void clear() {
+        release();
+        for (StatementHandler handler : statements.values()) {
+            closeQuietly(handler.statement);
+        }
+        statements.clear();
+    }
+
+    private PreparedStatement prepare(StatementKey key) throws SQLException {
+        StatementHandler handler = statements.get(key);
+        if (handler != null && !handler.isOpen()
+                && !handler.statement.isClosed()) {
+            hits.incrementAndGet();
+            return handler.open();
+        }
+        misses.incrementAndGet();
+        if (handler != null && !handler.isOpen()) {
+            // Closed through the underlying statement
+            statements.remove(key);
+            handler = null;
+        }
+        StatementHandler newHandler = new StatementHandler(key, key.prepare());
+        if (handler == null) {
+            statements.put(key, newHandler);
+            evictIfNeeded();
+        } else {
+            // The cached statement is in use, the new one is not cached
+            newHandler.cached = false;
+        }
+        return newHandler.open();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<StatementHandler> eldest = statements.values().iterator();
+        while (statements.size() > maxSize && eldest.hasNext()) {
+            StatementHandler handler = eldest.next();
+            if (!handler.isOpen()) {
+                eldest.remove();
+                closeQuietly(handler.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing needs to be done
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Checks whether the given proxy method is declared by Object, i.e. it is
+     * equals, hashCode or toString.
+     */
+    private static boolean isObjectMethod(Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+
+    /**
+     * Implements equals, hashCode and toString of a proxy based on its
+     * identity.
+     */
+    private static Object invokeObjectMethod(Object proxy, Method method,
+            Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else {
+            return proxy.getClass().getName() + "@"
+                    + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+
+    /**
+     * Identifies a prepared statement by the method used for preparing it and
+     * its arguments.
+     */
+    private class StatementKey implements Serializable {
+        private final Method method;
+        private final Object[] args;
+        private final int hashCode;
+
+        public StatementKey(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+            hashCode = 31 * method.hashCode() + Arrays.deepHashCode(args);
+        }
+
+        public PreparedStatement prepare() throws SQLException {
+            try {
+                return (PreparedStatement) method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new SQLException(cause);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StatementKey)) {
+                return false;
+            }
+            StatementKey other = (StatementKey) obj;
+            return method.equals(other.method)
+                    && Arrays.deepEquals(args, other.args);
+        }
+    }
+
+    /**
+     * Returns cached statements from the prepare methods of the connection.
+     */
+    private class ConnectionHandler implements InvocationHandler, Serializable {
+
+        public PreparedStatementCache getCache() {
+            return PreparedStatementCache.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (isObjectMethod(method)) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if ("prepareStatement".equals(method.getName())) {
+                return prepare(new StatementKey(method, args));
+            }
+            return PreparedStatementCache.invoke(connection, method, args);
+        }
+    }
+
+    /**
+     * Handles the calls to a cached statement while it is open, and returns
+     * the statement to the cache when it is closed.
+     */
+    private class StatementHandler implements InvocationHandler, Serializable {
+        private final StatementKey key;
+        private final PreparedStatement statement;
+        private boolean cached = true;
+        private PreparedStatement proxy;
+        private final List<ResultSet> resultSets = new ArrayList<ResultSet>();
+        /**
+         * The original values of the settings changed by the current user,
+         * mapped by setter method
+         */
+        private final Map<Method, Object> changedSettings = new HashMap<Method, Object>();
+
+        public StatementHandler(StatementKey key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        public boolean isOpen() {
+            return proxy != null;
+        }
+
+        public PreparedStatement open() {
+            // A new proxy for each use so that old references stay closed
+            proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+            open.add(this);
+            return proxy;
+        }
+
+        public void close() throws SQLException {
+            proxy = null;
+            open.remove(this);
+            for (ResultSet rs : resultSets) {
+                rs.close();
+            }
+            resultSets.clear();
+            if (cached && statements.get(key) == this) {
+                if (!restoreSettings()) {
+                    // Not safe to reuse, discard it
+                    statements.remove(key);
+                    statement.close();
+                    return;
+                }
+                statement.clearParameters();
+                statement.clearWarnings();
+            } else {
+                statement.close();
+            }
+        }
+
+        /**
+         * Records the original value of a setting before it is changed for
+         * the first time by the current user of the statement.
+         */
+        private void recordSetting(Method setter) throws Throwable {
+            String getter = RESTORED_SETTINGS.get(setter.getName());
+            if (getter != null && !changedSettings.containsKey(setter)) {
+                changedSettings.put(setter, PreparedStatementCache.invoke(
+                        statement, Statement.class.getMethod(getter), null));
+            }
+        }
+
+        /**
+         * Restores the settings changed by the current user of the statement.
+         * 
+         * @return <code>true</code> if the settings were restored,
+         *         <code>false</code> if restoring failed
+         */
+        private boolean restoreSettings() {
+            try {
+                for (Entry<Method, Object> setting : changedSettings
+                        .entrySet()) {
+                    PreparedStatementCache.invoke(statement, setting.getKey(),
+                            new Object[] { setting.getValue() });
+                }
+                return true;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                return false;
+            } finally {
+                changedSettings.clear();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (isObjectMethod(method)) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            String name = method.getName();
+            if (proxy != this.proxy) {
+                if ("close".equals(name)) {
+                    return null;
+                } else if ("isClosed".equals(name)) {
+                    return true;
+                }
+                throw new SQLException("The statement is closed.");
+            }
+            if ("close".equals(name)) {
+                close();
+                return null;
+            } else if ("getConnection".equals(name)) {
+                return connectionProxy;
+            }
+            if (cached) {
+                recordSetting(method);
+            }
+            Object result = PreparedStatementCache.invoke(statement, method,
+                    args);
+            if (result instanceof ResultSet) {
+                ResultSet rs = (ResultSet) result;
+                resultSets.add(rs);
+                return Proxy.newProxyInstance(
+                        ResultSet.class.getClassLoader(),
+                        new Class<?>[] { ResultSet.class },
+                        new ResultSetHandler(rs, this.proxy));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the proxy of a cached statement from
+     * {@link ResultSet#getStatement()}.
+     */
+    private static class ResultSetHandler implements InvocationHandler,
+            Serializable {
+        private final ResultSet resultSet;
+        private final Statement statementProxy;
+
+        public ResultSetHandler(ResultSet resultSet, Statement statementProxy) {
+            this.resultSet = resultSet;
+            this.statementProxy = statementProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (isObjectMethod(method)) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if ("getStatement".equals(method.getName())) {
+                return statementProxy;
+            }
+            return PreparedStatementCache.invoke(resultSet, method, args);
+        }
+    }
+}
@@ -167,6 +167,20 @@ abstract class AbstractTransactionalQuery implements Serializable {
         return connectionPool.reserveConnection();
     }
 
+    /**
+     * Reserves a new connection from the connection pool, regardless of
+     * whether a transaction is active. The connection is not part of the
+     * active transaction and must be released using
+     * {@link #releaseConnection(Connection, Statement, ResultSet)}.
+     * 
+     * @return a newly reserved connection
+     * @throws SQLException
+     * @since 7.2
+     */
+    protected Connection reserveConnection() throws SQLException {
+        return connectionPool.reserveConnection();
+    }
+
     protected boolean isInTransaction() {
         return activeConnection != null;
     }
@@ -55,4 +55,20 @@ public class OrderBy implements Serializable {
     public boolean isAscending() {
         return isAscending;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        OrderBy other = (OrderBy) obj;
+        return isAscending == other.isAscending
+                && (column == null ? other.column == null : column
+                        .equals(other.column));
+    }
+
+    @Override
+    public int hashCode() {
+        return (column == null ? 0 : column.hashCode()) + (isAscending ? 1 : 0);
+    }
 }
@@ -23,12 +23,16 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EventObject;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,12 +43,14 @@ import com.vaadin.data.util.sqlcontainer.OptimisticLockException;
 import com.vaadin.data.util.sqlcontainer.RowId;
 import com.vaadin.data.util.sqlcontainer.RowItem;
 import com.vaadin.data.util.sqlcontainer.SQLUtil;
+import com.vaadin.data.util.sqlcontainer.SharedRowCache;
 import com.vaadin.data.util.sqlcontainer.TemporaryRowId;
 import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.query.generator.DefaultSQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.MSSQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.SQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.StatementHelper;
+import com.vaadin.data.util.sqlcontainer.query.generator.filter.QueryBuilder;
 
 @SuppressWarnings("serial")
 public class TableQuery extends AbstractTransactionalQuery implements
@@ -84,6 +90,42 @@ public class TableQuery extends AbstractTransactionalQuery implements
     /** Set to true to output generated SQL Queries to System.out */
     private final boolean debug = false;
 
+    /**
+     * Maximum number of remembered page boundaries for keyset pagination.
+     */
+    private static final int KEYSET_BOUNDARY_LIMIT = 100;
+
+    /** Keyset pagination mode, disabled by default */
+    private boolean keysetPagingEnabled = false;
+    /** Upper case names of the columns that cannot contain null values */
+    private Set<String> notNullColumns;
+    /**
+     * Sort key values of the rows at known page boundaries, by row index. Only
+     * valid for the ordering and filters they were recorded with.
+     */
+    private transient Map<Integer, Object[]> keysetBoundaries;
+    private transient List<OrderBy> keysetOrderBys;
+    private transient List<Filter> keysetFilters;
+    private transient int keysetCount = -1;
+    /** Offset and page length of the latest keyset paginated query */
+    private transient int keysetOffset;
+    private transient int keysetPageLength = -1;
+
+    /** Application wide row cache, not serialized with the query */
+    private transient SharedRowCache sharedRowCache;
+    /** Whether rows have been written in the current transaction */
+    private boolean rowsWritten;
+
+    /**
+     * The latest generated count and results queries with the parameters they
+     * were generated with. Refreshing the container generates the same
+     * queries again.
+     */
+    private transient List<Object> lastCountKey;
+    private transient StatementHelper lastCountQuery;
+    private transient List<Object> lastResultsKey;
+    private transient StatementHelper lastResultsQuery;
+
     /**
      * Creates a new TableQuery using the given connection pool, SQL generator
      * and table name to fetch the data from. All parameters must be non-null.
@@ -197,8 +239,13 @@ public class TableQuery extends AbstractTransactionalQuery implements
     @Override
     public int getCount() throws SQLException {
         getLogger().log(Level.FINE, "Fetching count...");
-        StatementHelper sh = sqlGenerator.generateSelectQuery(
-                getFullTableName(), filters, null, 0, 0, "COUNT(*)");
+        List<Object> key = getQueryKey(filters, null, 0, 0);
+        if (!key.equals(lastCountKey)) {
+            lastCountQuery = sqlGenerator.generateSelectQuery(
+                    getFullTableName(), filters, null, 0, 0, "COUNT(*)");
+            lastCountKey = key;
+        }
+        StatementHelper sh = lastCountQuery;
         boolean shouldCloseTransaction = false;
         if (!isInTransaction()) {
             shouldCloseTransaction = true;
@@ -210,6 +257,11 @@ public class TableQuery extends AbstractTransactionalQuery implements
             r = executeQuery(sh);
             r.next();
             count = r.getInt(1);
+            if (count != keysetCount) {
+                /* Rows have been added or removed, offsets have changed */
+                keysetBoundaries = null;
+                keysetCount = count;
+            }
         } finally {
             try {
                 if (r != null) {
@@ -225,6 +277,67 @@ public class TableQuery extends AbstractTransactionalQuery implements
         return count;
     }
 
+    /**
+     * Returns the number of rows matching the given filters. Unlike
+     * {@link #getCount()}, this method uses a separate connection from the
+     * connection pool and does not use or change the transaction or the
+     * filters of this query. It can therefore be called from a background
+     * thread while the query is used by another thread.
+     * 
+     * @param filters
+     *            the filters to count the rows with, or null to count all rows
+     * @return the number of matching rows
+     * @throws SQLException
+     * @since 7.2
+     */
+    public int getCount(List<Filter> filters) throws SQLException {
+        StatementHelper sh = sqlGenerator.generateSelectQuery(
+                getFullTableName(), filters, null, 0, 0, "COUNT(*)");
+        Connection connection = reserveConnection();
+        PreparedStatement pstmt = null;
+        ResultSet r = null;
+        try {
+            pstmt = connection.prepareStatement(sh.getQueryString());
+            sh.setParameterValuesToStatement(pstmt);
+            getLogger().log(Level.FINE, "DB -> {0}", sh.getQueryString());
+            r = pstmt.executeQuery();
+            r.next();
+            return r.getInt(1);
+        } finally {
+            releaseConnection(connection, pstmt, r);
+        }
+    }
+
+    /**
+     * Returns the number of rows in the table as estimated by the database,
+     * without filters. The estimate is read from the table statistics
+     * reported in the database metadata, which is much faster than counting
+     * the rows but may be out of date.
+     * 
+     * @return the estimated number of rows, or -1 if the database does not
+     *         report an estimate
+     * @throws SQLException
+     * @since 7.2
+     */
+    public int getEstimatedCount() throws SQLException {
+        Connection connection = getConnection();
+        ResultSet rs = null;
+        try {
+            rs = connection.getMetaData().getIndexInfo(catalogName,
+                    schemaName, tableName, false, true);
+            while (rs.next()) {
+                short type = rs.getShort("TYPE");
+                if (type == DatabaseMetaData.tableIndexStatistic) {
+                    return (int) Math.min(Integer.MAX_VALUE,
+                            rs.getLong("CARDINALITY"));
+                }
+            }
+            return -1;
+        } finally {
+            releaseConnection(connection, null, rs);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -238,20 +351,212 @@ public class TableQuery extends AbstractTransactionalQuery implements
          * If no ordering is explicitly set, results will be ordered by the
          * first primary key column.
          */
-        if (orderBys == null || orderBys.isEmpty()) {
-            List<OrderBy> ob = new ArrayList<OrderBy>();
+        List<OrderBy> ob = orderBys;
+        if (ob == null || ob.isEmpty()) {
+            ob = new ArrayList<OrderBy>();
             for (int i = 0; i < primaryKeyColumns.size(); i++) {
                 ob.add(new OrderBy(primaryKeyColumns.get(i), true));
             }
-            sh = sqlGenerator.generateSelectQuery(getFullTableName(), filters,
-                    ob, offset, pagelength, null);
-        } else {
-            sh = sqlGenerator.generateSelectQuery(getFullTableName(), filters,
-                    orderBys, offset, pagelength, null);
         }
+        if (keysetPagingEnabled && pagelength > 0
+                && sqlGenerator instanceof DefaultSQLGenerator) {
+            List<OrderBy> keysetOb = getKeysetOrderBys(ob);
+            if (keysetOb != null) {
+                return executeQuery(generateKeysetQuery(keysetOb, offset,
+                        pagelength));
+            }
+        }
+        keysetPageLength = -1;
+        List<Object> key = getQueryKey(filters, ob, offset, pagelength);
+        if (!key.equals(lastResultsKey)) {
+            lastResultsQuery = sqlGenerator.generateSelectQuery(
+                    getFullTableName(), filters, ob, offset, pagelength, null);
+            lastResultsKey = key;
+        }
+        sh = lastResultsQuery;
         return executeQuery(sh);
     }
 
+    /**
+     * Returns a key identifying a generated SELECT query. The filters and the
+     * ordering are copied so that the key does not change with them.
+     */
+    private List<Object> getQueryKey(List<Filter> filters, List<OrderBy> ob,
+            int offset, int pagelength) {
+        return Arrays.<Object> asList(sqlGenerator,
+                QueryBuilder.getConfigurationVersion(), getFullTableName(),
+                filters == null ? null : new ArrayList<Filter>(filters),
+                ob == null ? null : new ArrayList<OrderBy>(ob), offset,
+                pagelength);
+    }
+
+    /**
+     * Returns the ordering used for keyset pagination: the given ordering
+     * followed by the primary key columns not included in it, which makes the
+     * ordering total. Returns null if keyset pagination cannot be used because
+     * some of the columns may contain null values.
+     */
+    private List<OrderBy> getKeysetOrderBys(List<OrderBy> ob)
+            throws SQLException {
+        List<OrderBy> keysetOb = new ArrayList<OrderBy>();
+        Set<String> columns = new HashSet<String>();
+        for (OrderBy o : ob) {
+            if (columns.add(o.getColumn())) {
+                keysetOb.add(new OrderBy(o.getColumn(), o.isAscending()));
+            }
+        }
+        for (String column : primaryKeyColumns) {
+            if (columns.add(column)) {
+                keysetOb.add(new OrderBy(column, true));
+            }
+        }
+        Set<String> notNull = getNotNullColumns();
+        for (OrderBy o : keysetOb) {
+            if (!primaryKeyColumns.contains(o.getColumn())
+                    && !notNull.contains(o.getColumn().toUpperCase())) {
+                return null;
+            }
+        }
+        return keysetOb;
+    }
+
+    /**
+     * Generates the query for a page using the ordering returned by
+     * {@link #getKeysetOrderBys(List)}. If the key of the row preceding or
+     * following the page is known, the page is fetched by seeking from that
+     * row. Otherwise an offset is used.
+     */
+    private StatementHelper generateKeysetQuery(List<OrderBy> keysetOb,
+            int offset, int pagelength) {
+        if (keysetBoundaries == null || !keysetOb.equals(keysetOrderBys)
+                || !getFilterList().equals(keysetFilters)) {
+            keysetBoundaries = new KeysetBoundaryMap();
+            keysetOrderBys = keysetOb;
+            keysetFilters = new ArrayList<Filter>(getFilterList());
+        }
+        keysetOffset = offset;
+        keysetPageLength = pagelength;
+
+        DefaultSQLGenerator generator = (DefaultSQLGenerator) sqlGenerator;
+        Object[] keys = keysetBoundaries.get(offset - 1);
+        if (offset > 0 && keys != null) {
+            return generator.generateKeysetSelectQuery(getFullTableName(),
+                    filters, keysetOb, keys, false, pagelength, null);
+        }
+        keys = keysetBoundaries.get(offset + pagelength);
+        if (offset > 0 && keys != null) {
+            return generator.generateKeysetSelectQuery(getFullTableName(),
+                    filters, keysetOb, keys, true, pagelength, null);
+        }
+        return generator.generateSelectQuery(getFullTableName(), filters,
+                keysetOb, offset, pagelength, null);
+    }
+
+    private List<Filter> getFilterList() {
+        if (filters == null) {
+            return Collections.emptyList();
+        }
+        return filters;
+    }
+
+    /**
+     * Notifies this query that a row of the result set returned by the latest
+     * {@link #getResults(int, int)} call is being read. When keyset pagination
+     * is enabled, the sort key values of the first and the last row of each
+     * page are remembered so that the neighboring pages can be fetched by
+     * seeking from those rows instead of using an offset.
+     * 
+     * @param index
+     *            the index of the row, i.e. the offset of the page plus the
+     *            position of the row in the result set
+     * @param rs
+     *            the result set, positioned on the row
+     * @throws SQLException
+     *             if reading the key values fails
+     * @since 7.2
+     */
+    public void rowFetched(int index, ResultSet rs) throws SQLException {
+        if (keysetBoundaries == null || keysetPageLength < 0
+                || (index != keysetOffset && index != keysetOffset
+                        + keysetPageLength - 1)) {
+            return;
+        }
+        Object[] keys = new Object[keysetOrderBys.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rs.getObject(keysetOrderBys.get(i).getColumn());
+            if (keys[i] == null) {
+                return;
+            }
+        }
+        keysetBoundaries.put(index, keys);
+    }
+
+    /**
+     * Enables or disables keyset (seek) pagination. By default, pages are
+     * fetched using an offset and a row limit, which makes the database read
+     * and discard all rows before the page. This gets slow for large tables
+     * when scrolling far from the beginning.
+     * <p>
+     * With keyset pagination enabled, the sort key values of the rows at page
+     * boundaries are remembered when the rows are read (see
+     * {@link #rowFetched(int, ResultSet)}). A page next to an already fetched
+     * page, either before or after it, is then fetched by selecting the rows
+     * with keys greater or smaller than the remembered key. Pages far from the
+     * fetched ones are still fetched using an offset.
+     * <p>
+     * The primary key columns are appended to the ordering to make it total.
+     * Keyset pagination is only used if the SQL generator is a
+     * {@link DefaultSQLGenerator} and all order by columns are declared NOT
+     * NULL in the database. Remembered boundaries are discarded when the
+     * filters, the ordering or the row count change, or rows are modified
+     * through this query.
+     * 
+     * @param keysetPagingEnabled
+     *            true to enable keyset pagination, false to always use offsets
+     * @since 7.2
+     */
+    public void setKeysetPagingEnabled(boolean keysetPagingEnabled) {
+        this.keysetPagingEnabled = keysetPagingEnabled;
+        keysetBoundaries = null;
+    }
+
+    /**
+     * Returns whether keyset (seek) pagination is enabled.
+     * 
+     * @see #setKeysetPagingEnabled(boolean)
+     * @return true if keyset pagination is enabled
+     * @since 7.2
+     */
+    public boolean isKeysetPagingEnabled() {
+        return keysetPagingEnabled;
+    }
+
+    /**
+     * Returns the upper case names of the columns that are declared as not
+     * nullable in the table. Fetched from the database metadata on first use.
+     */
+    private Set<String> getNotNullColumns() throws SQLException {
+        if (notNullColumns == null) {
+            Set<String> columns = new HashSet<String>();
+            Connection connection = getConnection();
+            ResultSet rs = null;
+            try {
+                rs = connection.getMetaData().getColumns(catalogName,
+                        schemaName, tableName, null);
+                while (rs.next()) {
+                    int nullable = rs.getInt("NULLABLE");
+                    if (nullable == DatabaseMetaData.columnNoNulls) {
+                        columns.add(rs.getString("COLUMN_NAME").toUpperCase());
+                    }
+                }
+            } finally {
+                releaseConnection(connection, null, rs);
+            }
+            notNullColumns = columns;
+        }
+        return notNullColumns;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -278,6 +583,8 @@ public class TableQuery extends AbstractTransactionalQuery implements
         }
         StatementHelper sh;
         int result = 0;
+        keysetBoundaries = null;
+        rowsWritten = true;
         if (row.getId() instanceof TemporaryRowId) {
             setVersionColumnFlagInProperty(row);
             sh = sqlGenerator.generateInsertQuery(getFullTableName(), row);
@@ -316,7 +623,9 @@ public class TableQuery extends AbstractTransactionalQuery implements
      * @throws SQLException
      */
     public RowId storeRowImmediately(RowItem row) throws SQLException {
+        keysetBoundaries = null;
         beginTransaction();
+        rowsWritten = true;
         /* Set version column, if one is provided */
         setVersionColumnFlagInProperty(row);
         /* Generate query */
@@ -383,6 +692,36 @@ public class TableQuery extends AbstractTransactionalQuery implements
         this.orderBys = Collections.unmodifiableList(orderBys);
     }
 
+    /**
+     * Sets the application wide cache used for sharing the fetched rows of the
+     * table between containers. Changes to the table committed through this
+     * query invalidate the cached rows of the table.
+     * <p>
+     * The cache is not serialized with the query and must be set again after
+     * deserialization.
+     * 
+     * @see SharedRowCache
+     * @param sharedRowCache
+     *            the cache to use, or null to always fetch the rows from the
+     *            database
+     * @since 7.2
+     */
+    public void setSharedRowCache(SharedRowCache sharedRowCache) {
+        this.sharedRowCache = sharedRowCache;
+    }
+
+    /**
+     * Returns the application wide cache used for sharing the fetched rows of
+     * the table between containers.
+     * 
+     * @see #setSharedRowCache(SharedRowCache)
+     * @return the cache, or null if not used
+     * @since 7.2
+     */
+    public SharedRowCache getSharedRowCache() {
+        return sharedRowCache;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -405,6 +744,14 @@ public class TableQuery extends AbstractTransactionalQuery implements
         getLogger().log(Level.FINE, "DB -> commit");
         super.commit();
 
+        /* Invalidate the shared cache only after the changes are visible */
+        if (rowsWritten) {
+            rowsWritten = false;
+            if (sharedRowCache != null) {
+                sharedRowCache.invalidateTable(this);
+            }
+        }
+
         /* Handle firing row ID change events */
         RowIdChangeEvent[] unFiredEvents = bufferedEvents
                 .toArray(new RowIdChangeEvent[] {});
@@ -426,6 +773,7 @@ public class TableQuery extends AbstractTransactionalQuery implements
     @Override
     public void rollback() throws UnsupportedOperationException, SQLException {
         getLogger().log(Level.FINE, "DB -> rollback");
+        rowsWritten = false;
         super.rollback();
     }
 
@@ -728,6 +1076,8 @@ public class TableQuery extends AbstractTransactionalQuery implements
             getLogger().log(Level.FINE, "Removing row with id: {0}",
                     row.getId().getId()[0]);
         }
+        keysetBoundaries = null;
+        rowsWritten = true;
         if (executeUpdate(sqlGenerator.generateDeleteQuery(getFullTableName(),
                 primaryKeyColumns, versionColumn, row)) == 1) {
             return true;
@@ -796,6 +1146,24 @@ public class TableQuery extends AbstractTransactionalQuery implements
         out.defaultWriteObject();
     }
 
+    /**
+     * Map of page boundary keys that keeps only the most recently used
+     * entries.
+     */
+    private static class KeysetBoundaryMap extends
+            LinkedHashMap<Integer, Object[]> {
+
+        public KeysetBoundaryMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<Integer, Object[]> eldest) {
+            return size() > KEYSET_BOUNDARY_LIMIT;
+        }
+    }
+
     /**
      * Simple RowIdChangeEvent implementation.
      */
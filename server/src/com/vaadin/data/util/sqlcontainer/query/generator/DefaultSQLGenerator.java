@@ -15,11 +15,17 @@
  */
 package com.vaadin.data.util.sqlcontainer.query.generator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.Or;
 import com.vaadin.data.util.sqlcontainer.ColumnProperty;
 import com.vaadin.data.util.sqlcontainer.RowItem;
 import com.vaadin.data.util.sqlcontainer.SQLUtil;
@@ -38,6 +44,22 @@ public class DefaultSQLGenerator implements SQLGenerator {
 
     private Class<? extends StatementHelper> statementHelperClass = null;
 
+    /**
+     * Maximum number of remembered SELECT queries.
+     */
+    private static final int SELECT_CACHE_SIZE = 64;
+
+    /**
+     * Recently generated SELECT queries without the row limits, by table,
+     * filters, ordering and selected columns. The queries are the same for all
+     * pages, so they are only generated once when paging.
+     */
+    private transient Map<List<Object>, StatementHelper> selectCache;
+    private transient int selectCacheVersion;
+
+    /** Whether LIMIT and OFFSET are added as statement parameters */
+    private boolean limitsAsParameters = false;
+
     public DefaultSQLGenerator() {
 
     }
@@ -101,23 +123,233 @@ public class DefaultSQLGenerator implements SQLGenerator {
         toSelect = toSelect == null ? "*" : toSelect;
         StatementHelper sh = getStatementHelper();
         StringBuffer query = new StringBuffer();
-        query.append("SELECT " + toSelect + " FROM ").append(
-                SQLUtil.escapeSQL(tableName));
-        if (filters != null) {
-            query.append(QueryBuilder.getWhereStringForFilters(filters, sh));
-        }
-        if (orderBys != null) {
-            for (OrderBy o : orderBys) {
-                generateOrderBy(query, o, orderBys.indexOf(o) == 0);
+
+        List<Object> cacheKey = Arrays.<Object> asList(tableName,
+                filters == null ? null : new ArrayList<Filter>(filters),
+                orderBys == null ? null : new ArrayList<OrderBy>(orderBys),
+                toSelect);
+        StatementHelper cached = getCachedSelect(cacheKey);
+        if (cached != null) {
+            query.append(cached.getQueryString());
+            cached.copyParameterValuesTo(sh);
+        } else {
+            int version = QueryBuilder.getConfigurationVersion();
+            StatementHelper generated = new StatementHelper();
+            query.append("SELECT " + toSelect + " FROM ").append(
+                    SQLUtil.escapeSQL(tableName));
+            if (filters != null) {
+                query.append(QueryBuilder.getWhereStringForFilters(filters,
+                        generated));
+            }
+            if (orderBys != null) {
+                for (int i = 0; i < orderBys.size(); i++) {
+                    generateOrderBy(query, orderBys.get(i), i == 0);
+                }
             }
+            generated.setQueryString(query.toString());
+            generated.copyParameterValuesTo(sh);
+            cacheSelect(cacheKey, generated, version);
         }
         if (pagelength != 0) {
-            generateLimits(query, offset, pagelength);
+            if (limitsAsParameters) {
+                query.append(" LIMIT ? OFFSET ?");
+                sh.addParameterValue(pagelength, Integer.class);
+                sh.addParameterValue(offset, Integer.class);
+            } else {
+                generateLimits(query, offset, pagelength);
+            }
+        }
+        sh.setQueryString(query.toString());
+        return sh;
+    }
+
+    /**
+     * Sets whether the LIMIT and OFFSET values of SELECT queries are added as
+     * statement parameters instead of being written into the query string.
+     * The default is false.
+     * <p>
+     * With parameters, the query string is the same for all pages of the same
+     * data, so a prepared statement cache such as the one in
+     * {@link com.vaadin.data.util.sqlcontainer.connection.ConcurrentJDBCConnectionPool#setStatementCacheSize(int)}
+     * can reuse the statement when scrolling. The database must accept
+     * parameters in <code>LIMIT ? OFFSET ?</code>, which e.g. HSQLDB,
+     * PostgreSQL and MySQL do. {@link #generateLimits(StringBuffer, int, int)}
+     * is not used when this is enabled. Subclasses generating their own
+     * SELECT queries, such as {@link MSSQLGenerator} and
+     * {@link OracleGenerator}, are not affected.
+     * 
+     * @param limitsAsParameters
+     *            true to add LIMIT and OFFSET as parameters, false to write
+     *            them into the query string
+     * @since 7.2
+     */
+    public void setLimitsAsParameters(boolean limitsAsParameters) {
+        this.limitsAsParameters = limitsAsParameters;
+    }
+
+    /**
+     * Returns whether the LIMIT and OFFSET values of SELECT queries are added
+     * as statement parameters.
+     * 
+     * @see #setLimitsAsParameters(boolean)
+     * @return true if LIMIT and OFFSET are added as parameters
+     * @since 7.2
+     */
+    public boolean isLimitsAsParameters() {
+        return limitsAsParameters;
+    }
+
+    /**
+     * Returns the remembered SELECT query for the given key, or null if there
+     * is none or the filter translation has changed since generating it.
+     */
+    private synchronized StatementHelper getCachedSelect(List<Object> key) {
+        if (selectCache == null
+                || selectCacheVersion != QueryBuilder.getConfigurationVersion()) {
+            return null;
+        }
+        return selectCache.get(key);
+    }
+
+    private synchronized void cacheSelect(List<Object> key,
+            StatementHelper query, int version) {
+        if (selectCache == null || selectCacheVersion != version) {
+            selectCache = new LinkedHashMap<List<Object>, StatementHelper>(16,
+                    0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<List<Object>, StatementHelper> eldest) {
+                    return size() > SELECT_CACHE_SIZE;
+                }
+            };
+            selectCacheVersion = version;
+        }
+        selectCache.put(key, query);
+    }
+
+    /**
+     * Generates a SELECT query for keyset (seek) pagination. Instead of
+     * skipping a number of rows, the query selects the rows immediately
+     * following or preceding the row with the given sort key values. This lets
+     * the database start reading from the position of the key in an index
+     * instead of scanning and discarding all rows before the page.
+     * <p>
+     * The ordering must be total, i.e. the order by columns must together
+     * identify a row uniquely, and none of the key values may be null. The
+     * comparison is expanded to the form
+     * <code>(k1 &gt; ?) OR (k1 = ? AND k2 &gt; ?) ...</code> to support mixed
+     * sort directions on databases without row value comparisons. The row
+     * limit itself is generated by
+     * {@link #generateSelectQuery(String, List, List, int, int, String)}, so
+     * subclasses for other SQL dialects do not need to override this method.
+     * 
+     * @param tableName
+     *            Name of the table queried
+     * @param filters
+     *            The filters, converted into a WHERE clause
+     * @param orderBys
+     *            The ordering conditions, not empty
+     * @param keyValues
+     *            The values of the order by columns in the row next to the
+     *            page, in the same order as <code>orderBys</code>
+     * @param backwards
+     *            true to select the rows preceding the given row, false to
+     *            select the rows following it. The rows are returned in the
+     *            given order in both cases.
+     * @param pagelength
+     *            The number of rows to be returned when the query executes
+     * @param toSelect
+     *            String containing what to select, e.g. "*"
+     * @return StatementHelper instance containing the query string for a
+     *         PreparedStatement and the values required for the parameters
+     * @since 7.2
+     */
+    public StatementHelper generateKeysetSelectQuery(String tableName,
+            List<Filter> filters, List<OrderBy> orderBys, Object[] keyValues,
+            boolean backwards, int pagelength, String toSelect) {
+        if (orderBys == null || orderBys.isEmpty() || keyValues == null
+                || keyValues.length != orderBys.size()) {
+            throw new IllegalArgumentException(
+                    "A key value must be given for each order by column.");
+        }
+        List<Filter> seekFilters = new ArrayList<Filter>();
+        if (filters != null) {
+            seekFilters.addAll(filters);
+        }
+        seekFilters.add(generateKeysetFilter(orderBys, keyValues, backwards));
+        if (!backwards) {
+            return generateSelectQuery(tableName, seekFilters, orderBys, 0,
+                    pagelength, toSelect);
+        }
+
+        /*
+         * Fetch the preceding rows in reverse order and sort them back in the
+         * requested order in an outer query.
+         */
+        List<OrderBy> reversed = new ArrayList<OrderBy>(orderBys.size());
+        for (OrderBy o : orderBys) {
+            reversed.add(new OrderBy(o.getColumn(), !o.isAscending()));
+        }
+        StatementHelper sh = generateSelectQuery(tableName, seekFilters,
+                reversed, 0, pagelength, toSelect);
+        StringBuffer query = new StringBuffer("SELECT * FROM (");
+        query.append(sh.getQueryString()).append(") keyset_page");
+        boolean first = true;
+        for (OrderBy o : orderBys) {
+            generateOrderBy(query, o, first);
+            first = false;
         }
         sh.setQueryString(query.toString());
         return sh;
     }
 
+    /**
+     * Generates the filter selecting the rows after (or before) the row with
+     * the given key values in the given ordering. For multiple columns, an
+     * additional condition on the first column is included to help the
+     * database use an index on it.
+     * 
+     * @param orderBys
+     *            The ordering conditions
+     * @param keyValues
+     *            The values of the order by columns in the row to seek from
+     * @param backwards
+     *            true to select the preceding rows, false to select the
+     *            following rows
+     * @return the filter to add to the WHERE clause
+     * @since 7.2
+     */
+    protected Filter generateKeysetFilter(List<OrderBy> orderBys,
+            Object[] keyValues, boolean backwards) {
+        Filter[] alternatives = new Filter[orderBys.size()];
+        for (int i = 0; i < alternatives.length; i++) {
+            Filter[] conditions = new Filter[i + 1];
+            for (int j = 0; j < i; j++) {
+                conditions[j] = new Compare.Equal(orderBys.get(j).getColumn(),
+                        keyValues[j]);
+            }
+            OrderBy o = orderBys.get(i);
+            if (o.isAscending() != backwards) {
+                conditions[i] = new Compare.Greater(o.getColumn(),
+                        keyValues[i]);
+            } else {
+                conditions[i] = new Compare.Less(o.getColumn(), keyValues[i]);
+            }
+            alternatives[i] = i == 0 ? conditions[0] : new And(conditions);
+        }
+        if (alternatives.length == 1) {
+            return alternatives[0];
+        }
+        OrderBy o = orderBys.get(0);
+        Filter bound;
+        if (o.isAscending() != backwards) {
+            bound = new Compare.GreaterOrEqual(o.getColumn(), keyValues[0]);
+        } else {
+            bound = new Compare.LessOrEqual(o.getColumn(), keyValues[0]);
+        }
+        return new And(bound, new Or(alternatives));
+    }
+
     /*
      * (non-Javadoc)
      * 
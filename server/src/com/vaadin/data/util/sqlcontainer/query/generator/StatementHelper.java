@@ -71,6 +71,20 @@ public class StatementHelper implements Serializable {
         dataTypes.put(parameters.size() - 1, type);
     }
 
+    /**
+     * Adds the parameter values of this statement helper to another statement
+     * helper, with the same types.
+     * 
+     * @param target
+     *            the statement helper to add the parameter values to
+     * @since 7.2
+     */
+    public void copyParameterValuesTo(StatementHelper target) {
+        for (int i = 0; i < parameters.size(); i++) {
+            target.addParameterValue(parameters.get(i), dataTypes.get(i));
+        }
+    }
+
     public void setParameterValuesToStatement(PreparedStatement pstmt)
             throws SQLException {
         for (int i = 0; i < parameters.size(); i++) {
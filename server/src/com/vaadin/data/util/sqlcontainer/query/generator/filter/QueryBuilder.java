@@ -28,6 +28,8 @@ public class QueryBuilder implements Serializable {
     private static ArrayList<FilterTranslator> filterTranslators = new ArrayList<FilterTranslator>();
     private static StringDecorator stringDecorator = new StringDecorator("\"",
             "\"");
+    /** Incremented when the translators or the string decorator change */
+    private static volatile int configurationVersion;
 
     static {
         /* Register all default filter translators */
@@ -44,6 +46,7 @@ public class QueryBuilder implements Serializable {
     public synchronized static void addFilterTranslator(
             FilterTranslator translator) {
         filterTranslators.add(translator);
+        configurationVersion++;
     }
 
     /**
@@ -55,6 +58,21 @@ public class QueryBuilder implements Serializable {
      */
     public static void setStringDecorator(StringDecorator decorator) {
         stringDecorator = decorator;
+        synchronized (QueryBuilder.class) {
+            configurationVersion++;
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever a filter translator is added or
+     * the string decorator is changed. Generated SQL that has been cached is
+     * no longer valid after the number has changed.
+     * 
+     * @return the current configuration version
+     * @since 7.2
+     */
+    public static int getConfigurationVersion() {
+        return configurationVersion;
     }
 
     public static String quote(Object str) {
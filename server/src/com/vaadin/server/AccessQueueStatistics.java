@@ -0,0 +1,142 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about the tasks queued using {@link VaadinSession#access(Runnable)}
+ * for all sessions of a {@link VaadinService}. The statistics are updated each
+ * time the pending access queue of a session is drained.
+ * 
+ * @see VaadinService#getAccessQueueStatistics()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class AccessQueueStatistics implements Serializable {
+
+    private final AtomicLong drainCount = new AtomicLong();
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Records that a task was run the given number of nanoseconds after it was
+     * queued.
+     * 
+     * @param latency
+     *            the time the task spent in the queue, in nanoseconds
+     */
+    void taskRun(long latency) {
+        taskCount.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        updateMax(maxLatency, latency);
+    }
+
+    /**
+     * Records that a pending access queue containing the given number of tasks
+     * was drained.
+     * 
+     * @param queueDepth
+     *            the number of tasks run from the queue
+     */
+    void queueDrained(int queueDepth) {
+        drainCount.incrementAndGet();
+        updateMax(maxQueueDepth, queueDepth);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of times a non-empty pending access queue has been
+     * drained.
+     * 
+     * @return the number of drains
+     */
+    public long getDrainCount() {
+        return drainCount.get();
+    }
+
+    /**
+     * Gets the total number of tasks that have been run from the pending access
+     * queues.
+     * 
+     * @return the number of tasks run
+     */
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * Gets the largest number of tasks that have been run from a pending access
+     * queue in one drain.
+     * 
+     * @return the maximum queue depth
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the average time from queuing a task until it was run.
+     * 
+     * @param unit
+     *            the time unit of the returned value
+     * @return the average drain latency in the given unit, or 0 if no tasks
+     *         have been run
+     */
+    public long getAverageLatency(TimeUnit unit) {
+        long tasks = taskCount.get();
+        if (tasks == 0) {
+            return 0;
+        }
+        return unit.convert(totalLatency.get() / tasks, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest time from queuing a task until it was run.
+     * 
+     * @param unit
+     *            the time unit of the returned value
+     * @return the maximum drain latency in the given unit
+     */
+    public long getMaxLatency(TimeUnit unit) {
+        return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void reset() {
+        drainCount.set(0);
+        taskCount.set(0);
+        maxQueueDepth.set(0);
+        totalLatency.set(0);
+        maxLatency.set(0);
+    }
+}
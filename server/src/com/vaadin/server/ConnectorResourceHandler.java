@@ -28,7 +28,7 @@ import com.vaadin.shared.ApplicationConstants;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 
-public class ConnectorResourceHandler implements RequestHandler {
+public class ConnectorResourceHandler implements NonExclusiveRequestHandler {
     // APP/connector/[uiid]/[cid]/[filename.xyz]
     private static final Pattern CONNECTOR_RESOURCE_PATTERN = Pattern
             .compile("^/?" + ApplicationConstants.APP_PATH + '/'
@@ -40,6 +40,15 @@ public class ConnectorResourceHandler implements RequestHandler {
 
     }
 
+    @Override
+    public boolean isNonExclusiveRequest(VaadinRequest request) {
+        // Only locks the session while finding the connector, the connector
+        // takes care of its own locking when handling the request
+        String requestPath = request.getPathInfo();
+        return requestPath != null
+                && CONNECTOR_RESOURCE_PATTERN.matcher(requestPath).matches();
+    }
+
     @Override
     public boolean handleRequest(VaadinSession session, VaadinRequest request,
             VaadinResponse response) throws IOException {
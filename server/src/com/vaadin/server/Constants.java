@@ -49,6 +49,25 @@ public interface Constants {
             + "in web.xml. The default of 5min will be used.\n"
             + "===========================================================";
 
+    static final String WARNING_COMPRESSION_THRESHOLD_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: compressionThreshold has been set to a non integer value "
+            + "in web.xml. The default of 1024 bytes will be used.\n"
+            + "===========================================================";
+
+    static final String WARNING_PUSH_COALESCE_INTERVAL_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: pushCoalesceInterval has been set to a non integer value "
+            + "in web.xml. Coalescing of access tasks will be disabled.\n"
+            + "===========================================================";
+
+    static final String WARNING_BACKGROUND_CLEANUP_INTERVAL_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: backgroundCleanupInterval has been set to a non integer\n"
+            + "value in web.xml. Sessions will be cleaned up at the end of\n"
+            + "each request.\n"
+            + "===========================================================";
+
     static final String WARNING_PUSH_MODE_NOT_RECOGNIZED = "\n"
             + "===========================================================\n"
             + "WARNING: pushMode has been set to an unrecognized value\n"
@@ -126,6 +145,10 @@ public interface Constants {
     static final String SERVLET_PARAMETER_PUSH_MODE = "pushMode";
     static final String SERVLET_PARAMETER_UI_PROVIDER = "UIProvider";
     static final String SERVLET_PARAMETER_LEGACY_PROPERTY_TOSTRING = "legacyPropertyToString";
+    static final String SERVLET_PARAMETER_COMPRESS_UIDL = "compressUidl";
+    static final String SERVLET_PARAMETER_COMPRESSION_THRESHOLD = "compressionThreshold";
+    static final String SERVLET_PARAMETER_PUSH_COALESCE_INTERVAL = "pushCoalesceInterval";
+    static final String SERVLET_PARAMETER_BACKGROUND_CLEANUP_INTERVAL = "backgroundCleanupInterval";
 
     // Configurable parameter names
     static final String PARAMETER_VAADIN_RESOURCES = "Resources";
@@ -45,6 +45,34 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
      */
     public static final boolean DEFAULT_CLOSE_IDLE_SESSIONS = false;
 
+    /**
+     * Default value for {@link #isUidlCompressionEnabled()} = {@value} .
+     * 
+     * @since 7.2
+     */
+    public static final boolean DEFAULT_COMPRESS_UIDL = false;
+
+    /**
+     * Default value for {@link #getCompressionThreshold()} = {@value} .
+     * 
+     * @since 7.2
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    /**
+     * Default value for {@link #getPushCoalesceInterval()} = {@value} .
+     * 
+     * @since 7.2
+     */
+    public static final int DEFAULT_PUSH_COALESCE_INTERVAL = 0;
+
+    /**
+     * Default value for {@link #getBackgroundCleanupInterval()} = {@value} .
+     * 
+     * @since 7.2
+     */
+    public static final int DEFAULT_BACKGROUND_CLEANUP_INTERVAL = 0;
+
     /**
      * Default value for {@link #getLegacyPropertyToStringMode()} =
      * {@link LegacyProperyToStringMode#WARNING}.
@@ -58,6 +86,10 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
     private int heartbeatInterval;
     private boolean closeIdleSessions;
     private PushMode pushMode;
+    private boolean uidlCompressionEnabled;
+    private int compressionThreshold;
+    private int pushCoalesceInterval;
+    private int backgroundCleanupInterval;
     private final Class<?> systemPropertyBaseClass;
     private LegacyProperyToStringMode legacyPropertyToStringMode;
 
@@ -82,6 +114,10 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
         checkHeartbeatInterval();
         checkCloseIdleSessions();
         checkPushMode();
+        checkUidlCompression();
+        checkCompressionThreshold();
+        checkPushCoalesceInterval();
+        checkBackgroundCleanupInterval();
         checkLegacyPropertyToString();
     }
 
@@ -236,6 +272,47 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
         return pushMode;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is false.
+     */
+    @Override
+    public boolean isUidlCompressionEnabled() {
+        return uidlCompressionEnabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default threshold is 1024 bytes.
+     */
+    @Override
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is 0, i.e. tasks are run as soon as possible.
+     */
+    @Override
+    public int getPushCoalesceInterval() {
+        return pushCoalesceInterval;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is 0, i.e. sessions are cleaned up at the end of each
+     * request.
+     */
+    @Override
+    public int getBackgroundCleanupInterval() {
+        return backgroundCleanupInterval;
+    }
+
     @Override
     public Properties getInitParameters() {
         return initParameters;
@@ -312,6 +389,51 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
         }
     }
 
+    private void checkUidlCompression() {
+        uidlCompressionEnabled = getApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_COMPRESS_UIDL,
+                Boolean.toString(DEFAULT_COMPRESS_UIDL)).equals("true");
+    }
+
+    private void checkCompressionThreshold() {
+        try {
+            compressionThreshold = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_COMPRESSION_THRESHOLD,
+                            Integer.toString(DEFAULT_COMPRESSION_THRESHOLD)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_COMPRESSION_THRESHOLD_NOT_NUMERIC);
+            compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+        }
+    }
+
+    private void checkPushCoalesceInterval() {
+        try {
+            pushCoalesceInterval = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_PUSH_COALESCE_INTERVAL,
+                            Integer.toString(DEFAULT_PUSH_COALESCE_INTERVAL)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_PUSH_COALESCE_INTERVAL_NOT_NUMERIC);
+            pushCoalesceInterval = DEFAULT_PUSH_COALESCE_INTERVAL;
+        }
+    }
+
+    private void checkBackgroundCleanupInterval() {
+        try {
+            backgroundCleanupInterval = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_BACKGROUND_CLEANUP_INTERVAL,
+                            Integer.toString(DEFAULT_BACKGROUND_CLEANUP_INTERVAL)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_BACKGROUND_CLEANUP_INTERVAL_NOT_NUMERIC);
+            backgroundCleanupInterval = DEFAULT_BACKGROUND_CLEANUP_INTERVAL;
+        }
+    }
+
     private Logger getLogger() {
         return Logger.getLogger(getClass().getName());
     }
@@ -127,6 +127,63 @@ public interface DeploymentConfiguration extends Serializable {
      */
     public PushMode getPushMode();
 
+    /**
+     * Returns whether UIDL responses should be gzip compressed when the
+     * browser accepts a gzip encoded response. Only responses of at least
+     * {@link #getCompressionThreshold()} bytes are compressed.
+     * <p>
+     * Push messages are not affected by this setting.
+     * 
+     * @since 7.2
+     * @return true if UIDL responses should be compressed, false otherwise
+     */
+    public boolean isUidlCompressionEnabled();
+
+    /**
+     * Returns the minimum size, in UTF-8 encoded bytes, of a UIDL response for
+     * it to be compressed when {@link #isUidlCompressionEnabled()} is true.
+     * Smaller responses, e.g. those sent for heartbeats or single value
+     * changes, are sent as is because compressing them saves little and costs
+     * CPU time on both ends.
+     * 
+     * @since 7.2
+     * @return the compression threshold in bytes
+     */
+    public int getCompressionThreshold();
+
+    /**
+     * Returns the minimum number of milliseconds between two runs of the tasks
+     * queued with {@link VaadinSession#access(Runnable)} by threads not
+     * holding the session lock, or a non-positive number if the tasks should
+     * be run as soon as possible.
+     * <p>
+     * With a positive interval, all tasks queued during the interval are run
+     * in one batch from a background thread, so that each UI with
+     * {@link com.vaadin.shared.communication.PushMode#AUTOMATIC automatic
+     * push} pushes once per batch instead of once per task.
+     * <p>
+     * The interval is a best effort limit, not a guarantee. A thread that
+     * releases the session lock, e.g. at the end of a request, still runs the
+     * queued tasks and pushes right away, so a UI may push more than once
+     * during an interval when it also receives requests.
+     * 
+     * @since 7.2
+     * @return the access coalescing interval in milliseconds
+     */
+    public int getPushCoalesceInterval();
+
+    /**
+     * Returns the number of seconds between background sweeps that close
+     * inactive UIs and sessions, or a non-positive number if the clean up
+     * should instead be done on the request thread at the end of each request.
+     * 
+     * @see VaadinService#getSessionCleanupStatistics()
+     * 
+     * @since 7.2
+     * @return the background clean up interval in seconds
+     */
+    public int getBackgroundCleanupInterval();
+
     /**
      * Gets the properties configured for the deployment, e.g. as init
      * parameters to the servlet or portlet.
@@ -65,6 +65,19 @@ public class GlobalResourceHandler implements RequestHandler {
             + ApplicationConstants.APP_PATH + '/' + RESOURCE_REQUEST_PATH
             + "(\\d+)/(([^/]+)(/.*))");
 
+    /**
+     * Checks whether the request is for a resource served by this handler.
+     * 
+     * @since 7.2
+     * @param request
+     *            the request to check
+     * @return true if the request is for a global resource, false otherwise
+     */
+    public static boolean isGlobalResourceRequest(VaadinRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo != null && pattern.matcher(pathInfo).matches();
+    }
+
     @Override
     public boolean handleRequest(VaadinSession session, VaadinRequest request,
             VaadinResponse response) throws IOException {
@@ -31,6 +31,7 @@ import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -71,9 +72,13 @@ public class JsonCodec implements Serializable {
 
     private static class FieldProperty implements BeanProperty {
         private final Field field;
+        private final String name;
+        private final Type type;
 
         public FieldProperty(Field field) {
             this.field = field;
+            name = field.getName();
+            type = field.getGenericType();
         }
 
         @Override
@@ -88,12 +93,12 @@ public class JsonCodec implements Serializable {
 
         @Override
         public String getName() {
-            return field.getName();
+            return name;
         }
 
         @Override
         public Type getType() {
-            return field.getGenericType();
+            return type;
         }
 
         public static Collection<FieldProperty> find(Class<?> type)
@@ -112,30 +117,42 @@ public class JsonCodec implements Serializable {
 
     }
 
+    /**
+     * A bean property accessed through its getter and setter. The accessor
+     * methods, the name and the generic type are resolved once when the
+     * property is created instead of each time the property is used, as
+     * {@link PropertyDescriptor#getReadMethod()} is synchronized and resolving
+     * the name and generic type requires creating new objects.
+     */
     private static class MethodProperty implements BeanProperty {
-        private final PropertyDescriptor pd;
+        private final Method readMethod;
+        private final Method writeMethod;
+        private final String name;
+        private final Type type;
 
         public MethodProperty(PropertyDescriptor pd) {
-            this.pd = pd;
+            readMethod = pd.getReadMethod();
+            writeMethod = pd.getWriteMethod();
+
+            String fieldName = writeMethod.getName().substring(3);
+            name = Character.toLowerCase(fieldName.charAt(0))
+                    + fieldName.substring(1);
+            type = readMethod.getGenericReturnType();
         }
 
         @Override
         public Object getValue(Object bean) throws Exception {
-            Method readMethod = pd.getReadMethod();
             return readMethod.invoke(bean);
         }
 
         @Override
         public void setValue(Object bean, Object value) throws Exception {
-            pd.getWriteMethod().invoke(bean, value);
+            writeMethod.invoke(bean, value);
         }
 
         @Override
         public String getName() {
-            String fieldName = pd.getWriteMethod().getName().substring(3);
-            fieldName = Character.toLowerCase(fieldName.charAt(0))
-                    + fieldName.substring(1);
-            return fieldName;
+            return name;
         }
 
         public static Collection<MethodProperty> find(Class<?> type)
@@ -155,7 +172,7 @@ public class JsonCodec implements Serializable {
 
         @Override
         public Type getType() {
-            return pd.getReadMethod().getGenericReturnType();
+            return type;
         }
 
     }
@@ -696,10 +713,11 @@ public class JsonCodec implements Serializable {
         if (cachedProperties != null) {
             return cachedProperties;
         }
-        Collection<BeanProperty> properties = new ArrayList<BeanProperty>();
+        List<BeanProperty> properties = new ArrayList<BeanProperty>();
 
         properties.addAll(MethodProperty.find(type));
         properties.addAll(FieldProperty.find(type));
+        properties = Collections.unmodifiableList(properties);
 
         // Doesn't matter if the same calculation is done multiple times from
         // different threads, so there's no need to do e.g. putIfAbsent
@@ -757,6 +775,11 @@ public class JsonCodec implements Serializable {
 
     /**
      * Compares the value with the reference. If they match, returns true.
+     * <p>
+     * JSON objects and arrays are compared structurally without converting
+     * them to strings. Other values are compared using their string
+     * representation only if they are not of the same type, e.g. when
+     * comparing an Integer with a Long.
      * 
      * @param fieldValue
      * @param referenceValue
@@ -774,11 +797,52 @@ public class JsonCodec implements Serializable {
             return true;
         } else if (fieldValue == null || referenceValue == null) {
             return false;
+        } else if (fieldValue instanceof JSONObject) {
+            return referenceValue instanceof JSONObject
+                    && jsonObjectEquals((JSONObject) fieldValue,
+                            (JSONObject) referenceValue);
+        } else if (fieldValue instanceof JSONArray) {
+            return referenceValue instanceof JSONArray
+                    && jsonArrayEquals((JSONArray) fieldValue,
+                            (JSONArray) referenceValue);
+        } else if (referenceValue instanceof JSONObject
+                || referenceValue instanceof JSONArray) {
+            return false;
+        } else if (fieldValue.getClass() == referenceValue.getClass()) {
+            return fieldValue.equals(referenceValue);
         } else {
             return fieldValue.toString().equals(referenceValue.toString());
         }
     }
 
+    private static boolean jsonObjectEquals(JSONObject value,
+            JSONObject reference) {
+        if (value.length() != reference.length()) {
+            return false;
+        }
+        for (Iterator<?> iter = value.keys(); iter.hasNext();) {
+            String key = (String) iter.next();
+            if (!reference.has(key)
+                    || !jsonEquals(value.opt(key), reference.opt(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean jsonArrayEquals(JSONArray value, JSONArray reference) {
+        int length = value.length();
+        if (length != reference.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!jsonEquals(value.opt(i), reference.opt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static EncodeResult encodeEnum(Enum<?> e,
             ConnectorTracker connectorTracker) throws JSONException {
         return new EncodeResult(e.name());
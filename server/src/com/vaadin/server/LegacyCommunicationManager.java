@@ -24,6 +24,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,6 +73,13 @@ public class LegacyCommunicationManager implements Serializable {
     // TODO Refactor (#11413)
     private Map<String, Class<?>> publishedFileContexts = new HashMap<String, Class<?>>();
 
+    /**
+     * Cache for the encoded default values of each shared state type. Will be
+     * used from any thread that happens to process Vaadin requests, so it must
+     * be protected from corruption caused by concurrent access.
+     */
+    private static final ConcurrentMap<Class<? extends SharedState>, JSONObject> referenceDiffStates = new ConcurrentHashMap<Class<? extends SharedState>, JSONObject>();
+
     /**
      * TODO New constructor - document me!
      * 
@@ -99,12 +108,43 @@ public class LegacyCommunicationManager implements Serializable {
         if (diffState == null && supportsDiffState) {
             // Use an empty state object as reference for full
             // repaints
+            diffState = getReferenceDiffState(stateType, connectorTracker);
+        }
+        EncodeResult encodeResult = JsonCodec.encode(state, diffState,
+                stateType, uI.getConnectorTracker());
+        if (supportsDiffState) {
+            connectorTracker.setDiffState(connector,
+                    (JSONObject) encodeResult.getEncodedValue());
+        }
+        return (JSONObject) encodeResult.getDiff();
+    }
 
+    /**
+     * Gets the encoded default values of the given state type. The result is
+     * cached for each state type as it is the same for all connectors using
+     * that type. The returned object is shared and must not be modified.
+     * 
+     * @param stateType
+     *            the state type to get the reference diff state for
+     * @param connectorTracker
+     *            the connector tracker to use when encoding the default state
+     * @return the encoded default state or <code>null</code> if it could not
+     *         be created
+     */
+    private static JSONObject getReferenceDiffState(
+            Class<? extends SharedState> stateType,
+            ConnectorTracker connectorTracker) {
+        JSONObject referenceDiffState = referenceDiffStates.get(stateType);
+        if (referenceDiffState == null) {
             try {
                 SharedState referenceState = stateType.newInstance();
                 EncodeResult encodeResult = JsonCodec.encode(referenceState,
-                        null, stateType, uI.getConnectorTracker());
-                diffState = encodeResult.getEncodedValue();
+                        null, stateType, connectorTracker);
+                referenceDiffState = (JSONObject) encodeResult
+                        .getEncodedValue();
+                // Doesn't matter if the same calculation is done multiple
+                // times from different threads
+                referenceDiffStates.put(stateType, referenceDiffState);
             } catch (Exception e) {
                 getLogger()
                         .log(Level.WARNING,
@@ -112,13 +152,7 @@ public class LegacyCommunicationManager implements Serializable {
                                 stateType.getName());
             }
         }
-        EncodeResult encodeResult = JsonCodec.encode(state, diffState,
-                stateType, uI.getConnectorTracker());
-        if (supportsDiffState) {
-            connectorTracker.setDiffState(connector,
-                    (JSONObject) encodeResult.getEncodedValue());
-        }
-        return (JSONObject) encodeResult.getDiff();
+        return referenceDiffState;
     }
 
     /**
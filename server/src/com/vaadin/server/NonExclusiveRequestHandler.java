@@ -0,0 +1,54 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+/**
+ * A {@link RequestHandler} that can declare that it handles some requests
+ * without needing exclusive access to the {@link VaadinSession}.
+ * <p>
+ * For requests declared as non-exclusive, the framework finds the existing
+ * session without locking it and only cleans up the session after the request
+ * if the lock is immediately available. This allows e.g. heartbeat requests and
+ * resource downloads from other browser tabs to proceed while a long UIDL
+ * request holds the session lock. A non-exclusive request never creates a new
+ * session.
+ * <p>
+ * The handler is still responsible for locking the session itself whenever it
+ * reads or modifies session state that is not thread safe.
+ * 
+ * @see VaadinService#isNonExclusiveRequest(VaadinRequest)
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public interface NonExclusiveRequestHandler extends RequestHandler {
+
+    /**
+     * Checks whether the given request is one that this handler handles
+     * without needing exclusive access to the session. This method is called
+     * before the session for the request has been looked up and should only
+     * inspect e.g. the path of the request.
+     * 
+     * @param request
+     *            the request to check
+     * @return <code>true</code> if this handler handles the request and only
+     *         locks the session itself when needed; <code>false</code> if the
+     *         request is not handled by this handler or requires exclusive
+     *         access to the session
+     */
+    public boolean isNonExclusiveRequest(VaadinRequest request);
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about the background sweeps that close inactive UIs and sessions
+ * of a {@link VaadinService}. The statistics are only updated when background
+ * clean up has been enabled using
+ * {@link DeploymentConfiguration#getBackgroundCleanupInterval()}.
+ * 
+ * @see VaadinService#getSessionCleanupStatistics()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class SessionCleanupStatistics implements Serializable {
+
+    private final AtomicLong sweepCount = new AtomicLong();
+    private final AtomicLong sessionsChecked = new AtomicLong();
+    private final AtomicLong sessionsSkipped = new AtomicLong();
+    private final AtomicLong sessionsClosed = new AtomicLong();
+    private final AtomicLong uisRemoved = new AtomicLong();
+    private final AtomicLong lastSweepDuration = new AtomicLong();
+    private final AtomicLong maxSweepDuration = new AtomicLong();
+
+    /**
+     * Records the outcome of one sweep over the sessions of the service.
+     * 
+     * @param checked
+     *            the number of sessions that were cleaned up
+     * @param skipped
+     *            the number of sessions that were skipped because they were
+     *            locked by another thread
+     * @param closed
+     *            the number of inactive sessions that were closed
+     * @param removedUIs
+     *            the number of UIs removed from the sessions
+     * @param duration
+     *            the duration of the sweep, in nanoseconds
+     */
+    void sweepDone(int checked, int skipped, int closed, int removedUIs,
+            long duration) {
+        sweepCount.incrementAndGet();
+        sessionsChecked.addAndGet(checked);
+        sessionsSkipped.addAndGet(skipped);
+        sessionsClosed.addAndGet(closed);
+        uisRemoved.addAndGet(removedUIs);
+        lastSweepDuration.set(duration);
+        long current;
+        while ((current = maxSweepDuration.get()) < duration) {
+            if (maxSweepDuration.compareAndSet(current, duration)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of completed background sweeps.
+     * 
+     * @return the number of sweeps
+     */
+    public long getSweepCount() {
+        return sweepCount.get();
+    }
+
+    /**
+     * Gets the total number of sessions that have been checked for inactive
+     * UIs by the sweeps.
+     * 
+     * @return the number of checked sessions
+     */
+    public long getSessionsChecked() {
+        return sessionsChecked.get();
+    }
+
+    /**
+     * Gets the total number of times a session was skipped because another
+     * thread held its lock. A skipped session is checked again in the next
+     * sweep.
+     * 
+     * @return the number of skipped sessions
+     */
+    public long getSessionsSkipped() {
+        return sessionsSkipped.get();
+    }
+
+    /**
+     * Gets the number of inactive sessions closed by the sweeps.
+     * 
+     * @return the number of closed sessions
+     */
+    public long getSessionsClosed() {
+        return sessionsClosed.get();
+    }
+
+    /**
+     * Gets the number of UIs removed from sessions by the sweeps, including
+     * the UIs of closed sessions.
+     * 
+     * @return the number of removed UIs
+     */
+    public long getUIsRemoved() {
+        return uisRemoved.get();
+    }
+
+    /**
+     * Gets the duration of the latest sweep.
+     * 
+     * @param unit
+     *            the time unit of the returned value
+     * @return the duration of the latest sweep in the given unit, or 0 if no
+     *         sweep has been run
+     */
+    public long getLastSweepDuration(TimeUnit unit) {
+        return unit.convert(lastSweepDuration.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the duration of the longest sweep.
+     * 
+     * @param unit
+     *            the time unit of the returned value
+     * @return the maximum sweep duration in the given unit
+     */
+    public long getMaxSweepDuration(TimeUnit unit) {
+        return unit.convert(maxSweepDuration.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void reset() {
+        sweepCount.set(0);
+        sessionsChecked.set(0);
+        sessionsSkipped.set(0);
+        sessionsClosed.set(0);
+        uisRemoved.set(0);
+        lastSweepDuration.set(0);
+        maxSweepDuration.set(0);
+    }
+}
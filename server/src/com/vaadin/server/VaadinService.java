@@ -34,8 +34,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -117,6 +124,8 @@ public abstract class VaadinService implements Serializable {
 
     private static final String REQUEST_START_TIME_ATTRIBUTE = "requestStartTime";
 
+    private static final String NON_EXCLUSIVE_REQUEST_ATTRIBUTE = "nonExclusiveRequest";
+
     private final DeploymentConfiguration deploymentConfiguration;
 
     private final EventRouter eventRouter = new EventRouter();
@@ -140,6 +149,46 @@ public abstract class VaadinService implements Serializable {
      */
     private boolean initialized = false;
 
+    private final AccessQueueStatistics accessQueueStatistics = new AccessQueueStatistics();
+
+    /**
+     * Runs background tasks such as coalesced access queue drains and session
+     * clean up sweeps. Created lazily and shut down when the service is
+     * destroyed.
+     */
+    private transient ScheduledExecutorService backgroundExecutor;
+
+    /**
+     * Set when the service is destroyed to prevent creating a new background
+     * executor that would never be shut down.
+     */
+    private transient boolean destroyed = false;
+
+    private final SessionCleanupStatistics sessionCleanupStatistics = new SessionCleanupStatistics();
+
+    /**
+     * The number of consecutive background clean up sweeps in which a session
+     * was skipped because it was locked, after which the sweep waits for the
+     * lock of the session.
+     */
+    private static final int CLEANUP_MAX_SKIPS = 3;
+
+    /**
+     * The maximum time in milliseconds a background clean up sweep waits for
+     * the lock of a session that has been skipped
+     * {@link #CLEANUP_MAX_SKIPS} times in a row.
+     */
+    private static final long CLEANUP_LOCK_WAIT = 1000;
+
+    /**
+     * Sessions to check in the background clean up sweeps, mapped to the
+     * number of consecutive sweeps that have skipped them. Only used if
+     * {@link DeploymentConfiguration#getBackgroundCleanupInterval()} is
+     * positive. The sessions are weakly referenced so that a session that is
+     * discarded without a destroy event is not kept in memory.
+     */
+    private transient Map<VaadinSession, Integer> cleanupSessions;
+
     /**
      * Creates a new vaadin service based on a deployment configuration
      * 
@@ -180,6 +229,23 @@ public abstract class VaadinService implements Serializable {
         Collections.reverse(handlers);
         requestHandlers = Collections.unmodifiableCollection(handlers);
 
+        /*
+         * The background executor is only created if background clean up is
+         * enabled or when the first access task is coalesced.
+         */
+        int cleanupInterval = getDeploymentConfiguration()
+                .getBackgroundCleanupInterval();
+        ScheduledExecutorService executor = cleanupInterval > 0 ? getBackgroundExecutor()
+                : null;
+        if (executor != null) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    runCleanupSweep();
+                }
+            }, cleanupInterval, cleanupInterval, TimeUnit.SECONDS);
+        }
+
         initialized = true;
     }
 
@@ -440,6 +506,7 @@ public abstract class VaadinService implements Serializable {
      */
     public void fireSessionDestroy(VaadinSession vaadinSession) {
         final VaadinSession session = vaadinSession;
+        getCleanupSessions().remove(session);
         session.accessSynchronously(new Runnable() {
             @Override
             public void run() {
@@ -509,6 +576,80 @@ public abstract class VaadinService implements Serializable {
         return vaadinSession;
     }
 
+    /**
+     * Finds the existing Vaadin session for a request that does not need
+     * exclusive access to the session, without locking the session. Falls back
+     * to {@link #findVaadinSession(VaadinRequest)} if the session has not yet
+     * been initialized for this service, e.g. after deserialization, or if the
+     * request asks to restart or close the application, so that
+     * {@link #getExistingSession(VaadinRequest, boolean)} and the restart and
+     * close handling are used for those requests.
+     * 
+     * @param request
+     *            the request to get a vaadin service session for
+     * @return the vaadin service session for the request, or
+     *         <code>null</code> if no session is found
+     * 
+     * @see #isNonExclusiveRequest(VaadinRequest)
+     */
+    private VaadinSession findExistingVaadinSession(VaadinRequest request)
+            throws ServiceException, SessionExpiredException {
+        if (hasParameter(request, URL_PARAMETER_RESTART_APPLICATION)
+                || hasParameter(request, URL_PARAMETER_CLOSE_APPLICATION)) {
+            return findVaadinSession(request);
+        }
+        WrappedSession wrappedSession = getWrappedSession(request, false);
+        VaadinSession vaadinSession;
+        try {
+            vaadinSession = VaadinSession.getInitializedForSession(this,
+                    wrappedSession);
+        } catch (IllegalStateException e) {
+            // Session has been invalidated
+            throw new SessionExpiredException();
+        }
+        if (vaadinSession == null) {
+            return findVaadinSession(request);
+        }
+
+        VaadinSession.setCurrent(vaadinSession);
+        request.setAttribute(VaadinSession.class.getName(), vaadinSession);
+
+        return vaadinSession;
+    }
+
+    /**
+     * Checks whether the given request can be handled without exclusive access
+     * to the session. This is the case if one of the request handlers of this
+     * service is a {@link NonExclusiveRequestHandler} that declares the request
+     * as non-exclusive.
+     * <p>
+     * For non-exclusive requests, a session that has already been loaded by an
+     * earlier request is used without locking it and without calling
+     * {@link #getExistingSession(VaadinRequest, boolean)}. Subclasses that
+     * customize the session lookup should override this method to return
+     * <code>false</code> for requests that must go through it. The session is
+     * only cleaned up at the end of the request if it is not currently locked
+     * by some other thread, as that thread will do the clean up once it is
+     * done, and the duration of the request is recorded using
+     * {@link VaadinSession#access(Runnable)} instead of waiting for the lock.
+     * 
+     * @since 7.2
+     * @param request
+     *            the request to check
+     * @return <code>true</code> if the request does not need exclusive access
+     *         to the session, otherwise <code>false</code>
+     */
+    protected boolean isNonExclusiveRequest(VaadinRequest request) {
+        for (RequestHandler handler : getRequestHandlers()) {
+            if (handler instanceof NonExclusiveRequestHandler
+                    && ((NonExclusiveRequestHandler) handler)
+                            .isNonExclusiveRequest(request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Associates the given lock with this service and the given wrapped
      * session. This method should not be called more than once when the lock is
@@ -792,6 +933,23 @@ public abstract class VaadinService implements Serializable {
         }
     }
 
+    /**
+     * Gets the existing Vaadin session for the request while the session is
+     * locked.
+     * <p>
+     * Since 7.2, this method is not called for requests that do not need
+     * exclusive access to the session if the session has already been loaded
+     * by an earlier request, see {@link #isNonExclusiveRequest(VaadinRequest)}.
+     * 
+     * @param request
+     *            the request to get the session for
+     * @param allowSessionCreation
+     *            true to create a new wrapped session if one does not exist
+     * @return the Vaadin session, or <code>null</code> if there is none
+     * @throws SessionExpiredException
+     *             if there is no wrapped session and creating one is not
+     *             allowed
+     */
     protected VaadinSession getExistingSession(VaadinRequest request,
             boolean allowSessionCreation) throws SessionExpiredException {
 
@@ -1097,9 +1255,10 @@ public abstract class VaadinService implements Serializable {
     }
 
     /**
-     * Called at the end of a request, after sending the response. Closes
-     * inactive UIs in the given session, removes closed UIs from the session,
-     * and closes the session if it is itself inactive.
+     * Called at the end of a request, after sending the response, or from a
+     * background sweep if background clean up is enabled. Closes inactive UIs
+     * in the given session, removes closed UIs from the session, and closes the
+     * session if it is itself inactive.
      * 
      * @param session
      */
@@ -1132,6 +1291,129 @@ public abstract class VaadinService implements Serializable {
         }
     }
 
+    /**
+     * Closes inactive UIs and sessions in all sessions that have handled
+     * requests and have not yet been closed. Sessions that are locked by
+     * another thread are skipped and checked again in the next sweep. If a
+     * session has been locked in several consecutive sweeps, the sweep waits
+     * for a while for its lock.
+     * 
+     * @see DeploymentConfiguration#getBackgroundCleanupInterval()
+     */
+    void runCleanupSweep() {
+        long start = System.nanoTime();
+        int checked = 0;
+        int skipped = 0;
+        int closed = 0;
+        int removedUIs = 0;
+
+        Map<VaadinSession, Integer> cleanupSessions = getCleanupSessions();
+        List<VaadinSession> sessions;
+        synchronized (cleanupSessions) {
+            sessions = new ArrayList<VaadinSession>(cleanupSessions.keySet());
+        }
+        for (final VaadinSession session : sessions) {
+            Lock lock = session.getLockInstance();
+            if (lock == null) {
+                // Not stored in any wrapped session
+                cleanupSessions.remove(session);
+                continue;
+            } else if (!tryLockForCleanup(session, lock)) {
+                skipped++;
+                continue;
+            }
+            try {
+                int uisBefore = session.getUIs().size();
+                boolean active = isSessionActive(session);
+                session.accessSynchronously(new Runnable() {
+                    @Override
+                    public void run() {
+                        cleanupSession(session);
+                    }
+                });
+                checked++;
+                if (active) {
+                    removedUIs += uisBefore - session.getUIs().size();
+                    resetCleanupSkips(session);
+                } else {
+                    closed++;
+                    removedUIs += uisBefore;
+                    cleanupSessions.remove(session);
+                }
+            } catch (IllegalStateException e) {
+                // The wrapped session has been invalidated
+                cleanupSessions.remove(session);
+            } catch (RuntimeException e) {
+                getLogger().log(Level.WARNING,
+                        "Background clean up of a session failed", e);
+            } finally {
+                session.unlock();
+            }
+        }
+
+        sessionCleanupStatistics.sweepDone(checked, skipped, closed,
+                removedUIs, System.nanoTime() - start);
+    }
+
+    /**
+     * Tries to lock a session for a background clean up sweep. Waits for the
+     * lock if the session has been skipped in too many consecutive sweeps, and
+     * otherwise only takes the lock if it is free.
+     * 
+     * @return true if the lock was acquired, false if the session was skipped
+     */
+    private boolean tryLockForCleanup(VaadinSession session, Lock lock) {
+        if (lock.tryLock()) {
+            return true;
+        }
+        Map<VaadinSession, Integer> cleanupSessions = getCleanupSessions();
+        synchronized (cleanupSessions) {
+            Integer skips = cleanupSessions.get(session);
+            if (skips == null) {
+                // Removed concurrently
+                return false;
+            } else if (skips.intValue() < CLEANUP_MAX_SKIPS) {
+                cleanupSessions.put(session, Integer.valueOf(skips.intValue() + 1));
+                return false;
+            }
+        }
+        try {
+            if (lock.tryLock(CLEANUP_LOCK_WAIT, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        getLogger().log(Level.FINE,
+                "Session locked in {0} consecutive clean up sweeps",
+                Integer.valueOf(CLEANUP_MAX_SKIPS + 1));
+        return false;
+    }
+
+    private void resetCleanupSkips(VaadinSession session) {
+        Map<VaadinSession, Integer> cleanupSessions = getCleanupSessions();
+        synchronized (cleanupSessions) {
+            if (cleanupSessions.containsKey(session)) {
+                cleanupSessions.put(session, Integer.valueOf(0));
+            }
+        }
+    }
+
+    private Map<VaadinSession, Integer> getCleanupSessions() {
+        Map<VaadinSession, Integer> sessions = cleanupSessions;
+        if (sessions == null) {
+            synchronized (this) {
+                if (cleanupSessions == null) {
+                    cleanupSessions = Collections
+                            .synchronizedMap(new WeakHashMap<VaadinSession, Integer>());
+                }
+                sessions = cleanupSessions;
+            }
+        }
+        return sessions;
+    }
+
     /**
      * Removes those UIs from the given session for which {@link UI#isClosing()
      * isClosing} yields true.
@@ -1307,22 +1589,53 @@ public abstract class VaadinService implements Serializable {
             VaadinSession session) {
         if (session != null) {
             final VaadinSession finalSession = session;
-
-            session.accessSynchronously(new Runnable() {
+            Runnable cleanup = new Runnable() {
                 @Override
                 public void run() {
                     cleanupSession(finalSession);
                 }
-            });
+            };
+            boolean backgroundCleanup = getDeploymentConfiguration()
+                    .getBackgroundCleanupInterval() > 0;
+            if (backgroundCleanup) {
+                // Leave the clean up to the next background sweep
+                Map<VaadinSession, Integer> cleanupSessions = getCleanupSessions();
+                synchronized (cleanupSessions) {
+                    if (!cleanupSessions.containsKey(session)) {
+                        cleanupSessions.put(session, Integer.valueOf(0));
+                    }
+                }
+            }
 
             final long duration = (System.nanoTime() - (Long) request
                     .getAttribute(REQUEST_START_TIME_ATTRIBUTE)) / 1000000;
-            session.accessSynchronously(new Runnable() {
+            Runnable recordDuration = new Runnable() {
                 @Override
                 public void run() {
                     finalSession.setLastRequestDuration(duration);
                 }
-            });
+            };
+            if (request.getAttribute(NON_EXCLUSIVE_REQUEST_ATTRIBUTE) != null) {
+                /*
+                 * Don't wait for the lock. If another thread holds it, that
+                 * thread is handling a request that will clean up the session
+                 * when it ends, and the duration is recorded when it releases
+                 * the lock.
+                 */
+                if (!backgroundCleanup && session.getLockInstance().tryLock()) {
+                    try {
+                        session.accessSynchronously(cleanup);
+                    } finally {
+                        session.unlock();
+                    }
+                }
+                session.access(recordDuration);
+            } else {
+                if (!backgroundCleanup) {
+                    session.accessSynchronously(cleanup);
+                }
+                session.accessSynchronously(recordDuration);
+            }
         }
         CurrentInstance.clearAll();
     }
@@ -1368,7 +1681,13 @@ public abstract class VaadinService implements Serializable {
         VaadinSession vaadinSession = null;
         try {
             // Find out the service session this request is related to
-            vaadinSession = findVaadinSession(request);
+            if (isNonExclusiveRequest(request)) {
+                request.setAttribute(NON_EXCLUSIVE_REQUEST_ATTRIBUTE,
+                        Boolean.TRUE);
+                vaadinSession = findExistingVaadinSession(request);
+            } else {
+                vaadinSession = findVaadinSession(request);
+            }
             if (vaadinSession == null) {
                 return;
             }
@@ -1680,6 +1999,17 @@ public abstract class VaadinService implements Serializable {
         FutureAccess future = new FutureAccess(session, runnable);
         session.getPendingAccessQueue().add(future);
 
+        if (getDeploymentConfiguration().getPushCoalesceInterval() > 0) {
+            /*
+             * Don't touch the lock from this thread at all but let a
+             * background thread run all tasks queued during the interval in
+             * one go. If the lock is currently held, the queue will anyway be
+             * purged when it is released.
+             */
+            scheduleAccessDrain(session);
+            return future;
+        }
+
         /*
          * If no thread is currently holding the lock, pending changes for UIs
          * with automatic push would not be processed and pushed until the next
@@ -1706,6 +2036,153 @@ public abstract class VaadinService implements Serializable {
         return future;
     }
 
+    /**
+     * Schedules a background run of the pending access tasks of the given
+     * session unless one has already been scheduled. The run happens no sooner
+     * than the configured coalescing interval after the previous run.
+     * 
+     * @see DeploymentConfiguration#getPushCoalesceInterval()
+     * 
+     * @param session
+     *            the session to drain the access queue for
+     */
+    private void scheduleAccessDrain(final VaadinSession session) {
+        final AtomicBoolean scheduled = session.getAccessDrainScheduled();
+        if (!scheduled.compareAndSet(false, true)) {
+            // The scheduled drain will also run this task
+            return;
+        }
+
+        long interval = TimeUnit.MILLISECONDS
+                .toNanos(getDeploymentConfiguration()
+                        .getPushCoalesceInterval());
+        long delay = session.getLastAccessDrain() + interval
+                - System.nanoTime();
+
+        Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (session.getLockInstance().tryLock()) {
+                        // unlock triggers runPendingAccessTasks
+                        session.unlock();
+                    }
+                    session.setLastAccessDrain(System.nanoTime());
+                } finally {
+                    /*
+                     * Cleared only after the drain time has been recorded so
+                     * that tasks queued meanwhile are scheduled for the next
+                     * interval instead of being drained right away.
+                     */
+                    scheduled.set(false);
+                }
+                if (!session.getPendingAccessQueue().isEmpty()) {
+                    /*
+                     * Tasks were queued after the drain, or the lock was held
+                     * by a thread that might already have purged the queue
+                     * before these tasks were queued. Try again after the
+                     * interval to make sure they don't end up waiting for the
+                     * next request.
+                     */
+                    scheduleAccessDrain(session);
+                }
+            }
+        };
+
+        ScheduledExecutorService executor = getBackgroundExecutor();
+        if (executor != null) {
+            try {
+                executor.schedule(drain,
+                        Math.min(interval, Math.max(0, delay)),
+                        TimeUnit.NANOSECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shut down concurrently, drain below instead
+            }
+        }
+        /*
+         * The service has been destroyed. Don't leave the tasks waiting for a
+         * background run that will never happen but try to drain them right
+         * away.
+         */
+        try {
+            if (session.getLockInstance().tryLock()) {
+                session.unlock();
+            }
+        } finally {
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * Gets the executor used for running background tasks for this service.
+     * The executor is created when first needed, i.e. only if background clean
+     * up or access coalescing is enabled, and shut down when the service is
+     * destroyed.
+     * 
+     * @return the background executor, or <code>null</code> if the service
+     *         has been destroyed
+     */
+    private synchronized ScheduledExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null && !destroyed) {
+            backgroundExecutor = new ScheduledThreadPoolExecutor(Runtime
+                    .getRuntime().availableProcessors(),
+                    new BackgroundThreadFactory(getServiceName()
+                            + "-background-"));
+        }
+        return backgroundExecutor;
+    }
+
+    /**
+     * Creates named daemon threads for the background executor so that a
+     * service that is never destroyed doesn't prevent the JVM from exiting.
+     */
+    private static class BackgroundThreadFactory implements ThreadFactory,
+            Serializable {
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public BackgroundThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix
+                    + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Gets statistics about the tasks queued using
+     * {@link VaadinSession#access(Runnable)} in the sessions of this service,
+     * such as the number of tasks run per drain of the queue and the time the
+     * tasks have been waiting in the queue.
+     * 
+     * @since 7.2
+     * @return the access queue statistics, not <code>null</code>
+     */
+    public AccessQueueStatistics getAccessQueueStatistics() {
+        return accessQueueStatistics;
+    }
+
+    /**
+     * Gets statistics about the background sweeps that close inactive UIs and
+     * sessions, such as the number of sessions checked or skipped because they
+     * were locked and the duration of the sweeps. The statistics are only
+     * updated if background clean up has been enabled.
+     * 
+     * @see DeploymentConfiguration#getBackgroundCleanupInterval()
+     * 
+     * @since 7.2
+     * @return the session clean up statistics, not <code>null</code>
+     */
+    public SessionCleanupStatistics getSessionCleanupStatistics() {
+        return sessionCleanupStatistics;
+    }
+
     /**
      * Purges the queue of pending access invocations enqueued with
      * {@link VaadinSession#access(Runnable)}.
@@ -1728,9 +2205,13 @@ public abstract class VaadinService implements Serializable {
                 .getInstances(false);
 
         FutureAccess pendingAccess;
+        int queueDepth = 0;
         try {
             while ((pendingAccess = session.getPendingAccessQueue().poll()) != null) {
                 if (!pendingAccess.isCancelled()) {
+                    accessQueueStatistics.taskRun(System.nanoTime()
+                            - pendingAccess.getQueueTime());
+                    queueDepth++;
                     CurrentInstance.clearAll();
                     CurrentInstance.restoreInstances(pendingAccess
                             .getCurrentInstances());
@@ -1741,6 +2222,10 @@ public abstract class VaadinService implements Serializable {
         } finally {
             CurrentInstance.clearAll();
             CurrentInstance.restoreInstances(oldInstances);
+            session.setLastAccessDrain(System.nanoTime());
+            if (queueDepth > 0) {
+                accessQueueStatistics.queueDrained(queueDepth);
+            }
         }
     }
 
@@ -1787,6 +2272,14 @@ public abstract class VaadinService implements Serializable {
      */
     public void destroy() {
         eventRouter.fireEvent(new ServiceDestroyEvent(this));
+        synchronized (this) {
+            destroyed = true;
+            if (backgroundExecutor != null) {
+                backgroundExecutor.shutdownNow();
+                backgroundExecutor = null;
+            }
+        }
+        getCleanupSessions().clear();
     }
 
 }
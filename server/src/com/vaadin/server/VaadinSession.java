@@ -27,10 +27,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
@@ -83,6 +85,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         private final Map<Class<?>, CurrentInstance> instances = CurrentInstance
                 .getInstances(true);
         private final VaadinSession session;
+        private final long queueTime = System.nanoTime();
 
         /**
          * Creates an instance for the given runnable
@@ -126,6 +129,15 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         public Map<Class<?>, CurrentInstance> getCurrentInstances() {
             return instances;
         }
+
+        /**
+         * Gets the {@link System#nanoTime()} at which this task was created.
+         * 
+         * @return the creation time in nanoseconds
+         */
+        long getQueueTime() {
+            return queueTime;
+        }
     }
 
     /**
@@ -167,7 +179,11 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
     private LinkedList<RequestHandler> requestHandlers = new LinkedList<RequestHandler>();
 
     private int nextUIId = 0;
-    private Map<Integer, UI> uIs = new HashMap<Integer, UI>();
+    /*
+     * Concurrent so that UIs can be looked up by requests that do not lock the
+     * session, e.g. heartbeats. Modifications still require the lock.
+     */
+    private Map<Integer, UI> uIs = new ConcurrentHashMap<Integer, UI>();
 
     private final Map<String, Integer> embedIdMap = new HashMap<String, Integer>();
 
@@ -204,6 +220,19 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      */
     private transient ConcurrentLinkedQueue<FutureAccess> pendingAccessQueue;
 
+    /**
+     * Whether a background run of the pending access tasks has been scheduled
+     * by {@link VaadinService#accessSession(VaadinSession, Runnable)} when
+     * access tasks are coalesced.
+     */
+    private transient AtomicBoolean accessDrainScheduled;
+
+    /**
+     * The {@link System#nanoTime()} when the pending access queue was last
+     * drained.
+     */
+    private transient volatile long lastAccessDrain;
+
     /**
      * Create a new service session tied to a Vaadin service
      * 
@@ -387,6 +416,31 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         return vaadinSession;
     }
 
+    /**
+     * Loads the VaadinSession for the given service and WrappedSession from the
+     * HTTP session without locking. Only returns a VaadinSession that has
+     * already been loaded using {@link #getForSession(VaadinService, WrappedSession)}
+     * for the same service, i.e. one whose transient fields are initialized.
+     * 
+     * @param service
+     *            The service the VaadinSession is associated with
+     * @param underlyingSession
+     *            The wrapped HTTP session for the user
+     * @return An initialized VaadinSession instance for the service, session
+     *         combination or null if none was found or if it has not been
+     *         initialized.
+     */
+    static VaadinSession getInitializedForSession(VaadinService service,
+            WrappedSession underlyingSession) {
+        VaadinSession vaadinSession = (VaadinSession) underlyingSession
+                .getAttribute(getSessionAttributeName(service));
+        if (vaadinSession == null || vaadinSession.service != service
+                || vaadinSession.lock == null) {
+            return null;
+        }
+        return vaadinSession;
+    }
+
     /**
      * Removes this VaadinSession from the HTTP session.
      * 
@@ -698,13 +752,17 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      * <p>
      * This is meant for framework internal use.
      * </p>
+     * <p>
+     * Since 7.2, the UI can be looked up without holding the session lock, but
+     * the lock must still be held when accessing the returned UI unless it is
+     * otherwise documented to be thread safe.
+     * </p>
      * 
      * @param uiId
      *            The UI id
      * @return The UI with the given id or null if not found
      */
     public UI getUIById(int uiId) {
-        assert hasLock();
         return uIs.get(uiId);
     }
 
@@ -1275,6 +1333,31 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         return pendingAccessQueue;
     }
 
+    /**
+     * Gets the flag telling whether a coalesced run of the pending access tasks
+     * has been scheduled. Also starts measuring the coalescing interval from
+     * the first call, as there has been no previous drain.
+     * 
+     * @return the scheduling flag, not <code>null</code>
+     */
+    AtomicBoolean getAccessDrainScheduled() {
+        if (accessDrainScheduled == null) {
+            // Transient, so will be null after deserialization. Creating two
+            // instances in a race only causes an extra drain to be scheduled.
+            lastAccessDrain = System.nanoTime();
+            accessDrainScheduled = new AtomicBoolean();
+        }
+        return accessDrainScheduled;
+    }
+
+    long getLastAccessDrain() {
+        return lastAccessDrain;
+    }
+
+    void setLastAccessDrain(long lastAccessDrain) {
+        this.lastAccessDrain = lastAccessDrain;
+    }
+
     /**
      * Gets the CSRF token (aka double submit cookie) that is used to protect
      * against Cross Site Request Forgery attacks.
@@ -122,13 +122,22 @@ public class AtmospherePushConnection implements PushConnection {
      * @throws IOException
      */
     protected void push(boolean async) throws IOException {
-        Writer writer = new StringWriter();
+        // Write the message envelope directly to avoid copying the whole
+        // message once more when concatenating. The writer is sized based on
+        // the latest messages to avoid growing it while writing.
+        ResponseBuffer responseBuffer = getUI().getResponseBuffer();
+        Writer writer = new StringWriter(Math.max(16,
+                responseBuffer.getSizeEstimate()));
+        writer.write("for(;;);[{");
         try {
             new UidlWriter().write(getUI(), writer, false, async);
         } catch (JSONException e) {
             throw new IOException("Error writing UIDL", e);
         }
-        sendMessage("for(;;);[{" + writer.toString() + "}]");
+        writer.write("}]");
+        String message = writer.toString();
+        responseBuffer.updateSizeEstimate(message.length());
+        sendMessage(message);
     }
 
     /**
@@ -59,7 +59,8 @@ public class ClientRpcWriter implements Serializable {
         Collection<ClientMethodInvocation> pendingInvocations = collectPendingRpcCalls(ui
                 .getConnectorTracker().getDirtyVisibleConnectors());
 
-        JSONArray rpcCalls = new JSONArray();
+        writer.write('[');
+        boolean first = true;
         for (ClientMethodInvocation invocation : pendingInvocations) {
             // add invocation to rpcCalls
             try {
@@ -87,7 +88,13 @@ public class ClientRpcWriter implements Serializable {
                     paramJson.put(encodeResult.getEncodedValue());
                 }
                 invocationJson.put(paramJson);
-                rpcCalls.put(invocationJson);
+
+                // Stream each invocation instead of collecting all of them
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                invocationJson.write(writer);
             } catch (JSONException e) {
                 throw new PaintException(
                         "Failed to serialize RPC method call parameters for connector "
@@ -97,7 +104,7 @@ public class ClientRpcWriter implements Serializable {
                                 + e.getMessage(), e);
             }
         }
-        writer.write(rpcCalls.toString());
+        writer.write(']');
     }
 
     /**
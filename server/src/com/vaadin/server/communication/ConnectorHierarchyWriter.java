@@ -19,29 +19,38 @@ package com.vaadin.server.communication;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnector;
 import com.vaadin.server.LegacyCommunicationManager;
-import com.vaadin.server.PaintException;
+import com.vaadin.ui.ConnectorTracker;
 import com.vaadin.ui.UI;
 
 /**
  * Serializes a connector hierarchy to JSON.
+ * <p>
+ * Only the hierarchy of connectors whose children have changed since the
+ * hierarchy was last sent to the client is written.
  * 
  * @author Vaadin Ltd
  * @since 7.1
  */
 public class ConnectorHierarchyWriter implements Serializable {
 
+    private int omittedBytes = 0;
+
     /**
      * Writes a JSON object containing the connector hierarchy (parent-child
      * mappings) of the dirty connectors in the given UI.
+     * <p>
+     * Connectors that are initialized on the client side and whose children
+     * are the same as the ones last sent to the client are left out.
      * 
      * @param ui
      *            The {@link UI} whose hierarchy to write.
@@ -52,30 +61,83 @@ public class ConnectorHierarchyWriter implements Serializable {
      */
     public void write(UI ui, Writer writer) throws IOException {
 
-        Collection<ClientConnector> dirtyVisibleConnectors = ui
-                .getConnectorTracker().getDirtyVisibleConnectors();
+        ConnectorTracker connectorTracker = ui.getConnectorTracker();
+        Collection<ClientConnector> dirtyVisibleConnectors = connectorTracker
+                .getDirtyVisibleConnectors();
 
-        JSONObject hierarchyInfo = new JSONObject();
+        writer.write('{');
+        boolean first = true;
         for (ClientConnector connector : dirtyVisibleConnectors) {
             String connectorId = connector.getConnectorId();
-            JSONArray children = new JSONArray();
+            List<String> children = getVisibleChildIds(connector);
+
+            if (connectorTracker.isClientSideInitialized(connector)
+                    && children.equals(connectorTracker
+                            .getDiffHierarchy(connector))) {
+                // The client already knows these children
+                omittedBytes += getEntryLength(connectorId, children);
+                continue;
+            }
+            connectorTracker.setDiffHierarchy(connector, children);
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write(JSONObject.quote(connectorId));
+            writer.write(":[");
 
-            for (ClientConnector child : AbstractClientConnector
-                    .getAllChildrenIterable(connector)) {
-                if (LegacyCommunicationManager
-                        .isConnectorVisibleToClient(child)) {
-                    children.put(child.getConnectorId());
+            boolean firstChild = true;
+            for (String childId : children) {
+                if (!firstChild) {
+                    writer.write(',');
                 }
+                firstChild = false;
+                writer.write(JSONObject.quote(childId));
             }
-            try {
-                hierarchyInfo.put(connectorId, children);
-            } catch (JSONException e) {
-                throw new PaintException(
-                        "Failed to send hierarchy information about "
-                                + connectorId + " to the client: "
-                                + e.getMessage(), e);
+            writer.write(']');
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Returns the number of bytes that were not written by
+     * {@link #write(UI, Writer)} because the client already knew the hierarchy
+     * of the connectors in question.
+     * 
+     * @since 7.2
+     * @return the number of omitted bytes
+     */
+    public int getOmittedBytes() {
+        return omittedBytes;
+    }
+
+    private static List<String> getVisibleChildIds(ClientConnector connector) {
+        List<String> children = null;
+        for (ClientConnector child : AbstractClientConnector
+                .getAllChildrenIterable(connector)) {
+            if (LegacyCommunicationManager.isConnectorVisibleToClient(child)) {
+                if (children == null) {
+                    children = new ArrayList<String>();
+                }
+                children.add(child.getConnectorId());
             }
         }
-        writer.write(hierarchyInfo.toString());
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        return children;
+    }
+
+    private static int getEntryLength(String connectorId, List<String> children) {
+        // ,"id":["child1","child2"] - connector ids never need escaping
+        int length = connectorId.length() + 6;
+        for (String childId : children) {
+            length += childId.length() + 2;
+        }
+        if (!children.isEmpty()) {
+            length += children.size() - 1;
+        }
+        return length;
     }
 }
@@ -21,25 +21,30 @@ import java.io.Serializable;
 import java.io.Writer;
 import java.util.Collection;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.vaadin.server.ClientConnector;
-import com.vaadin.server.PaintException;
 import com.vaadin.server.PaintTarget;
+import com.vaadin.ui.ConnectorTracker;
 import com.vaadin.ui.UI;
 
 /**
  * Serializes connector type mappings to JSON.
+ * <p>
+ * The type of a connector never changes, so it is only written for connectors
+ * that have not yet been initialized on the client side.
  * 
  * @author Vaadin Ltd
  * @since 7.1
  */
 public class ConnectorTypeWriter implements Serializable {
 
+    private int omittedBytes = 0;
+
     /**
      * Writes a JSON object containing connector-ID-to-type-ID mappings for each
-     * dirty Connector in the given UI.
+     * dirty Connector in the given UI that is not yet initialized on the client
+     * side.
      * 
      * @param ui
      *            The {@link UI} containing dirty connectors
@@ -53,21 +58,40 @@ public class ConnectorTypeWriter implements Serializable {
     public void write(UI ui, Writer writer, PaintTarget target)
             throws IOException {
 
-        Collection<ClientConnector> dirtyVisibleConnectors = ui
-                .getConnectorTracker().getDirtyVisibleConnectors();
+        ConnectorTracker connectorTracker = ui.getConnectorTracker();
+        Collection<ClientConnector> dirtyVisibleConnectors = connectorTracker
+                .getDirtyVisibleConnectors();
 
-        JSONObject connectorTypes = new JSONObject();
+        writer.write('{');
+        boolean first = true;
         for (ClientConnector connector : dirtyVisibleConnectors) {
             String connectorType = target.getTag(connector);
-            try {
-                connectorTypes.put(connector.getConnectorId(), connectorType);
-            } catch (JSONException e) {
-                throw new PaintException(
-                        "Failed to send connector type for connector "
-                                + connector.getConnectorId() + ": "
-                                + e.getMessage(), e);
+            if (connectorTracker.isClientSideInitialized(connector)) {
+                // ,"id":"type" - neither part ever needs escaping
+                omittedBytes += connector.getConnectorId().length()
+                        + connectorType.length() + 6;
+                continue;
+            }
+            if (!first) {
+                writer.write(',');
             }
+            first = false;
+            writer.write(JSONObject.quote(connector.getConnectorId()));
+            writer.write(':');
+            writer.write(JSONObject.quote(connectorType));
         }
-        writer.write(connectorTypes.toString());
+        writer.write('}');
+    }
+
+    /**
+     * Returns the number of bytes that were not written by
+     * {@link #write(UI, Writer, PaintTarget)} because the client already knew
+     * the types of the connectors in question.
+     * 
+     * @since 7.2
+     * @return the number of omitted bytes
+     */
+    public int getOmittedBytes() {
+        return omittedBytes;
     }
 }
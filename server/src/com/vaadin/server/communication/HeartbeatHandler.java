@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import javax.servlet.http.HttpServletResponse;
 
+import com.vaadin.server.NonExclusiveRequestHandler;
 import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.SessionExpiredHandler;
 import com.vaadin.server.SynchronizedRequestHandler;
@@ -36,29 +37,57 @@ import com.vaadin.ui.UI;
  * no UIDL requests for a prolonged period of time. UIs that do not receive
  * either heartbeat or UIDL requests are eventually removed from the session and
  * garbage collected.
+ * <p>
+ * Since 7.2, heartbeat requests are handled without locking the session so
+ * that they are not delayed by long running requests from other windows.
  * 
  * @author Vaadin Ltd
  * @since 7.1
  */
 public class HeartbeatHandler extends SynchronizedRequestHandler implements
-        SessionExpiredHandler {
+        SessionExpiredHandler, NonExclusiveRequestHandler {
 
     @Override
     protected boolean canHandleRequest(VaadinRequest request) {
         return ServletPortletHelper.isHeartbeatRequest(request);
     }
 
+    @Override
+    public boolean isNonExclusiveRequest(VaadinRequest request) {
+        return canHandleRequest(request);
+    }
+
+    /**
+     * Handles the heartbeat request without locking the session as only the
+     * thread safe heartbeat timestamp of the UI is updated.
+     */
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request,
+            VaadinResponse response) throws IOException {
+        if (!canHandleRequest(request)) {
+            return false;
+        }
+        return synchronizedHandleRequest(session, request, response);
+    }
+
     /**
      * Handles a heartbeat request for the given session. Reads the GET
      * parameter named {@link UIConstants#UI_ID_PARAMETER} to identify the UI.
      * If the UI is found in the session, sets it
      * {@link UI#getLastHeartbeatTimestamp() heartbeat timestamp} to the current
      * time. Otherwise, writes a HTTP Not Found error to the response.
+     * <p>
+     * The session is not locked when this method is called by
+     * {@link #handleRequest(VaadinSession, VaadinRequest, VaadinResponse)}.
      */
     @Override
     public boolean synchronizedHandleRequest(VaadinSession session,
             VaadinRequest request, VaadinResponse response) throws IOException {
-        UI ui = session.getService().findUI(request);
+        UI ui = null;
+        String uiId = request.getParameter(UIConstants.UI_ID_PARAMETER);
+        if (uiId != null) {
+            ui = session.getUIById(Integer.parseInt(uiId));
+        }
         if (ui != null) {
             ui.setLastHeartbeatTimestamp(System.currentTimeMillis());
             // Ensure that the browser does not cache heartbeat responses.
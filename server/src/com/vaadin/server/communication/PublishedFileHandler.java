@@ -27,7 +27,7 @@ import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.server.Constants;
 import com.vaadin.server.LegacyCommunicationManager;
-import com.vaadin.server.RequestHandler;
+import com.vaadin.server.NonExclusiveRequestHandler;
 import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinResponse;
@@ -46,7 +46,16 @@ import com.vaadin.shared.ApplicationConstants;
  * @author Vaadin Ltd
  * @since 7.1
  */
-public class PublishedFileHandler implements RequestHandler {
+public class PublishedFileHandler implements NonExclusiveRequestHandler {
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean isNonExclusiveRequest(VaadinRequest request) {
+        // Only locks the session while checking that the file is published.
+        // Same check as in handleRequest, which has no non-deprecated
+        // replacement.
+        return ServletPortletHelper.isPublishedFileRequest(request);
+    }
 
     /**
      * Writes the connector resource identified by the request URI to the
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+/**
+ * A reusable {@link Writer} that encodes the written characters as UTF-8 into
+ * a byte array, which can then be written directly to an output stream. Used
+ * for buffering UIDL responses so that only a critical notification is sent if
+ * something goes wrong while the response is being written.
+ * <p>
+ * The buffer keeps an estimate of the size of the latest responses and sizes
+ * itself accordingly, so that a typical response is written without growing
+ * the buffer and without copying the contents through intermediate character
+ * buffers. Each UI has its own buffer which is only used while the session is
+ * locked. A buffer that is sized for the typical response is kept between
+ * responses, but a buffer that has grown much larger than the typical response
+ * or larger than the maximum retained capacity (by default
+ * {@value #DEFAULT_MAX_RETAINED_CAPACITY} bytes, see
+ * {@link #setMaxRetainedCapacity(int)}) is released after the response and
+ * allocated again when next needed, so that idle UIs do not hold on to
+ * unnecessarily large arrays.
+ * 
+ * @see com.vaadin.ui.UI#getResponseBuffer()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class ResponseBuffer extends Writer implements Serializable {
+
+    /**
+     * The smallest buffer that is allocated.
+     */
+    private static final int MIN_CAPACITY = 1024;
+
+    /**
+     * The default for the largest buffer that is kept between responses.
+     */
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private int maxRetainedCapacity = DEFAULT_MAX_RETAINED_CAPACITY;
+
+    private transient byte[] bytes;
+    private transient int size = 0;
+    private int sizeEstimate = 0;
+
+    /**
+     * A high surrogate waiting for the low surrogate of the same code point,
+     * or 0 if there is none.
+     */
+    private transient char pendingHighSurrogate = 0;
+
+    /**
+     * Creates a new empty buffer.
+     */
+    public ResponseBuffer() {
+    }
+
+    /**
+     * Creates a new empty buffer that initially expects responses of the given
+     * size.
+     * 
+     * @param expectedSize
+     *            the expected number of bytes in a response
+     */
+    public ResponseBuffer(int expectedSize) {
+        sizeEstimate = expectedSize;
+    }
+
+    @Override
+    public void write(int c) {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(size + len);
+        for (int i = off; i < off + len; i++) {
+            writeChar(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ensureCapacity(size + len);
+        for (int i = off; i < off + len; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    private void writeChar(char c) {
+        if (c < 0x80 && pendingHighSurrogate == 0) {
+            if (size == capacity()) {
+                ensureCapacity(size + 1);
+            }
+            bytes[size++] = (byte) c;
+        } else if (Character.isHighSurrogate(c)) {
+            flushPendingSurrogate();
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            if (pendingHighSurrogate == 0) {
+                writeCodePoint('?');
+            } else {
+                writeCodePoint(Character.toCodePoint(pendingHighSurrogate, c));
+                pendingHighSurrogate = 0;
+            }
+        } else {
+            flushPendingSurrogate();
+            writeCodePoint(c);
+        }
+    }
+
+    /**
+     * Replaces an unpaired high surrogate with a question mark, like
+     * {@link java.io.OutputStreamWriter} does.
+     */
+    private void flushPendingSurrogate() {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            writeCodePoint('?');
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        ensureCapacity(size + 4);
+        if (codePoint < 0x80) {
+            bytes[size++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            bytes[size++] = (byte) (0xc0 | (codePoint >> 6));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            bytes[size++] = (byte) (0xe0 | (codePoint >> 12));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+            bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    int capacity() {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= capacity()) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, getInitialCapacity());
+        if (bytes != null) {
+            newCapacity = Math.max(newCapacity, bytes.length * 2);
+            byte[] newBytes = new byte[newCapacity];
+            System.arraycopy(bytes, 0, newBytes, 0, size);
+            bytes = newBytes;
+        } else {
+            bytes = new byte[newCapacity];
+        }
+    }
+
+    /**
+     * Gets the capacity to allocate for a new response based on the sizes of
+     * the latest responses, with some headroom for slightly larger responses.
+     */
+    private int getInitialCapacity() {
+        return Math.max(MIN_CAPACITY, sizeEstimate + sizeEstimate / 4);
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+        flushPendingSurrogate();
+    }
+
+    /**
+     * Gets the number of bytes written to this buffer since it was last reset.
+     * 
+     * @return the number of UTF-8 encoded bytes in the buffer
+     */
+    public int size() {
+        flushPendingSurrogate();
+        return size;
+    }
+
+    /**
+     * Writes the contents of this buffer to the given output stream.
+     * 
+     * @param outputStream
+     *            the output stream to write to
+     * @throws IOException
+     *             if writing to the stream fails
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        flushPendingSurrogate();
+        if (size > 0) {
+            outputStream.write(bytes, 0, size);
+        }
+    }
+
+    /**
+     * Empties this buffer so that it can be used for the next response. The
+     * size of the discarded contents is used for sizing the buffer for the
+     * following responses, and a buffer that has grown much larger than what
+     * is typically needed or larger than the maximum retained capacity is
+     * released.
+     * 
+     * @see #setMaxRetainedCapacity(int)
+     */
+    public void reset() {
+        flushPendingSurrogate();
+        if (size > 0) {
+            updateSizeEstimate(size);
+        }
+        size = 0;
+        if (capacity() > maxRetainedCapacity
+                || capacity() > 2 * getInitialCapacity()) {
+            // Reallocated at the estimated size when next needed
+            bytes = null;
+        }
+    }
+
+    /**
+     * Sets the capacity of the largest buffer that is kept between responses.
+     * Buffers sized for the typical response are kept up to this capacity, so
+     * that applications with consistently large responses do not need to
+     * allocate a new buffer for each response. A larger buffer is released
+     * when the buffer is reset. The default is
+     * {@value #DEFAULT_MAX_RETAINED_CAPACITY} bytes.
+     * 
+     * @param maxRetainedCapacity
+     *            the largest capacity in bytes to keep between responses, or 0
+     *            to always release the buffer
+     */
+    public void setMaxRetainedCapacity(int maxRetainedCapacity) {
+        if (maxRetainedCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum retained capacity cannot be negative");
+        }
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * Gets the capacity of the largest buffer that is kept between responses.
+     * 
+     * @return the largest capacity in bytes that is kept between responses
+     * @see #setMaxRetainedCapacity(int)
+     */
+    public int getMaxRetainedCapacity() {
+        return maxRetainedCapacity;
+    }
+
+    /**
+     * Updates the estimated response size with the size of a response that
+     * was not written using this buffer, e.g. a push message.
+     * 
+     * @param responseSize
+     *            the size of the response
+     */
+    public void updateSizeEstimate(int responseSize) {
+        if (sizeEstimate == 0) {
+            sizeEstimate = responseSize;
+        } else {
+            // Moving average that favors the latest few responses
+            sizeEstimate = (int) ((3L * sizeEstimate + responseSize) / 4);
+        }
+    }
+
+    /**
+     * Gets the current estimate of the size of a response, based on the sizes
+     * of the latest responses.
+     * 
+     * @return the estimated response size
+     */
+    public int getSizeEstimate() {
+        return sizeEstimate;
+    }
+
+    /**
+     * Returns the contents of this buffer decoded as a string.
+     * 
+     * @return the buffered characters
+     */
+    @Override
+    public String toString() {
+        flushPendingSurrogate();
+        try {
+            return new String(bytes == null ? new byte[0] : bytes, 0, size,
+                    "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UTF-8 is not supported", e);
+        }
+    }
+}
@@ -18,6 +18,8 @@ package com.vaadin.server.communication;
 import java.io.IOException;
 import java.util.ArrayList;
 
+import com.vaadin.server.GlobalResourceHandler;
+import com.vaadin.server.NonExclusiveRequestHandler;
 import com.vaadin.server.RequestHandler;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinResponse;
@@ -39,13 +41,23 @@ import com.vaadin.server.VaadinSession;
  * The session is not locked during execution of the request handlers. The
  * request handler can itself decide if it needs to lock the session or not.
  * </p>
+ * <p>
+ * Requests for global resources are declared as non-exclusive as the
+ * {@link GlobalResourceHandler} only locks the session while
+ * finding the resource to serve.
+ * </p>
  * 
  * @see VaadinSession#addRequestHandler(RequestHandler)
  * @see RequestHandler
  * 
  * @since 7.1
  */
-public class SessionRequestHandler implements RequestHandler {
+public class SessionRequestHandler implements NonExclusiveRequestHandler {
+
+    @Override
+    public boolean isNonExclusiveRequest(VaadinRequest request) {
+        return GlobalResourceHandler.isGlobalResourceRequest(request);
+    }
 
     @Override
     public boolean handleRequest(VaadinSession session, VaadinRequest request,
@@ -40,6 +40,10 @@ public class SharedStateWriter implements Serializable {
     /**
      * Writes a JSON object containing the pending state changes of the dirty
      * connectors of the given UI.
+     * <p>
+     * The state of each connector is streamed to the writer as soon as it has
+     * been encoded, so that no object holding the state of all connectors is
+     * built in memory.
      * 
      * @param ui
      *            The UI whose state changes should be written.
@@ -53,14 +57,21 @@ public class SharedStateWriter implements Serializable {
         Collection<ClientConnector> dirtyVisibleConnectors = ui
                 .getConnectorTracker().getDirtyVisibleConnectors();
 
-        JSONObject sharedStates = new JSONObject();
+        writer.write('{');
+        boolean first = true;
         for (ClientConnector connector : dirtyVisibleConnectors) {
             // encode and send shared state
             try {
                 JSONObject stateJson = connector.encodeState();
 
                 if (stateJson != null && stateJson.length() != 0) {
-                    sharedStates.put(connector.getConnectorId(), stateJson);
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    writer.write(JSONObject.quote(connector.getConnectorId()));
+                    writer.write(':');
+                    stateJson.write(writer);
                 }
             } catch (JSONException e) {
                 throw new PaintException(
@@ -70,6 +81,6 @@ public class SharedStateWriter implements Serializable {
                                 + e.getMessage(), e);
             }
         }
-        writer.write(sharedStates.toString());
+        writer.write('}');
     }
 }
@@ -17,16 +17,19 @@
 package com.vaadin.server.communication;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.List;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.vaadin.annotations.PreserveOnRefresh;
+import com.vaadin.server.DeploymentConfiguration;
 import com.vaadin.server.LegacyApplicationUIProvider;
 import com.vaadin.server.SynchronizedRequestHandler;
 import com.vaadin.server.UIClassSelectionEvent;
@@ -107,6 +110,58 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
      */
     static boolean commitJsonResponse(VaadinRequest request,
             VaadinResponse response, String json) throws IOException {
+        byte[] bytes = json.getBytes("UTF-8");
+        OutputStream outputStream = openJsonResponse(request, response,
+                bytes.length);
+        try {
+            outputStream.write(bytes);
+            // NOTE GateIn requires the buffers to be flushed to work
+            outputStream.flush();
+        } finally {
+            outputStream.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Commit the JSON response from a buffer that already contains the UTF-8
+     * encoded JSON, writing the bytes directly to the output stream.
+     * 
+     * @see #commitJsonResponse(VaadinRequest, VaadinResponse, String)
+     * 
+     * @param request
+     *            The request that resulted in this response
+     * @param response
+     *            The response to write to
+     * @param json
+     *            The buffer containing the JSON to write
+     * @return true if the JSON was written successfully, false otherwise
+     * @throws IOException
+     *             If there was an exception while writing to the output
+     */
+    static boolean commitJsonResponse(VaadinRequest request,
+            VaadinResponse response, ResponseBuffer json) throws IOException {
+        OutputStream outputStream = openJsonResponse(request, response,
+                json.size());
+        try {
+            json.writeTo(outputStream);
+            // NOTE GateIn requires the buffers to be flushed to work
+            outputStream.flush();
+        } finally {
+            outputStream.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the headers of a JSON response and returns the stream to write the
+     * JSON to, compressing the output if appropriate. The length is the number
+     * of UTF-8 encoded bytes of JSON.
+     */
+    private static OutputStream openJsonResponse(VaadinRequest request,
+            VaadinResponse response, int length) throws IOException {
         // The response was produced without errors so write it to the client
         response.setContentType(JsonConstants.JSON_CONTENT_TYPE);
 
@@ -117,17 +172,102 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
         // NOTE! GateIn requires, for some weird reason, getOutputStream
         // to be used instead of getWriter() (it seems to interpret
         // application/json as a binary content type)
-        OutputStreamWriter outputWriter = new OutputStreamWriter(
-                response.getOutputStream(), "UTF-8");
-        try {
-            outputWriter.write(json);
-            // NOTE GateIn requires the buffers to be flushed to work
-            outputWriter.flush();
-        } finally {
-            outputWriter.close();
+        OutputStream outputStream = response.getOutputStream();
+        if (isCompressionEnabled(request)) {
+            // The response depends on the header even when not compressed
+            response.setHeader("Vary", "Accept-Encoding");
+            if (shouldCompress(request, length)) {
+                response.setHeader("Content-Encoding", "gzip");
+                outputStream = new GZIPOutputStream(outputStream);
+            }
         }
+        return outputStream;
+    }
 
-        return true;
+    /**
+     * Checks whether UIDL compression is enabled in the deployment
+     * configuration of the service handling the given request.
+     * 
+     * @param request
+     *            The request to respond to
+     * @return true if responses may be compressed, false otherwise
+     */
+    static boolean isCompressionEnabled(VaadinRequest request) {
+        return request.getService() != null
+                && request.getService().getDeploymentConfiguration()
+                        .isUidlCompressionEnabled();
+    }
+
+    /**
+     * Checks whether the given JSON response should be gzip compressed. The
+     * response is compressed if UIDL compression is enabled in the deployment
+     * configuration, the UTF-8 encoded JSON is at least as large as the
+     * configured threshold and the browser has declared that it accepts gzip
+     * encoded responses.
+     * 
+     * @param request
+     *            The request to respond to
+     * @param length
+     *            The number of UTF-8 encoded bytes of JSON that will be
+     *            written
+     * @return true if the response should be compressed, false otherwise
+     */
+    static boolean shouldCompress(VaadinRequest request, int length) {
+        if (!isCompressionEnabled(request)) {
+            return false;
+        }
+        DeploymentConfiguration configuration = request.getService()
+                .getDeploymentConfiguration();
+        if (length < configuration.getCompressionThreshold()) {
+            return false;
+        }
+        return acceptsGzip(request.getHeader("Accept-Encoding"));
+    }
+
+    /**
+     * Checks whether an Accept-Encoding header value allows a gzip encoded
+     * response. The header is a comma separated list of content codings with
+     * optional quality values, e.g. <code>gzip;q=0.8, deflate</code>. A coding
+     * with the quality value 0 is not acceptable. If gzip is not listed, the
+     * quality value of the <code>*</code> wildcard is used, if listed.
+     * 
+     * @param acceptEncoding
+     *            the value of the Accept-Encoding header, or null if there is
+     *            no such header
+     * @return true if gzip is acceptable, false otherwise
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        float gzipQuality = -1;
+        float wildcardQuality = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            float quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase(Locale.ENGLISH);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2)
+                                .trim());
+                    } catch (NumberFormatException e) {
+                        // Treat an invalid quality value as not acceptable
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if (coding.equals("*")) {
+                wildcardQuality = Math.max(wildcardQuality, quality);
+            }
+        }
+        if (gzipQuality >= 0) {
+            return gzipQuality > 0;
+        }
+        return wildcardQuality > 0;
     }
 
     private UI getBrowserDetailsUI(VaadinRequest request, VaadinSession session) {
@@ -17,7 +17,6 @@
 package com.vaadin.server.communication;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -87,7 +86,7 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
         repaintAll = (request
                 .getParameter(ApplicationConstants.URL_PARAMETER_REPAINT_ALL) != null);
 
-        StringWriter stringWriter = new StringWriter();
+        ResponseBuffer buffer = uI.getResponseBuffer();
 
         try {
             rpcHandler.handleRpc(uI, request.getReader(), request);
@@ -96,7 +95,9 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
                 session.getCommunicationManager().repaintAll(uI);
             }
 
-            writeUidl(request, response, uI, stringWriter, repaintAll);
+            writeUidl(request, response, uI, buffer, repaintAll);
+
+            return UIInitHandler.commitJsonResponse(request, response, buffer);
         } catch (JSONException e) {
             getLogger().log(Level.SEVERE, "Error writing JSON to response", e);
             // Refresh on client side
@@ -114,11 +115,8 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
                             null, null));
             return true;
         } finally {
-            stringWriter.close();
+            buffer.reset();
         }
-
-        return UIInitHandler.commitJsonResponse(request, response,
-                stringWriter.toString());
     }
 
     /**
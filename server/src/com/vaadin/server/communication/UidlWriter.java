@@ -46,6 +46,10 @@ import com.vaadin.ui.UI;
  * Serializes pending server-side changes to UI state to JSON. This includes
  * shared state, client RPC invocations, connector hierarchy changes, connector
  * type information among others.
+ * <p>
+ * All sections are streamed to the given writer as they are produced; no
+ * section is first collected into an intermediate JSON object holding the
+ * data of all connectors.
  * 
  * @author Vaadin Ltd
  * @since 7.1
@@ -127,26 +131,33 @@ public class UidlWriter implements Serializable {
             new SharedStateWriter().write(ui, writer);
             writer.write(", "); // close states
 
-            // TODO This should be optimized. The type only needs to be
-            // sent once for each connector id + on refresh. Use the same cache
-            // as
-            // widget mapping
+            // The type is only sent for connectors not yet initialized on the
+            // client side
 
             writer.write("\"types\":");
-            new ConnectorTypeWriter().write(ui, writer, paintTarget);
+            ConnectorTypeWriter typeWriter = new ConnectorTypeWriter();
+            typeWriter.write(ui, writer, paintTarget);
             writer.write(", "); // close states
 
             // Send update hierarchy information to the client.
 
-            // This could be optimized aswell to send only info if hierarchy has
-            // actually changed. Much like with the shared state. Note though
-            // that an empty hierarchy is information aswell (e.g. change from 1
-            // child to 0 children)
+            // Only sent for connectors whose children have changed since the
+            // hierarchy was last sent. Note though that an empty hierarchy is
+            // information aswell (e.g. change from 1 child to 0 children)
 
             writer.write("\"hierarchy\":");
-            new ConnectorHierarchyWriter().write(ui, writer);
+            ConnectorHierarchyWriter hierarchyWriter = new ConnectorHierarchyWriter();
+            hierarchyWriter.write(ui, writer);
             writer.write(", "); // close hierarchy
 
+            if (getLogger().isLoggable(Level.FINE)) {
+                getLogger().log(
+                        Level.FINE,
+                        "Omitted {0} bytes of unchanged connector types and {1} bytes of unchanged hierarchy",
+                        new Object[] { typeWriter.getOmittedBytes(),
+                                hierarchyWriter.getOmittedBytes() });
+            }
+
             // send server to client RPC calls for components in the UI, in call
             // order
 
@@ -275,14 +286,14 @@ public class UidlWriter implements Serializable {
 
             // Include script dependencies in output if there are any
             if (!scriptDependencies.isEmpty()) {
-                writer.write(", \"scriptDependencies\": "
-                        + new JSONArray(scriptDependencies).toString());
+                writer.write(", \"scriptDependencies\": ");
+                new JSONArray(scriptDependencies).write(writer);
             }
 
             // Include style dependencies in output if there are any
             if (!styleDependencies.isEmpty()) {
-                writer.write(", \"styleDependencies\": "
-                        + new JSONArray(styleDependencies).toString());
+                writer.write(", \"styleDependencies\": ");
+                new JSONArray(styleDependencies).write(writer);
             }
 
             if (manager.getDragAndDropService() != null) {
@@ -17,12 +17,14 @@ package com.vaadin.ui;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -72,11 +74,48 @@ public class ConnectorTracker implements Serializable {
      */
     private final Set<ClientConnector> unregisteredConnectors = new HashSet<ClientConnector>();
 
+    /**
+     * Connectors that have been registered or marked as dirty since
+     * {@link #cleanConnectorMap()} was last invoked. Only these connectors and
+     * their children can have changed their visibility, so only they need to
+     * be checked when cleaning up state for connectors that are no longer
+     * visible.
+     */
+    private Set<ClientConnector> connectorsToCheckVisibility = new HashSet<ClientConnector>();
+
+    /**
+     * The result of {@link #getDirtyVisibleConnectors()}, cached until the set
+     * of dirty connectors changes. <code>null</code> if it needs to be
+     * calculated again.
+     */
+    private transient DirtyVisibleList dirtyVisibleConnectors;
+
+    /**
+     * The modification count of {@link #dirtyVisibleConnectors} when it was
+     * calculated, used for detecting lists that have been modified by the
+     * caller.
+     */
+    private transient int dirtyVisibleModCount;
+
+    /**
+     * The view of {@link #dirtyConnectors} returned by
+     * {@link #getDirtyConnectors()}. Created when first needed.
+     */
+    private transient DirtyConnectorsView dirtyConnectorsView;
+
     private boolean writingResponse = false;
 
     private UI uI;
     private transient Map<ClientConnector, JSONObject> diffStates = new HashMap<ClientConnector, JSONObject>();
 
+    /**
+     * The ids of the children of each connector as last sent to the client.
+     * Used to only send hierarchy information for connectors whose children
+     * have actually changed. Not serialized, so after deserialization the
+     * hierarchy of each dirty connector is sent again.
+     */
+    private transient Map<ClientConnector, List<String>> diffHierarchies = new HashMap<ClientConnector, List<String>>();
+
     /** Maps connectorIds to a map of named StreamVariables */
     private Map<String, Map<String, StreamVariable>> pidToNameToStreamVariable;
 
@@ -152,6 +191,8 @@ public class ConnectorTracker implements Serializable {
                                     connectorId });
         }
         dirtyConnectors.add(connector);
+        connectorsToCheckVisibility.add(connector);
+        dirtyVisibleConnectors = null;
     }
 
     /**
@@ -191,6 +232,7 @@ public class ConnectorTracker implements Serializable {
         unregisteredConnectorIds.add(connectorId);
 
         dirtyConnectors.remove(connector);
+        dirtyVisibleConnectors = null;
         if (unregisteredConnectors.add(connector)) {
             if (getLogger().isLoggable(Level.FINE)) {
                 getLogger().log(
@@ -256,6 +298,7 @@ public class ConnectorTracker implements Serializable {
     public void markAllClientSidesUninitialized() {
         uninitializedConnectors.addAll(connectorIdToConnector.values());
         diffStates.clear();
+        diffHierarchies.clear();
     }
 
     /**
@@ -289,6 +332,8 @@ public class ConnectorTracker implements Serializable {
             removeFromGlobalResourceHandler(connector);
             uninitializedConnectors.remove(connector);
             diffStates.remove(connector);
+            diffHierarchies.remove(connector);
+            connectorsToCheckVisibility.remove(connector);
         }
         unregisteredConnectors.clear();
 
@@ -299,12 +344,16 @@ public class ConnectorTracker implements Serializable {
                 + "See previous log messages for details.";
 
         // remove detached components from paintableIdMap so they
-        // can be GC'ed
-        Iterator<String> iterator = connectorIdToConnector.keySet().iterator();
-
-        while (iterator.hasNext()) {
-            String connectorId = iterator.next();
-            ClientConnector connector = connectorIdToConnector.get(connectorId);
+        // can be GC'ed and forget the client side state of connectors that
+        // are no longer visible. Visibility and attach state only change for
+        // connectors that have been marked as dirty, or for their children
+        // (e.g. when a TabSheet changes the selected tab), so there is no need
+        // to go through all registered connectors.
+        for (ClientConnector connector : connectorsToCheckVisibility) {
+            if (connectorIdToConnector.get(connector.getConnectorId()) != connector) {
+                // Unregistered or replaced, nothing to clean up
+                continue;
+            }
             if (getUIForConnector(connector) != uI) {
                 // If connector is no longer part of this uI,
                 // remove it from the map. If it is re-attached to the
@@ -322,24 +371,56 @@ public class ConnectorTracker implements Serializable {
                 removeFromGlobalResourceHandler(connector);
                 uninitializedConnectors.remove(connector);
                 diffStates.remove(connector);
-                iterator.remove();
-            } else if (!uninitializedConnectors.contains(connector)
-                    && !LegacyCommunicationManager
-                            .isConnectorVisibleToClient(connector)) {
-                uninitializedConnectors.add(connector);
-                diffStates.remove(connector);
-                if (getLogger().isLoggable(Level.FINE)) {
-                    getLogger()
-                            .log(Level.FINE,
-                                    "cleanConnectorMap removed state for {0} as it is not visible",
-                                    getConnectorAndParentInfo(connector));
+                diffHierarchies.remove(connector);
+                connectorIdToConnector.remove(connector.getConnectorId());
+            } else if (!LegacyCommunicationManager
+                    .isConnectorVisibleToClient(connector)) {
+                uninitializeInvisibleConnectors(connector);
+            } else {
+                for (ClientConnector child : AbstractClientConnector
+                        .getAllChildrenIterable(connector)) {
+                    if (!LegacyCommunicationManager
+                            .isConnectorVisibleToClient(child)) {
+                        uninitializeInvisibleConnectors(child);
+                    }
                 }
             }
         }
+        connectorsToCheckVisibility.clear();
 
         cleanStreamVariables();
     }
 
+    /**
+     * Forgets the client side state of the given invisible connector and all
+     * its descendants. The descendants of a connector that is not initialized
+     * on the client side cannot be initialized either, so the subtree below an
+     * uninitialized connector is not visited.
+     * 
+     * @param connector
+     *            the connector that is not visible to the client
+     */
+    private void uninitializeInvisibleConnectors(ClientConnector connector) {
+        if (uninitializedConnectors.contains(connector)
+                || connectorIdToConnector.get(connector.getConnectorId()) != connector) {
+            return;
+        }
+        uninitializedConnectors.add(connector);
+        diffStates.remove(connector);
+        diffHierarchies.remove(connector);
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger()
+                    .log(Level.FINE,
+                            "cleanConnectorMap removed state for {0} as it is not visible",
+                            getConnectorAndParentInfo(connector));
+        }
+
+        for (ClientConnector child : AbstractClientConnector
+                .getAllChildrenIterable(connector)) {
+            uninitializeInvisibleConnectors(child);
+        }
+    }
+
     private boolean isHierarchyComplete() {
         boolean noErrors = true;
 
@@ -426,6 +507,8 @@ public class ConnectorTracker implements Serializable {
         }
 
         dirtyConnectors.add(connector);
+        connectorsToCheckVisibility.add(connector);
+        dirtyVisibleConnectors = null;
     }
 
     /**
@@ -443,6 +526,7 @@ public class ConnectorTracker implements Serializable {
         }
 
         dirtyConnectors.remove(connector);
+        dirtyVisibleConnectors = null;
     }
 
     /**
@@ -499,6 +583,7 @@ public class ConnectorTracker implements Serializable {
      */
     public void markAllConnectorsClean() {
         dirtyConnectors.clear();
+        dirtyVisibleConnectors = null;
         getLogger().fine("All connectors are now clean");
     }
 
@@ -531,7 +616,10 @@ public class ConnectorTracker implements Serializable {
      *         contain invisible connectors.
      */
     public Collection<ClientConnector> getDirtyConnectors() {
-        return dirtyConnectors;
+        if (dirtyConnectorsView == null) {
+            dirtyConnectorsView = new DirtyConnectorsView();
+        }
+        return dirtyConnectorsView;
     }
 
     /**
@@ -546,17 +634,116 @@ public class ConnectorTracker implements Serializable {
     /**
      * Returns a collection of those {@link #getDirtyConnectors() dirty
      * connectors} that are actually visible to the client.
+     * <p>
+     * The visibility of the dirty connectors is only checked again after the
+     * set of dirty connectors has changed, i.e. the several calls made while
+     * writing one response only do the check once.
+     * <p>
+     * Since 7.2, the same list is returned from consecutive calls until the
+     * set of dirty connectors changes. A list that has been modified by the
+     * caller is not returned again but calculated anew on the next call, but
+     * a caller that modifies the list while another caller may still be using
+     * it should modify a copy instead.
      * 
      * @return A list of dirty and visible connectors.
      */
     public ArrayList<ClientConnector> getDirtyVisibleConnectors() {
-        ArrayList<ClientConnector> dirtyConnectors = new ArrayList<ClientConnector>();
-        for (ClientConnector c : getDirtyConnectors()) {
-            if (LegacyCommunicationManager.isConnectorVisibleToClient(c)) {
-                dirtyConnectors.add(c);
+        if (dirtyVisibleConnectors == null
+                || dirtyVisibleConnectors.getModCount() != dirtyVisibleModCount) {
+            DirtyVisibleList dirtyVisible = new DirtyVisibleList(
+                    dirtyConnectors.size());
+            for (ClientConnector c : dirtyConnectors) {
+                if (LegacyCommunicationManager.isConnectorVisibleToClient(c)) {
+                    dirtyVisible.add(c);
+                }
             }
+            dirtyVisibleConnectors = dirtyVisible;
+            dirtyVisibleModCount = dirtyVisible.getModCount();
+        }
+        return dirtyVisibleConnectors;
+    }
+
+    /**
+     * A list of dirty visible connectors that exposes its modification count
+     * so that modifications made by callers of
+     * {@link ConnectorTracker#getDirtyVisibleConnectors()} can be detected.
+     */
+    private static class DirtyVisibleList extends ArrayList<ClientConnector> {
+
+        public DirtyVisibleList(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        public int getModCount() {
+            return modCount;
+        }
+    }
+
+    /**
+     * A modifiable view of the dirty connectors that discards the cached dirty
+     * visible connectors when it is modified.
+     */
+    private class DirtyConnectorsView extends AbstractSet<ClientConnector>
+            implements Serializable {
+
+        @Override
+        public Iterator<ClientConnector> iterator() {
+            return new DirtyConnectorsIterator();
+        }
+
+        @Override
+        public int size() {
+            return dirtyConnectors.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return dirtyConnectors.contains(o);
+        }
+
+        @Override
+        public boolean add(ClientConnector connector) {
+            dirtyVisibleConnectors = null;
+            return dirtyConnectors.add(connector);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            dirtyVisibleConnectors = null;
+            return dirtyConnectors.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            dirtyVisibleConnectors = null;
+            dirtyConnectors.clear();
+        }
+    }
+
+    /**
+     * An iterator over the dirty connectors that discards the cached dirty
+     * visible connectors when a connector is removed through it.
+     */
+    private class DirtyConnectorsIterator implements Iterator<ClientConnector>,
+            Serializable {
+        private final Iterator<ClientConnector> iterator = dirtyConnectors
+                .iterator();
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public ClientConnector next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+            dirtyVisibleConnectors = null;
         }
-        return dirtyConnectors;
     }
 
     public JSONObject getDiffState(ClientConnector connector) {
@@ -569,6 +756,38 @@ public class ConnectorTracker implements Serializable {
         diffStates.put(connector, diffState);
     }
 
+    /**
+     * Gets the ids of the children of the given connector as they were last
+     * sent to the client.
+     * 
+     * @since 7.2
+     * @param connector
+     *            the connector to get the children for
+     * @return a list of child connector ids, or <code>null</code> if no
+     *         hierarchy information for the connector is known to have been
+     *         sent to the client
+     */
+    public List<String> getDiffHierarchy(ClientConnector connector) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        return diffHierarchies.get(connector);
+    }
+
+    /**
+     * Records the ids of the children of the given connector as they have been
+     * sent to the client.
+     * 
+     * @since 7.2
+     * @param connector
+     *            the connector whose children have been sent
+     * @param childIds
+     *            the ids of the children that were sent
+     */
+    public void setDiffHierarchy(ClientConnector connector,
+            List<String> childIds) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        diffHierarchies.put(connector, childIds);
+    }
+
     public boolean isDirty(ClientConnector connector) {
         return dirtyConnectors.contains(connector);
     }
@@ -657,6 +876,8 @@ public class ConnectorTracker implements Serializable {
             }
         }
 
+        diffHierarchies = new HashMap<ClientConnector, List<String>>();
+
     }
 
     /**
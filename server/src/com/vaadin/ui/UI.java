@@ -45,6 +45,7 @@ import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.server.VaadinSession;
 import com.vaadin.server.communication.PushConnection;
+import com.vaadin.server.communication.ResponseBuffer;
 import com.vaadin.shared.Connector;
 import com.vaadin.shared.EventId;
 import com.vaadin.shared.MouseEventDetails;
@@ -207,9 +208,10 @@ public abstract class UI extends AbstractSingleComponentContainer implements
     /**
      * Timestamp keeping track of the last heartbeat of this UI. Updated to the
      * current time whenever the application receives a heartbeat or UIDL
-     * request from the client for this UI.
+     * request from the client for this UI. Volatile as heartbeat requests
+     * update the timestamp without locking the session.
      */
-    private long lastHeartbeatTimestamp = System.currentTimeMillis();
+    private volatile long lastHeartbeatTimestamp = System.currentTimeMillis();
 
     private boolean closing = false;
 
@@ -542,6 +544,8 @@ public abstract class UI extends AbstractSingleComponentContainer implements
 
     private transient PushConnection pushConnection = null;
 
+    private final ResponseBuffer responseBuffer = new ResponseBuffer();
+
     private boolean hasPendingPush = false;
 
     private LocaleService localeService = new LocaleService(this,
@@ -1427,6 +1431,18 @@ public abstract class UI extends AbstractSingleComponentContainer implements
         }
     }
 
+    /**
+     * Returns the internal buffer used for writing responses to this UI. This
+     * method should only be called by the framework, and the buffer should
+     * only be used while the session is locked.
+     * 
+     * @since 7.2
+     * @return the response buffer of this UI, not <code>null</code>
+     */
+    public ResponseBuffer getResponseBuffer() {
+        return responseBuffer;
+    }
+
     /**
      * Sets the interval with which the UI should poll the server to see if
      * there are any changes. Polling is disabled by default.
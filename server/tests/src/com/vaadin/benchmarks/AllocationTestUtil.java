@@ -0,0 +1,27 @@
+package com.vaadin.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+/*
+ * Measures the heap allocations of the current thread for the benchmarks in
+ * this package.
+ *
+ * The allocated bytes are read from com.sun.management.ThreadMXBean, so the
+ * benchmarks using this must be run on a HotSpot based JVM.
+ */
+public class AllocationTestUtil {
+
+    private AllocationTestUtil() {
+    }
+
+    /**
+     * Returns the total number of bytes allocated by the current thread so
+     * far. The difference of two calls is the number of bytes allocated in
+     * between.
+     */
+    public static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean()).getThreadAllocatedBytes(Thread
+                .currentThread().getId());
+    }
+}
@@ -0,0 +1,310 @@
+package com.vaadin.benchmarks;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.BeanItemContainer;
+import com.vaadin.data.util.MethodPropertyDescriptor;
+import com.vaadin.data.util.PropertysetItem;
+
+/*
+ * Creates items for a large number of beans with eight simple properties and
+ * one nested property, and reads the value of one simple and the nested
+ * property of each item, like a table showing or sorting the beans would.
+ *
+ * The legacy variant creates all properties of each item eagerly and
+ * resolves the getter chain of the nested property for each bean using
+ * reflection, like BeanItemContainer did before. The current variant adds
+ * the beans to a BeanItemContainer, which creates only the accessed
+ * properties and reuses the resolved getter chain. The current variant also
+ * includes the overhead of the container data structures. The container is
+ * also measured with items created on demand, in which case only a bounded
+ * number of items is kept in memory.
+ *
+ * The heap retained by the created items is measured after the items have
+ * been read.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server.
+ */
+public class PerformanceTesterBeanProperties {
+
+    private static final int BEANS = 200000;
+    private static final String NESTED_PROPERTY = "address.city";
+
+    public static class Address {
+        private final String city;
+
+        public Address(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+    }
+
+    public static class Row {
+        private String name;
+        private int age;
+        private String email;
+        private String phone;
+        private double balance;
+        private boolean active;
+        private String department;
+        private Address address;
+
+        public Row(int i) {
+            name = "Name " + i;
+            age = i % 100;
+            email = "user" + i + "@example.com";
+            phone = "+358 " + i;
+            balance = i * 1.5;
+            active = i % 2 == 0;
+            department = "Department " + (i % 10);
+            address = new Address("City " + (i % 1000));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public double getBalance() {
+            return balance;
+        }
+
+        public void setBalance(double balance) {
+            this.balance = balance;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public String getDepartment() {
+            return department;
+        }
+
+        public void setDepartment(String department) {
+            this.department = department;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        public void setAddress(Address address) {
+            this.address = address;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Row> beans = new ArrayList<Row>();
+        for (int i = 0; i < BEANS; i++) {
+            beans.add(new Row(i));
+        }
+        List<MethodPropertyDescriptor<Row>> descriptors = getDescriptors();
+
+        // warmup
+        for (int i = 0; i < 3; i++) {
+            runLegacy(beans, descriptors);
+            runCurrent(beans, false);
+            runCurrent(beans, true);
+        }
+        System.gc();
+
+        System.out.println(BEANS + " beans");
+        report("legacy:            ", runLegacy(beans, descriptors));
+        report("current:           ", runCurrent(beans, false));
+        report("current, on demand:", runCurrent(beans, true));
+    }
+
+    private static long[] runLegacy(List<Row> beans,
+            List<MethodPropertyDescriptor<Row>> descriptors) {
+        long startHeap = getUsedHeap();
+        long startBytes = AllocationTestUtil.getAllocatedBytes();
+        long start = System.nanoTime();
+        List<Item> items = new ArrayList<Item>(beans.size());
+        for (Row bean : beans) {
+            PropertysetItem item = new PropertysetItem();
+            for (MethodPropertyDescriptor<Row> pd : descriptors) {
+                item.addItemProperty(pd.getName(), pd.createProperty(bean));
+            }
+            item.addItemProperty(NESTED_PROPERTY,
+                    new LegacyNestedMethodProperty(bean, NESTED_PROPERTY));
+            items.add(item);
+        }
+        for (Item item : items) {
+            item.getItemProperty("name").getValue();
+            item.getItemProperty(NESTED_PROPERTY).getValue();
+        }
+        long time = System.nanoTime() - start;
+        long bytes = AllocationTestUtil.getAllocatedBytes() - startBytes;
+        long retained = getUsedHeap() - startHeap;
+        items.clear();
+        return new long[] { time, bytes, retained };
+    }
+
+    private static long[] runCurrent(List<Row> beans, boolean onDemand) {
+        long startHeap = getUsedHeap();
+        long startBytes = AllocationTestUtil.getAllocatedBytes();
+        long start = System.nanoTime();
+        BeanItemContainer<Row> container = new BeanItemContainer<Row>(
+                Row.class);
+        container.setItemsCreatedOnDemand(onDemand);
+        container.addNestedContainerProperty(NESTED_PROPERTY);
+        container.addAll(beans);
+        for (Row bean : beans) {
+            Item item = container.getItem(bean);
+            item.getItemProperty("name").getValue();
+            item.getItemProperty(NESTED_PROPERTY).getValue();
+        }
+        long time = System.nanoTime() - start;
+        long bytes = AllocationTestUtil.getAllocatedBytes() - startBytes;
+        long retained = getUsedHeap() - startHeap;
+        container.removeAllItems();
+        return new long[] { time, bytes, retained };
+    }
+
+    private static List<MethodPropertyDescriptor<Row>> getDescriptors()
+            throws IntrospectionException {
+        List<MethodPropertyDescriptor<Row>> descriptors = new ArrayList<MethodPropertyDescriptor<Row>>();
+        BeanInfo info = Introspector.getBeanInfo(Row.class);
+        for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
+            if (pd.getReadMethod() != null
+                    && pd.getReadMethod().getDeclaringClass() != Object.class) {
+                descriptors.add(new MethodPropertyDescriptor<Row>(pd
+                        .getName(), pd.getPropertyType(), pd.getReadMethod(),
+                        pd.getWriteMethod()));
+            }
+        }
+        return descriptors;
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println(label + " " + (result[0] / 1000000) + " ms, "
+                + (result[1] / 1024 / 1024) + " MB allocated, "
+                + (result[2] / 1024 / 1024) + " MB retained");
+    }
+
+    private static long getUsedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The nested property before the getter chain was shared, resolving the
+     * getter and setter methods for each bean.
+     */
+    private static class LegacyNestedMethodProperty implements
+            Property<Object> {
+        private final Object instance;
+        private final List<Method> getMethods = new ArrayList<Method>();
+        private Method setMethod;
+        private final Class<?> type;
+
+        public LegacyNestedMethodProperty(Object instance, String propertyName) {
+            this.instance = instance;
+            Class<?> propertyClass = instance.getClass();
+            Class<?> lastClass = propertyClass;
+            String lastName = null;
+            try {
+                for (String name : propertyName.split("\\.")) {
+                    lastClass = propertyClass;
+                    lastName = Character.toUpperCase(name.charAt(0))
+                            + name.substring(1);
+                    Method getter;
+                    try {
+                        getter = propertyClass.getMethod("get" + lastName,
+                                new Class[] {});
+                    } catch (NoSuchMethodException e) {
+                        getter = propertyClass.getMethod("is" + lastName,
+                                new Class[] {});
+                    }
+                    propertyClass = getter.getReturnType();
+                    getMethods.add(getter);
+                }
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(e);
+            }
+            type = propertyClass;
+            try {
+                setMethod = lastClass.getMethod("set" + lastName,
+                        new Class[] { type });
+            } catch (NoSuchMethodException e) {
+                setMethod = null;
+            }
+        }
+
+        @Override
+        public Object getValue() {
+            try {
+                Object object = instance;
+                for (Method m : getMethods) {
+                    object = m.invoke(object);
+                }
+                return object;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void setValue(Object newValue) {
+            throw new ReadOnlyException();
+        }
+
+        @Override
+        public Class<? extends Object> getType() {
+            return type;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return setMethod == null;
+        }
+
+        @Override
+        public void setReadOnly(boolean newStatus) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.vaadin.benchmarks;
+
+import com.vaadin.data.util.IndexedContainer;
+
+/*
+ * Fills an IndexedContainer with integer, double, boolean and string
+ * properties, first with a property value map for each item and then with
+ * columnar storage, and reports the heap retained by each container.
+ *
+ * The retained heap is measured as the difference in used heap after
+ * repeated garbage collections, so the results are only approximate. Run with
+ * a heap large enough for both containers, e.g. -Xmx512m.
+ */
+public class PerformanceTesterColumnarStorage {
+
+    private static final int ITEMS = 50000;
+    private static final int PROPERTIES = 20;
+
+    public static void main(String[] args) {
+        // warmup
+        measureMemory(false);
+        measureMemory(true);
+
+        long hashtableMemory = measureMemory(false);
+        long columnarMemory = measureMemory(true);
+        System.out.println("IndexedContainer memory (bytes) for " + ITEMS
+                + " items with " + PROPERTIES + " properties: "
+                + hashtableMemory + " per item map, " + columnarMemory
+                + " columnar");
+    }
+
+    /**
+     * Fills a container and returns the increase in used heap.
+     */
+    private static long measureMemory(boolean columnar) {
+        long before = getUsedMemory();
+        IndexedContainer c = new IndexedContainer();
+        c.setColumnarStorage(columnar);
+        for (int p = 0; p < PROPERTIES; p++) {
+            c.addContainerProperty(p, getPropertyType(p), null);
+        }
+        for (int i = 0; i < ITEMS; i++) {
+            Object itemId = c.addItem();
+            for (int p = 0; p < PROPERTIES; p++) {
+                c.getContainerProperty(itemId, p).setValue(
+                        createValue(getPropertyType(p), i));
+            }
+        }
+        long used = getUsedMemory() - before;
+        // Keep the container reachable until measured
+        if (c.size() != ITEMS) {
+            throw new IllegalStateException("Wrong number of items");
+        }
+        return used;
+    }
+
+    private static Class<?> getPropertyType(int property) {
+        switch (property % 4) {
+        case 0:
+            return Integer.class;
+        case 1:
+            return Double.class;
+        case 2:
+            return Boolean.class;
+        default:
+            return String.class;
+        }
+    }
+
+    private static Object createValue(Class<?> type, int i) {
+        if (type == Integer.class) {
+            return i;
+        } else if (type == Double.class) {
+            return i / 2.0;
+        } else if (type == Boolean.class) {
+            return i % 2 == 0;
+        } else {
+            return "Item " + (i % 100);
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,129 @@
+package com.vaadin.benchmarks;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vaadin.data.util.sqlcontainer.connection.ConcurrentJDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+
+/*
+ * Measures reserving and releasing connections from many threads at the same
+ * time with SimpleJDBCConnectionPool and ConcurrentJDBCConnectionPool. Each
+ * thread repeatedly reserves a connection, runs a trivial query against an
+ * in-memory HSQLDB database and releases the connection.
+ *
+ * The pools have fewer connections than there are threads. For each number of
+ * threads, the total time and the number of failed reservations are reported.
+ * SimpleJDBCConnectionPool fails when all connections are in use, while
+ * ConcurrentJDBCConnectionPool waits for one to be released; its total and
+ * maximum wait times are reported as well.
+ */
+public class PerformanceTesterConnectionPool {
+
+    private static final int CONNECTIONS = 8;
+    private static final int ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+
+        // warmup
+        for (int i = 0; i < 2; i++) {
+            runBenchmarks(16, false);
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads *= 4) {
+            runBenchmarks(threads, true);
+        }
+    }
+
+    private static void runBenchmarks(int threads, boolean print)
+            throws Exception {
+        JDBCConnectionPool simple = new SimpleJDBCConnectionPool(
+                "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:pool", "SA",
+                "", CONNECTIONS, CONNECTIONS);
+        ConcurrentJDBCConnectionPool concurrent = new ConcurrentJDBCConnectionPool(
+                "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:pool", "SA",
+                "", CONNECTIONS, CONNECTIONS);
+        try {
+            long[] simpleResult = run(simple, threads);
+            long[] concurrentResult = run(concurrent, threads);
+            if (print) {
+                System.out.println(threads + " threads, " + CONNECTIONS
+                        + " connections, " + ITERATIONS
+                        + " reservations in total");
+                report("simple:     ", simpleResult);
+                report("concurrent: ", concurrentResult);
+                System.out.println("    waited " + concurrent.getTotalWaitTime()
+                        + " ms in total, at most "
+                        + concurrent.getMaxWaitTime() + " ms");
+            }
+        } finally {
+            simple.destroy();
+            concurrent.destroy();
+        }
+    }
+
+    private static long[] run(final JDBCConnectionPool pool, int threads)
+            throws InterruptedException {
+        final AtomicInteger remaining = new AtomicInteger(ITERATIONS);
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        while (remaining.getAndDecrement() > 0) {
+                            useConnection(pool, failures);
+                        }
+                    } catch (InterruptedException e) {
+                        // Stop
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        done.await();
+        time = System.nanoTime() - time;
+        return new long[] { time, failures.get() };
+    }
+
+    private static void useConnection(JDBCConnectionPool pool,
+            AtomicInteger failures) {
+        Connection conn;
+        try {
+            conn = pool.reserveConnection();
+        } catch (SQLException e) {
+            failures.incrementAndGet();
+            return;
+        }
+        try {
+            Statement statement = conn.createStatement();
+            ResultSet rs = statement
+                    .executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+            rs.next();
+            rs.close();
+            statement.close();
+            conn.commit();
+        } catch (SQLException e) {
+            failures.incrementAndGet();
+        } finally {
+            pool.releaseConnection(conn);
+        }
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println("  " + label + " " + (result[0] / 1000000)
+                + " ms, " + result[1] + " failed reservations");
+    }
+}
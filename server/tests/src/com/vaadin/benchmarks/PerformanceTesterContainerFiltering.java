@@ -0,0 +1,174 @@
+package com.vaadin.benchmarks;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.data.util.filter.Like;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/*
+ * Simulates a user typing into a filter field of a large IndexedContainer:
+ * for each typed prefix the previous filter is removed and a new
+ * case-insensitive filter is added, which filters the whole container again.
+ *
+ * Compares copies of the old Like and SimpleStringFilter implementations,
+ * which build and match a regular expression or case fold the property value
+ * for every item, with the current filters with and without the case-folded
+ * value cache of the container. The current filters are also measured when
+ * replaced using replaceContainerFilter, which only tests the items that
+ * passed the previous, wider filter.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server.
+ */
+public class PerformanceTesterContainerFiltering {
+
+    private static final String PROPERTY = "name";
+    private static final int ITEMS = 200000;
+    private static final String TYPED = "Customer 1234";
+
+    public static void main(String[] args) {
+        IndexedContainer container = createContainer(false);
+        IndexedContainer cachingContainer = createContainer(true);
+
+        // warmup
+        for (int i = 0; i < 3; i++) {
+            for (FilterType type : FilterType.values()) {
+                runBenchmark(container, type, false);
+                runBenchmark(cachingContainer, type, false);
+                runBenchmark(cachingContainer, type, true);
+            }
+        }
+        System.gc();
+
+        System.out.println(ITEMS + " items, typing \"" + TYPED + "\"");
+        for (FilterType type : FilterType.values()) {
+            report(type + ", without cache:", runBenchmark(container, type,
+                    false));
+            report(type + ", with cache:   ", runBenchmark(cachingContainer,
+                    type, false));
+            if (type == FilterType.LIKE || type == FilterType.SIMPLE_STRING) {
+                report(type + ", replaced:     ", runBenchmark(
+                        cachingContainer, type, true));
+            }
+        }
+    }
+
+    private static IndexedContainer createContainer(boolean cache) {
+        IndexedContainer container = new IndexedContainer();
+        container.setCaseFoldedValueCacheEnabled(cache);
+        container.addContainerProperty(PROPERTY, String.class, null);
+        for (int i = 0; i < ITEMS; i++) {
+            container.addItem(Integer.valueOf(i)).getItemProperty(PROPERTY)
+                    .setValue("Customer " + i + " Ltd");
+        }
+        return container;
+    }
+
+    private enum FilterType {
+        LEGACY_LIKE, LIKE, LEGACY_SIMPLE_STRING, SIMPLE_STRING;
+
+        Filter create(String typed) {
+            switch (this) {
+            case LEGACY_LIKE:
+                return new LegacyLike(PROPERTY, "%" + typed + "%");
+            case LIKE:
+                return new Like(PROPERTY, "%" + typed + "%", false);
+            case LEGACY_SIMPLE_STRING:
+                return new LegacySimpleStringFilter(PROPERTY, typed);
+            default:
+                return new SimpleStringFilter(PROPERTY, typed, true, false);
+            }
+        }
+    }
+
+    /**
+     * Filters the container once for every prefix of the typed string and
+     * returns the elapsed nanoseconds and the allocated bytes.
+     */
+    private static long[] runBenchmark(IndexedContainer container,
+            FilterType type, boolean replace) {
+        long startBytes = AllocationTestUtil.getAllocatedBytes();
+        long start = System.nanoTime();
+        Filter previous = null;
+        for (int i = 1; i <= TYPED.length(); i++) {
+            Filter filter = type.create(TYPED.substring(0, i));
+            if (previous == null) {
+                container.addContainerFilter(filter);
+            } else if (replace) {
+                container.replaceContainerFilter(previous, filter);
+            } else {
+                container.removeContainerFilter(previous);
+                container.addContainerFilter(filter);
+            }
+            previous = filter;
+        }
+        long time = System.nanoTime() - start;
+        long bytes = AllocationTestUtil.getAllocatedBytes() - startBytes;
+        container.removeAllContainerFilters();
+        return new long[] { time, bytes };
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println(label + " " + (result[0] / 1000000) + " ms, "
+                + (result[1] / 1024 / 1024) + " MB allocated");
+    }
+
+    /**
+     * The Like filter before pattern compilation.
+     */
+    private static class LegacyLike implements Filter {
+        private final Object propertyId;
+        private final String value;
+
+        public LegacyLike(Object propertyId, String value) {
+            this.propertyId = propertyId;
+            this.value = value;
+        }
+
+        @Override
+        public boolean passesFilter(Object itemId, Item item) {
+            String colValue = (String) item.getItemProperty(propertyId)
+                    .getValue();
+            if (colValue == null) {
+                return false;
+            }
+            String pattern = value.replace("%", ".*");
+            return colValue.toUpperCase().matches(pattern.toUpperCase());
+        }
+
+        @Override
+        public boolean appliesToProperty(Object propertyId) {
+            return this.propertyId.equals(propertyId);
+        }
+    }
+
+    /**
+     * The case-insensitive SimpleStringFilter without the value cache.
+     */
+    private static class LegacySimpleStringFilter implements Filter {
+        private final Object propertyId;
+        private final String filterString;
+
+        public LegacySimpleStringFilter(Object propertyId, String filterString) {
+            this.propertyId = propertyId;
+            this.filterString = filterString.toLowerCase();
+        }
+
+        @Override
+        public boolean passesFilter(Object itemId, Item item) {
+            Property<?> p = item.getItemProperty(propertyId);
+            Object propertyValue = p.getValue();
+            if (propertyValue == null) {
+                return false;
+            }
+            return propertyValue.toString().toLowerCase()
+                    .contains(filterString);
+        }
+
+        @Override
+        public boolean appliesToProperty(Object propertyId) {
+            return this.propertyId.equals(propertyId);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.AbstractComponentState;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+/*
+ * Measures LegacyCommunicationManager.encodeState for connectors with a large
+ * shared state, a deeply nested shared state and a shared state containing
+ * beans with getters and setters. Only the caption changes between the
+ * rounds, so the time is dominated by encoding the unchanged properties and
+ * comparing them against the previously sent diff state.
+ *
+ * Run with -server.
+ */
+public class PerformanceTesterEncodeState {
+
+    private static final int ROWS = 2000;
+    private static final int TREE_DEPTH = 8;
+    private static final int TREE_FANOUT = 3;
+
+    public static class Row {
+        public int index;
+        public String caption;
+        public boolean selected;
+        public double weight;
+        public List<String> cells = new ArrayList<String>();
+    }
+
+    public static class Node {
+        public String name;
+        public List<Node> children = new ArrayList<Node>();
+    }
+
+    public static class BeanRow {
+        private int index;
+        private String caption;
+        private boolean selected;
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getCaption() {
+            return caption;
+        }
+
+        public void setCaption(String caption) {
+            this.caption = caption;
+        }
+
+        public boolean isSelected() {
+            return selected;
+        }
+
+        public void setSelected(boolean selected) {
+            this.selected = selected;
+        }
+    }
+
+    public static class BeanState extends AbstractComponentState {
+        public List<BeanRow> rows = new ArrayList<BeanRow>();
+    }
+
+    public static class LargeState extends AbstractComponentState {
+        public List<Row> rows = new ArrayList<Row>();
+        public Map<String, String> attributes = new HashMap<String, String>();
+    }
+
+    public static class NestedState extends AbstractComponentState {
+        public Node root;
+    }
+
+    public static class LargeComponent extends AbstractComponent {
+        public LargeComponent() {
+            for (int i = 0; i < ROWS; i++) {
+                Row row = new Row();
+                row.index = i;
+                row.caption = "Row " + i;
+                row.selected = i % 2 == 0;
+                row.weight = i / 3.0;
+                for (int j = 0; j < 5; j++) {
+                    row.cells.add("Cell " + i + "/" + j);
+                }
+                getState().rows.add(row);
+                getState().attributes.put("key" + i, "value" + i);
+            }
+        }
+
+        @Override
+        protected LargeState getState() {
+            return (LargeState) super.getState();
+        }
+    }
+
+    public static class BeanComponent extends AbstractComponent {
+        public BeanComponent() {
+            for (int i = 0; i < ROWS * 5; i++) {
+                BeanRow row = new BeanRow();
+                row.setIndex(i);
+                row.setCaption("Row " + i);
+                row.setSelected(i % 2 == 0);
+                getState().rows.add(row);
+            }
+        }
+
+        @Override
+        protected BeanState getState() {
+            return (BeanState) super.getState();
+        }
+    }
+
+    public static class NestedComponent extends AbstractComponent {
+        public NestedComponent() {
+            getState().root = createNode("root", TREE_DEPTH);
+        }
+
+        private static Node createNode(String name, int depth) {
+            Node node = new Node();
+            node.name = name;
+            if (depth > 0) {
+                for (int i = 0; i < TREE_FANOUT; i++) {
+                    node.children.add(createNode(name + "." + i, depth - 1));
+                }
+            }
+            return node;
+        }
+
+        @Override
+        protected NestedState getState() {
+            return (NestedState) super.getState();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        VaadinSession session = new AlwaysLockedVaadinSession(null);
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        VerticalLayout layout = new VerticalLayout();
+        ui.setContent(layout);
+
+        LargeComponent large = new LargeComponent();
+        NestedComponent nested = new NestedComponent();
+        BeanComponent bean = new BeanComponent();
+        layout.addComponent(large);
+        layout.addComponent(nested);
+        layout.addComponent(bean);
+
+        // warmup
+        runBenchmark(large, 200);
+        runBenchmark(nested, 200);
+        runBenchmark(bean, 200);
+        System.gc();
+
+        System.out.println("Large state: " + runBenchmark(large, 500)
+                + " us per encodeState");
+        System.out.println("Nested state: " + runBenchmark(nested, 500)
+                + " us per encodeState");
+        System.out.println("Bean state: " + runBenchmark(bean, 500)
+                + " us per encodeState");
+    }
+
+    private static long runBenchmark(AbstractComponent component, int rounds)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            component.setCaption("Caption " + i);
+            // Delegates to LegacyCommunicationManager.encodeState
+            component.encodeState();
+        }
+        return (System.nanoTime() - start) / rounds / 1000;
+    }
+}
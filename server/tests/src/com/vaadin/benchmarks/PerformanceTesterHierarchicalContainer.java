@@ -0,0 +1,175 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.util.HierarchicalContainer;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/*
+ * Measures how the operations of a filtered HierarchicalContainer scale with
+ * the size of the hierarchy. The hierarchy is an org chart where every node
+ * has up to 8 direct reports, and the container is filtered by name with
+ * includeParentsWhenFiltering enabled, as in a filtered TreeTable.
+ *
+ * For each size, the time and allocated bytes are reported for building the
+ * hierarchy, filtering it, narrowing the filter, editing names, adding and
+ * moving nodes while filtered, and for the positional lookups done by Tree and
+ * TreeTable when expanding nodes. The retained heap of the container is
+ * reported after building it.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server and
+ * e.g. -Xmx2g.
+ */
+public class PerformanceTesterHierarchicalContainer {
+
+    private static final String NAME = "name";
+    private static final int REPORTS = 8;
+    private static final int OPERATIONS = 200;
+
+    public static void main(String[] args) {
+        int maxItems = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+
+        // warmup
+        for (int i = 0; i < 2; i++) {
+            runBenchmarks(maxItems / 4, false);
+        }
+
+        for (int items = maxItems / 4; items <= maxItems; items *= 2) {
+            runBenchmarks(items, true);
+        }
+    }
+
+    private static void runBenchmarks(int items, boolean print) {
+        System.gc();
+        long heapBefore = getUsedHeap();
+        long[] build = startMeasuring();
+        HierarchicalContainer container = createContainer(items);
+        stopMeasuring(build);
+        long retained = getUsedHeap() - heapBefore;
+
+        long[] filter = startMeasuring();
+        container.addContainerFilter(new SimpleStringFilter(NAME, "7", true,
+                false));
+        stopMeasuring(filter);
+
+        long[] narrow = startMeasuring();
+        container.addContainerFilter(new SimpleStringFilter(NAME, "Employee",
+                true, false));
+        stopMeasuring(narrow);
+
+        // Only visible items can be modified through the container
+        List<Object> visibleIds = new ArrayList<Object>(container.getItemIds());
+        int step = Math.max(1, visibleIds.size() / OPERATIONS);
+
+        long[] edit = startMeasuring();
+        for (int i = 0; i < OPERATIONS; i++) {
+            Object itemId = visibleIds.get(i * step % visibleIds.size());
+            // Every other edit filters out the item unless it is a parent
+            setName(container, itemId, "Employee " + (i % 2 == 0 ? "7" : "")
+                    + "-" + itemId);
+        }
+        stopMeasuring(edit);
+        visibleIds = new ArrayList<Object>(container.getItemIds());
+        step = Math.max(1, visibleIds.size() / OPERATIONS);
+
+        long[] add = startMeasuring();
+        for (int i = 0; i < OPERATIONS; i++) {
+            Integer itemId = Integer.valueOf(items + i);
+            container.addItem(itemId).getItemProperty(NAME)
+                    .setValue("Employee 7-" + itemId);
+            container.setParent(itemId,
+                    visibleIds.get(i * step % visibleIds.size()));
+        }
+        stopMeasuring(add);
+
+        long[] move = startMeasuring();
+        for (int i = 0; i < OPERATIONS; i++) {
+            Integer itemId = Integer.valueOf(items + i);
+            container.setParent(itemId,
+                    visibleIds.get((i + 1) * step % visibleIds.size()));
+        }
+        stopMeasuring(move);
+
+        long[] lookup = startMeasuring();
+        int found = 0;
+        for (Object rootId : container.rootItemIds()) {
+            found += expand(container, rootId);
+        }
+        for (Object itemId : container.getItemIds()) {
+            if (container.isRoot(itemId)) {
+                found++;
+            }
+        }
+        stopMeasuring(lookup);
+
+        if (print) {
+            System.out.println(items + " items, " + container.size()
+                    + " visible after filtering, " + (retained / 1024 / 1024)
+                    + " MB retained");
+            report("build:           ", build);
+            report("filter:          ", filter);
+            report("narrow filter:   ", narrow);
+            report(OPERATIONS + " edits:       ", edit);
+            report(OPERATIONS + " additions:   ", add);
+            report(OPERATIONS + " moves:       ", move);
+            report("expand all (" + found + "):", lookup);
+        }
+    }
+
+    private static HierarchicalContainer createContainer(int items) {
+        HierarchicalContainer container = new HierarchicalContainer();
+        container.addContainerProperty(NAME, String.class, null);
+        for (int i = 0; i < items; i++) {
+            Integer itemId = Integer.valueOf(i);
+            container.addItem(itemId).getItemProperty(NAME)
+                    .setValue("Employee " + i);
+            if (i > 0) {
+                container.setParent(itemId, Integer.valueOf((i - 1) / REPORTS));
+            }
+        }
+        return container;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setName(HierarchicalContainer container,
+            Object itemId, String name) {
+        container.getContainerProperty(itemId, NAME).setValue(name);
+    }
+
+    /**
+     * Visits the children of the item like Tree and TreeTable do when the
+     * item is expanded, and returns the number of visited items.
+     */
+    private static int expand(HierarchicalContainer container, Object itemId) {
+        int count = 1;
+        if (container.hasChildren(itemId)) {
+            for (Object childId : container.getChildren(itemId)) {
+                count += expand(container, childId);
+            }
+        }
+        return count;
+    }
+
+    private static long[] startMeasuring() {
+        return new long[] { System.nanoTime(),
+                AllocationTestUtil.getAllocatedBytes() };
+    }
+
+    private static void stopMeasuring(long[] measurement) {
+        measurement[0] = System.nanoTime() - measurement[0];
+        measurement[1] = AllocationTestUtil.getAllocatedBytes()
+                - measurement[1];
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println("  " + label + " " + (result[0] / 1000000)
+                + " ms, " + (result[1] / 1024 / 1024) + " MB allocated");
+    }
+
+    private static long getUsedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
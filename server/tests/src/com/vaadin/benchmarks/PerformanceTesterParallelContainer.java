@@ -0,0 +1,96 @@
+package com.vaadin.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.vaadin.data.util.BeanItemContainer;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/*
+ * Filters and sorts a large BeanItemContainer sequentially and in parallel
+ * using an executor with one thread per available processor.
+ *
+ * The number of rows can be given as the first argument (default 1000000).
+ * Parallel execution is only used when more than one processor is
+ * available, so on a single processor machine both variants should take
+ * the same time. Run with -server -Xmx2g.
+ */
+public class PerformanceTesterParallelContainer {
+
+    private static final int ROUNDS = 5;
+
+    public static class Row {
+        private final int id;
+        private final String name;
+        private final double price;
+
+        public Row(int id, String name, double price) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+    }
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        BeanItemContainer<Row> container = new BeanItemContainer<Row>(
+                Row.class);
+        Random random = new Random(1);
+        for (int i = 0; i < rows; i++) {
+            container.addBean(new Row(i, "Product " + random.nextInt(rows),
+                    random.nextDouble() * 1000));
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(processors);
+        try {
+            // warmup
+            runBenchmark(container, null);
+            runBenchmark(container, executor);
+
+            System.out.println(rows + " rows, " + processors + " processors");
+            report("sequential:", runBenchmark(container, null));
+            report("parallel:  ", runBenchmark(container, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long[] runBenchmark(BeanItemContainer<Row> container,
+            ExecutorService executor) {
+        container.setParallelExecutor(executor);
+        long filterTime = 0;
+        long sortTime = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            container.addContainerFilter(new SimpleStringFilter("name", "1"
+                    + i, true, false));
+            filterTime += System.nanoTime() - start;
+            container.removeAllContainerFilters();
+
+            start = System.nanoTime();
+            container.sort(new Object[] { i % 2 == 0 ? "price" : "name" },
+                    new boolean[] { true });
+            sortTime += System.nanoTime() - start;
+        }
+        return new long[] { filterTime / ROUNDS, sortTime / ROUNDS };
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println(label + " filter " + (result[0] / 1000000)
+                + " ms, sort " + (result[1] / 1000000) + " ms");
+    }
+}
@@ -0,0 +1,156 @@
+package com.vaadin.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.json.JSONException;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.ConnectorHierarchyWriter;
+import com.vaadin.server.communication.ResponseBuffer;
+import com.vaadin.server.communication.SharedStateWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+/*
+ * Compares the heap allocations of buffering a UIDL response in a StringWriter
+ * and encoding the resulting String through an OutputStreamWriter with
+ * buffering it in the UTF-8 encoding ResponseBuffer of the UI and writing the
+ * bytes directly to the output stream.
+ *
+ * The responses contain the state and hierarchy of SMALL_CONNECTORS and
+ * LARGE_CONNECTORS labels. The large response is well above the default size
+ * of the retained buffer of a typical UI, which shows whether a buffer sized
+ * for consistently large responses is reused. Only the allocations made while
+ * writing to the buffer and committing it are counted, the allocations of the
+ * section writers themselves are the same for both.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server.
+ */
+public class PerformanceTesterResponseBuffer {
+
+    private static final int SMALL_CONNECTORS = 100;
+    private static final int LARGE_CONNECTORS = 5000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        runBenchmarks(SMALL_CONNECTORS);
+        runBenchmarks(LARGE_CONNECTORS);
+    }
+
+    private static void runBenchmarks(int connectors) throws Exception {
+        UI ui = createUI(connectors);
+        String json = createResponse(ui);
+
+        // warmup
+        runBenchmark(ui, json, true, ROUNDS);
+        runBenchmark(ui, json, false, ROUNDS);
+        System.gc();
+
+        long stringWriter = runBenchmark(ui, json, false, ROUNDS);
+        long responseBuffer = runBenchmark(ui, json, true, ROUNDS);
+
+        System.out.println(connectors + " connectors, " + json.length()
+                + " characters, " + ROUNDS + " rounds");
+        System.out.println("StringWriter + OutputStreamWriter: "
+                + (stringWriter / ROUNDS / 1024)
+                + " KB allocated per response");
+        System.out.println("Reused ResponseBuffer:             "
+                + (responseBuffer / ROUNDS / 1024)
+                + " KB allocated per response");
+    }
+
+    private static UI createUI(int connectors) {
+        VaadinSession session = new AlwaysLockedVaadinSession(null);
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        VerticalLayout layout = new VerticalLayout();
+        ui.setContent(layout);
+        for (int i = 0; i < connectors; i++) {
+            layout.addComponent(new Label("Label number " + i + " \u00e4"));
+        }
+        return ui;
+    }
+
+    /**
+     * Writes the state and hierarchy sections of a full repaint to a string.
+     * The same response is then written in each round so that only the cost
+     * of buffering and encoding is measured.
+     */
+    private static String createResponse(UI ui) throws IOException,
+            JSONException {
+        ConnectorTracker tracker = ui.getConnectorTracker();
+        tracker.markAllConnectorsDirty();
+        tracker.markAllClientSidesUninitialized();
+
+        StringWriter writer = new StringWriter();
+        writer.write("for(;;);[{\"state\":");
+        new SharedStateWriter().write(ui, writer);
+        writer.write(",\"hierarchy\":");
+        new ConnectorHierarchyWriter().write(ui, writer);
+        writer.write("}]");
+
+        tracker.markAllConnectorsClean();
+        return writer.toString();
+    }
+
+    /**
+     * Buffers the given response and writes it to a discarding output stream
+     * the given number of times and returns the number of bytes allocated by
+     * the current thread while doing so.
+     */
+    private static long runBenchmark(UI ui, String json, boolean reuse,
+            int rounds) throws IOException {
+        OutputStream out = new DiscardingOutputStream();
+        long allocated = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = AllocationTestUtil.getAllocatedBytes();
+            if (reuse) {
+                ResponseBuffer buffer = ui.getResponseBuffer();
+                writeInChunks(json, buffer);
+                buffer.writeTo(out);
+                buffer.reset();
+            } else {
+                StringWriter buffer = new StringWriter();
+                writeInChunks(json, buffer);
+                Writer outputWriter = new OutputStreamWriter(out, "UTF-8");
+                outputWriter.write(buffer.toString());
+                outputWriter.flush();
+            }
+            allocated += AllocationTestUtil.getAllocatedBytes() - start;
+        }
+        return allocated;
+    }
+
+    /**
+     * Writes the response in small pieces like the section writers do.
+     */
+    private static void writeInChunks(String json, Writer writer)
+            throws IOException {
+        for (int i = 0; i < json.length(); i += 32) {
+            writer.write(json, i, Math.min(32, json.length() - i));
+        }
+    }
+
+    private static class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.vaadin.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.vaadin.data.util.sqlcontainer.SQLContainer;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+
+/*
+ * Measures how scrolling through an SQLContainer backed by a TableQuery scales
+ * with the size of the table, with offset based and keyset (seek) based
+ * pagination. The table is an audit log in an in-memory HSQLDB database, and
+ * it is scrolled like a Table scrolled to the end does: a jump near the end of
+ * the table followed by reading every item of the last pages forwards and then
+ * backwards.
+ *
+ * For each size, the time and allocated bytes are reported for the jump and
+ * for scrolling the pages in primary key order and in the order of an indexed
+ * timestamp column, descending, with both pagination modes. The jump always
+ * uses an offset, as there are no known page boundaries near it.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server and
+ * e.g. -Xmx2g.
+ */
+public class PerformanceTesterSQLContainerPaging {
+
+    private static final int PAGES = 20;
+
+    public static void main(String[] args) throws SQLException {
+        int maxRows = args.length > 0 ? Integer.parseInt(args[0]) : 160000;
+
+        JDBCConnectionPool pool = new SimpleJDBCConnectionPool(
+                "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:paging", "SA",
+                "", 2, 2);
+        try {
+            // warmup
+            createTable(pool, maxRows / 8);
+            for (int i = 0; i < 2; i++) {
+                runBenchmarks(pool, maxRows / 8, false);
+            }
+
+            for (int rows = maxRows / 8; rows <= maxRows; rows *= 2) {
+                createTable(pool, rows);
+                runBenchmarks(pool, rows, true);
+            }
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    private static void runBenchmarks(JDBCConnectionPool pool, int rows,
+            boolean print) throws SQLException {
+        long[][] offsetById = scroll(pool, false, null);
+        long[][] keysetById = scroll(pool, true, null);
+        long[][] offsetByTime = scroll(pool, false, "CREATED");
+        long[][] keysetByTime = scroll(pool, true, "CREATED");
+
+        if (print) {
+            System.out.println(rows + " rows, scrolling " + PAGES
+                    + " pages forwards and backwards at the end");
+            report("by id, jump:         ", offsetById[0]);
+            report("by id, offset:       ", offsetById[1]);
+            report("by id, keyset:       ", keysetById[1]);
+            report("by created, jump:    ", offsetByTime[0]);
+            report("by created, offset:  ", offsetByTime[1]);
+            report("by created, keyset:  ", keysetByTime[1]);
+        }
+    }
+
+    private static long[][] scroll(JDBCConnectionPool pool, boolean keyset,
+            String sortColumn) throws SQLException {
+        TableQuery query = new TableQuery("audit", pool);
+        query.setKeysetPagingEnabled(keyset);
+        SQLContainer container = new SQLContainer(query);
+        if (sortColumn != null) {
+            container.sort(new Object[] { sortColumn },
+                    new boolean[] { false });
+        }
+        int size = container.size();
+        int first = size - PAGES * SQLContainer.DEFAULT_PAGE_LENGTH
+                * SQLContainer.CACHE_RATIO;
+
+        long[] jump = startMeasuring();
+        container.getIdByIndex(first);
+        stopMeasuring(jump);
+
+        long[] scroll = startMeasuring();
+        for (int i = first + 1; i < size; i++) {
+            container.getIdByIndex(i);
+        }
+        for (int i = size - 1; i >= first; i--) {
+            container.getIdByIndex(i);
+        }
+        stopMeasuring(scroll);
+        return new long[][] { jump, scroll };
+    }
+
+    private static void createTable(JDBCConnectionPool pool, int rows)
+            throws SQLException {
+        Connection conn = pool.reserveConnection();
+        try {
+            Statement statement = conn.createStatement();
+            try {
+                statement.execute("drop table AUDIT");
+            } catch (SQLException e) {
+                // Will fail if table doesn't exist, which is OK.
+                conn.rollback();
+            }
+            statement.execute("create table AUDIT (ID integer not null, "
+                    + "CREATED bigint not null, MESSAGE varchar(64), "
+                    + "primary key(ID))");
+            statement.execute("create index AUDIT_CREATED on AUDIT "
+                    + "(CREATED desc, ID)");
+            statement.close();
+
+            PreparedStatement insert = conn
+                    .prepareStatement("insert into AUDIT values(?, ?, ?)");
+            for (int i = 0; i < rows; i++) {
+                insert.setInt(1, i);
+                // A few entries share the same timestamp
+                insert.setLong(2, 1000000000L + i / 3 * 1000 + (i * 7919) % 3);
+                insert.setString(3, "Event " + i);
+                insert.addBatch();
+                if (i % 10000 == 9999) {
+                    insert.executeBatch();
+                }
+            }
+            if (rows % 10000 != 0) {
+                insert.executeBatch();
+            }
+            insert.close();
+            conn.commit();
+        } finally {
+            pool.releaseConnection(conn);
+        }
+    }
+
+    private static long[] startMeasuring() {
+        return new long[] { System.nanoTime(),
+                AllocationTestUtil.getAllocatedBytes() };
+    }
+
+    private static void stopMeasuring(long[] measurement) {
+        measurement[0] = System.nanoTime() - measurement[0];
+        measurement[1] = AllocationTestUtil.getAllocatedBytes()
+                - measurement[1];
+    }
+
+    private static void report(String label, long[] result) {
+        System.out.println("  " + label + " " + (result[0] / 1000000)
+                + " ms, " + (result[1] / 1024 / 1024) + " MB allocated");
+    }
+}
@@ -0,0 +1,124 @@
+package com.vaadin.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.Like;
+import com.vaadin.data.util.sqlcontainer.connection.ConcurrentJDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.data.util.sqlcontainer.query.generator.DefaultSQLGenerator;
+
+/*
+ * Measures fetching pages and counts with TableQuery with and without the
+ * prepared statement cache of ConcurrentJDBCConnectionPool. The query uses
+ * two filters and an ordering, like a filtered and sorted table would, and
+ * fetches the same few pages repeatedly. With the LIMIT and OFFSET values
+ * written into the query, each page is a separate statement; with them
+ * bound as parameters, all pages share one statement.
+ *
+ * For each run, the total time and the statement cache hits and misses are
+ * reported.
+ */
+public class PerformanceTesterStatementCache {
+
+    private static final int ROWS = 200;
+    private static final int ITERATIONS = 20000;
+    private static final int PAGE_LENGTH = 10;
+
+    public static void main(String[] args) throws Exception {
+        // warmup
+        for (int i = 0; i < 2; i++) {
+            runBenchmark(0, false, false);
+            runBenchmark(20, false, false);
+            runBenchmark(20, true, false);
+        }
+        runBenchmark(0, false, true);
+        runBenchmark(20, false, true);
+        runBenchmark(20, true, true);
+    }
+
+    private static void runBenchmark(int cacheSize,
+            boolean limitsAsParameters, boolean print) throws SQLException {
+        ConcurrentJDBCConnectionPool pool = new ConcurrentJDBCConnectionPool(
+                "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:statements",
+                "SA", "", 1, 1);
+        pool.setStatementCacheSize(cacheSize);
+        try {
+            createTable(pool);
+            DefaultSQLGenerator generator = new DefaultSQLGenerator();
+            generator.setLimitsAsParameters(limitsAsParameters);
+            TableQuery query = new TableQuery("benchmark", pool, generator);
+            List<Filter> filters = new ArrayList<Filter>();
+            filters.add(new Like("NAME", "Person 1%"));
+            filters.add(new Compare.Greater("AGE", 20));
+            query.setFilters(filters);
+            List<OrderBy> orderBys = new ArrayList<OrderBy>();
+            orderBys.add(new OrderBy("NAME", true));
+            query.setOrderBy(orderBys);
+
+            long time = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                query.beginTransaction();
+                if (i % 10 == 0) {
+                    query.getCount();
+                }
+                query.getResults((i % 5) * PAGE_LENGTH, PAGE_LENGTH).close();
+                query.commit();
+            }
+            time = System.nanoTime() - time;
+            if (print) {
+                System.out.println("statement cache size " + cacheSize
+                        + (limitsAsParameters ? ", limits as parameters" : "")
+                        + ": " + (time / 1000000) + " ms, "
+                        + pool.getStatementCacheHits() + " hits, "
+                        + pool.getStatementCacheMisses() + " misses");
+            }
+        } finally {
+            dropTable(pool);
+            pool.destroy();
+        }
+    }
+
+    private static void createTable(ConcurrentJDBCConnectionPool pool)
+            throws SQLException {
+        Connection conn = pool.reserveConnection();
+        try {
+            Statement statement = conn.createStatement();
+            statement.execute("create table benchmark (ID integer "
+                    + "generated always as identity primary key, "
+                    + "NAME varchar(32), AGE integer)");
+            statement.close();
+            PreparedStatement insert = conn
+                    .prepareStatement("insert into benchmark (NAME, AGE) values (?, ?)");
+            for (int i = 0; i < ROWS; i++) {
+                insert.setString(1, "Person " + i);
+                insert.setInt(2, i % 80);
+                insert.executeUpdate();
+            }
+            insert.close();
+            conn.commit();
+        } finally {
+            pool.releaseConnection(conn);
+        }
+    }
+
+    private static void dropTable(ConcurrentJDBCConnectionPool pool)
+            throws SQLException {
+        Connection conn = pool.reserveConnection();
+        try {
+            Statement statement = conn.createStatement();
+            statement.execute("drop table benchmark");
+            statement.close();
+            conn.commit();
+        } finally {
+            pool.releaseConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.vaadin.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.ConnectorHierarchyWriter;
+import com.vaadin.server.communication.SharedStateWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+/*
+ * Compares the heap allocations of the streaming SharedStateWriter and
+ * ConnectorHierarchyWriter with the previous implementation that collected the
+ * sections into one JSONObject before calling toString().
+ *
+ * The UI contains CONNECTORS labels that are all dirty and uninitialized, i.e.
+ * the full state of every connector is written on each round.
+ *
+ * Allocated bytes are measured with AllocationTestUtil. Run with -server.
+ */
+public class PerformanceTesterUidlWriter {
+
+    private static final int CONNECTORS = 5000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        UI ui = createUI(CONNECTORS);
+
+        // warmup
+        runBenchmark(ui, true, ROUNDS);
+        runBenchmark(ui, false, ROUNDS);
+        System.gc();
+
+        long materialized = runBenchmark(ui, false, ROUNDS);
+        long streaming = runBenchmark(ui, true, ROUNDS);
+
+        System.out.println(CONNECTORS + " connectors, " + ROUNDS + " rounds");
+        System.out.println("JSONObject materializing writers: "
+                + (materialized / ROUNDS / 1024) + " KB allocated per response");
+        System.out.println("Streaming writers:                "
+                + (streaming / ROUNDS / 1024) + " KB allocated per response");
+    }
+
+    private static UI createUI(int connectors) {
+        VaadinSession session = new AlwaysLockedVaadinSession(null);
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        VerticalLayout layout = new VerticalLayout();
+        ui.setContent(layout);
+        for (int i = 0; i < connectors; i++) {
+            layout.addComponent(new Label("Label number " + i));
+        }
+        return ui;
+    }
+
+    /**
+     * Writes the state and hierarchy sections of a full repaint the given
+     * number of times and returns the number of bytes allocated by the current
+     * thread while doing so.
+     */
+    private static long runBenchmark(UI ui, boolean streaming, int rounds)
+            throws Exception {
+        ConnectorTracker tracker = ui.getConnectorTracker();
+        long allocated = 0;
+        for (int i = 0; i < rounds; i++) {
+            tracker.markAllConnectorsDirty();
+            tracker.markAllClientSidesUninitialized();
+
+            long start = AllocationTestUtil.getAllocatedBytes();
+            Writer writer = new StringWriter();
+            if (streaming) {
+                new SharedStateWriter().write(ui, writer);
+                new ConnectorHierarchyWriter().write(ui, writer);
+            } else {
+                writeMaterializedState(ui, writer);
+                writeMaterializedHierarchy(ui, writer);
+            }
+            allocated += AllocationTestUtil.getAllocatedBytes() - start;
+
+            tracker.markAllConnectorsClean();
+        }
+        return allocated;
+    }
+
+    /*
+     * The implementation of SharedStateWriter.write before it was changed to
+     * stream its output.
+     */
+    private static void writeMaterializedState(UI ui, Writer writer)
+            throws IOException, JSONException {
+        JSONObject sharedStates = new JSONObject();
+        for (ClientConnector connector : ui.getConnectorTracker()
+                .getDirtyVisibleConnectors()) {
+            JSONObject stateJson = connector.encodeState();
+            if (stateJson != null && stateJson.length() != 0) {
+                sharedStates.put(connector.getConnectorId(), stateJson);
+            }
+        }
+        writer.write(sharedStates.toString());
+    }
+
+    /*
+     * The implementation of ConnectorHierarchyWriter.write before it was
+     * changed to stream its output.
+     */
+    private static void writeMaterializedHierarchy(UI ui, Writer writer)
+            throws IOException, JSONException {
+        JSONObject hierarchyInfo = new JSONObject();
+        for (ClientConnector connector : ui.getConnectorTracker()
+                .getDirtyVisibleConnectors()) {
+            JSONArray children = new JSONArray();
+            for (ClientConnector child : AbstractClientConnector
+                    .getAllChildrenIterable(connector)) {
+                if (LegacyCommunicationManager
+                        .isConnectorVisibleToClient(child)) {
+                    children.put(child.getConnectorId());
+                }
+            }
+            hierarchyInfo.put(connector.getConnectorId(), children);
+        }
+        writer.write(hierarchyInfo.toString());
+    }
+}
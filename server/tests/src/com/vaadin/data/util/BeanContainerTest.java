@@ -41,6 +41,14 @@ public class BeanContainerTest extends AbstractBeanContainerTest {
         return new BeanContainer<String, ClassName>(ClassName.class);
     }
 
+    private BeanContainer<String, ClassName> getOnDemandContainer() {
+        BeanContainer<String, ClassName> container = getContainer();
+        container.setItemsCreatedOnDemand(true);
+        // Small cache to recreate evicted items
+        container.setItemCacheSize(2);
+        return container;
+    }
+
     @Override
     public void setUp() {
         nameToBean.clear();
@@ -84,6 +92,13 @@ public class BeanContainerTest extends AbstractBeanContainerTest {
         testContainerSortingAndFiltering(getContainer());
     }
 
+    public void testItemsCreatedOnDemand() {
+        testBasicContainerOperations(getOnDemandContainer());
+        testContainerFiltering(getOnDemandContainer());
+        testContainerSorting(getOnDemandContainer());
+        testContainerSortingAndFiltering(getOnDemandContainer());
+    }
+
     // duplicated from parent class and modified - adding items to
     // BeanContainer differs from other containers
     public void testContainerOrdered() {
@@ -7,11 +7,21 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
 import com.vaadin.data.Container;
+import com.vaadin.data.Container.Indexed.ItemAddEvent;
+import com.vaadin.data.Container.Indexed.ItemRemoveEvent;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
+import com.vaadin.data.Property;
 
 /**
  * Test basic functionality of BeanItemContainer.
@@ -28,6 +38,14 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         return new BeanItemContainer<ClassName>(ClassName.class);
     }
 
+    private BeanItemContainer<ClassName> getOnDemandContainer() {
+        BeanItemContainer<ClassName> container = getContainer();
+        container.setItemsCreatedOnDemand(true);
+        // Small cache to recreate evicted items
+        container.setItemCacheSize(2);
+        return container;
+    }
+
     @Override
     public void setUp() {
         nameToBean.clear();
@@ -87,6 +105,13 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         testContainerSortingAndFiltering(getContainer());
     }
 
+    public void testItemsCreatedOnDemand() {
+        testBasicContainerOperations(getOnDemandContainer());
+        testContainerFiltering(getOnDemandContainer());
+        testContainerSorting(getOnDemandContainer());
+        testContainerSortingAndFiltering(getOnDemandContainer());
+    }
+
     // duplicated from parent class and modified - adding items to
     // BeanItemContainer differs from other containers
     public void testContainerOrdered() {
@@ -588,6 +613,179 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         assertEquals(3, container.size());
     }
 
+    public void testRefilterItemOnPropertyValueChange() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        Person matthew = new Person("Matthew");
+        // value change listeners are added to beans added after the filter
+        container.addContainerFilter("name", "j", true, true);
+        container.addBean(john);
+        container.addBean(jane);
+        container.addBean(matthew);
+
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        container.getContainerProperty(john, "name").setValue("Mark");
+        assertEquals(1, container.size());
+        assertEquals(1, events.size());
+        ItemRemoveEvent event = (ItemRemoveEvent) events.get(0);
+        assertEquals(john, event.getFirstItemId());
+        assertEquals(0, event.getFirstIndex());
+
+        container.getContainerProperty(john, "name").setValue("Julia");
+        assertEquals(2, container.size());
+        assertEquals(0, container.indexOfId(john));
+        assertEquals(2, events.size());
+        assertTrue(events.get(1) instanceof ItemAddEvent);
+    }
+
+    public void testItemPropertiesCreatedLazily() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        Person john = new Person("John");
+        BeanItem<Person> item = container.addBean(john);
+
+        assertEquals(
+                new ArrayList<Object>(container.getContainerPropertyIds()),
+                new ArrayList<Object>(item.getItemPropertyIds()));
+        Property<?> name = item.getItemProperty("name");
+        assertEquals("John", name.getValue());
+        assertSame(name, item.getItemProperty("name"));
+        assertSame(name, container.getContainerProperty(john, "name"));
+        assertNull(item.getItemProperty("unknown"));
+
+        // Adding a property to the item keeps the existing properties
+        assertTrue(item.addItemProperty("extra", new ObjectProperty<String>(
+                "value")));
+        assertSame(name, item.getItemProperty("name"));
+        assertEquals("value", item.getItemProperty("extra").getValue());
+        assertTrue(item.getItemPropertyIds().contains("extra"));
+
+        // Items with properties not created yet are equal to their clones
+        BeanItem<Person> other = container.addBean(new Person("Jane"));
+        try {
+            assertEquals(other.clone(), other);
+        } catch (CloneNotSupportedException e) {
+            fail(e.getMessage());
+        }
+        assertEquals("Jane", other.toString());
+    }
+
+    public void testRemoveContainerPropertyWithLazyItems() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        Person john = new Person("John");
+        container.addBean(john);
+        container.removeContainerProperty("name");
+        assertNull(container.getItem(john).getItemProperty("name"));
+        assertTrue(container.getItem(john).getItemPropertyIds().isEmpty());
+
+        Person jane = new Person("Jane");
+        container.addBean(jane);
+        assertNull(container.getItem(jane).getItemProperty("name"));
+        assertTrue(container.getItem(jane).getItemPropertyIds().isEmpty());
+    }
+
+    public void testRefilterWithItemsCreatedOnDemand() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.setItemsCreatedOnDemand(true);
+        container.setItemCacheSize(1);
+        container.addContainerFilter("name", "J", false, true);
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        container.addBean(john);
+        container.addBean(jane);
+        assertEquals(2, container.size());
+
+        // john has been evicted from the cache and is recreated
+        BeanItem<Person> item = container.getItem(john);
+        assertSame(john, item.getBean());
+        assertSame(item, container.getItem(john));
+        item.getItemProperty("name").setValue("Mike");
+        assertEquals(Arrays.asList(jane), container.getItemIds());
+
+        assertTrue(container.removeItem(jane));
+        assertNull(container.getItem(jane));
+        assertEquals(0, container.size());
+        assertNotNull(container.getItem(john));
+    }
+
+    public void testChangeItemCreationModeOfNonEmptyContainer() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.addBean(new Person("John"));
+        try {
+            container.setItemsCreatedOnDemand(true);
+            fail("Changing the mode of a non-empty container should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        container.removeAllItems();
+        container.setItemsCreatedOnDemand(true);
+        assertTrue(container.isItemsCreatedOnDemand());
+    }
+
+    @SuppressWarnings("serial")
+    public void testParallelSortingAndFiltering() {
+        // Use several workers regardless of the number of processors
+        BeanItemContainer<Person> parallel = new BeanItemContainer<Person>(
+                Person.class) {
+            @Override
+            int getParallelism() {
+                return 4;
+            }
+        };
+        BeanItemContainer<Person> sequential = new BeanItemContainer<Person>(
+                Person.class);
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            Person person = new Person("Person " + random.nextInt(1000));
+            parallel.addBean(person);
+            sequential.addBean(person);
+        }
+        final ExecutorService executorService = Executors
+                .newFixedThreadPool(3);
+        final AtomicInteger tasks = new AtomicInteger();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.incrementAndGet();
+                executorService.execute(command);
+            }
+        };
+        try {
+            parallel.setParallelExecutor(executor);
+            parallel.setParallelThreshold(100);
+
+            parallel.sort(new Object[] { "name" }, new boolean[] { false });
+            sequential.sort(new Object[] { "name" }, new boolean[] { false });
+            assertEquals(sequential.getItemIds(), parallel.getItemIds());
+
+            parallel.addContainerFilter("name", "person 1", true, true);
+            sequential.addContainerFilter("name", "person 1", true, true);
+            assertEquals(sequential.getItemIds(), parallel.getItemIds());
+
+            parallel.removeAllContainerFilters();
+            sequential.removeAllContainerFilters();
+            parallel.addContainerFilter("name", "5", false, false);
+            sequential.addContainerFilter("name", "5", false, false);
+            assertEquals(sequential.getItemIds(), parallel.getItemIds());
+            assertTrue(tasks.get() > 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     public void testAddAll() {
         BeanItemContainer<Person> container = new BeanItemContainer<Person>(
                 Person.class);
@@ -0,0 +1,438 @@
+package com.vaadin.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.util.DataProviderContainer.DataProvider;
+import com.vaadin.data.util.DataProviderContainer.IndexedDataProvider;
+import com.vaadin.data.util.DataProviderContainer.Query;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.ui.ListSelect;
+import com.vaadin.ui.Table;
+
+public class DataProviderContainerTest extends TestCase {
+
+    private static final int ROWS = 10000000;
+
+    public static class Row implements Serializable {
+        private final int id;
+
+        public Row(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return "Row " + id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Row && ((Row) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    /**
+     * Generates rows on the fly and records the queries made.
+     */
+    private static class RowProvider implements IndexedDataProvider<Row> {
+        private final int reportedSize;
+        private int actualSize;
+        private final List<Query> queries = new ArrayList<Query>();
+        private int sizeQueries = 0;
+        private int indexQueries = 0;
+
+        public RowProvider(int reportedSize, int actualSize) {
+            this.reportedSize = reportedSize;
+            this.actualSize = actualSize;
+        }
+
+        @Override
+        public int size(List<Filter> filters) {
+            sizeQueries++;
+            if (filters.isEmpty()) {
+                return reportedSize;
+            }
+            return getFilteredRows(filters).size();
+        }
+
+        @Override
+        public List<Row> fetch(Query query) {
+            queries.add(query);
+            List<Row> rows = new ArrayList<Row>();
+            if (!query.getFilters().isEmpty()) {
+                List<Row> filtered = getFilteredRows(query.getFilters());
+                int end = Math.min(filtered.size(),
+                        query.getOffset() + query.getLimit());
+                for (int i = query.getOffset(); i < end; i++) {
+                    rows.add(filtered.get(i));
+                }
+                return rows;
+            }
+            boolean descending = query.getSortPropertyIds().length > 0
+                    && !query.getSortAscending()[0];
+            int end = Math.min(actualSize, query.getOffset() + query.getLimit());
+            for (int i = query.getOffset(); i < end; i++) {
+                rows.add(new Row(descending ? actualSize - 1 - i : i));
+            }
+            return rows;
+        }
+
+        @Override
+        public int indexOf(Row bean, Query query) {
+            indexQueries++;
+            if (!query.getFilters().isEmpty()) {
+                return getFilteredRows(query.getFilters()).indexOf(bean);
+            }
+            if (bean.getId() < 0 || bean.getId() >= actualSize) {
+                return -1;
+            }
+            boolean descending = query.getSortPropertyIds().length > 0
+                    && !query.getSortAscending()[0];
+            return descending ? actualSize - 1 - bean.getId() : bean.getId();
+        }
+
+        private List<Row> getFilteredRows(List<Filter> filters) {
+            List<Row> rows = new ArrayList<Row>();
+            for (int i = 0; i < Math.min(actualSize, 10000); i++) {
+                Row row = new Row(i);
+                BeanItem<Row> item = new BeanItem<Row>(row);
+                boolean passes = true;
+                for (Filter filter : filters) {
+                    passes &= filter.passesFilter(row, item);
+                }
+                if (passes) {
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+
+        public Query getLastQuery() {
+            return queries.get(queries.size() - 1);
+        }
+
+        public int getFetchedRows() {
+            int fetched = 0;
+            for (Query query : queries) {
+                fetched += query.getLimit();
+            }
+            return fetched;
+        }
+    }
+
+    private RowProvider provider;
+    private DataProviderContainer<Row> container;
+
+    @Override
+    protected void setUp() throws Exception {
+        provider = new RowProvider(ROWS, ROWS);
+        container = new DataProviderContainer<Row>(Row.class, provider);
+    }
+
+    public void testProperties() {
+        assertEquals(Arrays.asList("id", "name"), new ArrayList<Object>(
+                container.getContainerPropertyIds()));
+        assertEquals(int.class, container.getType("id"));
+        assertEquals(ROWS, container.size());
+
+        Row row = container.getIdByIndex(123);
+        assertEquals(new Row(123), row);
+        assertEquals("Row 123",
+                container.getContainerProperty(row, "name").getValue());
+        assertSame(container.getItem(row), container.getItem(row));
+    }
+
+    public void testFetchPagesWithPrefetch() {
+        List<Row> ids = container.getItemIds(5000000, 50);
+        assertEquals(50, ids.size());
+        assertEquals(new Row(5000000), ids.get(0));
+        assertEquals(new Row(5000049), ids.get(49));
+        assertEquals(1, provider.queries.size());
+        assertEquals(5000000, provider.getLastQuery().getOffset());
+        assertEquals(2 * DataProviderContainer.DEFAULT_PAGE_SIZE, provider
+                .getLastQuery().getLimit());
+
+        // Served from the requested and the prefetched page
+        container.getItemIds(5000050, 100);
+        assertEquals(1, provider.queries.size());
+        assertEquals(5000150, container.indexOfId(new Row(5000150)));
+
+        assertEquals(new Row(5000200), container.getIdByIndex(5000200));
+        assertEquals(2, provider.queries.size());
+        assertEquals(5000200, provider.getLastQuery().getOffset());
+    }
+
+    public void testPrefetchBackwards() {
+        container.getIdByIndex(1000);
+        container.getIdByIndex(950);
+        assertEquals(2, provider.queries.size());
+        assertEquals(800, provider.getLastQuery().getOffset());
+        assertEquals(200, provider.getLastQuery().getLimit());
+        assertEquals(new Row(850), container.getIdByIndex(850));
+        assertEquals(2, provider.queries.size());
+    }
+
+    public void testCachedPagesBounded() {
+        container.setMaxCachedPages(3);
+        container.setPrefetchPages(0);
+        for (int i = 0; i < 1000; i += 100) {
+            assertEquals(new Row(i), container.getIdByIndex(i));
+        }
+        assertEquals(10, provider.queries.size());
+        assertEquals(999, container.indexOfId(new Row(999)));
+        assertEquals(700, container.indexOfId(new Row(700)));
+        assertEquals(0, provider.indexQueries);
+
+        // Discarded ids are looked up from the provider
+        assertEquals(0, container.indexOfId(new Row(0)));
+        assertTrue(container.containsId(new Row(699)));
+        assertEquals(2, provider.indexQueries);
+        assertEquals(10, provider.queries.size());
+        assertEquals(0, container.getItem(new Row(0)).getItemProperty("id")
+                .getValue());
+    }
+
+    public void testIdsNotInDataSet() {
+        container.getIdByIndex(0);
+        assertEquals(-1, container.indexOfId(new Row(ROWS)));
+        assertFalse(container.containsId(new Row(-1)));
+        assertNull(container.getItem(new Row(ROWS)));
+        assertFalse(container.containsId("Row 1"));
+        assertNull(container.getItem("Row 1"));
+
+        container.addContainerFilter(new Compare.Less("id", 10));
+        assertTrue(container.containsId(new Row(9)));
+        assertFalse(container.containsId(new Row(10)));
+        assertNull(container.getItem(new Row(10)));
+    }
+
+    public void testLookupWithoutIndexedProvider() {
+        final RowProvider rows = new RowProvider(1000, 1000);
+        DataProvider<Row> plain = new DataProvider<Row>() {
+            @Override
+            public int size(List<Filter> filters) {
+                return rows.size(filters);
+            }
+
+            @Override
+            public List<Row> fetch(Query query) {
+                return rows.fetch(query);
+            }
+        };
+        container = new DataProviderContainer<Row>(Row.class, plain);
+        container.setPageSize(10);
+        container.setMaxCachedPages(5);
+        assertEquals(new Row(0), container.getIdByIndex(0));
+        assertEquals(734, container.indexOfId(new Row(734)));
+        assertFalse(container.containsId(new Row(1000)));
+        assertEquals(new Row(734), container.getItem(new Row(734)).getBean());
+        assertEquals(0, rows.indexQueries);
+    }
+
+    public void testLookupWithoutIndexedProviderBounded() {
+        final RowProvider rows = new RowProvider(1000000, 1000000);
+        DataProvider<Row> plain = new DataProvider<Row>() {
+            @Override
+            public int size(List<Filter> filters) {
+                return rows.size(filters);
+            }
+
+            @Override
+            public List<Row> fetch(Query query) {
+                return rows.fetch(query);
+            }
+        };
+        container = new DataProviderContainer<Row>(Row.class, plain);
+        container.setPageSize(10);
+        container.setMaxCachedPages(5);
+        container.setMaxLookupRows(120);
+        assertEquals(119, container.indexOfId(new Row(119)));
+        assertEquals(3, rows.queries.size());
+
+        rows.queries.clear();
+        assertFalse(container.containsId(new Row(500000)));
+        assertNull(container.getItem(new Row(120)));
+        assertEquals(240, rows.getFetchedRows());
+    }
+
+    public void testSelectAndScrollToUncachedId() {
+        Row row = new Row(ROWS / 2);
+        ListSelect select = new ListSelect(null, container);
+        select.setValue(row);
+        assertEquals(row, select.getValue());
+
+        Table table = new Table(null, container);
+        table.setPageLength(20);
+        table.setCurrentPageFirstItemId(row);
+        assertEquals(ROWS / 2, table.getCurrentPageFirstItemIndex());
+        assertEquals(row, table.getCurrentPageFirstItemId());
+    }
+
+    public void testDataShrunk() {
+        provider = new RowProvider(1000, 1000);
+        container = new DataProviderContainer<Row>(Row.class, provider);
+        assertEquals(new Row(0), container.getIdByIndex(0));
+
+        provider.actualSize = 900;
+        try {
+            container.getIdByIndex(950);
+            fail("Index outside the shrunk data did not fail");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        assertEquals(900, container.size());
+    }
+
+    public void testSizeCachedUntilRefresh() {
+        final int[] events = new int[1];
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events[0]++;
+            }
+        });
+
+        container.size();
+        container.size();
+        container.getIdByIndex(0);
+        assertEquals(1, provider.sizeQueries);
+
+        container.refresh();
+        assertEquals(1, events[0]);
+        container.getIdByIndex(0);
+        assertEquals(2, provider.sizeQueries);
+        assertEquals(2, provider.queries.size());
+    }
+
+    public void testShortFetchUpdatesSize() {
+        provider = new RowProvider(1000, 950);
+        container = new DataProviderContainer<Row>(Row.class, provider);
+        assertEquals(1000, container.size());
+        assertEquals(new Row(900), container.getIdByIndex(900));
+        assertEquals(950, container.size());
+        assertEquals(50, container.getItemIds(900, 100).size());
+        assertEquals(new Row(949), container.lastItemId());
+    }
+
+    public void testSortAndFilterPassedToProvider() {
+        final int[] events = new int[1];
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events[0]++;
+            }
+        });
+
+        container.getIdByIndex(0);
+        container.sort(new Object[] { "id", "unknown" }, new boolean[] {
+                false, true });
+        assertEquals(1, events[0]);
+        assertEquals(new Row(ROWS - 1), container.firstItemId());
+        assertEquals(Arrays.asList((Object) "id"), Arrays.asList(provider
+                .getLastQuery().getSortPropertyIds()));
+        assertFalse(provider.getLastQuery().getSortAscending()[0]);
+
+        Filter filter = new Compare.Less("id", 10);
+        container.addContainerFilter(filter);
+        assertEquals(2, events[0]);
+        assertEquals(10, container.size());
+        assertEquals(new Row(9), container.lastItemId());
+        assertEquals(Arrays.asList(filter), provider.getLastQuery()
+                .getFilters());
+
+        container.removeAllContainerFilters();
+        assertEquals(3, events[0]);
+        assertEquals(ROWS, container.size());
+    }
+
+    public void testNavigation() {
+        Row first = (Row) container.firstItemId();
+        assertTrue(container.isFirstId(first));
+        Row next = (Row) container.nextItemId(first);
+        assertEquals(new Row(1), next);
+        assertEquals(first, container.prevItemId(next));
+        assertNull(container.prevItemId(first));
+
+        Row last = (Row) container.lastItemId();
+        assertEquals(new Row(ROWS - 1), last);
+        assertTrue(container.isLastId(last));
+        assertNull(container.nextItemId(last));
+
+        List<Row> ids = container.getItemIds();
+        assertEquals(ROWS, ids.size());
+        assertEquals(new Row(42), ids.get(42));
+    }
+
+    public void testItemIdListLooksUpIds() {
+        List<Row> ids = container.getItemIds();
+        assertTrue(ids.contains(new Row(ROWS - 1)));
+        assertEquals(ROWS - 2, ids.indexOf(new Row(ROWS - 2)));
+        assertEquals(-1, ids.indexOf(new Row(ROWS)));
+        assertFalse(ids.contains("Row 1"));
+
+        // Looked up from the provider instead of iterating the ids
+        assertEquals(3, provider.indexQueries);
+        assertEquals(0, provider.queries.size());
+    }
+
+    public void testTableScrolling() {
+        Table table = new Table(null, container);
+        table.setPageLength(20);
+        table.setCurrentPageFirstItemIndex(9999000);
+        assertEquals(new Row(9999000), table.getCurrentPageFirstItemId());
+        table.setCurrentPageFirstItemIndex(ROWS / 2);
+        assertEquals(new Row(ROWS / 2), table.getCurrentPageFirstItemId());
+        assertTrue(provider.getFetchedRows() <= 10 * DataProviderContainer.DEFAULT_PAGE_SIZE);
+    }
+
+    public void testReadOnly() {
+        try {
+            container.addItem();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            container.removeItem(container.firstItemId());
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testSerialization() throws Exception {
+        container.getIdByIndex(1234);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(container);
+        out.close();
+
+        @SuppressWarnings("unchecked")
+        DataProviderContainer<Row> copy = (DataProviderContainer<Row>) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(1234, copy.indexOfId(new Row(1234)));
+        assertEquals(new Row(1234), copy.getIdByIndex(1234));
+        assertEquals(1234, copy.indexOfId(new Row(1234)));
+    }
+}
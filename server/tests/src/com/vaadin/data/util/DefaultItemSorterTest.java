@@ -0,0 +1,151 @@
+package com.vaadin.data.util;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.Item;
+import com.vaadin.data.util.SortKeyItemSorter.SortKey;
+import com.vaadin.data.util.filter.Compare;
+
+public class DefaultItemSorterTest extends TestCase {
+
+    private static final Object[] PROPERTIES = { "int", "long", "double",
+            "float", "string", "mixed" };
+
+    private IndexedContainer container;
+
+    @Override
+    protected void setUp() throws Exception {
+        container = new IndexedContainer();
+        container.addContainerProperty("int", Integer.class, null);
+        container.addContainerProperty("long", Long.class, null);
+        container.addContainerProperty("double", Double.class, null);
+        container.addContainerProperty("float", Float.class, null);
+        container.addContainerProperty("string", String.class, null);
+        container.addContainerProperty("mixed", Object.class, null);
+
+        Random random = new Random(1);
+        double[] doubles = { Double.NaN, -0.0, 0.0, 1.5,
+                Double.NEGATIVE_INFINITY, -1.5 };
+        String[] strings = { "a", "B", "\u00e4", "A", "b", "z" };
+        for (int i = 0; i < 500; i++) {
+            Item item = container.addItem(Integer.valueOf(i));
+            boolean isNull = random.nextInt(8) == 0;
+            item.getItemProperty("int").setValue(
+                    isNull ? null : Integer.valueOf(random.nextInt(10) - 5));
+            item.getItemProperty("long").setValue(
+                    Long.valueOf(random.nextInt(5) * 1000000000000L));
+            item.getItemProperty("double").setValue(
+                    isNull ? null : Double.valueOf(doubles[random
+                            .nextInt(doubles.length)]));
+            item.getItemProperty("float").setValue(
+                    Float.valueOf((float) doubles[random.nextInt(doubles.length)]));
+            item.getItemProperty("string").setValue(
+                    strings[random.nextInt(strings.length)]);
+            item.getItemProperty("mixed").setValue(
+                    random.nextBoolean() ? "x" + random.nextInt(3) : null);
+        }
+    }
+
+    public void testSortKeysMatchCompare() {
+        DefaultItemSorter sorter = new DefaultItemSorter();
+        assertTrue(sorter.isSortKeyExtractionSupported());
+        for (Object propertyId : PROPERTIES) {
+            assertSameOrder(sorter, new Object[] { propertyId },
+                    new boolean[] { true });
+            assertSameOrder(sorter, new Object[] { propertyId },
+                    new boolean[] { false });
+        }
+        assertSameOrder(sorter, new Object[] { "long", "int", "double" },
+                new boolean[] { true, false, true });
+    }
+
+    public void testCollatorSortKeysMatchCompare() {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Comparator<Object> collator = (Comparator) Collator
+                .getInstance(Locale.GERMAN);
+        DefaultItemSorter sorter = new DefaultItemSorter(collator);
+        assertTrue(sorter.isSortKeyExtractionSupported());
+        assertSameOrder(sorter, new Object[] { "string" },
+                new boolean[] { true });
+        assertSameOrder(sorter, new Object[] { "string" },
+                new boolean[] { false });
+    }
+
+    public void testFilteredItemsSortedLast() {
+        container.addContainerFilter(new Compare.Greater("int", Integer
+                .valueOf(0)));
+        assertSameOrder(new DefaultItemSorter(), new Object[] { "double" },
+                new boolean[] { true });
+    }
+
+    public void testSortKeysNotUsedWhenCompareOverridden() {
+        assertFalse(new DefaultItemSorter() {
+            @Override
+            public int compare(Object o1, Object o2) {
+                return -super.compare(o1, o2);
+            }
+        }.isSortKeyExtractionSupported());
+        assertFalse(new DefaultItemSorter() {
+            @Override
+            protected int compareProperty(Object propertyId,
+                    boolean sortDirection, Item item1, Item item2) {
+                return 0;
+            }
+        }.isSortKeyExtractionSupported());
+    }
+
+    public void testSubclassCanEnableSortKeys() {
+        DefaultItemSorter sorter = new DefaultItemSorter() {
+            @Override
+            public boolean isSortKeyExtractionSupported() {
+                return true;
+            }
+        };
+        assertTrue(sorter.isSortKeyExtractionSupported());
+        assertSameOrder(sorter, new Object[] { "int", "string" },
+                new boolean[] { true, false });
+    }
+
+    public void testContainerSortUsesSortKeys() {
+        container.sort(new Object[] { "int", "string" }, new boolean[] {
+                true, false });
+
+        DefaultItemSorter sorter = new DefaultItemSorter();
+        sorter.setSortProperties(container, new Object[] { "int", "string" },
+                new boolean[] { true, false });
+        List<Object> expected = new ArrayList<Object>(container.getItemIds());
+        Collections.sort(expected, sorter);
+        assertEquals(expected, container.getItemIds());
+    }
+
+    private void assertSameOrder(final DefaultItemSorter sorter,
+            Object[] propertyIds, boolean[] ascending) {
+        sorter.setSortProperties(container, propertyIds, ascending);
+        List<Object> expected = new ArrayList<Object>(
+                container.getAllItemIds());
+        Collections.sort(expected, sorter);
+
+        SortKey[] keys = sorter.extractSortKeys(container.getAllItemIds()
+                .toArray());
+        Arrays.sort(keys, new Comparator<SortKey>() {
+            @Override
+            public int compare(SortKey key1, SortKey key2) {
+                return sorter.compareSortKeys(key1, key2);
+            }
+        });
+        List<Object> actual = new ArrayList<Object>();
+        for (SortKey key : keys) {
+            actual.add(key.getItemId());
+        }
+        assertEquals(Arrays.toString(propertyIds), expected, actual);
+    }
+}
@@ -0,0 +1,122 @@
+package com.vaadin.data.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ListSetTest extends TestCase {
+
+    private static final int ELEMENTS = 1000;
+
+    private ListSet<Integer> list;
+
+    @Override
+    protected void setUp() throws Exception {
+        list = new ListSet<Integer>();
+        for (int i = 0; i < ELEMENTS; i++) {
+            list.add(i);
+        }
+    }
+
+    public void testIndexOfAfterAppend() {
+        assertIndexes();
+        list.add(ELEMENTS);
+        assertEquals(ELEMENTS, list.indexOf(ELEMENTS));
+        assertIndexes();
+    }
+
+    public void testIndexOfAfterInsertAndRemove() {
+        assertIndexes();
+        list.add(10, -1);
+        assertIndexes();
+        list.remove(Integer.valueOf(500));
+        assertEquals(-1, list.indexOf(500));
+        assertIndexes();
+        list.remove(0);
+        assertIndexes();
+        list.subList(100, 200).clear();
+        assertEquals(-1, list.indexOf(150));
+        assertIndexes();
+    }
+
+    public void testIndexOfAfterIteratorRemove() {
+        assertIndexes();
+        for (Iterator<Integer> i = list.iterator(); i.hasNext();) {
+            if (i.next() % 2 == 0) {
+                i.remove();
+            }
+        }
+        assertIndexes();
+    }
+
+    public void testIndexOfAfterSort() {
+        assertIndexes();
+        Collections.shuffle(list, new Random(1));
+        assertIndexes();
+        Collections.sort(list, Collections.reverseOrder());
+        assertEquals(ELEMENTS - 1, list.indexOf(0));
+        assertIndexes();
+    }
+
+    public void testIndexOfAfterSet() {
+        assertIndexes();
+        list.set(5, -5);
+        assertEquals(-1, list.indexOf(5));
+        assertEquals(5, list.indexOf(-5));
+        assertIndexes();
+    }
+
+    public void testIndexOfAfterClear() {
+        assertIndexes();
+        list.clear();
+        assertEquals(-1, list.indexOf(0));
+        list.add(1);
+        assertEquals(0, list.indexOf(1));
+    }
+
+    public void testIndexOfInClone() {
+        assertIndexes();
+        @SuppressWarnings("unchecked")
+        ListSet<Integer> clone = (ListSet<Integer>) list.clone();
+        clone.add(0, -1);
+        assertEquals(1, clone.indexOf(0));
+        assertEquals(0, list.indexOf(0));
+    }
+
+    public void testRandomModifications() {
+        Random random = new Random(42);
+        List<Integer> reference = new ArrayList<Integer>(list);
+        for (int round = 0; round < 2000; round++) {
+            int op = random.nextInt(4);
+            if (op == 0) {
+                int index = random.nextInt(reference.size() + 1);
+                Integer value = ELEMENTS + 2 * round;
+                list.add(index, value);
+                reference.add(index, value);
+            } else if (op == 1 && !reference.isEmpty()) {
+                int index = random.nextInt(reference.size());
+                assertEquals(reference.remove(index), list.remove(index));
+            } else if (op == 2) {
+                Integer value = ELEMENTS + 2 * round + 1;
+                list.add(value);
+                reference.add(value);
+            } else if (!reference.isEmpty()) {
+                Integer value = reference.get(random.nextInt(reference
+                        .size()));
+                assertEquals(reference.indexOf(value), list.indexOf(value));
+            }
+        }
+        assertEquals(reference, list);
+        assertIndexes();
+    }
+
+    private void assertIndexes() {
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(i, list.indexOf(list.get(i)));
+        }
+    }
+}
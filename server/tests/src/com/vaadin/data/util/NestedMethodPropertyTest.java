@@ -10,6 +10,8 @@ import java.io.Serializable;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import com.vaadin.data.Property;
+
 public class NestedMethodPropertyTest extends TestCase {
 
     public static class Address implements Serializable {
@@ -355,4 +357,33 @@ public class NestedMethodPropertyTest extends TestCase {
         Assert.assertTrue(booleanProperty.isReadOnly());
     }
 
+    public void testDescriptorReusesResolvedMethods() {
+        NestedPropertyDescriptor<Team> descriptor = new NestedPropertyDescriptor<Team>(
+                "manager.address.street", Team.class);
+        Team other = new Team("Other", new Person("Other", new Address(
+                "Other street", 12345)));
+
+        Property<?> property1 = descriptor.createProperty(vaadin);
+        Property<?> property2 = descriptor.createProperty(other);
+        Assert.assertEquals("Ruukinkatu 2-4", property1.getValue());
+        Assert.assertEquals("Other street", property2.getValue());
+        Assert.assertEquals(String.class, property2.getType());
+        Assert.assertFalse(property2.isReadOnly());
+        Assert.assertEquals(((NestedMethodProperty<?>) property1)
+                .getGetMethods(), ((NestedMethodProperty<?>) property2)
+                .getGetMethods());
+
+        // A bean of a subclass gets its own methods resolved
+        Team subTeam = new Team("Sub", joonas) {
+            @Override
+            public Person getManager() {
+                return new Person("Sub", new Address("Sub street", 1));
+            }
+        };
+        Assert.assertEquals("Sub street", descriptor.createProperty(subTeam)
+                .getValue());
+        Assert.assertEquals("Ruukinkatu 2-4", descriptor.createProperty(vaadin)
+                .getValue());
+    }
+
 }
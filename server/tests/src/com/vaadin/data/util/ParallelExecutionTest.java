@@ -0,0 +1,104 @@
+package com.vaadin.data.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.util.ParallelExecution.ChunkTask;
+
+public class ParallelExecutionTest extends TestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    public void testAllChunksRunOnce() {
+        final AtomicIntegerArray runs = new AtomicIntegerArray(100);
+        ParallelExecution.run(executor, 4, runs.length(), new ChunkTask() {
+            @Override
+            public void run(int chunk) {
+                runs.incrementAndGet(chunk);
+            }
+        });
+        for (int i = 0; i < runs.length(); i++) {
+            assertEquals(1, runs.get(i));
+        }
+    }
+
+    public void testExceptionRethrown() {
+        try {
+            ParallelExecution.run(executor, 4, 10, new ChunkTask() {
+                @Override
+                public void run(int chunk) {
+                    if (chunk == 5) {
+                        throw new IllegalStateException("chunk 5");
+                    }
+                }
+            });
+            fail("Exception was not rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("chunk 5", e.getMessage());
+        }
+    }
+
+    public void testRejectingExecutor() {
+        final AtomicIntegerArray runs = new AtomicIntegerArray(10);
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        ParallelExecution.run(rejecting, 4, runs.length(), new ChunkTask() {
+            @Override
+            public void run(int chunk) {
+                runs.incrementAndGet(chunk);
+            }
+        });
+        for (int i = 0; i < runs.length(); i++) {
+            assertEquals(1, runs.get(i));
+        }
+    }
+
+    public void testSortIsStableAndMatchesSequentialSort() {
+        Random random = new Random(1);
+        for (int length : new int[] { 0, 1, 7, 100, 1001, 20000 }) {
+            for (int parallelism : new int[] { 2, 3, 4, 8 }) {
+                int[][] values = new int[length][];
+                for (int i = 0; i < length; i++) {
+                    // Many equal keys to detect instability
+                    values[i] = new int[] { random.nextInt(50), i };
+                }
+                int[][] expected = values.clone();
+                Arrays.sort(expected, KEY_COMPARATOR);
+
+                ParallelExecution.sort(values, KEY_COMPARATOR, executor,
+                        parallelism);
+                assertTrue(length + " " + parallelism,
+                        Arrays.equals(expected, values));
+            }
+        }
+    }
+
+    private static final Comparator<int[]> KEY_COMPARATOR = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] o1, int[] o2) {
+            return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+        }
+    };
+}
@@ -9,6 +9,9 @@ import java.util.TreeSet;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Item;
+
 public class PerformanceTestIndexedContainer extends TestCase {
 
     private static final int REPEATS = 10;
@@ -19,6 +22,7 @@ public class PerformanceTestIndexedContainer extends TestCase {
     private static final long ADD_ITEM_AFTER_FAIL_THRESHOLD = 5000;
     private static final long ADD_ITEM_AFTER_LAST_FAIL_THRESHOLD = 5000;
     private static final long ADD_ITEMS_CONSTRUCTOR_FAIL_THRESHOLD = 200;
+    private static final long NEXT_ITEM_ID_FAIL_THRESHOLD = 200;
 
     public void testAddItemPerformance() {
         Collection<Long> times = new ArrayList<Long>();
@@ -96,6 +100,40 @@ public class PerformanceTestIndexedContainer extends TestCase {
                 ADD_ITEMS_CONSTRUCTOR_FAIL_THRESHOLD);
     }
 
+    public void testNextItemIdPerformance() {
+        IndexedContainer c = new IndexedContainer();
+        c.addContainerProperty("value", Integer.class, null);
+        for (int i = 0; i < ITEMS; i++) {
+            c.addItem(i).getItemProperty("value").setValue(ITEMS - i);
+        }
+        c.sort(new Object[] { "value" }, new boolean[] { true });
+        c.addContainerFilter(new Filter() {
+            @Override
+            public boolean passesFilter(Object itemId, Item item) {
+                return ((Integer) itemId) % 3 != 0;
+            }
+
+            @Override
+            public boolean appliesToProperty(Object propertyId) {
+                return false;
+            }
+        });
+
+        Collection<Long> times = new ArrayList<Long>();
+        for (int j = 0; j < REPEATS; ++j) {
+            long start = System.currentTimeMillis();
+            int count = 0;
+            for (Object id = c.firstItemId(); id != null; id = c
+                    .nextItemId(id)) {
+                count++;
+            }
+            times.add(System.currentTimeMillis() - start);
+            Assert.assertEquals(c.size(), count);
+        }
+        checkMedian(c.size(), times, "IndexedContainer.nextItemId()",
+                NEXT_ITEM_ID_FAIL_THRESHOLD);
+    }
+
     private void checkMedian(int items, Collection<Long> times,
             String methodName, long threshold) {
         long median = median(times);
@@ -0,0 +1,138 @@
+package com.vaadin.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class TestColumnarIndexedContainer extends
+        AbstractInMemoryContainerTest {
+
+    private static IndexedContainer createContainer() {
+        IndexedContainer container = new IndexedContainer();
+        container.setColumnarStorage(true);
+        return container;
+    }
+
+    public void testBasicOperations() {
+        testBasicContainerOperations(createContainer());
+    }
+
+    public void testFiltering() {
+        testContainerFiltering(createContainer());
+    }
+
+    public void testSorting() {
+        testContainerSorting(createContainer());
+    }
+
+    public void testSortingAndFiltering() {
+        testContainerSortingAndFiltering(createContainer());
+    }
+
+    public void testContainerOrdered() {
+        testContainerOrdered(createContainer());
+    }
+
+    public void testContainerIndexed() {
+        testContainerIndexed(createContainer(), sampleData[2], 2, true,
+                "newItemId", true);
+    }
+
+    public void testPrimitiveColumns() {
+        IndexedContainer container = createContainer();
+        container.addContainerProperty("int", Integer.class, 1);
+        container.addContainerProperty("long", Long.class, null);
+        container.addContainerProperty("double", Double.class, null);
+        container.addContainerProperty("boolean", Boolean.class, null);
+        container.addContainerProperty("string", String.class, "default");
+
+        Object itemId = container.addItem();
+        assertEquals(1, container.getContainerProperty(itemId, "int")
+                .getValue());
+        assertNull(container.getContainerProperty(itemId, "long").getValue());
+        assertNull(container.getContainerProperty(itemId, "boolean")
+                .getValue());
+        assertEquals("default", container.getContainerProperty(itemId,
+                "string").getValue());
+
+        container.getContainerProperty(itemId, "int").setValue(null);
+        container.getContainerProperty(itemId, "long").setValue(
+                Long.MAX_VALUE);
+        container.getContainerProperty(itemId, "double").setValue(0.5);
+        container.getContainerProperty(itemId, "boolean").setValue(false);
+
+        assertNull(container.getContainerProperty(itemId, "int").getValue());
+        assertEquals(Long.MAX_VALUE,
+                container.getContainerProperty(itemId, "long").getValue());
+        assertEquals(0.5, container.getContainerProperty(itemId, "double")
+                .getValue());
+        assertEquals(Boolean.FALSE,
+                container.getContainerProperty(itemId, "boolean").getValue());
+    }
+
+    public void testRemovedRowsReused() {
+        IndexedContainer container = createContainer();
+        container.addContainerProperty("value", Integer.class, null);
+        for (int i = 0; i < 100; i++) {
+            container.addItem(i);
+            container.getContainerProperty(i, "value").setValue(i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(container.removeItem(i));
+        }
+        for (int i = 100; i < 150; i++) {
+            container.addItem(i);
+            // New items must not see the values of removed items
+            assertNull(container.getContainerProperty(i, "value").getValue());
+        }
+
+        assertEquals(100, container.size());
+        for (int i = 1; i < 100; i += 2) {
+            assertEquals(i, container.getContainerProperty(i, "value")
+                    .getValue());
+            assertFalse(container.containsId(i - 1));
+        }
+    }
+
+    public void testSwitchStorage() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        container.addContainerProperty("flag", Boolean.class, true);
+
+        container.setColumnarStorage(true);
+        assertTrue(container.isColumnarStorage());
+        validateContainer(container, sampleData[0],
+                sampleData[sampleData.length - 1], sampleData[10], "abc",
+                true, sampleData.length);
+        assertEquals(Boolean.TRUE, container.getItem(sampleData[5])
+                .getItemProperty("flag").getValue());
+
+        container.setColumnarStorage(false);
+        assertFalse(container.isColumnarStorage());
+        assertEquals(Boolean.TRUE, container.getItem(sampleData[5])
+                .getItemProperty("flag").getValue());
+        assertEquals(getSimpleName(sampleData[5]),
+                container.getContainerProperty(sampleData[5], SIMPLE_NAME)
+                        .getValue());
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testCloneAndSerialize() throws Exception {
+        IndexedContainer container = createContainer();
+        initializeContainer(container);
+
+        IndexedContainer clone = (IndexedContainer) container.clone();
+        clone.getContainerProperty(sampleData[0], ID_NUMBER).setValue(-1);
+        assertEquals(0, container.getContainerProperty(sampleData[0],
+                ID_NUMBER).getValue());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(container);
+        IndexedContainer deserialized = (IndexedContainer) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(sampleData.length, deserialized.size());
+        assertEquals(getSimpleName(sampleData[3]), deserialized
+                .getContainerProperty(sampleData[3], SIMPLE_NAME).getValue());
+    }
+}
@@ -1,7 +1,15 @@
 package com.vaadin.data.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
 import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.Compare;
 
 public class TestHierarchicalContainer extends
         AbstractHierarchicalContainerTest {
@@ -162,6 +170,37 @@ public class TestHierarchicalContainer extends
         assertFalse(c.hasChildren("root"));
     }
 
+    public void testRemoveParentEvents() {
+        HierarchicalContainer c = new HierarchicalContainer();
+        c.addContainerProperty("value", Integer.class, 0);
+        for (int i = 0; i < 4; i++) {
+            c.addItem(i).getItemProperty("value").setValue(i);
+        }
+        c.setParent(1, 0);
+        c.setParent(3, 2);
+
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        c.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        c.removeItem(0);
+        assertEquals(1, events.size());
+        assertTrue(c.isRoot(1));
+
+        // Removing a filtered out parent does not change the visible items
+        c.setIncludeParentsWhenFiltering(false);
+        c.addContainerFilter(new Compare.Greater("value", 2));
+        events.clear();
+        c.removeItem(2);
+        assertTrue(events.isEmpty());
+        assertEquals(1, c.size());
+        assertTrue(c.isRoot(3));
+    }
+
     public void testRemoveLastChildFromFiltered() {
         HierarchicalContainer c = new HierarchicalContainer();
 
@@ -267,4 +306,125 @@ public class TestHierarchicalContainer extends
                 true, expectedSize, expectedRoots, false);
 
     }
+
+    public void testIncrementalFilteringWithParents() {
+        testIncrementalFiltering(true);
+    }
+
+    public void testIncrementalFilteringWithoutParents() {
+        testIncrementalFiltering(false);
+    }
+
+    public void testFilteredValueChangeEvents() {
+        HierarchicalContainer container = new HierarchicalContainer();
+        container.addContainerProperty("value", Integer.class, 0);
+        for (int i = 0; i < 3; i++) {
+            container.addItem(i).getItemProperty("value").setValue(i);
+        }
+        container.setParent(1, 0);
+        container.setParent(2, 1);
+        container.addContainerFilter(new Compare.Greater("value", 1));
+        assertEquals(3, container.size());
+
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        // Still included as the parent of a matching item
+        container.getContainerProperty(1, "value").setValue(-1);
+        assertTrue(events.isEmpty());
+        assertEquals(3, container.size());
+
+        // Filtering out the only matching item filters out its parents
+        container.getContainerProperty(2, "value").setValue(0);
+        assertEquals(1, events.size());
+        assertEquals(0, container.size());
+        assertTrue(container.rootItemIds().isEmpty());
+
+        // Filtered out items are not visible through getContainerProperty()
+        container.getUnfilteredItem(1).getItemProperty("value").setValue(5);
+        assertEquals(2, events.size());
+        assertEquals(2, container.size());
+        assertEquals(0, container.getParent(1));
+        assertFalse(container.hasChildren(1));
+    }
+
+    private void testIncrementalFiltering(boolean includeParents) {
+        Random random = new Random(includeParents ? 1 : 2);
+        HierarchicalContainer container = new HierarchicalContainer();
+        container.addContainerProperty("value", Integer.class, 0);
+        container.setIncludeParentsWhenFiltering(includeParents);
+        int nextId = 0;
+        for (; nextId < 200; nextId++) {
+            container.addItem(nextId).getItemProperty("value")
+                    .setValue(random.nextInt(10));
+            if (nextId > 0 && random.nextBoolean()) {
+                container.setParent(nextId, random.nextInt(nextId));
+            }
+        }
+
+        container.addContainerFilter(new Compare.Less("value", 5));
+        assertFilteredHierarchyUpToDate(container);
+
+        for (int i = 0; i < 500; i++) {
+            List<Object> itemIds = container.getAllItemIds();
+            Object itemId = itemIds.get(random.nextInt(itemIds.size()));
+            switch (random.nextInt(5)) {
+            case 0:
+                container.getUnfilteredItem(itemId).getItemProperty("value")
+                        .setValue(random.nextInt(10));
+                break;
+            case 1:
+                container.setParent(itemId, random.nextInt(4) == 0 ? null
+                        : itemIds.get(random.nextInt(itemIds.size())));
+                break;
+            case 2:
+                Object newItemId = Integer.valueOf(nextId++);
+                container.addItem(newItemId).getItemProperty("value")
+                        .setValue(random.nextInt(10));
+                container.setParent(newItemId, itemId);
+                break;
+            case 3:
+                container.removeItem(itemId);
+                break;
+            default:
+                container.sort(new Object[] { "value" },
+                        new boolean[] { random.nextBoolean() });
+                break;
+            }
+            assertFilteredHierarchyUpToDate(container);
+        }
+
+        // Narrowing the filtering only re-filters the visible items
+        container.addContainerFilter(new Compare.Greater("value", 1));
+        assertFilteredHierarchyUpToDate(container);
+    }
+
+    /**
+     * Checks that the incrementally updated filtered hierarchy is the same as
+     * the one built when filtering the whole container.
+     */
+    private void assertFilteredHierarchyUpToDate(HierarchicalContainer container) {
+        List<Object> hierarchy = describeHierarchy(container);
+        container.setIncludeParentsWhenFiltering(container
+                .isIncludeParentsWhenFiltering());
+        assertEquals(describeHierarchy(container), hierarchy);
+    }
+
+    private List<Object> describeHierarchy(HierarchicalContainer container) {
+        List<Object> description = new ArrayList<Object>();
+        description.add(new ArrayList<Object>(container.getItemIds()));
+        description.add(new ArrayList<Object>(container.rootItemIds()));
+        for (Object itemId : container.getItemIds()) {
+            Collection<?> children = container.getChildren(itemId);
+            description.add(itemId + " parent: " + container.getParent(itemId)
+                    + ", children: " + children + ", root: "
+                    + container.isRoot(itemId));
+        }
+        return description;
+    }
 }
@@ -1,10 +1,20 @@
 package com.vaadin.data.util;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.Assert;
 
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Container.Indexed.ItemAddEvent;
+import com.vaadin.data.Container.Indexed.ItemRemoveEvent;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.SimpleStringFilter;
 
 public class TestIndexedContainer extends AbstractInMemoryContainerTest {
 
@@ -376,6 +386,180 @@ public class TestIndexedContainer extends AbstractInMemoryContainerTest {
         }
     }
 
+    public void testReplaceWithNarrowerFilter() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        IndexedContainer reference = new IndexedContainer();
+        initializeContainer(reference);
+
+        String typed = "abstractc";
+        Filter previous = null;
+        for (int i = 1; i <= typed.length(); i++) {
+            Filter filter = new SimpleStringFilter(SIMPLE_NAME,
+                    typed.substring(0, i), true, false);
+            if (previous == null) {
+                container.addContainerFilter(filter);
+            } else {
+                container.replaceContainerFilter(previous, filter);
+            }
+            previous = filter;
+
+            reference.removeAllContainerFilters();
+            reference.addContainerFilter(filter);
+            assertEquals(reference.getItemIds(), container.getItemIds());
+        }
+        assertTrue(container.size() > 0);
+
+        // Replacing with a wider filter filters all items again
+        Filter wider = new SimpleStringFilter(SIMPLE_NAME, "abstract", true,
+                false);
+        container.replaceContainerFilter(previous, wider);
+        reference.removeAllContainerFilters();
+        reference.addContainerFilter(wider);
+        assertEquals(reference.getItemIds(), container.getItemIds());
+        assertEquals(1, container.getContainerFilters().size());
+    }
+
+    public void testFilterItemOnValueChange() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        // properties of filtered out items are not available later
+        Object hidden = sampleData[sampleData.length - 1];
+        Property<Object> hiddenProperty = container.getContainerProperty(
+                hidden, SIMPLE_NAME);
+        container.addContainerFilter(SIMPLE_NAME, "Abstract", false, true);
+
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        // Hide the second visible item
+        Object second = container.getIdByIndex(1);
+        int size = container.size();
+        Property<Object> secondProperty = container.getContainerProperty(
+                second, SIMPLE_NAME);
+        secondProperty.setValue("Other");
+        assertEquals(size - 1, container.size());
+        assertEquals(1, events.size());
+        ItemRemoveEvent removeEvent = (ItemRemoveEvent) events.get(0);
+        assertEquals(second, removeEvent.getFirstItemId());
+        assertEquals(1, removeEvent.getFirstIndex());
+        assertEquals(1, removeEvent.getRemovedItemsCount());
+
+        // Show it again at the same position
+        secondProperty.setValue("AbstractOther");
+        assertEquals(size, container.size());
+        assertEquals(1, container.indexOfId(second));
+        assertEquals(2, events.size());
+        ItemAddEvent addEvent = (ItemAddEvent) events.get(1);
+        assertEquals(second, addEvent.getFirstItemId());
+        assertEquals(1, addEvent.getFirstIndex());
+        assertEquals(1, addEvent.getAddedItemsCount());
+
+        // Show an item that was not visible before
+        assertFalse(container.containsId(hidden));
+        hiddenProperty.setValue("AbstractLast");
+        assertEquals(size, container.indexOfId(hidden));
+        assertEquals(3, events.size());
+
+        // A change that does not affect visibility fires no event
+        hiddenProperty.setValue("AbstractLast2");
+        assertEquals(3, events.size());
+    }
+
+    public void testCaseFoldedValueCache() {
+        IndexedContainer container = new IndexedContainer();
+        container.setCaseFoldedValueCacheEnabled(true);
+        initializeContainer(container);
+
+        container.addContainerFilter(SIMPLE_NAME, "ABSTRACT", true, true);
+        int abstractCount = container.size();
+        assertTrue(abstractCount > 0);
+
+        Object itemId = container.getIdByIndex(0);
+        container.getContainerProperty(itemId, SIMPLE_NAME).setValue("Other");
+        assertEquals(abstractCount - 1, container.size());
+
+        container.removeAllContainerFilters();
+        container.getContainerProperty(itemId, SIMPLE_NAME).setValue(
+                "AbstractOther");
+        container.addContainerFilter(SIMPLE_NAME, "abstract", true, true);
+        assertEquals(abstractCount, container.size());
+    }
+
+    public void testIncrementalFilteringDisabledWithOverriddenPassesFilters() {
+        final Set<Object> excluded = new HashSet<Object>();
+        @SuppressWarnings("serial")
+        IndexedContainer container = new IndexedContainer() {
+            @Override
+            protected boolean passesFilters(Object itemId) {
+                return !excluded.contains(itemId)
+                        && super.passesFilters(itemId);
+            }
+
+            @Override
+            protected boolean isIncrementalFilteringSupported() {
+                return false;
+            }
+        };
+        initializeContainer(container);
+        Object first = sampleData[0];
+        Property<Object> property = container.getContainerProperty(first,
+                SIMPLE_NAME);
+        container.addContainerFilter(SIMPLE_NAME, "", false, false);
+        assertEquals(sampleData.length, container.size());
+
+        // Adding a filter the excluded item passes must still hide it
+        excluded.add(first);
+        container.addContainerFilter(FULLY_QUALIFIED_NAME, "", false, false);
+        assertFalse(container.containsId(first));
+        assertEquals(sampleData.length - 1, container.size());
+
+        // The item must also stay hidden when its value changes
+        property.setValue("Other");
+        assertFalse(container.containsId(first));
+    }
+
+    public void testIncrementalFilteringDisabledWithOverriddenDoFilterContainer() {
+        final Set<Object> excluded = new HashSet<Object>();
+        @SuppressWarnings("serial")
+        IndexedContainer container = new IndexedContainer() {
+            @Override
+            protected boolean doFilterContainer(boolean hasFilters) {
+                boolean changed = super.doFilterContainer(hasFilters);
+                if (hasFilters) {
+                    for (Object itemId : excluded) {
+                        changed |= getFilteredItemIds().remove(itemId);
+                    }
+                }
+                return changed;
+            }
+
+            @Override
+            protected boolean isIncrementalFilteringSupported() {
+                return false;
+            }
+        };
+        initializeContainer(container);
+        Object first = sampleData[0];
+        Property<Object> property = container.getContainerProperty(first,
+                SIMPLE_NAME);
+        container.addContainerFilter(SIMPLE_NAME, "", false, false);
+        assertEquals(sampleData.length, container.size());
+
+        excluded.add(first);
+        container.addContainerFilter(FULLY_QUALIFIED_NAME, "", false, false);
+        assertFalse(container.containsId(first));
+        assertEquals(sampleData.length - 1, container.size());
+
+        property.setValue("Other");
+        assertFalse(container.containsId(first));
+    }
+
     // test getting non-existing property (#10445)
     public void testNonExistingProperty() {
         IndexedContainer ic = new IndexedContainer();
@@ -292,6 +292,8 @@ public class CompareFilterTest extends AbstractFilterTest<Compare> {
         Assert.assertEquals(equalB, equalB2);
         Assert.assertFalse(equalB.equals(equalBProperty2));
         Assert.assertFalse(equalB.equals(equalA));
+        Assert.assertFalse(new Equal(null, "b").equals(equalB));
+        Assert.assertFalse(equalB.equals(null));
 
         Assert.assertEquals(greaterB, greaterB);
         Assert.assertFalse(greaterB.equals(lessB));
@@ -43,4 +43,107 @@ public class LikeFilterTest extends AbstractFilterTest<Like> {
 
     }
 
+    public void testMatchesLikeRegex() {
+        String[] patterns = { "abc", "abc%", "%abc", "%abc%", "a%c", "a%b%c",
+                "%", "%%", "", "a.c", "a%[bc]", "ab%bc", "AbC%", "%b%" };
+        String[] values = { "abc", "abcd", "xabc", "xabcx", "ac", "abbc",
+                "aXbXc", "", "a\nbc", "ABC", "abC", "aBc", "bc", "ab" };
+
+        for (String pattern : patterns) {
+            for (boolean caseSensitive : new boolean[] { true, false }) {
+                Like filter = new Like("value", pattern, caseSensitive);
+                for (String value : values) {
+                    Item item = new PropertysetItem();
+                    item.addItemProperty("value", new ObjectProperty<String>(
+                            value));
+                    String regex = pattern.replace("%", ".*");
+                    boolean expected = caseSensitive ? value.matches(regex)
+                            : value.toUpperCase().matches(regex.toUpperCase());
+                    Assert.assertEquals(pattern + " " + caseSensitive + " "
+                            + value, expected, filter.passesFilter(null, item));
+                }
+            }
+        }
+    }
+
+    public void testIsNarrowerThan() {
+        Assert.assertTrue(new Like("value", "%abc%").isNarrowerThan(new Like(
+                "value", "%ab%")));
+        Assert.assertTrue(new Like("value", "abc%").isNarrowerThan(new Like(
+                "value", "ab%")));
+        Assert.assertTrue(new Like("value", "%xabc").isNarrowerThan(new Like(
+                "value", "%bc")));
+        Assert.assertTrue(new Like("value", "%ABC%", false)
+                .isNarrowerThan(new Like("value", "%ab%", false)));
+
+        Assert.assertFalse(new Like("value", "%abc%")
+                .isNarrowerThan(new Like("value", "%ab%", false)));
+        Assert.assertFalse(new Like("value", "%abc%").isNarrowerThan(new Like(
+                "other", "%ab%")));
+        Assert.assertFalse(new Like("value", "%a.c%").isNarrowerThan(new Like(
+                "value", "%a%")));
+        Assert.assertFalse(new Like("value", "%ab%").isNarrowerThan(new Like(
+                "value", "%abc%")));
+        Assert.assertFalse(new Like("value", "%abc%")
+                .isNarrowerThan(new SimpleStringFilter("value", "ab", false,
+                        false)));
+    }
+
+    public void testNarrowerFilterMatchesSubset() {
+        String[] patterns = { "abc", "abc%", "%abc", "%abc%", "a%c", "%b%",
+                "%", "%%", "", "ab%", "%bc", "a\nb%", "%a.c%", "%c" };
+        String[] values = { "abc", "abcd", "xabc", "xabcx", "ac", "abbc",
+                "aXbXc", "", "a\nbc", "ABC", "ab\nc", "bc", "ab" };
+
+        for (String narrower : patterns) {
+            for (String wider : patterns) {
+                for (boolean caseSensitive : new boolean[] { true, false }) {
+                    Like narrowerFilter = new Like("value", narrower,
+                            caseSensitive);
+                    Like widerFilter = new Like("value", wider, caseSensitive);
+                    if (!narrowerFilter.isNarrowerThan(widerFilter)) {
+                        continue;
+                    }
+                    for (String value : values) {
+                        Item item = new PropertysetItem();
+                        item.addItemProperty("value",
+                                new ObjectProperty<String>(value));
+                        if (narrowerFilter.passesFilter(null, item)) {
+                            Assert.assertTrue(narrower + " " + wider + " "
+                                    + value,
+                                    widerFilter.passesFilter(null, item));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void testCaseSensitivityChanged() {
+        Like filter = new Like("value", "a%");
+        item1.addItemProperty("value", new ObjectProperty<String>("ABC"));
+
+        Assert.assertFalse(filter.passesFilter(null, item1));
+        filter.setCaseSensitive(false);
+        Assert.assertTrue(filter.passesFilter(null, item1));
+    }
+
+    public void testEqualsHashCode() {
+        Like filter = new Like("value", "a%");
+        Like same = new Like("value", "a%", true);
+        Like caseInsensitive = new Like("value", "a%", false);
+
+        Assert.assertEquals(filter, same);
+        Assert.assertEquals(filter.hashCode(), same.hashCode());
+        Assert.assertFalse(filter.equals(caseInsensitive));
+        Assert.assertFalse(caseInsensitive.equals(filter));
+        Assert.assertFalse(filter.equals(new Like("other", "a%")));
+        Assert.assertFalse(filter.equals(new Like("value", "b%")));
+        Assert.assertFalse(filter.equals(null));
+
+        caseInsensitive.setCaseSensitive(true);
+        Assert.assertEquals(filter, caseInsensitive);
+        Assert.assertEquals(filter.hashCode(), caseInsensitive.hashCode());
+    }
+
 }
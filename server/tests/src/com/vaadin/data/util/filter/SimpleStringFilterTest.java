@@ -61,6 +61,48 @@ public class SimpleStringFilterTest extends
         Assert.assertFalse(passes(PROPERTY2, "ab", true, false));
     }
 
+    public void testCaseFoldedValueCache() {
+        CaseFoldedValueCache cache = new CaseFoldedValueCache();
+        CaseFoldedValueCache.setCurrent(cache);
+        try {
+            TestItem<String, String> item = getTestItem();
+            SimpleStringFilter filter = f(PROPERTY2, "te", true, true);
+            Assert.assertTrue(filter.passesFilter("id", item));
+            Assert.assertEquals("test", cache.toLowerCase("id", PROPERTY2,
+                    "TeSt"));
+
+            // A changed value is not taken from the cache
+            item.getItemProperty(PROPERTY2).setValue("Other");
+            Assert.assertFalse(filter.passesFilter("id", item));
+        } finally {
+            CaseFoldedValueCache.setCurrent(null);
+        }
+    }
+
+    public void testIsNarrowerThan() {
+        Assert.assertTrue(f(PROPERTY1, "abc", false, false).isNarrowerThan(
+                f(PROPERTY1, "ab", false, false)));
+        Assert.assertTrue(f(PROPERTY1, "xabc", false, false).isNarrowerThan(
+                f(PROPERTY1, "bc", false, false)));
+        Assert.assertTrue(f(PROPERTY1, "abc", false, true).isNarrowerThan(
+                f(PROPERTY1, "ab", false, true)));
+        Assert.assertTrue(f(PROPERTY1, "xabc", false, true).isNarrowerThan(
+                f(PROPERTY1, "bc", false, false)));
+        Assert.assertTrue(f(PROPERTY1, "ABC", true, false).isNarrowerThan(
+                f(PROPERTY1, "ab", true, false)));
+
+        Assert.assertFalse(f(PROPERTY1, "abc", false, false).isNarrowerThan(
+                f(PROPERTY1, "ab", false, true)));
+        Assert.assertFalse(f(PROPERTY1, "xabc", false, true).isNarrowerThan(
+                f(PROPERTY1, "bc", false, true)));
+        Assert.assertFalse(f(PROPERTY1, "abc", true, false).isNarrowerThan(
+                f(PROPERTY1, "ab", false, false)));
+        Assert.assertFalse(f(PROPERTY1, "abc", false, false).isNarrowerThan(
+                f(PROPERTY2, "ab", false, false)));
+        Assert.assertFalse(f(PROPERTY1, "ab", false, false).isNarrowerThan(
+                f(PROPERTY1, "abc", false, false)));
+    }
+
     public void testAppliesToProperty() {
         SimpleStringFilter filter = f(PROPERTY1, "ab", false, true);
         Assert.assertTrue(filter.appliesToProperty(PROPERTY1));
@@ -109,6 +151,11 @@ public class SimpleStringFilterTest extends
         Assert.assertFalse(f1.equals(null));
         Assert.assertFalse(f1.equals(new Object()));
 
+        // null property or filter string on one side only
+        Assert.assertFalse(filter.equals(f(null, "ab", false, true)));
+        Assert.assertFalse(f(null, "ab", false, true).equals(filter));
+        Assert.assertFalse(f(PROPERTY1, null, false, true).equals(filter));
+
         Assert.assertEquals(f1.hashCode(), f1b.hashCode());
         Assert.assertEquals(f2.hashCode(), f2b.hashCode());
         Assert.assertEquals(f3.hashCode(), f3b.hashCode());
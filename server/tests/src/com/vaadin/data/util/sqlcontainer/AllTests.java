@@ -4,6 +4,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.vaadin.data.util.sqlcontainer.connection.ConcurrentJDBCConnectionPoolTest;
 import com.vaadin.data.util.sqlcontainer.connection.J2EEConnectionPoolTest;
 import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPoolTest;
 import com.vaadin.data.util.sqlcontainer.filters.BetweenTest;
@@ -19,6 +20,7 @@ import com.vaadin.data.util.sqlcontainer.query.TableQueryTest;
         FreeformQueryTest.class, RowIdTest.class, SQLContainerTest.class,
         SQLContainerTableQueryTest.class, ColumnPropertyTest.class,
         TableQueryTest.class, SQLGeneratorsTest.class, UtilTest.class,
-        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class })
+        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class,
+        SharedRowCacheTest.class, ConcurrentJDBCConnectionPoolTest.class })
 public class AllTests {
 }
@@ -7,6 +7,8 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -17,12 +19,15 @@ import org.junit.Test;
 import com.vaadin.data.Container.ItemSetChangeEvent;
 import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.Compare.Equal;
 import com.vaadin.data.util.filter.Like;
 import com.vaadin.data.util.sqlcontainer.SQLTestsConstants.DB;
 import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.query.OrderBy;
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.data.util.sqlcontainer.query.generator.DefaultSQLGenerator;
+import com.vaadin.data.util.sqlcontainer.query.generator.StatementHelper;
 
 public class SQLContainerTableQueryTest {
 
@@ -1525,4 +1530,375 @@ public class SQLContainerTableQueryTest {
                         .getValue());
     }
 
+    @Test
+    public void keysetPaging_scrollForwardAndBackward_returnsSameItemsAsOffsetPaging()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        AtomicInteger seeks = new AtomicInteger();
+        TableQuery query = new TableQuery("people", connectionPool,
+                new SeekCountingGenerator(seeks));
+        query.setKeysetPagingEnabled(true);
+        SQLContainer container = new SQLContainer(query);
+        SQLContainer reference = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+
+        assertSameItems(reference, container);
+        // Every page except the first ones is fetched by seeking
+        int pages = 5000 / (SQLContainer.DEFAULT_PAGE_LENGTH
+                * SQLContainer.CACHE_RATIO);
+        Assert.assertTrue(seeks.get() >= 2 * (pages - 1) - 1);
+
+        container.sort(new Object[] { "ID" }, new boolean[] { false });
+        reference.sort(new Object[] { "ID" }, new boolean[] { false });
+        seeks.set(0);
+        assertSameItems(reference, container);
+        Assert.assertTrue(seeks.get() > 0);
+    }
+
+    @Test
+    public void keysetPaging_nullableSortColumn_usesOffsets()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        AtomicInteger seeks = new AtomicInteger();
+        TableQuery query = new TableQuery("people", connectionPool,
+                new SeekCountingGenerator(seeks));
+        query.setKeysetPagingEnabled(true);
+        SQLContainer container = new SQLContainer(query);
+        SQLContainer reference = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+
+        container.sort(new Object[] { "NAME" }, new boolean[] { true });
+        reference.sort(new Object[] { "NAME" }, new boolean[] { true });
+        for (int i = 0; i < reference.size(); i += 97) {
+            Assert.assertEquals(reference.getIdByIndex(i),
+                    container.getIdByIndex(i));
+        }
+        Assert.assertEquals(0, seeks.get());
+    }
+
+    @Test
+    public void keysetPaging_mixedSortDirectionsAndFilter_returnsSameItemsAsOffsetPaging()
+            throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        Statement statement = conn.createStatement();
+        try {
+            statement.execute("drop table KEYSET");
+        } catch (SQLException e) {
+            // Will fail if table doesn't exist, which is OK.
+            conn.rollback();
+        }
+        statement.execute("create table KEYSET (ID integer not null, "
+                + "GRP integer not null, primary key(ID))");
+        for (int i = 0; i < 2000; i++) {
+            statement.executeUpdate("insert into KEYSET values(" + i + ", "
+                    + (i % 7) + ")");
+        }
+        statement.close();
+        conn.commit();
+        connectionPool.releaseConnection(conn);
+
+        AtomicInteger seeks = new AtomicInteger();
+        TableQuery query = new TableQuery("keyset", connectionPool,
+                new SeekCountingGenerator(seeks));
+        query.setKeysetPagingEnabled(true);
+        SQLContainer container = new SQLContainer(query);
+        SQLContainer reference = new SQLContainer(new TableQuery("keyset",
+                connectionPool, SQLTestsConstants.sqlGen));
+
+        container.sort(new Object[] { "GRP" }, new boolean[] { false });
+        reference.sort(new Object[] { "GRP", "ID" }, new boolean[] { false,
+                true });
+        assertSameItems(reference, container);
+        Assert.assertTrue(seeks.get() > 0);
+
+        container.addContainerFilter(new Equal("GRP", 3));
+        reference.addContainerFilter(new Equal("GRP", 3));
+        Assert.assertEquals(286, reference.size());
+        seeks.set(0);
+        assertSameItems(reference, container);
+        Assert.assertTrue(seeks.get() > 0);
+    }
+
+    @Test
+    public void countExecutor_returnsProvisionalSizeUntilCounted()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        QueuingExecutor executor = new QueuingExecutor();
+        container.setCountExecutor(executor);
+        final AtomicInteger events = new AtomicInteger();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.incrementAndGet();
+            }
+        });
+
+        // HSQLDB does not provide an estimate, nothing is known yet
+        Assert.assertEquals(0, container.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        Assert.assertEquals(0, container.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        events.set(0);
+        executor.runAll();
+        // Applied by the thread using the container as there is no session
+        Assert.assertEquals(0, events.get());
+        Assert.assertEquals(5000, container.size());
+        Assert.assertEquals(1, events.get());
+
+        // The previous size is used until the filtered count is ready
+        container.addContainerFilter(new Like("NAME", "Person 1%"));
+        Assert.assertEquals(5000, container.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        Assert.assertEquals(1110, container.size());
+
+        // The expired count of the filters is used until counted again
+        container.removeAllContainerFilters();
+        Assert.assertEquals(5000, container.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        Assert.assertEquals(5000, container.size());
+        Assert.assertTrue(executor.tasks.isEmpty());
+
+        // Refreshing counts again, using the expired count until done
+        container.refresh();
+        Assert.assertEquals(5000, container.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        Assert.assertEquals(5000, container.size());
+    }
+
+    @Test
+    public void countExecutor_filtersChangedWhileCounting_ignoresStaleCount()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        QueuingExecutor executor = new QueuingExecutor();
+        container.setCountExecutor(executor);
+
+        container.size();
+        container.addContainerFilter(new Like("NAME", "Person 1%"));
+        container.size();
+        Assert.assertEquals(2, executor.tasks.size());
+        executor.runAll();
+        Assert.assertEquals(1110, container.size());
+    }
+
+    @Test
+    public void sizeValidMilliSeconds_countCachedUntilFiltersChange()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        final AtomicInteger counts = new AtomicInteger();
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen) {
+            @Override
+            public int getCount() throws SQLException {
+                counts.incrementAndGet();
+                return super.getCount();
+            }
+        });
+        Like filter = new Like("NAME", "Person 1%");
+
+        Assert.assertEquals(5000, container.size());
+        container.addContainerFilter(filter);
+        Assert.assertEquals(1110, container.size());
+        Assert.assertEquals(1110, container.size());
+        Assert.assertEquals(2, counts.get());
+
+        // Changing the filters expires the cached counts
+        container.removeAllContainerFilters();
+        Assert.assertEquals(5000, container.size());
+        Assert.assertEquals(3, counts.get());
+    }
+
+    @Test
+    public void sizeValidMilliSeconds_caseSensitivityChanged_countedSeparately()
+            throws SQLException {
+        addLowerCaseVille();
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+
+        container.addContainerFilter("NAME", "v", true, true);
+        Assert.assertEquals(2, container.size());
+        container.removeAllContainerFilters();
+        container.addContainerFilter("NAME", "v", false, true);
+        Assert.assertEquals(1, container.size());
+        container.removeAllContainerFilters();
+        container.addContainerFilter("NAME", "v", true, true);
+        Assert.assertEquals(2, container.size());
+    }
+
+    @Test
+    public void sharedRowCache_sameTable_rowsFetchedOnce() throws SQLException {
+        SharedRowCache cache = new SharedRowCache(1024 * 1024);
+        TableQuery query = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query.setSharedRowCache(cache);
+        SQLContainer container = new SQLContainer(query);
+        TableQuery query2 = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query2.setSharedRowCache(cache);
+        SQLContainer container2 = new SQLContainer(query2);
+
+        Object id = container.getIdByIndex(0);
+        Assert.assertEquals(1, cache.getPageCount());
+        Assert.assertEquals(0, cache.getHitCount());
+
+        Object id2 = container2.getIdByIndex(0);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(id, id2);
+        Assert.assertEquals("Ville", container2.getContainerProperty(id2,
+                "NAME").getValue());
+        Assert.assertNotSame(container.getItem(id), container2.getItem(id2));
+
+        // Sorting fetches a different page
+        container2.sort(new Object[] { "NAME" }, new boolean[] { true });
+        Assert.assertEquals("Börje", container2.getContainerProperty(
+                container2.firstItemId(), "NAME").getValue());
+        Assert.assertEquals(2, cache.getPageCount());
+    }
+
+    @Test
+    public void sharedRowCache_filtersDifferInCaseSensitivity_pagesNotShared()
+            throws Exception {
+        addLowerCaseVille();
+        SharedRowCache cache = new SharedRowCache(1024 * 1024);
+        TableQuery query = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query.setSharedRowCache(cache);
+        SQLContainer ignoreCase = new SQLContainer(query);
+        // A generator of its own so that only the row cache is shared
+        TableQuery query2 = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen.getClass().newInstance());
+        query2.setSharedRowCache(cache);
+        SQLContainer caseSensitive = new SQLContainer(query2);
+
+        ignoreCase.addContainerFilter("NAME", "v", true, true);
+        caseSensitive.addContainerFilter("NAME", "v", false, true);
+
+        Assert.assertEquals(2, ignoreCase.size());
+        Assert.assertEquals("Ville", ignoreCase.getContainerProperty(
+                ignoreCase.firstItemId(), "NAME").getValue());
+        Assert.assertEquals(1, caseSensitive.size());
+        Assert.assertEquals("ville", caseSensitive.getContainerProperty(
+                caseSensitive.firstItemId(), "NAME").getValue());
+        Assert.assertEquals(2, cache.getPageCount());
+    }
+
+    private void addLowerCaseVille() throws SQLException {
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        Object itemId = container.addItem();
+        container.getContainerProperty(itemId, "NAME").setValue("ville");
+        container.commit();
+    }
+
+    @Test
+    public void sharedRowCache_commit_invalidatesTable() throws SQLException {
+        SharedRowCache cache = new SharedRowCache(1024 * 1024);
+        TableQuery query = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query.setSharedRowCache(cache);
+        SQLContainer container = new SQLContainer(query);
+        TableQuery query2 = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query2.setSharedRowCache(cache);
+        SQLContainer container2 = new SQLContainer(query2);
+
+        Object id = container.firstItemId();
+        container2.firstItemId();
+        Assert.assertEquals(1, cache.getPageCount());
+
+        container.getContainerProperty(id, "NAME").setValue("New Name");
+        Assert.assertEquals(1, cache.getPageCount());
+        container.rollback();
+        Assert.assertEquals(1, cache.getPageCount());
+
+        container.getContainerProperty(id, "NAME").setValue("New Name");
+        container.commit();
+        container2.refresh();
+        Assert.assertEquals("New Name",
+                container2.getContainerProperty(id, "NAME").getValue());
+    }
+
+    @Test
+    public void cacheFlushNotifications_sameTable_refreshesOtherContainers()
+            throws SQLException {
+        DataGenerator.addVersionedData(connectionPool);
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.enableCacheFlushNotifications();
+        SQLContainer container2 = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container2.enableCacheFlushNotifications();
+        SQLContainer other = new SQLContainer(new TableQuery("versioned",
+                connectionPool, SQLTestsConstants.sqlGen));
+        other.enableCacheFlushNotifications();
+        Assert.assertEquals(4, container2.size());
+
+        final AtomicInteger events = new AtomicInteger();
+        other.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.incrementAndGet();
+            }
+        });
+        container.setAutoCommit(true);
+        container.removeItem(container.firstItemId());
+
+        Assert.assertEquals(3, container2.size());
+        Assert.assertEquals(0, events.get());
+    }
+
+    private static class QueuingExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public void runAll() {
+            List<Runnable> toRun = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : toRun) {
+                task.run();
+            }
+        }
+    }
+
+    private static void assertSameItems(SQLContainer expected,
+            SQLContainer actual) {
+        int size = expected.size();
+        Assert.assertEquals(size, actual.size());
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(expected.getIdByIndex(i),
+                    actual.getIdByIndex(i));
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            Assert.assertEquals(expected.getIdByIndex(i),
+                    actual.getIdByIndex(i));
+        }
+    }
+
+    private static class SeekCountingGenerator extends DefaultSQLGenerator {
+        private final AtomicInteger seeks;
+
+        public SeekCountingGenerator(AtomicInteger seeks) {
+            this.seeks = seeks;
+        }
+
+        @Override
+        public StatementHelper generateKeysetSelectQuery(String tableName,
+                List<com.vaadin.data.Container.Filter> filters,
+                List<OrderBy> orderBys, Object[] keyValues, boolean backwards,
+                int pagelength, String toSelect) {
+            seeks.incrementAndGet();
+            return super.generateKeysetSelectQuery(tableName, filters,
+                    orderBys, keyValues, backwards, pagelength, toSelect);
+        }
+    }
 }
@@ -0,0 +1,138 @@
+package com.vaadin.data.util.sqlcontainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.Compare.Equal;
+import com.vaadin.data.util.sqlcontainer.SharedRowCache.CachedPage;
+import com.vaadin.data.util.sqlcontainer.SharedRowCache.PageKey;
+import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+
+public class SharedRowCacheTest {
+
+    private static PageKey key(String table, int offset) {
+        return new PageKey(table, Collections.<Filter> emptyList(),
+                Collections.<OrderBy> emptyList(), offset, 10);
+    }
+
+    private static CachedPage page(int rows) {
+        CachedPage page = new CachedPage(new String[] { "ID", "NAME" });
+        for (int i = 0; i < rows; i++) {
+            page.addRow(new RowId(i), new Object[] { i, "Name " + i });
+        }
+        return page;
+    }
+
+    @Test
+    public void pageKey_sameParameters_equal() {
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new Equal("NAME", "Ville"));
+        PageKey key = new PageKey("people", filters,
+                Arrays.asList(new OrderBy("NAME", true)), 10, 20);
+        PageKey key2 = new PageKey("people",
+                Arrays.<Filter> asList(new Equal("NAME", "Ville")),
+                Arrays.asList(new OrderBy("NAME", true)), 10, 20);
+        Assert.assertEquals(key, key2);
+        Assert.assertEquals(key.hashCode(), key2.hashCode());
+
+        // The key does not change with the filters of the container
+        filters.clear();
+        Assert.assertEquals(key, key2);
+
+        Assert.assertFalse(key.equals(new PageKey("people", filters, Arrays
+                .asList(new OrderBy("NAME", true)), 10, 20)));
+        Assert.assertFalse(key.equals(new PageKey("people", Arrays
+                .<Filter> asList(new Equal("NAME", "Ville")), Arrays
+                .asList(new OrderBy("NAME", false)), 10, 20)));
+        Assert.assertFalse(key.equals(new PageKey("people", Arrays
+                .<Filter> asList(new Equal("NAME", "Ville")), Arrays
+                .asList(new OrderBy("NAME", true)), 30, 20)));
+    }
+
+    @Test
+    public void get_cachedPage_returnsPageAndCountsHits() {
+        SharedRowCache cache = new SharedRowCache(100000);
+        CachedPage page = page(10);
+        Assert.assertNull(cache.get(key("people", 0)));
+        cache.put(key("people", 0), page, cache.getVersion("people"));
+        Assert.assertSame(page, cache.get(key("people", 0)));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getPageCount());
+        Assert.assertTrue(cache.getSize() > 0);
+    }
+
+    @Test
+    public void put_overMaxSize_evictsLeastRecentlyUsed() {
+        long pageSize = sizeOf(page(10));
+        SharedRowCache cache = new SharedRowCache(pageSize * 3);
+        for (int i = 0; i < 3; i++) {
+            cache.put(key("people", i * 10), page(10),
+                    cache.getVersion("people"));
+        }
+        Assert.assertEquals(3, cache.getPageCount());
+
+        // Use the first page so that the second one is the eldest
+        Assert.assertNotNull(cache.get(key("people", 0)));
+        cache.put(key("people", 30), page(10), cache.getVersion("people"));
+
+        Assert.assertEquals(3, cache.getPageCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+        Assert.assertNotNull(cache.get(key("people", 0)));
+        Assert.assertNull(cache.get(key("people", 10)));
+        Assert.assertNotNull(cache.get(key("people", 30)));
+    }
+
+    @Test
+    public void put_largerThanMaxSize_notCached() {
+        SharedRowCache cache = new SharedRowCache(100);
+        cache.put(key("people", 0), page(10), cache.getVersion("people"));
+        Assert.assertEquals(0, cache.getPageCount());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void invalidateTable_removesOnlyPagesOfTable() {
+        SharedRowCache cache = new SharedRowCache(100000);
+        cache.put(key("people", 0), page(5), cache.getVersion("people"));
+        cache.put(key("people", 10), page(5), cache.getVersion("people"));
+        cache.put(key("titles", 0), page(5), cache.getVersion("titles"));
+
+        cache.invalidateTable("people");
+        Assert.assertEquals(1, cache.getPageCount());
+        Assert.assertEquals(sizeOf(page(5)), cache.getSize());
+        Assert.assertNull(cache.get(key("people", 0)));
+        Assert.assertNotNull(cache.get(key("titles", 0)));
+    }
+
+    @Test
+    public void put_tableInvalidatedWhileFetching_notCached() {
+        SharedRowCache cache = new SharedRowCache(100000);
+        long version = cache.getVersion("people");
+        long otherVersion = cache.getVersion("titles");
+        cache.invalidateTable("people");
+        cache.put(key("people", 0), page(5), version);
+        cache.put(key("titles", 0), page(5), otherVersion);
+        Assert.assertNull(cache.get(key("people", 0)));
+        Assert.assertNotNull(cache.get(key("titles", 0)));
+
+        version = cache.getVersion("titles");
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getPageCount());
+        cache.put(key("titles", 0), page(5), version);
+        Assert.assertEquals(0, cache.getPageCount());
+    }
+
+    private static long sizeOf(CachedPage page) {
+        SharedRowCache cache = new SharedRowCache(Long.MAX_VALUE);
+        cache.put(key("size", 0), page, cache.getVersion("size"));
+        return cache.getSize();
+    }
+}
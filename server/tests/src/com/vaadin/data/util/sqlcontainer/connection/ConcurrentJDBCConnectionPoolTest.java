@@ -0,0 +1,499 @@
+package com.vaadin.data.util.sqlcontainer.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.data.util.sqlcontainer.DataGenerator;
+import com.vaadin.data.util.sqlcontainer.SQLContainer;
+import com.vaadin.data.util.sqlcontainer.SQLTestsConstants;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.data.util.sqlcontainer.query.generator.DefaultSQLGenerator;
+
+public class ConcurrentJDBCConnectionPoolTest {
+    private ConcurrentJDBCConnectionPool connectionPool;
+
+    @Before
+    public void setUp() {
+        connectionPool = new ConcurrentJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 2, 2);
+    }
+
+    @After
+    public void tearDown() {
+        connectionPool.destroy();
+    }
+
+    @Test
+    public void reserveConnection_reserveNewConnection_returnsConnection()
+            throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        Assert.assertNotNull(conn);
+        Assert.assertFalse(conn.getAutoCommit());
+        Assert.assertEquals(1, connectionPool.getActiveConnections());
+        Assert.assertEquals(1, connectionPool.getIdleConnections());
+        Assert.assertEquals(2, connectionPool.getOpenConnections());
+    }
+
+    @Test
+    public void releaseConnection_releasedConnection_reusedFirst()
+            throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        connectionPool.releaseConnection(conn);
+        Assert.assertFalse(conn.isClosed());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+        Assert.assertEquals(2, connectionPool.getIdleConnections());
+        Assert.assertSame(conn, connectionPool.reserveConnection());
+        Assert.assertEquals(2, connectionPool.getReserveCount());
+    }
+
+    @Test
+    public void releaseConnection_twiceOrUnknown_ignored() throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        connectionPool.releaseConnection(conn);
+        connectionPool.releaseConnection(conn);
+        connectionPool.releaseConnection(null);
+        Assert.assertEquals(2, connectionPool.getIdleConnections());
+
+        connectionPool.reserveConnection();
+        connectionPool.reserveConnection();
+        Assert.assertEquals(0, connectionPool.getIdleConnections());
+        Assert.assertEquals(2, connectionPool.getOpenConnections());
+    }
+
+    @Test
+    public void releaseConnection_openTransaction_rolledBack()
+            throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        Statement statement = conn.createStatement();
+        statement.execute("create table pooltest (id integer)");
+        conn.commit();
+        statement.executeUpdate("insert into pooltest values (1)");
+        statement.close();
+        connectionPool.releaseConnection(conn);
+
+        conn = connectionPool.reserveConnection();
+        Assert.assertEquals(0, countRows(conn, "pooltest"));
+        statement = conn.createStatement();
+        statement.execute("drop table pooltest");
+        statement.close();
+        conn.commit();
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void reserveConnection_noConnectionsLeft_failsAfterMaxWait()
+            throws SQLException {
+        connectionPool.setMaxWait(100);
+        connectionPool.reserveConnection();
+        connectionPool.reserveConnection();
+        long start = System.currentTimeMillis();
+        try {
+            connectionPool.reserveConnection();
+            Assert.fail("Reserving connection didn't fail even though no connections are available!");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+        Assert.assertEquals(1, connectionPool.getTimeoutCount());
+        Assert.assertTrue(connectionPool.getMaxWaitTime() >= 90);
+        Assert.assertTrue(connectionPool.getTotalWaitTime() >= 90);
+    }
+
+    @Test
+    public void reserveConnection_connectionReleasedWhileWaiting_returnsConnection()
+            throws Exception {
+        final Connection conn = connectionPool.reserveConnection();
+        connectionPool.reserveConnection();
+
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                connectionPool.releaseConnection(conn);
+            }
+        };
+        releaser.start();
+        Assert.assertSame(conn, connectionPool.reserveConnection());
+        releaser.join();
+        Assert.assertEquals(0, connectionPool.getTimeoutCount());
+        Assert.assertTrue(connectionPool.getMaxWaitTime() > 0);
+    }
+
+    @Test
+    public void reserveConnection_idleTimeoutPassed_closesIdleConnection()
+            throws Exception {
+        connectionPool.setIdleTimeout(50);
+        Connection conn = connectionPool.reserveConnection();
+        connectionPool.releaseConnection(conn);
+        Thread.sleep(100);
+
+        Connection conn2 = connectionPool.reserveConnection();
+        Assert.assertNotSame(conn, conn2);
+        Assert.assertTrue(conn.isClosed());
+        Assert.assertFalse(conn2.isClosed());
+        Assert.assertEquals(1, connectionPool.getOpenConnections());
+    }
+
+    @Test
+    public void releaseConnection_maxLifetimePassed_closesConnection()
+            throws Exception {
+        connectionPool.setMaxLifetime(50);
+        Connection conn = connectionPool.reserveConnection();
+        Thread.sleep(100);
+        connectionPool.releaseConnection(conn);
+        Assert.assertTrue(conn.isClosed());
+        Assert.assertEquals(0, connectionPool.getOpenConnections());
+        Assert.assertEquals(0, connectionPool.getIdleConnections());
+    }
+
+    @Test
+    public void reserveConnection_idleConnectionClosed_validatesAndReplaces()
+            throws SQLException {
+        connectionPool.setValidationInterval(0);
+        Connection conn = connectionPool.reserveConnection();
+        connectionPool.releaseConnection(conn);
+        conn.close();
+
+        Connection conn2 = connectionPool.reserveConnection();
+        Assert.assertNotSame(conn, conn2);
+        Assert.assertTrue(conn2.isValid(1));
+    }
+
+    @Test
+    public void reserveConnection_destroyed_fails() throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        connectionPool.destroy();
+        Assert.assertTrue(conn.isClosed());
+        try {
+            connectionPool.reserveConnection();
+            Assert.fail("Reserving a connection from a destroyed pool succeeded");
+        } catch (SQLException e) {
+            // expected
+        }
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void destroy_threadWaiting_failsWithoutWaiting() throws Exception {
+        connectionPool.setMaxWait(10000);
+        connectionPool.reserveConnection();
+        connectionPool.reserveConnection();
+
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    connectionPool.reserveConnection();
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        };
+        long start = System.currentTimeMillis();
+        waiter.start();
+        while (connectionPool.getWaitingThreads() == 0) {
+            Thread.sleep(10);
+        }
+        connectionPool.destroy();
+        waiter.join(5000);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertTrue(failure.get() instanceof SQLException);
+        Assert.assertEquals(0, connectionPool.getOpenConnections());
+    }
+
+    @Test
+    public void destroy_calledTwice_waitingThreadFails() throws Exception {
+        connectionPool.setMaxWait(10000);
+        connectionPool.reserveConnection();
+        connectionPool.reserveConnection();
+
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    connectionPool.reserveConnection();
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        };
+        waiter.start();
+        while (connectionPool.getWaitingThreads() == 0) {
+            Thread.sleep(10);
+        }
+        connectionPool.destroy();
+        connectionPool.destroy();
+        waiter.join(5000);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(failure.get() instanceof SQLException);
+        try {
+            connectionPool.reserveConnection();
+            Assert.fail("Reserving a connection from a destroyed pool succeeded");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertEquals(0, connectionPool.getOpenConnections());
+    }
+
+    @Test
+    public void releaseConnection_idleConnectionExpired_closesOnlyExpired()
+            throws Exception {
+        connectionPool.setIdleTimeout(100);
+        Connection conn1 = connectionPool.reserveConnection();
+        Connection conn2 = connectionPool.reserveConnection();
+        connectionPool.releaseConnection(conn2);
+        Thread.sleep(150);
+
+        connectionPool.releaseConnection(conn1);
+        Assert.assertTrue(conn2.isClosed());
+        Assert.assertFalse(conn1.isClosed());
+        Assert.assertEquals(1, connectionPool.getOpenConnections());
+        Assert.assertEquals(1, connectionPool.getIdleConnections());
+        Assert.assertSame(conn1, connectionPool.reserveConnection());
+    }
+
+    @Test
+    public void reserveConnection_manyThreads_connectionsNotShared()
+            throws Exception {
+        final int threads = 16;
+        final int iterations = 200;
+        final ConcurrentJDBCConnectionPool pool = new ConcurrentJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 1, 4);
+        pool.setValidationInterval(0);
+        final Set<Connection> inUse = Collections
+                .synchronizedSet(new HashSet<Connection>());
+        final Set<Connection> seen = Collections
+                .synchronizedSet(new HashSet<Connection>());
+        final AtomicInteger maxActive = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < iterations; j++) {
+                            Connection conn = pool.reserveConnection();
+                            if (!inUse.add(conn)) {
+                                throw new AssertionError(
+                                        "Connection reserved twice");
+                            }
+                            seen.add(conn);
+                            int active = pool.getActiveConnections();
+                            if (active > maxActive.get()) {
+                                maxActive.set(active);
+                            }
+                            countRows(conn, "INFORMATION_SCHEMA.SYSTEM_USERS");
+                            inUse.remove(conn);
+                            pool.releaseConnection(conn);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(60000);
+        }
+        try {
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            Assert.assertEquals(threads * iterations, pool.getReserveCount());
+            Assert.assertEquals(0, pool.getTimeoutCount());
+            Assert.assertEquals(0, pool.getActiveConnections());
+            Assert.assertTrue(maxActive.get() <= 4);
+            Assert.assertTrue(seen.size() <= 4);
+            Assert.assertEquals(pool.getOpenConnections(),
+                    pool.getIdleConnections());
+            Assert.assertTrue(pool.getOpenConnections() <= 4);
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void prepareStatement_statementCacheEnabled_reusesStatement()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+        Connection conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        Assert.assertSame(conn, pstmt.getConnection());
+        ResultSet rs = pstmt.executeQuery();
+        Assert.assertTrue(rs.next());
+        // Closing through the result set returns the statement to the cache
+        rs.getStatement().close();
+        Assert.assertTrue(pstmt.isClosed());
+        connectionPool.releaseConnection(conn);
+
+        conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt2 = conn.prepareStatement(sql);
+        Assert.assertNotSame(pstmt, pstmt2);
+        Assert.assertFalse(pstmt2.isClosed());
+        rs = pstmt2.executeQuery();
+        Assert.assertTrue(rs.next());
+        pstmt2.close();
+        Assert.assertEquals(1, connectionPool.getStatementCacheHits());
+        Assert.assertEquals(1, connectionPool.getStatementCacheMisses());
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void prepareStatement_maxRowsSetByPreviousUser_returnsAllRows()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        String sql = "SELECT * FROM people";
+        Connection conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        pstmt.setMaxRows(1);
+        pstmt.setFetchSize(1);
+        Assert.assertEquals(1, countRows(pstmt.executeQuery()));
+        pstmt.close();
+        connectionPool.releaseConnection(conn);
+
+        conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt2 = conn.prepareStatement(sql);
+        Assert.assertEquals(0, pstmt2.getMaxRows());
+        Assert.assertEquals(4, countRows(pstmt2.executeQuery()));
+        pstmt2.close();
+        Assert.assertEquals(1, connectionPool.getStatementCacheHits());
+        connectionPool.releaseConnection(conn);
+    }
+
+    private static int countRows(ResultSet rs) throws SQLException {
+        int rows = 0;
+        while (rs.next()) {
+            rows++;
+        }
+        return rows;
+    }
+
+    @Test
+    public void prepareStatement_sameStatementOpenTwice_secondNotCached()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+        Connection conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        PreparedStatement pstmt2 = conn.prepareStatement(sql);
+        Assert.assertTrue(pstmt.executeQuery().next());
+        Assert.assertTrue(pstmt2.executeQuery().next());
+        pstmt2.close();
+        pstmt.close();
+        Assert.assertEquals(2, connectionPool.getStatementCacheMisses());
+
+        conn.prepareStatement(sql).close();
+        Assert.assertEquals(1, connectionPool.getStatementCacheHits());
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void releaseConnection_statementLeftOpen_closesStatement()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        Connection conn = connectionPool.reserveConnection();
+        PreparedStatement pstmt = conn
+                .prepareStatement("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        connectionPool.releaseConnection(conn);
+        Assert.assertTrue(pstmt.isClosed());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+        Assert.assertEquals(2, connectionPool.getIdleConnections());
+    }
+
+    @Test
+    public void prepareStatement_overCacheSize_evictsEldest()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(1);
+        Connection conn = connectionPool.reserveConnection();
+        conn.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")
+                .close();
+        conn.prepareStatement("SELECT 2 FROM INFORMATION_SCHEMA.SYSTEM_USERS")
+                .close();
+        conn.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")
+                .close();
+        Assert.assertEquals(0, connectionPool.getStatementCacheHits());
+        Assert.assertEquals(3, connectionPool.getStatementCacheMisses());
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void sqlContainer_statementCacheEnabled_reusesQueries()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        Assert.assertEquals(4, container.size());
+        long hits = connectionPool.getStatementCacheHits();
+        container.refresh();
+        Assert.assertEquals(4, container.size());
+        Assert.assertNotNull(container.getItem(container.firstItemId()));
+        Assert.assertTrue(connectionPool.getStatementCacheHits() > hits);
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void tableQuery_limitsAsParameters_scrollingReusesStatement()
+            throws SQLException {
+        connectionPool.setStatementCacheSize(10);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        DefaultSQLGenerator generator = new DefaultSQLGenerator();
+        generator.setLimitsAsParameters(true);
+        TableQuery query = new TableQuery("people", connectionPool, generator);
+        for (int offset = 0; offset < 4; offset++) {
+            query.beginTransaction();
+            ResultSet rs = query.getResults(offset, 1);
+            Assert.assertTrue(rs.next());
+            rs.getStatement().close();
+            query.commit();
+        }
+        // Only the query for the first page is prepared
+        Assert.assertEquals(3, connectionPool.getStatementCacheHits());
+    }
+
+    private static int countRows(Connection conn, String table)
+            throws SQLException {
+        Statement statement = conn.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM "
+                    + table);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.vaadin.data.util.sqlcontainer.generator;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -96,6 +99,88 @@ public class SQLGeneratorsTest {
                         + "OR \"name\" LIKE ?) ORDER BY \"name\" ASC");
     }
 
+    @Test
+    public void generateSelectQuery_repeatedWithOtherPage_parametersReused()
+            throws SQLException {
+        SQLGenerator sg = new DefaultSQLGenerator();
+        List<Filter> f = new ArrayList<Filter>();
+        f.add(new Like("NAME", "%lle"));
+        List<OrderBy> ob = Arrays.asList(new OrderBy("NAME", true));
+        StatementHelper first = sg.generateSelectQuery("people", f, ob, 0, 1,
+                null);
+        StatementHelper second = sg.generateSelectQuery("people", f, ob, 1,
+                1, null);
+        Assert.assertEquals("SELECT * FROM people WHERE \"NAME\" LIKE ? "
+                + "ORDER BY \"NAME\" ASC LIMIT 1 OFFSET 0",
+                first.getQueryString());
+        Assert.assertEquals("SELECT * FROM people WHERE \"NAME\" LIKE ? "
+                + "ORDER BY \"NAME\" ASC LIMIT 1 OFFSET 1",
+                second.getQueryString());
+        Assert.assertEquals("Kalle", fetchName(first));
+        Assert.assertEquals("Pelle", fetchName(second));
+
+        // Changed filters are not taken from the previous query
+        f.set(0, new Like("NAME", "V%"));
+        StatementHelper third = sg.generateSelectQuery("people", f, ob, 0, 1,
+                null);
+        Assert.assertEquals("Ville", fetchName(third));
+    }
+
+    @Test
+    public void generateSelectQuery_limitsAsParameters_sameQueryForAllPages()
+            throws SQLException {
+        DefaultSQLGenerator sg = new DefaultSQLGenerator();
+        sg.setLimitsAsParameters(true);
+        List<Filter> f = new ArrayList<Filter>();
+        f.add(new Like("NAME", "%lle"));
+        List<OrderBy> ob = Arrays.asList(new OrderBy("NAME", true));
+        StatementHelper first = sg.generateSelectQuery("people", f, ob, 0, 1,
+                null);
+        StatementHelper second = sg.generateSelectQuery("people", f, ob, 1,
+                1, null);
+        Assert.assertEquals("SELECT * FROM people WHERE \"NAME\" LIKE ? "
+                + "ORDER BY \"NAME\" ASC LIMIT ? OFFSET ?",
+                first.getQueryString());
+        Assert.assertEquals(first.getQueryString(), second.getQueryString());
+        Assert.assertEquals("Kalle", fetchName(first));
+        Assert.assertEquals("Pelle", fetchName(second));
+    }
+
+    @Test
+    public void generateSelectQuery_caseSensitivityChanged_notReused()
+            throws SQLException {
+        SQLGenerator sg = new DefaultSQLGenerator();
+        List<Filter> f = new ArrayList<Filter>();
+        f.add(new Like("NAME", "v%", true));
+        StatementHelper sensitive = sg.generateSelectQuery("people", f, null,
+                0, 0, null);
+        f.set(0, new Like("NAME", "v%", false));
+        StatementHelper insensitive = sg.generateSelectQuery("people", f,
+                null, 0, 0, null);
+        Assert.assertEquals("SELECT * FROM people WHERE \"NAME\" LIKE ?",
+                sensitive.getQueryString());
+        Assert.assertEquals(
+                "SELECT * FROM people WHERE UPPER(\"NAME\") LIKE ?",
+                insensitive.getQueryString());
+        Assert.assertEquals("Ville", fetchName(insensitive));
+    }
+
+    private String fetchName(StatementHelper sh) throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        try {
+            PreparedStatement pstmt = conn.prepareStatement(sh
+                    .getQueryString());
+            sh.setParameterValuesToStatement(pstmt);
+            ResultSet rs = pstmt.executeQuery();
+            Assert.assertTrue(rs.next());
+            String name = rs.getString("NAME");
+            pstmt.close();
+            return name;
+        } finally {
+            connectionPool.releaseConnection(conn);
+        }
+    }
+
     @Test
     public void generateDeleteQuery_basicQuery_shouldSucceed()
             throws SQLException {
@@ -206,6 +291,47 @@ public class SQLGeneratorsTest {
                         + "AS a WHERE a.rownum BETWEEN 5 AND 12");
     }
 
+    @Test
+    public void generateKeysetSelectQuery_forward_shouldSucceed() {
+        DefaultSQLGenerator sg = new DefaultSQLGenerator();
+        List<OrderBy> ob = Arrays.asList(new OrderBy("ID", true));
+        StatementHelper sh = sg.generateKeysetSelectQuery("TABLE", null, ob,
+                new Object[] { 42 }, false, 10, null);
+        Assert.assertEquals(
+                "SELECT * FROM TABLE WHERE \"ID\" > ? ORDER BY \"ID\" ASC LIMIT 10 OFFSET 0",
+                sh.getQueryString());
+    }
+
+    @Test
+    public void generateKeysetSelectQuery_backwardWithFilters_shouldSucceed() {
+        DefaultSQLGenerator sg = new DefaultSQLGenerator();
+        List<Filter> f = new ArrayList<Filter>();
+        f.add(new Like("name", "%lle"));
+        List<OrderBy> ob = Arrays.asList(new OrderBy("name", false),
+                new OrderBy("ID", true));
+        StatementHelper sh = sg.generateKeysetSelectQuery("TABLE", f, ob,
+                new Object[] { "Pelle", 42 }, true, 10, null);
+        Assert.assertEquals("SELECT * FROM (SELECT * FROM TABLE "
+                + "WHERE \"name\" LIKE ? AND (\"name\" >= ? "
+                + "AND (\"name\" > ? OR (\"name\" = ? AND \"ID\" < ?))) "
+                + "ORDER BY \"name\" ASC, \"ID\" DESC LIMIT 10 OFFSET 0) "
+                + "keyset_page ORDER BY \"name\" DESC, \"ID\" ASC",
+                sh.getQueryString());
+    }
+
+    @Test
+    public void generateKeysetSelectQuery_forMSSQL_shouldSucceed() {
+        DefaultSQLGenerator sg = new MSSQLGenerator();
+        List<OrderBy> ob = Arrays.asList(new OrderBy("ID", true));
+        StatementHelper sh = sg.generateKeysetSelectQuery("TABLE", null, ob,
+                new Object[] { 42 }, true, 10, null);
+        Assert.assertEquals("SELECT * FROM (SELECT * FROM "
+                + "(SELECT row_number() OVER ( ORDER BY \"ID\" DESC) "
+                + "AS rownum, * FROM TABLE WHERE \"ID\" < ?) "
+                + "AS a WHERE a.rownum BETWEEN 1 AND 10) "
+                + "keyset_page ORDER BY \"ID\" ASC", sh.getQueryString());
+    }
+
     @Test
     public void generateComplexSelectQuery_forOracle_exclusiveFilteringMode_shouldSucceed()
             throws SQLException {
@@ -0,0 +1,241 @@
+package com.vaadin.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.UI;
+
+public class BackgroundCleanupTest extends TestCase {
+
+    private MockDeploymentConfiguration configuration;
+    private VaadinServletService service;
+    private VaadinSession session;
+    private WrappedSession wrappedSession;
+    private UI ui;
+
+    @Override
+    protected void setUp() throws Exception {
+        configuration = new MockDeploymentConfiguration();
+        VaadinServlet servlet = new VaadinServlet();
+        service = new VaadinServletService(servlet, configuration);
+        servlet.init(new MockServletConfig());
+
+        wrappedSession = EasyMock.createNiceMock(WrappedSession.class);
+        EasyMock.expect(wrappedSession.getMaxInactiveInterval()).andReturn(1)
+                .anyTimes();
+        EasyMock.replay(wrappedSession);
+
+        final ReentrantLock lock = new ReentrantLock();
+        session = new VaadinSession(service) {
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+
+            @Override
+            public WrappedSession getSession() {
+                return wrappedSession;
+            }
+
+            @Override
+            public void removeFromSession(VaadinService service) {
+                // Not stored in the mock wrapped session
+            }
+        };
+
+        ui = new UI() {
+            private final Page page = new Page(this, getState(false).pageState) {
+                @Override
+                public void init(VaadinRequest request) {
+                }
+            };
+
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+
+            @Override
+            public Page getPage() {
+                return page;
+            }
+        };
+        session.lock();
+        try {
+            session.setLastRequestTimestamp(System.currentTimeMillis());
+            ui.doInit(EasyMock.createNiceMock(VaadinRequest.class), 1, null);
+            ui.setSession(session);
+            session.addUI(ui);
+            // No heartbeats received
+            ui.setLastHeartbeatTimestamp(0);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        service.destroy();
+    }
+
+    public void testCleanupAtRequestEndByDefault() {
+        endRequest();
+
+        assertEquals(0, getUICount());
+        assertEquals(0, service.getSessionCleanupStatistics().getSweepCount());
+    }
+
+    public void testCleanupInBackgroundSweep() {
+        configuration.setBackgroundCleanupInterval(60);
+        endRequest();
+        assertEquals(1, getUICount());
+
+        service.runCleanupSweep();
+
+        assertEquals(0, getUICount());
+        SessionCleanupStatistics statistics = service
+                .getSessionCleanupStatistics();
+        assertEquals(1, statistics.getSweepCount());
+        assertEquals(1, statistics.getSessionsChecked());
+        assertEquals(0, statistics.getSessionsSkipped());
+        assertEquals(0, statistics.getSessionsClosed());
+        assertEquals(1, statistics.getUIsRemoved());
+    }
+
+    public void testLockedSessionSkipped() throws Exception {
+        configuration.setBackgroundCleanupInterval(60);
+        endRequest();
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                session.getLockInstance().lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Release the lock
+                } finally {
+                    session.getLockInstance().unlock();
+                }
+            }
+        };
+        holder.start();
+        locked.await();
+        try {
+            service.runCleanupSweep();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertEquals(1, getUICount());
+        assertEquals(1, service.getSessionCleanupStatistics()
+                .getSessionsSkipped());
+
+        // Checked again in the next sweep
+        service.runCleanupSweep();
+        assertEquals(0, getUICount());
+    }
+
+    public void testSessionLockedInConsecutiveSweepsWaitedFor()
+            throws Exception {
+        configuration.setBackgroundCleanupInterval(60);
+        endRequest();
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                session.getLockInstance().lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                    // Release the lock while the next sweep waits for it
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // Release the lock
+                } finally {
+                    session.getLockInstance().unlock();
+                }
+            }
+        };
+        holder.start();
+        locked.await();
+        try {
+            for (int i = 0; i < 3; i++) {
+                service.runCleanupSweep();
+            }
+            assertEquals(3, service.getSessionCleanupStatistics()
+                    .getSessionsSkipped());
+            assertEquals(0, service.getSessionCleanupStatistics()
+                    .getSessionsChecked());
+
+            release.countDown();
+            service.runCleanupSweep();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertEquals(3, service.getSessionCleanupStatistics()
+                .getSessionsSkipped());
+        assertEquals(0, getUICount());
+    }
+
+    public void testInactiveSessionClosed() {
+        configuration.setBackgroundCleanupInterval(60);
+        configuration.setCloseIdleSessions(true);
+        endRequest();
+        session.lock();
+        try {
+            session.setLastRequestTimestamp(0);
+        } finally {
+            session.unlock();
+        }
+
+        service.runCleanupSweep();
+        assertTrue(isClosing());
+        assertEquals(1, service.getSessionCleanupStatistics()
+                .getSessionsClosed());
+
+        // Closed sessions are no longer checked
+        service.runCleanupSweep();
+        assertEquals(1, service.getSessionCleanupStatistics()
+                .getSessionsChecked());
+    }
+
+    private int getUICount() {
+        session.lock();
+        try {
+            return session.getUIs().size();
+        } finally {
+            session.unlock();
+        }
+    }
+
+    private boolean isClosing() {
+        session.lock();
+        try {
+            return session.isClosing();
+        } finally {
+            session.unlock();
+        }
+    }
+
+    private void endRequest() {
+        VaadinRequest request = EasyMock.createNiceMock(VaadinRequest.class);
+        EasyMock.expect(request.getAttribute("requestStartTime")).andReturn(Long.valueOf(System.nanoTime()))
+                .anyTimes();
+        EasyMock.replay(request);
+        service.requestEnd(request, null, session);
+    }
+}
@@ -0,0 +1,139 @@
+package com.vaadin.server;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+
+public class CoalescedAccessTest extends TestCase {
+
+    private static final int TASKS = 100;
+
+    private MockDeploymentConfiguration configuration;
+    private VaadinServletService service;
+    private VaadinSession session;
+
+    @Override
+    protected void setUp() throws Exception {
+        configuration = new MockDeploymentConfiguration();
+        VaadinServlet servlet = new VaadinServlet();
+        service = new VaadinServletService(servlet, configuration);
+        servlet.init(new MockServletConfig());
+
+        final ReentrantLock lock = new ReentrantLock();
+        session = new VaadinSession(service) {
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        service.destroy();
+    }
+
+    public void testTasksRunImmediatelyByDefault() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < TASKS; i++) {
+            Future<Void> future = session.access(new Increment(counter));
+            assertTrue(future.isDone());
+        }
+
+        AccessQueueStatistics statistics = service.getAccessQueueStatistics();
+        assertEquals(TASKS, counter.get());
+        assertEquals(TASKS, statistics.getTaskCount());
+        assertEquals(TASKS, statistics.getDrainCount());
+        assertEquals(1, statistics.getMaxQueueDepth());
+    }
+
+    public void testTasksCoalesced() throws Exception {
+        configuration.setPushCoalesceInterval(200);
+
+        AtomicInteger counter = new AtomicInteger();
+        Future<Void> last = null;
+        for (int i = 0; i < TASKS; i++) {
+            last = session.access(new Increment(counter));
+        }
+        last.get(5, TimeUnit.SECONDS);
+        waitForDrain();
+
+        AccessQueueStatistics statistics = service.getAccessQueueStatistics();
+        assertEquals(TASKS, counter.get());
+        assertEquals(TASKS, statistics.getTaskCount());
+        // The tasks are run together after the interval
+        assertTrue(statistics.getDrainCount() <= 2);
+        assertTrue(statistics.getMaxQueueDepth() >= TASKS / 2);
+        assertTrue(statistics.getMaxLatency(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    public void testTaskAfterDrainWaitsForInterval() throws Exception {
+        configuration.setPushCoalesceInterval(500);
+
+        AtomicInteger counter = new AtomicInteger();
+        session.access(new Increment(counter)).get(5, TimeUnit.SECONDS);
+        waitForDrain();
+
+        Future<Void> future = session.access(new Increment(counter));
+        Thread.sleep(100);
+        assertFalse(future.isDone());
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(2, counter.get());
+    }
+
+    /**
+     * Waits until a drain that is running has completed. The drain runs while
+     * holding the session lock.
+     */
+    private void waitForDrain() {
+        session.lock();
+        session.unlock();
+    }
+
+    public void testTasksQueuedWhileLockedRunOnUnlock() throws Exception {
+        configuration.setPushCoalesceInterval(50);
+
+        AtomicInteger counter = new AtomicInteger();
+        session.lock();
+        Future<Void> future;
+        try {
+            future = session.access(new Increment(counter));
+            Thread.sleep(100);
+            assertFalse(future.isDone());
+        } finally {
+            session.unlock();
+        }
+        assertTrue(future.isDone());
+        assertEquals(1, counter.get());
+    }
+
+    public void testAccessAfterDestroyRunsOnCallingThread()
+            throws Exception {
+        configuration.setPushCoalesceInterval(200);
+        service.destroy();
+
+        AtomicInteger counter = new AtomicInteger();
+        Future<Void> future = session.access(new Increment(counter));
+        assertTrue(future.isDone());
+        assertEquals(1, counter.get());
+    }
+
+    private static class Increment implements Runnable {
+        private final AtomicInteger counter;
+
+        public Increment(AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void run() {
+            counter.incrementAndGet();
+        }
+    }
+}
@@ -99,6 +99,38 @@ public class JSONSerializerTest extends TestCase {
         }
     }
 
+    public void testUnchangedNestedStateNotInDiff() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.splitterState.position = 50;
+        state.splitterState.positionUnit = "%";
+        state.styles = Arrays.asList("foo", "bar");
+
+        EncodeResult first = JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null);
+        EncodeResult second = JsonCodec.encode(state,
+                first.getEncodedValue(), AbstractSplitPanelState.class, null);
+
+        assertEquals(0, ((JSONObject) second.getDiff()).length());
+    }
+
+    public void testChangedNestedStateInDiff() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.styles = Arrays.asList("foo", "bar");
+
+        EncodeResult first = JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null);
+
+        state.splitterState.locked = true;
+        state.styles = Arrays.asList("foo", "baz");
+        JSONObject diff = (JSONObject) JsonCodec.encode(state,
+                first.getEncodedValue(), AbstractSplitPanelState.class, null)
+                .getDiff();
+
+        assertEquals(2, diff.length());
+        assertTrue(diff.getJSONObject("splitterState").getBoolean("locked"));
+        assertEquals("baz", diff.getJSONArray("styles").getString(1));
+    }
+
     private void ensureDecodedCorrectly(Object original, Object encoded,
             Type type) throws Exception {
         Object serverSideDecoded = JsonCodec.decodeInternalOrCustomType(type,
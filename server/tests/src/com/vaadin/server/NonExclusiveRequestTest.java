@@ -0,0 +1,154 @@
+package com.vaadin.server;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import com.vaadin.server.communication.HeartbeatHandler;
+import com.vaadin.shared.ApplicationConstants;
+import com.vaadin.shared.ui.ui.UIConstants;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.UI;
+
+public class NonExclusiveRequestTest extends TestCase {
+
+    private VaadinServletService service;
+
+    @Override
+    protected void setUp() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        service = servlet.getService();
+    }
+
+    public void testNonExclusiveRequests() {
+        assertTrue(isNonExclusive("/" + ApplicationConstants.HEARTBEAT_PATH
+                + "/"));
+        assertTrue(isNonExclusive("/"
+                + ApplicationConstants.PUBLISHED_FILE_PATH + "/script.js"));
+        assertTrue(isNonExclusive("/" + ApplicationConstants.APP_PATH
+                + "/connector/0/1/file.txt"));
+        assertTrue(isNonExclusive("/" + ApplicationConstants.APP_PATH
+                + "/global/0/legacy/1"));
+    }
+
+    public void testExclusiveRequests() {
+        assertFalse(isNonExclusive("/" + ApplicationConstants.UIDL_PATH + "/"));
+        assertFalse(isNonExclusive("/"));
+        assertFalse(isNonExclusive(null));
+    }
+
+    public void testHeartbeatWhileSessionLocked() throws Exception {
+        // The lock is held by this thread
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        UI ui = new UI() {
+            private final Page page = new Page(this, getState(false).pageState) {
+                @Override
+                public void init(VaadinRequest request) {
+                }
+            };
+
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+
+            @Override
+            public Page getPage() {
+                return page;
+            }
+        };
+        ui.doInit(EasyMock.createNiceMock(VaadinRequest.class), 1, null);
+        ui.setSession(session);
+        session.addUI(ui);
+        ui.setLastHeartbeatTimestamp(0);
+
+        final VaadinSession finalSession = session;
+        final VaadinRequest request = createRequest("/"
+                + ApplicationConstants.HEARTBEAT_PATH + "/");
+        EasyMock.expect(request.getParameter(UIConstants.UI_ID_PARAMETER))
+                .andReturn("1").anyTimes();
+        final VaadinResponse response = EasyMock
+                .createNiceMock(VaadinResponse.class);
+        EasyMock.replay(request, response);
+
+        final AtomicReference<Boolean> handled = new AtomicReference<Boolean>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    handled.set(new HeartbeatHandler().handleRequest(
+                            finalSession, request, response));
+                } catch (Exception e) {
+                    handled.set(Boolean.FALSE);
+                }
+            }
+        };
+        thread.start();
+        thread.join(5000);
+
+        assertFalse("Heartbeat blocked by the session lock", thread.isAlive());
+        assertEquals(Boolean.TRUE, handled.get());
+        assertTrue(ui.getLastHeartbeatTimestamp() > 0);
+    }
+
+    public void testNonExclusiveRequestDurationRecorded() throws Exception {
+        final ReentrantLock lock = new ReentrantLock();
+        final VaadinSession session = new VaadinSession(service) {
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+        };
+        final VaadinRequest request = createRequest("/"
+                + ApplicationConstants.HEARTBEAT_PATH + "/");
+        EasyMock.expect(request.getAttribute("requestStartTime"))
+                .andReturn(Long.valueOf(System.nanoTime() - 50000000L))
+                .anyTimes();
+        EasyMock.expect(request.getAttribute("nonExclusiveRequest"))
+                .andReturn(Boolean.TRUE).anyTimes();
+        EasyMock.replay(request);
+
+        session.lock();
+        try {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    service.requestEnd(request, null, session);
+                }
+            };
+            thread.start();
+            thread.join(5000);
+            assertFalse("Request end blocked by the session lock",
+                    thread.isAlive());
+            assertEquals(0, session.getCumulativeRequestDuration());
+        } finally {
+            session.unlock();
+        }
+
+        session.lock();
+        try {
+            // Recorded when the lock was released
+            assertTrue(session.getLastRequestDuration() >= 50);
+            assertEquals(session.getLastRequestDuration(),
+                    session.getCumulativeRequestDuration());
+        } finally {
+            session.unlock();
+        }
+    }
+
+    private boolean isNonExclusive(String pathInfo) {
+        VaadinRequest request = createRequest(pathInfo);
+        EasyMock.replay(request);
+        return service.isNonExclusiveRequest(request);
+    }
+
+    private static VaadinRequest createRequest(String pathInfo) {
+        VaadinRequest request = EasyMock.createNiceMock(VaadinRequest.class);
+        EasyMock.expect(request.getPathInfo()).andReturn(pathInfo).anyTimes();
+        return request;
+    }
+}
@@ -0,0 +1,135 @@
+package com.vaadin.server.communication;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.JsonPaintTarget;
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+public class IncrementalHierarchyWriterTest extends TestCase {
+
+    private VaadinSession session;
+    private UI ui;
+    private VerticalLayout layout;
+    private Label label;
+
+    @Override
+    protected void setUp() throws Exception {
+        session = new AlwaysLockedVaadinSession(null);
+        session.setCommunicationManager(new LegacyCommunicationManager(session));
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        layout = new VerticalLayout();
+        ui.setContent(layout);
+        label = new Label("Label");
+        layout.addComponent(label);
+    }
+
+    public void testUnchangedHierarchyNotWrittenAgain() throws Exception {
+        JSONObject hierarchy = writeHierarchy();
+        assertTrue(hierarchy.has(layout.getConnectorId()));
+        assertTrue(hierarchy.has(label.getConnectorId()));
+        endResponse();
+
+        label.setValue("Changed");
+        layout.markAsDirty();
+        ConnectorHierarchyWriter writer = new ConnectorHierarchyWriter();
+        hierarchy = new JSONObject(write(writer));
+        assertEquals(0, hierarchy.length());
+        assertTrue(writer.getOmittedBytes() > 0);
+    }
+
+    public void testChangedHierarchyWritten() throws Exception {
+        writeHierarchy();
+        endResponse();
+
+        Label newLabel = new Label("New");
+        layout.addComponent(newLabel);
+
+        JSONObject hierarchy = writeHierarchy();
+        assertEquals(2, hierarchy.getJSONArray(layout.getConnectorId())
+                .length());
+        assertTrue(hierarchy.has(newLabel.getConnectorId()));
+        assertFalse(hierarchy.has(label.getConnectorId()));
+    }
+
+    public void testHiddenChildWritten() throws Exception {
+        writeHierarchy();
+        endResponse();
+
+        label.setVisible(false);
+        layout.markAsDirty();
+
+        JSONObject hierarchy = writeHierarchy();
+        assertEquals(0, hierarchy.getJSONArray(layout.getConnectorId())
+                .length());
+    }
+
+    public void testHierarchyWrittenAfterRepaintAll() throws Exception {
+        writeHierarchy();
+        endResponse();
+
+        ui.getConnectorTracker().markAllClientSidesUninitialized();
+        ui.getConnectorTracker().markAllConnectorsDirty();
+
+        JSONObject hierarchy = writeHierarchy();
+        assertTrue(hierarchy.has(layout.getConnectorId()));
+        assertTrue(hierarchy.has(label.getConnectorId()));
+    }
+
+    public void testTypeOnlyWrittenForUninitialized() throws Exception {
+        JSONObject types = writeTypes();
+        assertTrue(types.has(label.getConnectorId()));
+        endResponse();
+
+        Label newLabel = new Label("New");
+        layout.addComponent(newLabel);
+        label.setValue("Changed");
+
+        types = writeTypes();
+        assertEquals(1, types.length());
+        assertTrue(types.has(newLabel.getConnectorId()));
+    }
+
+    private JSONObject writeHierarchy() throws Exception {
+        return new JSONObject(write(new ConnectorHierarchyWriter()));
+    }
+
+    private String write(ConnectorHierarchyWriter hierarchyWriter)
+            throws Exception {
+        StringWriter writer = new StringWriter();
+        hierarchyWriter.write(ui, writer);
+        return writer.toString();
+    }
+
+    private JSONObject writeTypes() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonPaintTarget target = new JsonPaintTarget(
+                session.getCommunicationManager(), new StringWriter(), true);
+        new ConnectorTypeWriter().write(ui, writer, target);
+        return new JSONObject(writer.toString());
+    }
+
+    private void endResponse() {
+        ConnectorTracker tracker = ui.getConnectorTracker();
+        for (ClientConnector connector : tracker.getDirtyVisibleConnectors()) {
+            tracker.markClientSideInitialized(connector);
+        }
+        tracker.markAllConnectorsClean();
+    }
+}
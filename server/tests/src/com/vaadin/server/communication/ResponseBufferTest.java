@@ -0,0 +1,131 @@
+package com.vaadin.server.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ResponseBufferTest extends TestCase {
+
+    public void testUtf8Encoding() throws Exception {
+        String text = "for(;;);[{\"a\":\"\u00e4\u20ac\ud83d\ude00\"}]";
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.write(text);
+
+        assertEncoded(text.getBytes("UTF-8"), buffer);
+        assertEquals(text, buffer.toString());
+    }
+
+    public void testSurrogatePairSplitBetweenWrites() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.write("x\ud83d");
+        buffer.write(new char[] { '\ude00', 'y' }, 0, 2);
+
+        assertEncoded("x\ud83d\ude00y".getBytes("UTF-8"), buffer);
+    }
+
+    public void testUnpairedSurrogatesReplaced() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.write("a\ude00b\ud83dc\ud83d");
+
+        assertEquals("a?b?c?", buffer.toString());
+    }
+
+    public void testGrowsBeyondInitialCapacity() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.append(i % 10 == 0 ? '\u00e4' : 'a');
+        }
+        String text = builder.toString();
+
+        ResponseBuffer buffer = new ResponseBuffer();
+        for (int i = 0; i < text.length(); i++) {
+            buffer.write(text.charAt(i));
+        }
+
+        assertEncoded(text.getBytes("UTF-8"), buffer);
+    }
+
+    public void testResetUpdatesSizeEstimate() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        assertEquals(0, buffer.getSizeEstimate());
+
+        buffer.write(createText(4000));
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        assertEquals(4000, buffer.getSizeEstimate());
+
+        for (int i = 0; i < 20; i++) {
+            buffer.write(createText(100));
+            buffer.reset();
+        }
+        assertTrue(buffer.getSizeEstimate() < 200);
+
+        buffer.write("abc");
+        assertEquals("abc", buffer.toString());
+    }
+
+    public void testLargeBufferRetainedOnReset() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        for (int i = 0; i < 10; i++) {
+            buffer.write(createText(1000));
+            buffer.reset();
+            assertTrue(buffer.capacity() > 0);
+        }
+
+        // Consistently large responses reuse the same buffer
+        int large = 256 * 1024;
+        for (int i = 0; i < 10; i++) {
+            buffer.write(createText(large));
+            assertEquals(large, buffer.size());
+            buffer.reset();
+        }
+        assertTrue(buffer.capacity() >= large);
+
+        buffer.write("abc");
+        assertEquals("abc", buffer.toString());
+    }
+
+    public void testBufferLargerThanMaxRetainedCapacityReleasedOnReset()
+            throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.setMaxRetainedCapacity(32 * 1024);
+
+        int large = 64 * 1024;
+        for (int i = 0; i < 10; i++) {
+            buffer.write(createText(large));
+            assertEquals(large, buffer.size());
+            buffer.reset();
+            assertEquals(0, buffer.capacity());
+        }
+
+        buffer.write("abc");
+        assertEquals("abc", buffer.toString());
+    }
+
+    public void testOutlierReleasedOnReset() throws Exception {
+        ResponseBuffer buffer = new ResponseBuffer();
+        for (int i = 0; i < 10; i++) {
+            buffer.write(createText(1000));
+            buffer.reset();
+        }
+
+        buffer.write(createText(64 * 1024));
+        buffer.reset();
+        assertEquals(0, buffer.capacity());
+    }
+
+    private static String createText(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+
+    private static void assertEncoded(byte[] expected, ResponseBuffer buffer)
+            throws Exception {
+        assertEquals(expected.length, buffer.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+    }
+}
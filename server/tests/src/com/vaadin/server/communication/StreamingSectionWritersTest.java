@@ -0,0 +1,82 @@
+package com.vaadin.server.communication;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+public class StreamingSectionWritersTest extends TestCase {
+
+    private UI ui;
+    private VerticalLayout layout;
+    private Label label;
+
+    @Override
+    protected void setUp() throws Exception {
+        VaadinSession session = new AlwaysLockedVaadinSession(null);
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        layout = new VerticalLayout();
+        ui.setContent(layout);
+        label = new Label("Hello \"world\"");
+        layout.addComponent(label);
+        layout.addComponent(new Label("Second"));
+    }
+
+    public void testSharedStateIsValidJson() throws Exception {
+        StringWriter writer = new StringWriter();
+        new SharedStateWriter().write(ui, writer);
+
+        JSONObject states = new JSONObject(writer.toString());
+        assertEquals(4, states.length());
+        assertEquals("Hello \"world\"",
+                states.getJSONObject(label.getConnectorId()).getString("text"));
+    }
+
+    public void testNoStatesWritten() throws Exception {
+        ui.getConnectorTracker().markAllConnectorsClean();
+
+        StringWriter writer = new StringWriter();
+        new SharedStateWriter().write(ui, writer);
+        assertEquals("{}", writer.toString());
+    }
+
+    public void testHierarchyIsValidJson() throws Exception {
+        StringWriter writer = new StringWriter();
+        new ConnectorHierarchyWriter().write(ui, writer);
+
+        JSONObject hierarchy = new JSONObject(writer.toString());
+        assertEquals(4, hierarchy.length());
+
+        JSONArray children = hierarchy.getJSONArray(layout.getConnectorId());
+        assertEquals(2, children.length());
+        assertEquals(label.getConnectorId(), children.getString(0));
+        assertEquals(0, hierarchy.getJSONArray(label.getConnectorId())
+                .length());
+    }
+
+    public void testInvisibleChildNotInHierarchy() throws Exception {
+        label.setVisible(false);
+
+        StringWriter writer = new StringWriter();
+        new ConnectorHierarchyWriter().write(ui, writer);
+
+        JSONObject hierarchy = new JSONObject(writer.toString());
+        assertFalse(hierarchy.has(label.getConnectorId()));
+        assertEquals(1, hierarchy.getJSONArray(layout.getConnectorId())
+                .length());
+    }
+}
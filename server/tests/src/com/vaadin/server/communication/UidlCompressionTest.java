@@ -0,0 +1,160 @@
+package com.vaadin.server.communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinService;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+
+public class UidlCompressionTest extends TestCase {
+
+    private MockDeploymentConfiguration configuration;
+
+    @Override
+    protected void setUp() throws Exception {
+        configuration = new MockDeploymentConfiguration();
+        configuration.setUidlCompressionEnabled(true);
+        configuration.setCompressionThreshold(100);
+    }
+
+    public void testLargeResponseCompressed() throws Exception {
+        String json = createJson(1000);
+        byte[] written = commit(json, "gzip, deflate", true);
+
+        assertTrue(written.length < json.length());
+        assertEquals(json, gunzip(written));
+    }
+
+    public void testSmallResponseNotCompressed() throws Exception {
+        String json = createJson(3);
+        assertEquals(json, new String(commit(json, "gzip", false), "UTF-8"));
+    }
+
+    public void testThresholdInBytes() throws Exception {
+        // 99 characters but 194 bytes when encoded
+        String json = createText('\u00e4', 95);
+        assertTrue(json.length() < configuration.getCompressionThreshold());
+        assertEquals(json, gunzip(commit(json, "gzip", true)));
+
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.write(json);
+        assertEquals(json, gunzip(commit(buffer, "gzip", true)));
+
+        json = createText('a', 95);
+        assertEquals(json, new String(commit(json, "gzip", false), "UTF-8"));
+    }
+
+    public void testNotCompressedWhenNotAccepted() throws Exception {
+        String json = createJson(1000);
+        assertEquals(json,
+                new String(commit(json, "identity", false), "UTF-8"));
+        assertEquals(json, new String(commit(json, null, false), "UTF-8"));
+    }
+
+    public void testAcceptEncodingParsed() {
+        assertTrue(UIInitHandler.acceptsGzip("gzip"));
+        assertTrue(UIInitHandler.acceptsGzip("deflate, GZIP"));
+        assertTrue(UIInitHandler.acceptsGzip("gzip;q=0.5, identity"));
+        assertTrue(UIInitHandler.acceptsGzip("x-gzip"));
+        assertTrue(UIInitHandler.acceptsGzip("*"));
+        assertTrue(UIInitHandler.acceptsGzip("gzip ; q = 1.0"));
+
+        assertFalse(UIInitHandler.acceptsGzip(null));
+        assertFalse(UIInitHandler.acceptsGzip(""));
+        assertFalse(UIInitHandler.acceptsGzip("gzip;q=0"));
+        assertFalse(UIInitHandler.acceptsGzip("gzip;q=0.000, deflate"));
+        assertFalse(UIInitHandler.acceptsGzip("*, gzip;q=0"));
+        assertFalse(UIInitHandler.acceptsGzip("*;q=0"));
+        assertFalse(UIInitHandler.acceptsGzip("notgzip, gzipped"));
+        assertFalse(UIInitHandler.acceptsGzip("gzip;q=invalid"));
+    }
+
+    public void testNotCompressedWhenRefused() throws Exception {
+        String json = createJson(1000);
+        assertEquals(json,
+                new String(commit(json, "gzip;q=0, identity", false), "UTF-8"));
+    }
+
+    public void testNotCompressedWhenDisabled() throws Exception {
+        configuration.setUidlCompressionEnabled(false);
+        String json = createJson(1000);
+        assertEquals(json, new String(commit(json, "gzip", false), "UTF-8"));
+    }
+
+    private byte[] commit(Object json, String acceptEncoding,
+            boolean expectCompressed) throws Exception {
+        VaadinService service = EasyMock.createNiceMock(VaadinService.class);
+        EasyMock.expect(service.getDeploymentConfiguration())
+                .andReturn(configuration).anyTimes();
+
+        VaadinRequest request = EasyMock.createNiceMock(VaadinRequest.class);
+        EasyMock.expect(request.getService()).andReturn(service).anyTimes();
+        EasyMock.expect(request.getHeader("Accept-Encoding"))
+                .andReturn(acceptEncoding).anyTimes();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VaadinResponse response = EasyMock
+                .createNiceMock(VaadinResponse.class);
+        EasyMock.expect(response.getOutputStream()).andReturn(out);
+        if (configuration.isUidlCompressionEnabled()) {
+            // Caches must tell compressed and uncompressed responses apart
+            response.setHeader("Vary", "Accept-Encoding");
+            EasyMock.expectLastCall();
+        }
+        if (expectCompressed) {
+            response.setHeader("Content-Encoding", "gzip");
+            EasyMock.expectLastCall();
+        }
+
+        EasyMock.replay(service, request, response);
+        if (json instanceof ResponseBuffer) {
+            UIInitHandler.commitJsonResponse(request, response,
+                    (ResponseBuffer) json);
+        } else {
+            UIInitHandler.commitJsonResponse(request, response, (String) json);
+        }
+        EasyMock.verify(response);
+
+        return out.toByteArray();
+    }
+
+    private static String createJson(int rows) {
+        StringBuilder builder = new StringBuilder("{\"rows\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i != 0) {
+                builder.append(',');
+            }
+            builder.append("\"Row \u00e4 ").append(i).append('"');
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String createText(char c, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return "[\"" + new String(chars) + "\"]";
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        Reader reader = new InputStreamReader(new GZIPInputStream(
+                new ByteArrayInputStream(bytes)), "UTF-8");
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        reader.close();
+        return builder.toString();
+    }
+}
@@ -66,6 +66,7 @@ public class TestClassesSerializable extends TestCase {
             "com\\.vaadin\\.server\\.VaadinSession\\$FutureAccess", //
             "com\\.vaadin\\.external\\..*", //
             "com\\.vaadin\\.util\\.WeakValueMap.*", //
+            "com\\.vaadin\\.data\\.util\\.sqlcontainer\\.CacheFlushNotifier\\$InstanceReference", //
     };
 
     /**
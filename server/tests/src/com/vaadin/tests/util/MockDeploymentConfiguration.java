@@ -16,6 +16,10 @@ public class MockDeploymentConfiguration implements DeploymentConfiguration {
     private int heartbeatInterval = 300;
     private boolean closeIdleSessions = false;
     private PushMode pushMode = PushMode.DISABLED;
+    private boolean uidlCompressionEnabled = false;
+    private int compressionThreshold = 1024;
+    private int pushCoalesceInterval = 0;
+    private int backgroundCleanupInterval = 0;
     private Properties initParameters = new Properties();
     private Map<String, String> applicationOrSystemProperty = new HashMap<String, String>();
     private LegacyProperyToStringMode legacyPropertyToStringMode = LegacyProperyToStringMode.DISABLED;
@@ -74,6 +78,42 @@ public class MockDeploymentConfiguration implements DeploymentConfiguration {
         this.pushMode = pushMode;
     }
 
+    @Override
+    public boolean isUidlCompressionEnabled() {
+        return uidlCompressionEnabled;
+    }
+
+    public void setUidlCompressionEnabled(boolean uidlCompressionEnabled) {
+        this.uidlCompressionEnabled = uidlCompressionEnabled;
+    }
+
+    @Override
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public int getPushCoalesceInterval() {
+        return pushCoalesceInterval;
+    }
+
+    public void setPushCoalesceInterval(int pushCoalesceInterval) {
+        this.pushCoalesceInterval = pushCoalesceInterval;
+    }
+
+    @Override
+    public int getBackgroundCleanupInterval() {
+        return backgroundCleanupInterval;
+    }
+
+    public void setBackgroundCleanupInterval(int backgroundCleanupInterval) {
+        this.backgroundCleanupInterval = backgroundCleanupInterval;
+    }
+
     @Override
     public Properties getInitParameters() {
         return initParameters;
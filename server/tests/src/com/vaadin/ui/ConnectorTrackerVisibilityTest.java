@@ -0,0 +1,115 @@
+package com.vaadin.ui;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+
+public class ConnectorTrackerVisibilityTest extends TestCase {
+
+    private UI ui;
+    private ConnectorTracker tracker;
+    private VerticalLayout layout;
+    private VerticalLayout inner;
+    private Label label;
+
+    @Override
+    protected void setUp() throws Exception {
+        VaadinSession session = new AlwaysLockedVaadinSession(null);
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        tracker = ui.getConnectorTracker();
+
+        layout = new VerticalLayout();
+        ui.setContent(layout);
+        inner = new VerticalLayout();
+        layout.addComponent(inner);
+        label = new Label("Label");
+        inner.addComponent(label);
+
+        endResponse();
+    }
+
+    public void testHiddenSubtreeUninitialized() {
+        assertTrue(tracker.isClientSideInitialized(label));
+
+        inner.setVisible(false);
+        endResponse();
+
+        assertTrue(tracker.isClientSideInitialized(layout));
+        assertFalse(tracker.isClientSideInitialized(inner));
+        assertFalse(tracker.isClientSideInitialized(label));
+    }
+
+    public void testUnrenderedTabUninitialized() {
+        TabSheet tabSheet = new TabSheet();
+        Label first = new Label("First");
+        Label second = new Label("Second");
+        tabSheet.addComponent(first);
+        tabSheet.addComponent(second);
+        layout.addComponent(tabSheet);
+        endResponse();
+
+        assertTrue(tracker.isClientSideInitialized(first));
+        assertFalse(tracker.isClientSideInitialized(second));
+
+        tabSheet.setSelectedTab(second);
+        endResponse();
+
+        assertFalse(tracker.isClientSideInitialized(first));
+        assertTrue(tracker.isClientSideInitialized(second));
+    }
+
+    public void testDirtyVisibleConnectorsUpdated() {
+        List<ClientConnector> dirtyVisible = tracker
+                .getDirtyVisibleConnectors();
+        assertTrue(dirtyVisible.isEmpty());
+
+        label.setValue("Changed");
+        dirtyVisible = tracker.getDirtyVisibleConnectors();
+        assertEquals(1, dirtyVisible.size());
+        assertSame(label, dirtyVisible.get(0));
+
+        // The returned list can be modified without affecting the tracker
+        dirtyVisible.clear();
+        assertEquals(1, tracker.getDirtyVisibleConnectors().size());
+
+        inner.setVisible(false);
+        dirtyVisible = tracker.getDirtyVisibleConnectors();
+        assertFalse(dirtyVisible.contains(label));
+        assertFalse(dirtyVisible.contains(inner));
+        assertTrue(dirtyVisible.contains(layout));
+
+        tracker.markAllConnectorsClean();
+        assertTrue(tracker.getDirtyVisibleConnectors().isEmpty());
+    }
+
+    public void testDirtyConnectorsModifiedDirectly() {
+        label.setValue("Changed");
+        assertEquals(1, tracker.getDirtyVisibleConnectors().size());
+
+        tracker.getDirtyConnectors().clear();
+        assertFalse(tracker.isDirty(label));
+        assertTrue(tracker.getDirtyVisibleConnectors().isEmpty());
+
+        tracker.getDirtyConnectors().add(label);
+        assertTrue(tracker.isDirty(label));
+        assertEquals(1, tracker.getDirtyVisibleConnectors().size());
+    }
+
+    private void endResponse() {
+        for (ClientConnector connector : tracker.getDirtyVisibleConnectors()) {
+            tracker.markClientSideInitialized(connector);
+        }
+        tracker.markAllConnectorsClean();
+        tracker.cleanConnectorMap();
+    }
+}